@@ -0,0 +1,79 @@
+package com.example.pkqb.benchmark;
+
+import com.example.pkqb.model.QuestionItem;
+import com.example.pkqb.service.AnalysisResponseParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型响应解析基准：直接绑定到 AnalysisResult 记录 vs 原先的 readTree + 逐字段复制
+ * <p>
+ * 运行：./mvnw -Pjmh compile exec:exec -Djmh.args="AnalysisResponseBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalysisResponseBenchmark {
+
+    /**
+     * 响应中的题目数
+     */
+    @Param({"20", "200"})
+    private int items;
+
+    private String response;
+    private ObjectMapper objectMapper;
+    private AnalysisResponseParser parser;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        parser = new AnalysisResponseParser(objectMapper);
+        Map<String, Object> root = new HashMap<>();
+        root.put("type", "question");
+        root.put("title", "基准测试题库");
+        root.put("items", BenchmarkCorpus.questionItems(items));
+        response = "```json\n" + objectMapper.writeValueAsString(root) + "\n```";
+    }
+
+    @Benchmark
+    public Object typedBinding() throws IOException {
+        return parser.parse(response);
+    }
+
+    @Benchmark
+    public Object legacyTree() throws IOException {
+        String json = response.substring(response.indexOf('{'), response.lastIndexOf('}') + 1);
+        JsonNode root = objectMapper.readTree(json);
+        Map<String, Object> result = new HashMap<>();
+        result.put("type", root.get("type").asText());
+        result.put("title", root.get("title").asText());
+        List<Object> list = new ArrayList<>();
+        for (JsonNode node : root.get("items")) {
+            List<String> options = new ArrayList<>();
+            for (JsonNode option : node.get("options")) {
+                options.add(option.asText());
+            }
+            list.add(QuestionItem.builder()
+                    .question(node.get("question").asText())
+                    .questionType(node.get("questionType").asText())
+                    .options(options)
+                    .answer(node.get("answer").asText())
+                    .explanation(node.get("explanation").asText())
+                    .build());
+        }
+        result.put("items", list);
+        return result;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.pkqb.benchmark;
+
+import com.example.pkqb.model.NoteItem;
+import com.example.pkqb.model.QuestionItem;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试语料生成器
+ * <p>
+ * 生成内容固定（不依赖随机数），保证多次运行之间结果可比。
+ */
+public final class BenchmarkCorpus {
+
+    private static final String[] NUMBERING = {"%d. ", "%d、", "（%d）", "Q%d ", "第%d题 "};
+
+    /**
+     * PDF 每页行数
+     */
+    private static final int PDF_LINES_PER_PAGE = 40;
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * 生成题目文本，交替使用各种题号、选项和答案格式
+     *
+     * @param targetChars 目标字符数（生成结果略大于该值）
+     */
+    public static String questionText(int targetChars) {
+        StringBuilder sb = new StringBuilder(targetChars + 256);
+        int n = 0;
+        while (sb.length() < targetChars) {
+            n++;
+            if (n % 50 == 1) {
+                sb.append("一、单项选择题（每题2分）\n");
+            }
+            sb.append(String.format(NUMBERING[n % NUMBERING.length], n))
+                    .append("关于 Java 集合框架，下列说法中正确的是第 ").append(n).append(" 项描述？\n");
+            if (n % 3 == 0) {
+                sb.append("A. ArrayList 基于数组  B. LinkedList 基于链表  C. HashMap 线程安全  D. TreeMap 无序\n");
+            } else {
+                sb.append("A. ArrayList 基于数组实现，随机访问快\n")
+                        .append("B. LinkedList 基于双向链表实现\n")
+                        .append("C. HashMap 是线程安全的\n")
+                        .append("D. TreeMap 中的键是无序的\n");
+            }
+            sb.append(n % 4 == 0 ? "【答案】A,B\n" : "答案：A\n");
+            sb.append("解析：HashMap 非线程安全，TreeMap 按键排序。\n\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 生成笔记文本：空行分隔的段落，首行为标题
+     *
+     * @param targetChars 目标字符数（生成结果略大于该值）
+     */
+    public static String noteText(int targetChars) {
+        StringBuilder sb = new StringBuilder(targetChars + 256);
+        int n = 0;
+        while (sb.length() < targetChars) {
+            n++;
+            sb.append("知识点 ").append(n).append("：垃圾回收\n")
+                    .append("JVM 通过可达性分析判断对象是否存活，GC Roots 包括栈帧中的局部变量、静态字段等。\n")
+                    .append("新生代使用复制算法，老年代使用标记-整理或标记-清除算法。\n\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 生成题目列表（用于 HTML 渲染）
+     */
+    public static List<QuestionItem> questionItems(int count) {
+        List<QuestionItem> items = new ArrayList<>(count);
+        for (int n = 1; n <= count; n++) {
+            items.add(QuestionItem.builder()
+                    .question("关于 Java 集合框架，下列说法中正确的是第 " + n + " 项描述？")
+                    .questionType(n % 4 == 0 ? "multiple_choice" : "single_choice")
+                    .options(List.of("A. ArrayList 基于数组", "B. LinkedList 基于链表",
+                            "C. HashMap 线程安全", "D. TreeMap 无序"))
+                    .answer(n % 4 == 0 ? "A,B" : "A")
+                    .explanation("HashMap 非线程安全，TreeMap 按键排序。")
+                    .build());
+        }
+        return items;
+    }
+
+    /**
+     * 生成笔记列表（用于 HTML 渲染）
+     */
+    public static List<NoteItem> noteItems(int count) {
+        List<NoteItem> items = new ArrayList<>(count);
+        for (int n = 1; n <= count; n++) {
+            items.add(NoteItem.builder()
+                    .title("知识点 " + n + "：垃圾回收")
+                    .content("JVM 通过可达性分析判断对象是否存活，新生代使用复制算法，老年代使用标记-整理算法。")
+                    .build());
+        }
+        return items;
+    }
+
+    /**
+     * 生成 PDF 文件（内置 Type1 字体不含中文，使用英文题目）
+     *
+     * @param pages 页数
+     */
+    public static void writePdf(Path file, int pages) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            int n = 0;
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(16);
+                    content.newLineAtOffset(50, 750);
+                    for (int line = 0; line < PDF_LINES_PER_PAGE; line += 5) {
+                        n++;
+                        content.showText(n + ". Which statement about the Java collections framework is correct?");
+                        content.newLine();
+                        content.showText("A. ArrayList is array based   B. LinkedList is a doubly linked list");
+                        content.newLine();
+                        content.showText("C. HashMap is thread safe   D. TreeMap keys are unordered");
+                        content.newLine();
+                        content.showText("Answer: A");
+                        content.newLine();
+                        content.showText("Explanation: HashMap is not thread safe and TreeMap keeps keys sorted.");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+    }
+
+    /**
+     * 生成 .docx 文件：题干为段落，选项放在表格中（很多题库用表格排版选项）
+     *
+     * @param questions 题目数
+     */
+    public static void writeDocx(Path file, int questions) throws IOException {
+        try (XWPFDocument document = new XWPFDocument();
+             OutputStream out = Files.newOutputStream(file)) {
+            for (int n = 1; n <= questions; n++) {
+                document.createParagraph().createRun()
+                        .setText(n + ". 关于 Java 集合框架，下列说法中正确的是？");
+                XWPFTable table = document.createTable(2, 2);
+                table.getRow(0).getCell(0).setText("A. ArrayList 基于数组");
+                table.getRow(0).getCell(1).setText("B. LinkedList 基于链表");
+                table.getRow(1).getCell(0).setText("C. HashMap 线程安全");
+                table.getRow(1).getCell(1).setText("D. TreeMap 无序");
+                document.createParagraph().createRun().setText("答案：A");
+                document.createParagraph().createRun().setText("解析：HashMap 非线程安全，TreeMap 按键排序。");
+            }
+            document.write(out);
+        }
+    }
+}
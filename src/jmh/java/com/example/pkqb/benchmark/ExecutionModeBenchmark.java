@@ -0,0 +1,145 @@
+package com.example.pkqb.benchmark;
+
+import com.example.pkqb.config.ExecutorConfig;
+import com.example.pkqb.model.JobStage;
+import com.example.pkqb.service.LlmGuard;
+import com.example.pkqb.service.PipelineMetrics;
+import com.example.pkqb.service.StageLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.io.support.ResourcePropertySource;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 执行模式对比：platform 与 virtual 两种 app.execution.mode 下处理一批并发请求的耗时
+ * <p>
+ * 两种模式都按 application.properties 创建 ExecutorConfig 的线程池、StageLimiter 和 LlmGuard，只切换执行模式：
+ * 每个请求在 parse 许可内做少量 CPU 工作，把文本分为若干块交给 analysisExecutor 并发"调用模型"（经过 LlmGuard，阻塞 latencyMs），
+ * 再在 generate 许可内渲染。请求线程在 platform 模式下是 Tomcat 默认的 200 个平台线程，在 virtual 模式下每个请求一个虚拟线程。
+ * <p>
+ * 运行：./mvnw -Pjmh compile exec:exec -Djmh.args="ExecutionModeBenchmark"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+
+    /**
+     * Tomcat 默认最大线程数（server.tomcat.threads.max）
+     */
+    private static final int TOMCAT_THREADS = 200;
+
+    /**
+     * 解析和渲染各自消耗的 CPU 工作量（Blackhole.consumeCPU 的 token 数）
+     */
+    private static final long STAGE_CPU_TOKENS = 50_000;
+
+    @Param({"platform", "virtual"})
+    private String mode;
+
+    /**
+     * 同时到达的请求数
+     */
+    @Param({"100", "400"})
+    private int requests;
+
+    /**
+     * 每个请求的文本块数
+     */
+    @Param({"2"})
+    private int chunks;
+
+    /**
+     * 模拟的单次模型调用耗时
+     */
+    @Param({"50"})
+    private long latencyMs;
+
+    private AnnotationConfigApplicationContext context;
+    private ExecutorService requestExecutor;
+    private AsyncTaskExecutor analysisExecutor;
+    private StageLimiter stageLimiter;
+    private LlmGuard llmGuard;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources()
+                .addFirst(new ResourcePropertySource("classpath:application.properties"));
+        context.getEnvironment().getPropertySources()
+                .addFirst(new MapPropertySource("benchmark", Map.of("app.execution.mode", mode)));
+        context.registerBean(SimpleMeterRegistry.class);
+        context.registerBean(PipelineMetrics.class);
+        context.registerBean(LlmGuard.class);
+        context.register(ExecutorConfig.class);
+        context.refresh();
+
+        analysisExecutor = context.getBean("analysisExecutor", AsyncTaskExecutor.class);
+        stageLimiter = context.getBean(StageLimiter.class);
+        llmGuard = context.getBean(LlmGuard.class);
+        // 与 ExecutorConfig.virtualThreadProtocolHandlerCustomizer 一致
+        requestExecutor = "virtual".equals(mode)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requestExecutor.shutdownNow();
+        context.close();
+    }
+
+    @Benchmark
+    public void handleRequests(Blackhole blackhole) {
+        List<CompletableFuture<Void>> pending = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            pending.add(CompletableFuture.runAsync(() -> handleRequest(blackhole), requestExecutor));
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void handleRequest(Blackhole blackhole) {
+        stageLimiter.call(JobStage.PARSE, () -> {
+            Blackhole.consumeCPU(STAGE_CPU_TOKENS);
+            return null;
+        });
+
+        List<CompletableFuture<String>> analyses = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            analyses.add(CompletableFuture.supplyAsync(() -> llmGuard.call(this::callModel), analysisExecutor));
+        }
+        analyses.forEach(analysis -> blackhole.consume(analysis.join()));
+
+        stageLimiter.call(JobStage.GENERATE, () -> {
+            Blackhole.consumeCPU(STAGE_CPU_TOKENS);
+            return null;
+        });
+    }
+
+    /**
+     * 模拟阻塞等待 DashScope 响应
+     */
+    private String callModel() {
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "{}";
+    }
+}
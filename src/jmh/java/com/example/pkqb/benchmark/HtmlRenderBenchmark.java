@@ -0,0 +1,89 @@
+package com.example.pkqb.benchmark;
+
+import com.example.pkqb.config.AppConfig;
+import com.example.pkqb.model.GenerateRequest;
+import com.example.pkqb.model.JobStage;
+import com.example.pkqb.service.HtmlGeneratorService;
+import com.example.pkqb.service.PipelineMetrics;
+import com.example.pkqb.service.StageLimiter;
+import com.example.pkqb.service.TemplateRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTML 渲染基准：HtmlGeneratorService.generateHtml（模板编译 + 渲染 + 写文件）
+ * <p>
+ * 运行：./mvnw -Pjmh compile exec:exec -Djmh.args="HtmlRenderBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HtmlRenderBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int items;
+
+    private Path directory;
+    private HtmlGeneratorService htmlGeneratorService;
+    private GenerateRequest questionRequest;
+    private GenerateRequest noteRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pkqb-render-bench");
+
+        // AppConfig 的路径由 @Value 注入，这里直接写字段
+        AppConfig appConfig = new AppConfig();
+        Field generatedPath = ReflectionUtils.findField(AppConfig.class, "generatedPath");
+        ReflectionUtils.makeAccessible(generatedPath);
+        ReflectionUtils.setField(generatedPath, appConfig, directory.toString());
+        htmlGeneratorService = new HtmlGeneratorService(appConfig, new StageLimiter(Map.of(JobStage.GENERATE, 0), 0),
+                new PipelineMetrics(new SimpleMeterRegistry()), new TemplateRegistry(null, false), false);
+        htmlGeneratorService.init();
+
+        questionRequest = GenerateRequest.builder()
+                .type("question")
+                .title("基准测试题库")
+                .items(BenchmarkCorpus.questionItems(items))
+                .build();
+        noteRequest = GenerateRequest.builder()
+                .type("note")
+                .title("基准测试笔记")
+                .items(BenchmarkCorpus.noteItems(items))
+                .build();
+    }
+
+    /**
+     * 每轮迭代后清理生成的文件，避免大规模参数下占满磁盘
+     */
+    @TearDown(Level.Iteration)
+    public void cleanGeneratedFiles() throws IOException {
+        BenchmarkFiles.deleteChildren(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Map<String, String> renderQuestions() {
+        return htmlGeneratorService.generateHtml(questionRequest);
+    }
+
+    @Benchmark
+    public Map<String, String> renderNotes() {
+        return htmlGeneratorService.generateHtml(noteRequest);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.pkqb.benchmark;
+
+import com.example.pkqb.service.PdfParserService;
+import com.example.pkqb.service.WordParserService;
+import org.apache.poi.openxml4j.util.ZipSecureFile;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文档解析基准：PdfParserService.parse（单线程与页段并行）与 WordParserService.parse
+ * （流式 .docx 提取 vs 原先基于 XWPFDocument DOM 的实现）
+ * <p>
+ * 运行：./mvnw -Pjmh compile exec:exec -Djmh.args="ParserBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    /**
+     * 文档规模：PDF 为页数，.docx 为题目数的 1/8（与 PDF 每页题目数相当）
+     */
+    @Param({"10", "100", "500"})
+    private int pages;
+
+    private Path directory;
+    private Path pdfFile;
+    private Path docxFile;
+    private ExecutorService pdfExecutor;
+    private PdfParserService pdfParserService;
+    private PdfParserService parallelPdfParserService;
+    private WordParserService wordParserService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pkqb-parser-bench");
+        pdfFile = directory.resolve("corpus.pdf");
+        docxFile = directory.resolve("corpus.docx");
+        BenchmarkCorpus.writePdf(pdfFile, pages);
+        BenchmarkCorpus.writeDocx(docxFile, pages * 8);
+        // 语料高度重复，压缩率会触发 POI 的 zip bomb 检查
+        ZipSecureFile.setMinInflateRatio(0);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        pdfExecutor = Executors.newFixedThreadPool(threads);
+        pdfParserService = new PdfParserService(pdfExecutor, 1, Integer.MAX_VALUE, 16, 16);
+        parallelPdfParserService = new PdfParserService(pdfExecutor, threads, 32, 16, 16);
+        wordParserService = new WordParserService();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pdfExecutor.shutdownNow();
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public String parsePdf() {
+        return pdfParserService.parse(pdfFile.toString());
+    }
+
+    @Benchmark
+    public String parsePdfParallel() {
+        return parallelPdfParserService.parse(pdfFile.toString());
+    }
+
+    @Benchmark
+    public String parseDocx() {
+        return wordParserService.parse(docxFile.toString());
+    }
+
+    @Benchmark
+    public String parseDocxLegacyDom() throws IOException {
+        try (InputStream in = Files.newInputStream(docxFile);
+             XWPFDocument document = new XWPFDocument(in)) {
+            StringBuilder text = new StringBuilder();
+            for (XWPFParagraph paragraph : document.getParagraphs()) {
+                String paragraphText = paragraph.getText();
+                if (paragraphText != null && !paragraphText.trim().isEmpty()) {
+                    text.append(paragraphText).append("\n");
+                }
+            }
+            return text.toString().trim();
+        }
+    }
+}
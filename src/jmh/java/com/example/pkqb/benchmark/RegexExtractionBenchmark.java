@@ -0,0 +1,120 @@
+package com.example.pkqb.benchmark;
+
+import com.example.pkqb.model.NoteItem;
+import com.example.pkqb.model.QuestionItem;
+import com.example.pkqb.service.RegexExtractionEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 正则备用方案基准（ContentAnalysisService 在 AI 不可用时走这条路径）：
+ * 预编译单遍扫描引擎 vs 原先的"split + 每行编译正则"实现，以及笔记提取
+ * <p>
+ * 运行：./mvnw -Pjmh compile exec:exec -Djmh.args="RegexExtractionBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegexExtractionBenchmark {
+
+    /**
+     * 输入大小（MB，按字符数计）
+     */
+    @Param({"1", "4", "16"})
+    private int sizeMb;
+
+    private String text;
+    private String noteText;
+    private RegexExtractionEngine engine;
+
+    @Setup
+    public void setUp() {
+        text = BenchmarkCorpus.questionText(sizeMb * 1024 * 1024);
+        noteText = BenchmarkCorpus.noteText(sizeMb * 1024 * 1024);
+        engine = new RegexExtractionEngine();
+    }
+
+    @Benchmark
+    public boolean engineDetectQuestions() {
+        return engine.looksLikeQuestions(noteText);
+    }
+
+    @Benchmark
+    public List<NoteItem> engineExtractNotes() {
+        return engine.extractNotes(noteText);
+    }
+
+    @Benchmark
+    public List<QuestionItem> engineExtractQuestions() {
+        return engine.extractQuestions(text);
+    }
+
+    @Benchmark
+    public void legacyExtractQuestions(Blackhole blackhole) {
+        blackhole.consume(LegacyExtractor.extractQuestions(text));
+    }
+
+    /**
+     * 引擎替换前的实现（仅修正了答案/解析分组为空时的空指针），作为对比基线
+     */
+    static final class LegacyExtractor {
+
+        static List<Object> extractQuestions(String text) {
+            List<Object> questions = new ArrayList<>();
+            String[] lines = text.split("\n");
+
+            String currentQuestion = null;
+            List<String> currentOptions = new ArrayList<>();
+            String currentAnswer = null;
+            String currentExplanation = null;
+
+            for (String line : lines) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+
+                Matcher qm = Pattern.compile("^\\d+[.、]\\s*(.+)").matcher(line);
+                if (qm.find()) {
+                    if (currentQuestion != null) {
+                        questions.add(new Object[]{currentQuestion, currentOptions, currentAnswer, currentExplanation});
+                    }
+                    currentQuestion = qm.group(1);
+                    currentOptions = new ArrayList<>();
+                    currentAnswer = null;
+                    currentExplanation = null;
+                    continue;
+                }
+
+                Matcher om = Pattern.compile("^[A-D][.、]\\s*(.+)").matcher(line);
+                if (om.find()) {
+                    currentOptions.add(om.group(1));
+                    continue;
+                }
+
+                Matcher am = Pattern.compile("答案|Answer[:：]\\s*(.+)").matcher(line);
+                if (am.find()) {
+                    currentAnswer = am.group(1) != null ? am.group(1).trim() : line;
+                    continue;
+                }
+
+                Matcher em = Pattern.compile("解析|Explanation[:：]\\s*(.+)").matcher(line);
+                if (em.find()) {
+                    currentExplanation = em.group(1) != null ? em.group(1).trim() : line;
+                }
+            }
+
+            if (currentQuestion != null) {
+                questions.add(new Object[]{currentQuestion, currentOptions, currentAnswer, currentExplanation});
+            }
+            return questions;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.pkqb.benchmark;
+
+import com.example.pkqb.model.QuestionItem;
+import com.example.pkqb.service.SearchIndexService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全文检索基准：在已写出并合并的索引段上检索（稀有词、常见词、多词组合）
+ * <p>
+ * 运行：./mvnw -Pjmh compile exec:exec -Djmh.args="SearchIndexBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SearchIndexBenchmark {
+
+    private static final String[] PHRASES = {
+            "光合作用", "细胞呼吸", "线粒体", "叶绿体", "有丝分裂", "减数分裂", "遗传规律", "基因突变",
+            "牛顿第二定律", "动量守恒", "电磁感应", "欧姆定律", "能量守恒", "万有引力", "机械波", "折射率",
+            "化学平衡", "氧化还原", "离子反应", "有机合成", "元素周期表", "共价键", "电解质", "反应速率",
+            "集合框架", "线程安全", "垃圾回收", "虚拟机", "哈希表", "二叉树", "动态规划", "时间复杂度",
+            "下列说法", "正确的是", "错误的是", "不属于", "主要原因", "根据材料", "计算结果", "实验现象"};
+
+    /**
+     * 索引的题目数
+     */
+    @Param({"100000", "1000000"})
+    private int items;
+
+    private Path directory;
+    private SearchIndexService searchIndexService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pkqb-search-bench");
+        searchIndexService = new SearchIndexService(directory.toString(), 100_000, 4, 1000);
+        searchIndexService.open();
+
+        Random random = new Random(42);
+        int perBank = 100;
+        List<QuestionItem> bank = new ArrayList<>(perBank);
+        long bankId = 1;
+        for (int n = 0; n < items; n++) {
+            StringBuilder question = new StringBuilder();
+            for (int i = 0; i < 6; i++) {
+                // 前面的短语出现得更频繁，模拟真实题库中常见词和稀有词的分布
+                question.append(PHRASES[(int) (Math.pow(random.nextDouble(), 2) * PHRASES.length)]).append('，');
+            }
+            question.append("第 ").append(n).append(" 题");
+            bank.add(QuestionItem.builder()
+                    .question(question.toString())
+                    .options(List.of("A. " + PHRASES[random.nextInt(PHRASES.length)],
+                            "B. " + PHRASES[random.nextInt(PHRASES.length)]))
+                    .explanation(PHRASES[random.nextInt(PHRASES.length)])
+                    .build());
+            if (bank.size() == perBank) {
+                searchIndexService.index(bankId++, bank);
+                bank = new ArrayList<>(perBank);
+            }
+        }
+        if (!bank.isEmpty()) {
+            searchIndexService.index(bankId, bank);
+        }
+        searchIndexService.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Object rareTerm() {
+        return searchIndexService.search("实验现象", 0, 20);
+    }
+
+    @Benchmark
+    public Object commonTerm() {
+        return searchIndexService.search("光合作用", 0, 20);
+    }
+
+    @Benchmark
+    public Object combinedTerms() {
+        return searchIndexService.search("线粒体 有丝分裂", 0, 20);
+    }
+}
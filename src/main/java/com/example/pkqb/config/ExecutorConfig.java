@@ -0,0 +1,188 @@
+package com.example.pkqb.config;
+
+import com.example.pkqb.model.JobStage;
+import com.example.pkqb.service.StageLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 线程池配置
+ * <p>
+ * app.execution.mode 控制执行模式：
+ * <ul>
+ *     <li>platform（默认）：有界平台线程池</li>
+ *     <li>virtual：Tomcat 请求处理、分析和任务线程都使用虚拟线程，阻塞在 DashScope 或文件解析上时不再占用平台线程，
+ *     并发上限改由 {@link StageLimiter} 的分阶段限制和 {@link com.example.pkqb.service.LlmGuard} 的模型调用限制保证</li>
+ * </ul>
+ */
+@Slf4j
+@Configuration
+public class ExecutorConfig {
+
+    private static final String VIRTUAL_MODE = "virtual";
+
+    @Value("${app.execution.mode:platform}")
+    private String executionMode;
+
+    @Value("${app.analysis.parallelism:4}")
+    private int analysisParallelism;
+
+    @Value("${app.analysis.queue-capacity:256}")
+    private int analysisQueueCapacity;
+
+    @Value("${app.job.parallelism:4}")
+    private int jobParallelism;
+
+    @Value("${app.job.queue-capacity:100}")
+    private int jobQueueCapacity;
+
+    @Value("${app.batch.parallelism:4}")
+    private int batchParallelism;
+
+    @Value("${app.pdf.parallelism:0}")
+    private int pdfParallelism;
+
+    @Value("${app.execution.limits.parse:8}")
+    private int parseLimit;
+
+    @Value("${app.execution.limits.generate:8}")
+    private int generateLimit;
+
+    @Value("${app.execution.limits.acquire-timeout-ms:120000}")
+    private long acquireTimeoutMs;
+
+    /**
+     * AI 分析线程池（长文档分块后并发调用模型）
+     * <p>
+     * 平台线程模式下线程数和队列均有上限，队列满时由调用线程自己执行，避免无界堆积；
+     * 虚拟线程模式下每个分块一个虚拟线程，模型调用并发由 {@link com.example.pkqb.service.LlmGuard} 限制。
+     */
+    @Bean
+    public AsyncTaskExecutor analysisExecutor() {
+        if (isVirtualMode()) {
+            return virtualThreadExecutor("analysis-vt-", -1);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(analysisParallelism);
+        executor.setMaxPoolSize(analysisParallelism);
+        executor.setQueueCapacity(analysisQueueCapacity);
+        executor.setThreadNamePrefix("analysis-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 流水线任务线程池（解析 → 分析 → 生成）
+     * <p>
+     * 平台线程模式下队列满时直接拒绝，由提交接口返回"任务繁忙"，不占用请求线程执行；
+     * 虚拟线程模式下同时运行的任务数不超过 parallelism + queue-capacity，超出时提交方等待。
+     */
+    @Bean
+    public AsyncTaskExecutor jobExecutor() {
+        if (isVirtualMode()) {
+            return virtualThreadExecutor("job-vt-", jobParallelism + jobQueueCapacity);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(jobParallelism);
+        executor.setMaxPoolSize(jobParallelism);
+        executor.setQueueCapacity(jobQueueCapacity);
+        executor.setThreadNamePrefix("job-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 批量处理线程池（每个文件一个"解析 → 分析"任务）
+     * <p>
+     * 文件任务会等待分析线程池中的分块任务，因此必须与 analysisExecutor 分开，避免互相等待；
+     * 队列满时由提交请求的线程自己执行。虚拟线程模式下同时运行的文件任务不超过 parallelism，超出时提交方等待。
+     */
+    @Bean
+    public AsyncTaskExecutor batchExecutor() {
+        if (isVirtualMode()) {
+            return virtualThreadExecutor("batch-vt-", batchParallelism);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(batchParallelism);
+        executor.setMaxPoolSize(batchParallelism);
+        executor.setQueueCapacity(analysisQueueCapacity);
+        executor.setThreadNamePrefix("batch-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * PDF 页段提取线程池
+     * <p>
+     * 文本提取是 CPU 密集型工作，两种模式下都使用与 CPU 核数相当的平台线程；
+     * 队列不设上限，多个文档的页段排队等待，不会拒绝。
+     */
+    @Bean
+    public AsyncTaskExecutor pdfExecutor() {
+        int threads = pdfParallelism > 0 ? pdfParallelism : Runtime.getRuntime().availableProcessors();
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("pdf-");
+        executor.setDaemon(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 分阶段并发限制（两种模式下都生效）
+     * <p>
+     * analyze 阶段不在这里限制：所有模型调用都经过 {@link com.example.pkqb.service.LlmGuard}，
+     * 由它按服务端的限流和错误自适应调整并发，再叠加一层固定上限只会让两处的排队和超时互相干扰。
+     */
+    @Bean
+    public StageLimiter stageLimiter() {
+        Map<JobStage, Integer> limits = new EnumMap<>(JobStage.class);
+        limits.put(JobStage.PARSE, parseLimit);
+        limits.put(JobStage.GENERATE, generateLimit);
+        log.info("执行模式: {}, 阶段并发限制: {}", executionMode, limits);
+        return new StageLimiter(limits, acquireTimeoutMs);
+    }
+
+    /**
+     * 虚拟线程模式下 Tomcat 为每个请求创建一个虚拟线程
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.execution.mode", havingValue = VIRTUAL_MODE)
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    private boolean isVirtualMode() {
+        return VIRTUAL_MODE.equalsIgnoreCase(executionMode);
+    }
+
+    private AsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix, int concurrencyLimit) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(concurrencyLimit);
+        return executor;
+    }
+}
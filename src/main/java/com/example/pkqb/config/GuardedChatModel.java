@@ -0,0 +1,37 @@
+package com.example.pkqb.config;
+
+import com.example.pkqb.service.LlmGuard;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+/**
+ * 经过 {@link LlmGuard} 的 ChatModel，ChatClient 的同步和流式调用都由它转发给实际模型
+ */
+class GuardedChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final LlmGuard guard;
+
+    GuardedChatModel(ChatModel delegate, LlmGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return guard.call(() -> delegate.call(prompt));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return guard.stream(() -> delegate.stream(prompt));
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+}
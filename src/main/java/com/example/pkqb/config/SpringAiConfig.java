@@ -1,14 +1,19 @@
 package com.example.pkqb.config;
 
+import com.example.pkqb.service.LlmGuard;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class SpringAiConfig {
 
+    /**
+     * ChatClient 底层的模型调用经过 LlmGuard（自适应并发、限速、重试、熔断）
+     */
     @Bean
-    public ChatClient chatClient(ChatClient.Builder builder) {
-        return builder.build();
+    public ChatClient chatClient(ChatModel chatModel, LlmGuard llmGuard) {
+        return ChatClient.builder(new GuardedChatModel(chatModel, llmGuard)).build();
     }
 }
@@ -0,0 +1,69 @@
+package com.example.pkqb.controller;
+
+import com.example.pkqb.model.BatchRequest;
+import com.example.pkqb.model.ContentResponse;
+import com.example.pkqb.model.JobInfo;
+import com.example.pkqb.service.BatchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+
+/**
+ * 批量处理 Controller
+ * <p>
+ * 一次请求上传并分析多个文件（或 zip 包），也可以批量分析已上传的文件。提交后立即返回任务ID，
+ * 通过 /api/generate/status/{jobId} 查询进度，完成后任务状态的 batch 字段即批量结果：
+ * mode=separate 逐个文件返回结果，mode=merged 另外返回合并后的题库（可直接用于 /api/generate）。
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/batch")
+@RequiredArgsConstructor
+public class BatchController {
+
+    private final BatchService batchService;
+
+    /**
+     * 批量上传并分析
+     */
+    @PostMapping("/upload")
+    public ResponseEntity<ContentResponse<JobInfo>> uploadAndAnalyze(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "mode", required = false, defaultValue = BatchService.MODE_SEPARATE) String mode,
+            @RequestParam(value = "title", required = false) String title) {
+
+        log.info("收到批量上传请求，文件数: {}, 模式: {}", files.size(), mode);
+
+        if (files.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(ContentResponse.error("文件不能为空"));
+        }
+
+        JobInfo job = batchService.submitUploads(files, mode, title);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ContentResponse.success("批量任务已提交", job));
+    }
+
+    /**
+     * 批量分析已上传的文件
+     */
+    @PostMapping("/analyze")
+    public ResponseEntity<ContentResponse<JobInfo>> analyze(@RequestBody BatchRequest request) {
+        log.info("收到批量分析请求，文件数: {}, 模式: {}",
+                request.getFileIds() != null ? request.getFileIds().size() : 0, request.getMode());
+
+        if (request.getFileIds() == null || request.getFileIds().isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(ContentResponse.error("文件ID不能为空"));
+        }
+
+        JobInfo job = batchService.submitFileIds(request.getFileIds(), request.getMode(), request.getTitle());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ContentResponse.success("批量任务已提交", job));
+    }
+}
@@ -1,15 +1,28 @@
 package com.example.pkqb.controller;
 
+import com.example.pkqb.exception.BusinessException;
 import com.example.pkqb.model.*;
 import com.example.pkqb.service.ContentAnalysisService;
 import com.example.pkqb.service.HtmlGeneratorService;
-import com.example.pkqb.service.TemplateService;
+import com.example.pkqb.service.JobService;
+import com.example.pkqb.service.QuestionBankService;
+import com.example.pkqb.service.QuestionDedupService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,7 +37,12 @@ public class ContentController {
 
     private final ContentAnalysisService contentAnalysisService;
     private final HtmlGeneratorService htmlGeneratorService;
-    private final TemplateService templateService;
+    private final JobService jobService;
+    private final QuestionBankService questionBankService;
+    private final QuestionDedupService questionDedupService;
+
+    @Value("${app.analysis.stream-timeout-ms:300000}")
+    private long streamTimeoutMs;
 
     /**
      * AI 内容分析接口
@@ -42,8 +60,9 @@ public class ContentController {
                         .body(ContentResponse.error("文本内容不能为空"));
             }
 
-            // 调用 AI 分析
-            Map<String, Object> result = contentAnalysisService.analyzeContent(request.getText());
+            // 调用 AI 分析，再标记（或合并）近似重复的题目
+            Map<String, Object> result = questionDedupService.dedup(
+                    contentAnalysisService.analyzeContent(request.getText()));
             return ResponseEntity.ok(ContentResponse.success("分析成功", result));
 
         } catch (Exception e) {
@@ -53,6 +72,92 @@ public class ContentController {
         }
     }
 
+    /**
+     * AI 内容流式分析接口（SSE）
+     * <p>
+     * 依次推送 meta、item（每个题目或笔记一条）、done 事件，出错时推送 error 事件。
+     * 项目推送时还未去重，done 事件中附带对全部项目去重得到的 duplicates 列表，由页面标记或移除重复题目。
+     */
+    @PostMapping(value = "/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter analyzeContentStream(@RequestBody ContentRequest request) {
+        log.info("收到流式内容分析请求，文本长度: {}",
+                request.getText() != null ? request.getText().length() : 0);
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+
+        // 验证请求参数
+        if (request.getText() == null || request.getText().isEmpty()) {
+            sendErrorAndComplete(emitter, "文本内容不能为空");
+            return emitter;
+        }
+
+        Disposable subscription = withDuplicates(contentAnalysisService.analyzeContentStream(request.getText()))
+                .subscribe(
+                        event -> sendEvent(emitter, event),
+                        e -> {
+                            log.error("流式内容分析失败", e);
+                            sendErrorAndComplete(emitter, "内容分析失败: " + e.getMessage());
+                        },
+                        emitter::complete);
+
+        // 请求以任何方式结束（正常完成、客户端断开、超时、出错）都取消上游模型调用
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(e -> subscription.dispose());
+        return emitter;
+    }
+
+    /**
+     * 收集推送过的项目，在 done 事件中附加去重结果（与 /api/analyze 使用同一去重配置）
+     */
+    private Flux<AnalysisStreamEvent> withDuplicates(Flux<AnalysisStreamEvent> events) {
+        if (!questionDedupService.isEnabled()) {
+            return events;
+        }
+        return Flux.defer(() -> {
+            List<Object> items = new ArrayList<>();
+            return events.map(event -> {
+                if (AnalysisStreamEvent.ITEM.equals(event.getEvent())) {
+                    items.add(event.getData());
+                } else if (AnalysisStreamEvent.DONE.equals(event.getEvent())
+                        && event.getData() instanceof Map<?, ?> done && !items.isEmpty()) {
+                    Map<String, Object> analysis = new HashMap<>();
+                    analysis.put("type", done.get("type"));
+                    analysis.put("items", items);
+                    Object duplicates = questionDedupService.dedup(analysis).get("duplicates");
+                    if (duplicates != null) {
+                        Map<String, Object> data = new LinkedHashMap<>();
+                        done.forEach((key, value) -> data.put(String.valueOf(key), value));
+                        data.put("duplicates", duplicates);
+                        return AnalysisStreamEvent.of(AnalysisStreamEvent.DONE, data);
+                    }
+                }
+                return event;
+            });
+        });
+    }
+
+    private void sendEvent(SseEmitter emitter, AnalysisStreamEvent event) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(event.getEvent())
+                    .data(event.getData(), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new UncheckedIOException("推送分析事件失败", e);
+        }
+    }
+
+    private void sendErrorAndComplete(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(AnalysisStreamEvent.ERROR)
+                    .data(ContentResponse.error(message), MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
     /**
      * HTML 生成接口
      */
@@ -73,8 +178,12 @@ public class ContentController {
                         .body(ContentResponse.error("内容项不能为空"));
             }
 
-            // 生成 HTML
+            // 生成 HTML，结构化内容同时保存到题库
             Map<String, String> fileInfo = htmlGeneratorService.generateHtml(request);
+            Long bankId = questionBankService.save(request, fileInfo.get("fileId"));
+            if (bankId != null) {
+                fileInfo.put("bankId", String.valueOf(bankId));
+            }
             return ResponseEntity.ok(ContentResponse.success("生成成功", fileInfo));
 
         } catch (Exception e) {
@@ -84,14 +193,57 @@ public class ContentController {
         }
     }
 
+    /**
+     * 生成并直接下载接口
+     * <p>
+     * 渲染结果直接写入响应输出流，不生成文件，也不在内存中保存整页 HTML。
+     */
+    @PostMapping("/generate/download")
+    public void generateAndDownload(@RequestBody GenerateRequest request, HttpServletResponse response) throws IOException {
+        log.info("收到生成并下载请求，类型: {}", request.getType());
+
+        // 验证请求参数
+        if (request.getType() == null || request.getType().isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "类型不能为空");
+            return;
+        }
+
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "内容项不能为空");
+            return;
+        }
+
+        String fileName = htmlGeneratorService.downloadFileName(request.getType());
+        response.setContentType("text/html;charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        try {
+            htmlGeneratorService.renderHtml(request, response.getOutputStream());
+        } catch (BusinessException e) {
+            // 类型不支持等错误发生在写出任何内容之前
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                return;
+            }
+            throw e;
+        }
+    }
+
     /**
      * 查询生成状态接口
+     * <p>
+     * ID 为流水线任务ID时返回任务各阶段状态，否则按生成文件ID检查文件是否已生成。
      */
     @GetMapping("/generate/status/{fileId}")
-    public ResponseEntity<Map<String, String>> getGenerateStatus(@PathVariable String fileId) {
+    public ResponseEntity<?> getGenerateStatus(@PathVariable String fileId) {
         try {
             log.info("查询生成状态，文件ID: {}", fileId);
 
+            JobInfo job = jobService.getJob(fileId);
+            if (job != null) {
+                return ResponseEntity.ok(job);
+            }
+
             // 检查生成的文件是否存在
             String generatedPath = htmlGeneratorService.getAppConfig().getGeneratedPath();
             java.nio.file.Path filePath = java.nio.file.Paths.get(generatedPath, fileId + ".html");
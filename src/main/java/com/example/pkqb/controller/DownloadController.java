@@ -1,19 +1,37 @@
 package com.example.pkqb.controller;
 
 import com.example.pkqb.config.AppConfig;
-import com.example.pkqb.exception.BusinessException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  * 文件下载 Controller
+ * <p>
+ * 文件内容不经过堆：完整下载在 Tomcat 支持时交给 sendfile，否则以 Resource 流式写出；
+ * 带 Range 的请求由 Spring 按区间返回 206。ETag/Last-Modified 让重复下载返回 304，
+ * 客户端接受 gzip/br 且生成时写出了对应的预压缩文件时直接返回压缩版本。
+ * <p>
+ * 只能下载生成目录（app.generated.path）内的 HTML 文件：downloadPath 按生成目录解析并规范化，
+ * 最终路径（含符号链接解析后）不在生成目录内时返回 400，缓存、数据库等其他文件一律不可下载。
  */
 @Slf4j
 @RestController
@@ -21,53 +39,159 @@ import java.nio.file.Paths;
 @RequiredArgsConstructor
 public class DownloadController {
 
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 小于该大小的文件直接写出，sendfile 的额外开销不划算（与 Tomcat DefaultServlet 一致）
+     */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    private static final String HTML_SUFFIX = ".html";
+
+    private static final MediaType TEXT_HTML_UTF8 = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+
     private final AppConfig appConfig;
 
     /**
      * 下载生成的HTML文件
+     *
+     * @param fileName     文件名
+     * @param downloadPath 生成目录下的子目录（相对路径），为空时直接在生成目录中查找
      */
     @GetMapping("/download/{fileName}")
-    public ResponseEntity<byte[]> downloadFile(
+    public ResponseEntity<?> downloadFile(
             @PathVariable String fileName,
-            @RequestParam(value = "downloadPath", required = false, defaultValue = "") String downloadPath) {
+            @RequestParam(value = "downloadPath", required = false, defaultValue = "") String downloadPath,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
             log.info("收到下载请求，文件名: {}, 下载路径: {}", fileName, downloadPath);
 
-            // 获取生成目录
-            String generatedPath = appConfig.getGeneratedPath();
-            
-            // 如果用户指定了下载路径，使用用户指定的路径
-            String filePath;
-            if (downloadPath != null && !downloadPath.isEmpty()) {
-                filePath = downloadPath + "/" + fileName;
-            } else {
-                filePath = Paths.get(generatedPath, fileName).toString();
+            Path path = resolveInOutputDir(downloadPath, fileName);
+            if (path == null) {
+                log.warn("拒绝生成目录以外的下载请求，文件名: {}, 下载路径: {}", fileName, downloadPath);
+                return ResponseEntity.badRequest()
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .body("非法的下载路径");
             }
 
             // 检查文件是否存在
-            java.nio.file.Path path = Paths.get(filePath);
-            if (!Files.exists(path)) {
-                log.error("文件不存在: {}", filePath);
+            if (!Files.isRegularFile(path)) {
+                log.error("文件不存在: {}", path);
                 return ResponseEntity.status(404)
-                        .body(("文件不存在: " + fileName).getBytes());
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .body("文件不存在: " + fileName);
+            }
+            // 符号链接可能指向生成目录以外
+            Path outputDir = outputDir();
+            if (Files.isDirectory(outputDir) && !path.toRealPath().startsWith(outputDir.toRealPath())) {
+                log.warn("拒绝指向生成目录以外的下载请求: {}", path);
+                return ResponseEntity.badRequest()
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .body("非法的下载路径");
             }
 
-            // 读取文件内容
-            byte[] fileContent = Files.readAllBytes(path);
+            // 选择要发送的文件：Range 请求只对原文件有意义，其余情况优先使用预压缩版本
+            boolean rangeRequest = request.getHeader(HttpHeaders.RANGE) != null;
+            Encoded encoded = rangeRequest ? null : selectEncoding(path, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+            Path body = encoded != null ? encoded.path() : path;
+            BasicFileAttributes attributes = Files.readAttributes(body, BasicFileAttributes.class);
+            long length = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
 
-            // 确定文件名编码
-            String encodedFileName = new String(fileName.getBytes("UTF-8"), "UTF-8");
+            // 同一 URL 的不同编码版本必须使用不同的 ETag
+            String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified)
+                    + (encoded != null ? "-" + encoded.coding() : "") + "\"";
+
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+            if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+                log.debug("文件未修改，返回 304: {}", fileName);
+                return null;
+            }
 
-            // 设置响应头
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(TEXT_HTML_UTF8);
+            headers.setContentDisposition(ContentDisposition.attachment()
+                    .filename(fileName, StandardCharsets.UTF_8)
+                    .build());
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (encoded != null) {
+                headers.set(HttpHeaders.CONTENT_ENCODING, encoded.coding());
+            }
+
+            if (!rangeRequest && length >= SENDFILE_MIN_SIZE
+                    && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                // 由 Tomcat 在响应提交后用 sendfile 从文件直接发送到 socket
+                headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+                response.setContentLengthLong(length);
+                request.setAttribute(SENDFILE_FILENAME, body.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, length);
+                return null;
+            }
+
+            Resource resource = new FileSystemResource(body);
             return ResponseEntity.ok()
-                    .header("Content-Disposition", "attachment; filename=\"" + encodedFileName + "\"")
-                    .contentType(MediaType.TEXT_HTML)
-                    .body(fileContent);
+                    .headers(headers)
+                    .body(resource);
 
         } catch (IOException e) {
             log.error("下载文件失败", e);
             return ResponseEntity.internalServerError()
-                    .body(("下载失败: " + e.getMessage()).getBytes());
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("下载失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 在生成目录内解析下载文件，结果不在生成目录内或不是 HTML 文件时返回 null
+     */
+    private Path resolveInOutputDir(String downloadPath, String fileName) {
+        if (!fileName.endsWith(HTML_SUFFIX)) {
+            return null;
+        }
+        Path outputDir = outputDir();
+        Path path;
+        try {
+            Path dir = downloadPath != null && !downloadPath.isEmpty() ? outputDir.resolve(downloadPath) : outputDir;
+            path = dir.resolve(fileName).normalize();
+        } catch (InvalidPathException e) {
+            return null;
         }
+        return path.startsWith(outputDir) && !path.equals(outputDir) ? path : null;
+    }
+
+    private Path outputDir() {
+        return Paths.get(appConfig.getGeneratedPath()).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 按客户端支持的编码选择预压缩文件（br 优先），预压缩文件比原文件旧时视为过期
+     */
+    private Encoded selectEncoding(Path path, String acceptEncoding) throws IOException {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        for (String coding : new String[]{"br", "gzip"}) {
+            if (!AcceptEncoding.accepts(acceptEncoding, coding)) {
+                continue;
+            }
+            Path sibling = path.resolveSibling(path.getFileName() + (coding.equals("br") ? ".br" : ".gz"));
+            if (Files.isRegularFile(sibling)
+                    && Files.getLastModifiedTime(sibling).compareTo(Files.getLastModifiedTime(path)) >= 0) {
+                return new Encoded(coding, sibling);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 预压缩文件及其内容编码
+     */
+    private record Encoded(String coding, Path path) {
     }
 }
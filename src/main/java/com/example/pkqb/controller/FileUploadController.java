@@ -1,14 +1,21 @@
 package com.example.pkqb.controller;
 
+import com.example.pkqb.exception.BusinessException;
 import com.example.pkqb.model.ContentRequest;
 import com.example.pkqb.model.ContentResponse;
+import com.example.pkqb.model.UploadedFile;
 import com.example.pkqb.service.FileParserService;
+import com.example.pkqb.service.UploadService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,6 +29,10 @@ import java.util.Map;
 public class FileUploadController {
 
     private final FileParserService fileParserService;
+    private final UploadService uploadService;
+
+    private static final String CONTENT_SHA256_HEADER = "X-Content-SHA256";
+    private static final String UPLOAD_TOKEN_HEADER = "X-Upload-Token";
 
     /**
      * 文件上传接口
@@ -46,19 +57,20 @@ public class FileUploadController {
                         .body(ContentResponse.error("不支持的文件类型，仅支持 Word 和 PDF 文件"));
             }
 
-            // 保存文件
-            String fileName = file.getOriginalFilename();
-            byte[] fileBytes = file.getBytes();
-            String filePath = fileParserService.saveUploadedFile(fileName, fileBytes);
+            // 流式保存文件（multipart 内容由容器暂存在磁盘上，这里不读入堆）
+            UploadedFile uploaded;
+            try (InputStream in = file.getInputStream()) {
+                uploaded = uploadService.save(file.getOriginalFilename(), fileType, in, file.getSize());
+            }
 
             // 返回文件信息
-            Map<String, String> fileInfo = new HashMap<>();
-            fileInfo.put("fileId", filePath);
-            fileInfo.put("fileName", fileName);
-            fileInfo.put("filePath", filePath);
+            Map<String, String> fileInfo = toFileInfo(uploaded);
 
             return ResponseEntity.ok(ContentResponse.success("文件上传成功", fileInfo));
 
+        } catch (BusinessException e) {
+            // 大小超限、格式不符等由全局异常处理器按错误码返回
+            throw e;
         } catch (Exception e) {
             log.error("文件上传失败", e);
             return ResponseEntity.internalServerError()
@@ -66,6 +78,50 @@ public class FileUploadController {
         }
     }
 
+    /**
+     * 流式上传接口：请求体即文件内容（application/octet-stream）
+     * <p>
+     * 不经过 multipart 解析，Content-Length 超限或文件头格式不符时在读取正文之前就拒绝。
+     * 请求头 X-Content-SHA256 给出的摘要已存在、且 X-Upload-Token 是此前上传同一内容得到的凭证时，
+     * 直接返回已有文件（带新凭证），不读取请求体；否则照常读取请求体，由服务端计算摘要后再去重。
+     */
+    @PostMapping(value = "/upload/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<ContentResponse<Map<String, String>>> uploadStream(
+            @RequestParam("fileName") String fileName,
+            @RequestParam("type") String fileType,
+            @RequestHeader(value = CONTENT_SHA256_HEADER, required = false) String sha256,
+            @RequestHeader(value = UPLOAD_TOKEN_HEADER, required = false) String uploadToken,
+            HttpServletRequest request) throws IOException {
+
+        log.info("收到流式上传请求，文件名: {}, 类型: {}, 长度: {}", fileName, fileType, request.getContentLengthLong());
+
+        if (sha256 != null && !sha256.isBlank() && uploadToken != null && !uploadToken.isBlank()) {
+            UploadedFile existing = uploadService.findByDigest(sha256.trim(), uploadToken.trim(), fileName, fileType);
+            if (existing != null) {
+                return ResponseEntity.ok(ContentResponse.success("文件已存在", toFileInfo(existing)));
+            }
+        }
+
+        UploadedFile uploaded = uploadService.save(fileName, fileType, request.getInputStream(),
+                request.getContentLengthLong());
+        return ResponseEntity.ok(ContentResponse.success("文件上传成功", toFileInfo(uploaded)));
+    }
+
+    /**
+     * 释放上传文件：请求头 X-Upload-Token 为上传时得到的凭证，只释放该凭证对应的引用，最后一个引用释放时删除文件
+     */
+    @DeleteMapping("/upload/{fileId}")
+    public ResponseEntity<ContentResponse<Void>> releaseFile(
+            @PathVariable String fileId,
+            @RequestHeader(value = UPLOAD_TOKEN_HEADER, required = false) String uploadToken) {
+        log.info("收到释放上传文件请求，文件ID: {}", fileId);
+        if (!uploadService.release(fileId, uploadToken)) {
+            return ResponseEntity.status(404)
+                    .body(ContentResponse.error("文件不存在: " + fileId));
+        }
+        return ResponseEntity.ok(ContentResponse.success("已释放", null));
+    }
+
     /**
      * 解析文件接口
      */
@@ -77,6 +133,11 @@ public class FileUploadController {
             log.info("收到文件解析请求，文件类型: {}, 文件路径: {}",
                     request.getFileType(), request.getFilePath());
 
+            // 只给了 fileId 时按上传索引查找文件路径
+            if ((request.getFilePath() == null || request.getFilePath().isEmpty()) && request.getFileId() != null) {
+                request.setFilePath(uploadService.getFilePath(request.getFileId()));
+            }
+
             // 验证请求参数
             if (request.getFilePath() == null || request.getFilePath().isEmpty()) {
                 return ResponseEntity.badRequest()
@@ -109,4 +170,16 @@ public class FileUploadController {
                     .body(ContentResponse.error("文件解析失败: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    private Map<String, String> toFileInfo(UploadedFile uploaded) {
+        Map<String, String> fileInfo = new HashMap<>();
+        fileInfo.put("fileId", uploaded.getFileId());
+        fileInfo.put("fileName", uploaded.getFileName());
+        fileInfo.put("filePath", uploaded.getFilePath());
+        fileInfo.put("size", String.valueOf(uploaded.getSize()));
+        fileInfo.put("sha256", uploaded.getSha256());
+        fileInfo.put("duplicate", String.valueOf(uploaded.isDuplicate()));
+        fileInfo.put("uploadToken", uploaded.getUploadToken());
+        return fileInfo;
+    }
+}
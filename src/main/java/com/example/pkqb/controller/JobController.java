@@ -0,0 +1,102 @@
+package com.example.pkqb.controller;
+
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.ContentRequest;
+import com.example.pkqb.model.ContentResponse;
+import com.example.pkqb.model.JobInfo;
+import com.example.pkqb.model.UploadedFile;
+import com.example.pkqb.service.JobService;
+import com.example.pkqb.service.UploadService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+
+/**
+ * 流水线任务 Controller
+ * <p>
+ * 提交后立即返回任务ID，通过 /api/generate/status/{jobId} 查询各阶段进度。
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/jobs")
+@RequiredArgsConstructor
+public class JobController {
+
+    private final JobService jobService;
+    private final UploadService uploadService;
+
+    /**
+     * 提交文件任务：上传 → 解析 → 分析 → 生成
+     */
+    @PostMapping
+    public ResponseEntity<ContentResponse<JobInfo>> submitFile(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("type") String fileType,
+            @RequestParam(value = "title", required = false) String title) {
+
+        try {
+            log.info("收到文件任务，文件名: {}, 类型: {}", file.getOriginalFilename(), fileType);
+
+            if (file.isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body(ContentResponse.error("文件不能为空"));
+            }
+
+            // 验证文件类型是否支持（只支持 Word 和 PDF）
+            if (!fileType.equalsIgnoreCase("word") && !fileType.equalsIgnoreCase("pdf")) {
+                return ResponseEntity.badRequest()
+                        .body(ContentResponse.error("不支持的文件类型，仅支持 Word 和 PDF 文件"));
+            }
+
+            // 上传文件必须在请求线程内保存，请求结束后临时文件即被清理
+            UploadedFile uploaded;
+            try (InputStream in = file.getInputStream()) {
+                uploaded = uploadService.save(file.getOriginalFilename(), fileType, in, file.getSize());
+            }
+            JobInfo job = jobService.submitFile(fileType, uploaded.getFilePath(), title);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ContentResponse.success("任务已提交", job));
+
+        } catch (BusinessException e) {
+            return errorResponse(e);
+        } catch (Exception e) {
+            log.error("提交文件任务失败", e);
+            return ResponseEntity.internalServerError()
+                    .body(ContentResponse.error("提交任务失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 提交文本任务：分析 → 生成
+     */
+    @PostMapping("/text")
+    public ResponseEntity<ContentResponse<JobInfo>> submitText(@RequestBody ContentRequest request) {
+        try {
+            log.info("收到文本任务，文本长度: {}",
+                    request.getText() != null ? request.getText().length() : 0);
+
+            if (request.getText() == null || request.getText().isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body(ContentResponse.error("文本内容不能为空"));
+            }
+
+            JobInfo job = jobService.submitText(request.getText(), null);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ContentResponse.success("任务已提交", job));
+
+        } catch (BusinessException e) {
+            return errorResponse(e);
+        }
+    }
+
+    private ResponseEntity<ContentResponse<JobInfo>> errorResponse(BusinessException e) {
+        HttpStatus status = HttpStatus.resolve(e.getCode());
+        return ResponseEntity.status(status != null ? status : HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(ContentResponse.error(e.getMessage()));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.pkqb.controller;
+
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.ContentResponse;
+import com.example.pkqb.model.GenerateRequest;
+import com.example.pkqb.model.PageResult;
+import com.example.pkqb.model.QuestionBank;
+import com.example.pkqb.model.SearchHit;
+import com.example.pkqb.service.HtmlGeneratorService;
+import com.example.pkqb.service.QuestionBankService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * 题库查询 Controller
+ * <p>
+ * 读取已保存的题库和题目（分页）、全文检索，或按保存的内容重新渲染下载，不再调用模型分析。
+ * 题库不存在、分页参数错误等由 {@link BusinessException} 交给全局异常处理返回对应状态码。
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/banks")
+@RequiredArgsConstructor
+public class QuestionBankController {
+
+    private final QuestionBankService questionBankService;
+    private final HtmlGeneratorService htmlGeneratorService;
+
+    /**
+     * 分页查询题库，按创建时间倒序
+     */
+    @GetMapping
+    public ResponseEntity<ContentResponse<PageResult<QuestionBank>>> listBanks(
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "from", required = false) Long from,
+            @RequestParam(value = "to", required = false) Long to,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        return ResponseEntity.ok(ContentResponse.success("查询成功",
+                questionBankService.listBanks(type, from, to, page, size)));
+    }
+
+    /**
+     * 全文检索题目和笔记（题干、选项、解析、笔记标题和内容），按相关度排序
+     */
+    @GetMapping("/search")
+    public ResponseEntity<ContentResponse<PageResult<SearchHit>>> search(
+            @RequestParam("q") String query,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        return ResponseEntity.ok(ContentResponse.success("查询成功",
+                questionBankService.search(query, page, size)));
+    }
+
+    /**
+     * 查询题库信息
+     */
+    @GetMapping("/{bankId}")
+    public ResponseEntity<ContentResponse<QuestionBank>> getBank(@PathVariable long bankId) {
+        return ResponseEntity.ok(ContentResponse.success("查询成功", questionBankService.getBank(bankId)));
+    }
+
+    /**
+     * 分页读取题库中的题目或笔记
+     */
+    @GetMapping("/{bankId}/items")
+    public ResponseEntity<ContentResponse<PageResult<Object>>> getItems(
+            @PathVariable long bankId,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "50") int size) {
+        return ResponseEntity.ok(ContentResponse.success("查询成功",
+                questionBankService.getItems(bankId, page, size)));
+    }
+
+    /**
+     * 按保存的内容重新渲染并下载
+     */
+    @GetMapping("/{bankId}/download")
+    public void download(@PathVariable long bankId, HttpServletResponse response) throws IOException {
+        GenerateRequest request = questionBankService.getGenerateRequest(bankId);
+        String fileName = htmlGeneratorService.downloadFileName(request.getType());
+        response.setContentType("text/html;charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        htmlGeneratorService.renderHtml(request, response.getOutputStream());
+    }
+
+    /**
+     * 删除题库
+     */
+    @DeleteMapping("/{bankId}")
+    public ResponseEntity<ContentResponse<Void>> deleteBank(@PathVariable long bankId) {
+        if (!questionBankService.delete(bankId)) {
+            throw new BusinessException(404, "题库不存在: " + bankId);
+        }
+        log.info("题库已删除: {}", bankId);
+        return ResponseEntity.ok(ContentResponse.success("删除成功", null));
+    }
+}
@@ -1,57 +1,101 @@
 package com.example.pkqb.controller;
 
+import com.example.pkqb.service.StaticAssetService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 静态资源服务
+ * <p>
+ * 内容来自 {@link StaticAssetService} 的内存缓存，按 Accept-Encoding 直接返回预压缩的 br/gzip 版本。
+ * 带指纹的地址（/assets/js/main.3f2a9c1d0e.js）内容永不变化，返回一年的 immutable 强缓存；
+ * 原地址每次向服务器确认，内容未变时返回 304。
  */
 @Slf4j
 @RestController
-@RequestMapping("/api")
+@RequiredArgsConstructor
 public class StaticResourceController {
 
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+    private final StaticAssetService staticAssetService;
+
+    /**
+     * 获取静态资源（原地址或带指纹的地址）
+     */
+    @GetMapping("/assets/{directory}/{fileName:.+}")
+    public ResponseEntity<?> getAsset(@PathVariable String directory,
+                                      @PathVariable String fileName,
+                                      HttpServletRequest request,
+                                      HttpServletResponse response) {
+        return serve(directory + "/" + fileName, request, response);
+    }
+
     /**
      * 获取Vue.js文件
      */
-    @GetMapping("/vue/{fileName}")
-    public ResponseEntity<String> getVueFile(@PathVariable String fileName) {
-        try {
-            String vuePath = "classpath:static/js/" + fileName + ".js";
-            ClassPathResource resource = new ClassPathResource(vuePath);
-            String content = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType("application/javascript;charset=UTF-8"))
-                    .body(content);
-        } catch (IOException e) {
-            log.error("加载Vue文件失败: {}", fileName, e);
-            return ResponseEntity.internalServerError()
-                    .body("加载Vue文件失败: " + e.getMessage());
-        }
+    @GetMapping("/api/vue/{fileName}")
+    public ResponseEntity<?> getVueFile(@PathVariable String fileName,
+                                        HttpServletRequest request,
+                                        HttpServletResponse response) {
+        return serve("js/" + fileName + ".js", request, response);
     }
 
     /**
      * 获取CSS文件
      */
-    @GetMapping("/css/{fileName}")
-    public ResponseEntity<String> getCssFile(@PathVariable String fileName) {
-        try {
-            String cssPath = "classpath:static/css/" + fileName + ".css";
-            ClassPathResource resource = new ClassPathResource(cssPath);
-            String content = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType("text/css;charset=UTF-8"))
-                    .body(content);
-        } catch (IOException e) {
-            log.error("加载CSS文件失败: {}", fileName, e);
-            return ResponseEntity.internalServerError()
-                    .body("加载CSS文件失败: " + e.getMessage());
+    @GetMapping("/api/css/{fileName}")
+    public ResponseEntity<?> getCssFile(@PathVariable String fileName,
+                                        HttpServletRequest request,
+                                        HttpServletResponse response) {
+        return serve("css/" + fileName + ".css", request, response);
+    }
+
+    private ResponseEntity<?> serve(String path, HttpServletRequest request, HttpServletResponse response) {
+        StaticAssetService.Asset asset = staticAssetService.get(path);
+        if (asset == null) {
+            log.debug("静态资源不存在: {}", path);
+            return ResponseEntity.status(404)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("资源不存在: " + path);
+        }
+
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        String coding = null;
+        byte[] body = asset.identity();
+        if (asset.brotli() != null && AcceptEncoding.accepts(acceptEncoding, "br")) {
+            coding = "br";
+            body = asset.brotli();
+        } else if (asset.gzip() != null && AcceptEncoding.accepts(acceptEncoding, "gzip")) {
+            coding = "gzip";
+            body = asset.gzip();
+        }
+
+        // 同一地址的不同编码版本必须使用不同的 ETag
+        String etag = "\"" + asset.etag() + (coding != null ? "-" + coding : "") + "\"";
+        CacheControl cacheControl = staticAssetService.isFingerprinted(path, asset) ? IMMUTABLE : CacheControl.noCache();
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return null;
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(asset.contentType())
+                .contentLength(body.length);
+        if (coding != null) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, coding);
         }
+        return builder.body(body);
     }
 }
@@ -1,13 +1,23 @@
 package com.example.pkqb.controller;
 
-import com.example.pkqb.service.TemplateService;
+import com.example.pkqb.service.TemplateRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
 
 /**
  * 模板管理 Controller
+ * <p>
+ * 模板内容来自 {@link TemplateRegistry}，ETag 为模板的内容哈希；客户端每次向服务器确认，模板未变时返回 304。
  */
 @Slf4j
 @RestController
@@ -15,20 +25,25 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class TemplateController {
 
-    private final TemplateService templateService;
+    private static final MediaType TEXT_HTML_UTF8 = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+
+    private final TemplateRegistry templateRegistry;
 
     /**
      * 获取HTML模板
      */
     @GetMapping("/{templateName}")
-    public ResponseEntity<String> getTemplate(@PathVariable String templateName) {
-        try {
-            String template = templateService.loadTemplate(templateName);
-            return ResponseEntity.ok(template);
-        } catch (Exception e) {
-            log.error("加载模板失败: {}", templateName, e);
-            return ResponseEntity.internalServerError()
-                    .body("加载模板失败: " + e.getMessage());
+    public ResponseEntity<String> getTemplate(@PathVariable String templateName,
+                                              HttpServletRequest request,
+                                              HttpServletResponse response) {
+        TemplateRegistry.TemplateEntry entry = templateRegistry.get(templateName);
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + entry.getVersion() + "\"")) {
+            return null;
         }
+        return ResponseEntity.ok()
+                .contentType(TEXT_HTML_UTF8)
+                .body(entry.getSource());
     }
 }
@@ -0,0 +1,75 @@
+package com.example.pkqb.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 模型返回的分析结果（与 Prompt 中要求的 JSON 格式一一对应，由 Jackson 直接绑定）
+ * <p>
+ * 绑定尽量宽松：未知字段忽略，无法识别的 type/questionType 为 null，单个字符串的 options 视为一个元素的数组，
+ * 数组形式的 answer（如 ["A","C"]）按逗号拼接。
+ *
+ * @param type  内容类型，模型未给出或无法识别时为 null
+ * @param title 题库或笔记标题
+ * @param items 题目或笔记项
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record AnalysisResult(ContentType type, String title, List<Item> items) {
+
+    /**
+     * 题目或笔记项：题目使用 question/questionType/options/answer/explanation，笔记使用 title/content
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Item(String question,
+                       QuestionType questionType,
+                       @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY) List<String> options,
+                       @JsonDeserialize(using = AnswerDeserializer.class) String answer,
+                       String explanation,
+                       String title,
+                       String content) {
+
+        /**
+         * 是否像题目（有题干）
+         */
+        public boolean isQuestion() {
+            return question != null && !question.isBlank();
+        }
+    }
+
+    /**
+     * answer 可能是字符串、布尔值、数字或数组，统一转为字符串
+     */
+    static class AnswerDeserializer extends JsonDeserializer<String> {
+
+        @Override
+        public String deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (!parser.isExpectedStartArrayToken()) {
+                return parser.getValueAsString();
+            }
+            StringBuilder answer = new StringBuilder();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                if (token.isStructStart()) {
+                    parser.skipChildren();
+                    continue;
+                }
+                String value = parser.getValueAsString();
+                if (value != null && !value.isBlank()) {
+                    if (!answer.isEmpty()) {
+                        answer.append(',');
+                    }
+                    answer.append(value.trim());
+                }
+            }
+            return answer.toString();
+        }
+    }
+}
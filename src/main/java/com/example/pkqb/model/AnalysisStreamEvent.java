@@ -0,0 +1,33 @@
+package com.example.pkqb.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 流式分析事件（对应一条 SSE 消息）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisStreamEvent {
+
+    public static final String META = "meta";
+    public static final String ITEM = "item";
+    public static final String DONE = "done";
+    public static final String ERROR = "error";
+
+    /**
+     * 事件名：meta/item/done/error
+     */
+    private String event;
+
+    /**
+     * 事件数据：meta 和 done 为类型、标题等信息，item 为单个题目或笔记
+     */
+    private Object data;
+
+    public static AnalysisStreamEvent of(String event, Object data) {
+        return new AnalysisStreamEvent(event, data);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.pkqb.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量分析中单个文件的结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchFileResult {
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件ID
+     */
+    private String fileId;
+
+    /**
+     * 本次批量上传登记的引用凭证，用于释放文件（按 fileId 提交的批量为空）
+     */
+    private String uploadToken;
+
+    /**
+     * 文件内容的 SHA-256
+     */
+    private String sha256;
+
+    /**
+     * 是否成功
+     */
+    private boolean success;
+
+    /**
+     * 失败原因
+     */
+    private String error;
+
+    /**
+     * 内容类型：question/note
+     */
+    private String type;
+
+    /**
+     * 标题
+     */
+    private String title;
+
+    /**
+     * 结果来源：ai/regex/partial
+     */
+    private String source;
+
+    /**
+     * 项目数量
+     */
+    private int itemCount;
+
+    /**
+     * 题目或笔记列表（merged 模式下为空，项目只出现在合并结果中）
+     */
+    private List<Object> items;
+}
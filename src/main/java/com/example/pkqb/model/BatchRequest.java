@@ -0,0 +1,26 @@
+package com.example.pkqb.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量分析请求模型（分析已上传的文件）
+ */
+@Data
+public class BatchRequest {
+    /**
+     * 已上传文件的ID列表
+     */
+    private List<String> fileIds;
+
+    /**
+     * 结果模式：separate（逐个文件返回，默认）/merged（合并为一个题库）
+     */
+    private String mode;
+
+    /**
+     * 合并后的标题（merged 模式，可选）
+     */
+    private String title;
+}
@@ -1,5 +1,8 @@
 package com.example.pkqb.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
 /**
  * 内容类型枚举
  */
@@ -15,6 +18,7 @@ public enum ContentType {
         this.description = description;
     }
 
+    @JsonValue
     public String getValue() {
         return value;
     }
@@ -31,4 +35,23 @@ public enum ContentType {
         }
         throw new IllegalArgumentException("Unknown content type: " + value);
     }
-}
\ No newline at end of file
+
+    /**
+     * 宽松解析（绑定模型输出时使用）：接受取值、枚举名或中文描述（如 "question"、"QUESTION"、"题目"），
+     * 忽略大小写和首尾空白，无法识别时返回 null
+     */
+    @JsonCreator
+    public static ContentType parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        for (ContentType type : values()) {
+            if (type.value.equalsIgnoreCase(trimmed) || type.name().equalsIgnoreCase(trimmed)
+                    || type.description.equals(trimmed)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.pkqb.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 去重发现的近似重复题目
+ * <p>
+ * 与本次上传中更早的题目重复时 duplicateOfIndex 有值，与已保存题库中的题目重复时 bankId/seq 有值。
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DuplicateItem {
+    /**
+     * 重复题目在分析结果中的原始序号（从 0 开始）
+     */
+    private int index;
+
+    /**
+     * 本次上传中与之重复的题目的原始序号
+     */
+    private Integer duplicateOfIndex;
+
+    /**
+     * 与之重复的已保存题库ID
+     */
+    private Long bankId;
+
+    /**
+     * 与之重复的已保存题目在题库中的序号
+     */
+    private Integer seq;
+
+    /**
+     * 相似度（按 MinHash 签名估计的 Jaccard 系数，1 表示去掉编号和选项标号后用词相同）
+     */
+    private double similarity;
+
+    /**
+     * 是否已从结果中删除（merge 模式）
+     */
+    private boolean removed;
+}
@@ -0,0 +1,97 @@
+package com.example.pkqb.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 流水线任务状态（查询接口返回的快照）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobInfo {
+    /**
+     * 任务ID
+     */
+    private String jobId;
+
+    /**
+     * 任务状态：pending/running/completed/failed
+     */
+    private String status;
+
+    /**
+     * 当前阶段：upload/parse/analyze/dedup/generate
+     */
+    private String stage;
+
+    /**
+     * 进度（0-100）
+     */
+    private int progress;
+
+    /**
+     * 各阶段状态，按执行顺序排列
+     */
+    private Map<String, String> stages;
+
+    /**
+     * 失败原因
+     */
+    private String error;
+
+    /**
+     * 内容类型：question/note（分析完成后才有）
+     */
+    private String type;
+
+    /**
+     * 标题（分析完成后才有）
+     */
+    private String title;
+
+    /**
+     * 题目或笔记数量（分析完成后才有）
+     */
+    private Integer itemCount;
+
+    /**
+     * 去重发现的近似重复题目数（去重完成后才有）
+     */
+    private Integer duplicateCount;
+
+    /**
+     * 生成的文件ID（生成完成后才有，可用于下载）
+     */
+    private String fileId;
+
+    /**
+     * 生成的文件名（生成完成后才有）
+     */
+    private String fileName;
+
+    /**
+     * 保存的题库ID（生成完成后才有，可通过 /api/banks 分页读取题目）
+     */
+    private Long bankId;
+
+    /**
+     * 批量任务的结果（完成后才有）：files 为各文件结果，succeeded/failed 为成功和失败的文件数，merged 模式下另有合并结果 merged
+     */
+    private Map<String, Object> batch;
+
+    /**
+     * 创建时间（毫秒时间戳）
+     */
+    private long createdAt;
+
+    /**
+     * 最后更新时间（毫秒时间戳）
+     */
+    private long updatedAt;
+}
@@ -0,0 +1,28 @@
+package com.example.pkqb.model;
+
+/**
+ * 流水线任务阶段枚举
+ */
+public enum JobStage {
+    UPLOAD("upload", "上传"),
+    PARSE("parse", "解析"),
+    ANALYZE("analyze", "分析"),
+    DEDUP("dedup", "去重"),
+    GENERATE("generate", "生成");
+
+    private final String value;
+    private final String description;
+
+    JobStage(String value, String description) {
+        this.value = value;
+        this.description = description;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.pkqb.model;
+
+/**
+ * 任务（及阶段）状态枚举
+ */
+public enum JobStatus {
+    PENDING("pending", "等待中"),
+    RUNNING("running", "执行中"),
+    COMPLETED("completed", "已完成"),
+    FAILED("failed", "失败"),
+    SKIPPED("skipped", "已跳过");
+
+    private final String value;
+    private final String description;
+
+    JobStatus(String value, String description) {
+        this.value = value;
+        this.description = description;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
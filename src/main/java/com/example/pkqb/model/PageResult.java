@@ -0,0 +1,42 @@
+package com.example.pkqb.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 分页查询结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageResult<T> {
+    /**
+     * 当前页的数据
+     */
+    private List<T> items;
+
+    /**
+     * 页码（从 0 开始）
+     */
+    private int page;
+
+    /**
+     * 每页条数
+     */
+    private int size;
+
+    /**
+     * 总条数
+     */
+    private long total;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasNext;
+}
@@ -0,0 +1,45 @@
+package com.example.pkqb.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 已保存的题库（不含题目，题目通过分页接口读取）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuestionBank {
+    /**
+     * 题库ID
+     */
+    private Long id;
+
+    /**
+     * 类型：question/note
+     */
+    private String type;
+
+    /**
+     * 标题
+     */
+    private String title;
+
+    /**
+     * 题目或笔记数量
+     */
+    private int itemCount;
+
+    /**
+     * 生成的文件ID（可用于下载），没有时为 null
+     */
+    private String fileId;
+
+    /**
+     * 创建时间（毫秒时间戳）
+     */
+    private long createdAt;
+}
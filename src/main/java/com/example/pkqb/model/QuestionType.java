@@ -1,5 +1,8 @@
 package com.example.pkqb.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
 /**
  * 题目类型枚举
  */
@@ -16,6 +19,7 @@ public enum QuestionType {
         this.description = description;
     }
 
+    @JsonValue
     public String getValue() {
         return value;
     }
@@ -32,4 +36,23 @@ public enum QuestionType {
         }
         throw new IllegalArgumentException("Unknown question type: " + value);
     }
-}
\ No newline at end of file
+
+    /**
+     * 宽松解析（绑定模型输出时使用）：接受取值、枚举名或中文描述（如 "single_choice"、"SINGLE_CHOICE"、"单选题"），
+     * 忽略大小写和首尾空白，无法识别时返回 null
+     */
+    @JsonCreator
+    public static QuestionType parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        for (QuestionType type : values()) {
+            if (type.value.equalsIgnoreCase(trimmed) || type.name().equalsIgnoreCase(trimmed)
+                    || type.description.equals(trimmed)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.pkqb.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 全文检索命中的题目或笔记
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHit {
+    /**
+     * 题库ID
+     */
+    private Long bankId;
+
+    /**
+     * 题库标题
+     */
+    private String bankTitle;
+
+    /**
+     * 类型：question/note
+     */
+    private String type;
+
+    /**
+     * 在题库中的序号（从 0 开始，可用于 /api/banks/{bankId}/items 定位所在页）
+     */
+    private int seq;
+
+    /**
+     * 相关度分数
+     */
+    private double score;
+
+    /**
+     * 题目（QuestionItem）或笔记（NoteItem）
+     */
+    private Object item;
+}
@@ -0,0 +1,55 @@
+package com.example.pkqb.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 已保存的上传文件
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadedFile {
+    /**
+     * 文件ID（相同内容的上传共用一个 fileId）
+     */
+    private String fileId;
+
+    /**
+     * 保存后的文件路径
+     */
+    private String filePath;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件类型：word/pdf
+     */
+    private String fileType;
+
+    /**
+     * 文件大小（字节）
+     */
+    private long size;
+
+    /**
+     * 文件内容的 SHA-256（十六进制）
+     */
+    private String sha256;
+
+    /**
+     * 是否为已存在的内容（本次上传未新增文件）
+     */
+    private boolean duplicate;
+
+    /**
+     * 本次上传登记的引用凭证：释放文件、按摘要秒传时出示（按 fileId 查询得到的文件为空）
+     */
+    private String uploadToken;
+}
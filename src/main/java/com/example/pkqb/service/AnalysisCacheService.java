@@ -0,0 +1,279 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.config.AppConfig;
+import com.example.pkqb.model.NoteItem;
+import com.example.pkqb.model.QuestionItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AI 分析结果缓存
+ * <p>
+ * 以"规范化文本 + Prompt 版本 + 模型名"的 SHA-256 为键。内存层按条数做 LRU 淘汰并带过期时间；
+ * 可选的磁盘层位于 app.generated.path/analysis-cache 下，重启后仍可命中。
+ * <p>
+ * 写入和读取都复制结果（含项目列表和其中的题目/笔记），调用方修改拿到的结果不会影响缓存；
+ * 磁盘层按 {@link DiskEntry} 的结构保存，读回的项目仍是 {@link QuestionItem} / {@link NoteItem}。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnalysisCacheService {
+
+    private static final String CACHE_DIR = "analysis-cache";
+
+    private final AppConfig appConfig;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.analysis.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.analysis.cache.max-entries:500}")
+    private int maxEntries;
+
+    @Value("${app.analysis.cache.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${app.analysis.cache.disk-enabled:true}")
+    private boolean diskEnabled;
+
+    /**
+     * 访问顺序的 LinkedHashMap，超出容量时淘汰最久未使用的条目
+     */
+    private final Map<String, CacheEntry> memoryCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * 计算缓存键
+     *
+     * @param text          原始文本
+     * @param promptVersion Prompt 版本
+     * @param model         模型名称
+     * @return 十六进制 SHA-256
+     */
+    public String cacheKey(String text, String promptVersion, String model) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(normalize(text).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(promptVersion.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 查询缓存，先查内存再查磁盘
+     *
+     * @return 命中的分析结果，未命中返回 null
+     */
+    public Map<String, Object> get(String key) {
+        if (!enabled) {
+            return null;
+        }
+
+        synchronized (memoryCache) {
+            CacheEntry entry = memoryCache.get(key);
+            if (entry != null) {
+                if (!isExpired(entry.createdAt())) {
+                    log.debug("分析缓存命中（内存）: {}", key);
+                    return copyOf(entry.result());
+                }
+                memoryCache.remove(key);
+            }
+        }
+
+        Map<String, Object> result = readFromDisk(key);
+        if (result != null) {
+            log.debug("分析缓存命中（磁盘）: {}", key);
+            return copyOf(result);
+        }
+        return null;
+    }
+
+    /**
+     * 写入缓存
+     */
+    public void put(String key, Map<String, Object> result) {
+        if (!enabled) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (memoryCache) {
+            memoryCache.put(key, new CacheEntry(copyOf(result), now));
+        }
+        writeToDisk(key, result);
+    }
+
+    /**
+     * 规范化文本：统一换行，合并连续空白，去掉首尾空白
+     */
+    static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean inSpace = false;
+        boolean spaceHasNewline = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '　') {
+                inSpace = true;
+                spaceHasNewline |= c == '\n';
+                continue;
+            }
+            if (inSpace && sb.length() > 0) {
+                sb.append(spaceHasNewline ? '\n' : ' ');
+            }
+            inSpace = false;
+            spaceHasNewline = false;
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private boolean isExpired(long createdAt) {
+        return System.currentTimeMillis() - createdAt > ttlMinutes * 60_000L;
+    }
+
+    private Map<String, Object> readFromDisk(String key) {
+        if (!diskEnabled) {
+            return null;
+        }
+
+        Path file = cacheFile(key);
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            long createdAt = Files.getLastModifiedTime(file).toMillis();
+            if (isExpired(createdAt)) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            Map<String, Object> result = objectMapper.readValue(file.toFile(), DiskEntry.class).toResult();
+            synchronized (memoryCache) {
+                memoryCache.put(key, new CacheEntry(result, createdAt));
+            }
+            return result;
+        } catch (IOException e) {
+            log.warn("读取分析缓存失败: {}", file, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Map<String, Object> result) {
+        if (!diskEnabled) {
+            return;
+        }
+
+        Path file = cacheFile(key);
+        try {
+            Files.createDirectories(file.getParent());
+            // 先写临时文件再原子替换，避免并发读到半个文件
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            objectMapper.writeValue(tmp.toFile(), DiskEntry.of(result));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入分析缓存失败: {}", file, e);
+        }
+    }
+
+    private Path cacheFile(String key) {
+        return Paths.get(appConfig.getGeneratedPath(), CACHE_DIR, key + ".json");
+    }
+
+    /**
+     * 复制分析结果：外层 Map、项目列表和其中的题目/笔记都是新对象
+     */
+    static Map<String, Object> copyOf(Map<String, Object> result) {
+        Map<String, Object> copy = new HashMap<>(result);
+        if (result.get("items") instanceof List<?> items) {
+            List<Object> copiedItems = new ArrayList<>(items.size());
+            for (Object item : items) {
+                copiedItems.add(copyOf(item));
+            }
+            copy.put("items", copiedItems);
+        }
+        return copy;
+    }
+
+    private static Object copyOf(Object item) {
+        if (item instanceof QuestionItem question) {
+            return QuestionItem.builder()
+                    .question(question.getQuestion())
+                    .questionType(question.getQuestionType())
+                    .options(question.getOptions() != null ? new ArrayList<>(question.getOptions()) : null)
+                    .answer(question.getAnswer())
+                    .explanation(question.getExplanation())
+                    .build();
+        }
+        if (item instanceof NoteItem note) {
+            return NoteItem.builder()
+                    .title(note.getTitle())
+                    .content(note.getContent())
+                    .build();
+        }
+        return item;
+    }
+
+    private record CacheEntry(Map<String, Object> result, long createdAt) {
+    }
+
+    /**
+     * 磁盘缓存文件的结构，题目和笔记分开保存，反序列化时得到具体的项目类型
+     */
+    record DiskEntry(String type, String title, String templateName, String source,
+                     List<QuestionItem> questions, List<NoteItem> notes) {
+
+        static DiskEntry of(Map<String, Object> result) {
+            List<QuestionItem> questions = new ArrayList<>();
+            List<NoteItem> notes = new ArrayList<>();
+            if (result.get("items") instanceof List<?> items) {
+                for (Object item : items) {
+                    if (item instanceof QuestionItem question) {
+                        questions.add(question);
+                    } else if (item instanceof NoteItem note) {
+                        notes.add(note);
+                    }
+                }
+            }
+            return new DiskEntry((String) result.get("type"), (String) result.get("title"),
+                    (String) result.get("templateName"), (String) result.get("source"), questions, notes);
+        }
+
+        Map<String, Object> toResult() {
+            Map<String, Object> result = new HashMap<>();
+            result.put("type", type);
+            result.put("title", title);
+            result.put("templateName", templateName);
+            result.put("source", source);
+            List<?> items = "question".equals(type) ? questions : notes;
+            result.put("items", items != null ? items : List.of());
+            return result;
+        }
+    }
+}
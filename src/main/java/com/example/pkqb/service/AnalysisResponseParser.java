@@ -0,0 +1,106 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.model.AnalysisResult;
+import com.example.pkqb.model.ContentType;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 模型完整响应的解析器
+ * <p>
+ * 从第一个 '{' 开始直接绑定为 {@link AnalysisResult}，跳过前面的说明文字或 ```json 代码块标记，忽略根对象之后的内容；
+ * 容忍字符串中未转义的换行和结尾多余的逗号。严格解析失败（如响应被截断）时用 {@link AnalysisStreamParser}
+ * 取回已经闭合的项目，结果标记为不完整。
+ * <p>
+ * 线程安全。
+ */
+@Component
+public class AnalysisResponseParser {
+
+    /**
+     * 解析结果
+     *
+     * @param analysis 分析结果
+     * @param complete 响应是否是完整的 JSON；为 false 时只包含截断前已闭合的项目
+     */
+    public record Parsed(AnalysisResult analysis, boolean complete) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader reader;
+
+    public AnalysisResponseParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.reader = objectMapper.readerFor(AnalysisResult.class)
+                .with(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+                .with(JsonReadFeature.ALLOW_TRAILING_COMMA);
+    }
+
+    /**
+     * 解析模型响应
+     *
+     * @throws IOException 响应中没有 JSON 对象，或截断前没有任何完整的项目
+     */
+    public Parsed parse(String response) throws IOException {
+        int start = response != null ? response.indexOf('{') : -1;
+        if (start < 0) {
+            throw new JsonParseException(null, "AI 响应中没有 JSON 对象");
+        }
+
+        try (StringReader in = new StringReader(response)) {
+            in.skip(start);
+            return new Parsed(reader.readValue(in), true);
+        } catch (IOException e) {
+            Parsed recovered = recover(response);
+            if (recovered == null) {
+                throw e;
+            }
+            return recovered;
+        }
+    }
+
+    /**
+     * 增量解析已有内容，收集截断前的 type、title 和完整项目；一个项目都没有时返回 null
+     */
+    private Parsed recover(String response) {
+        Collector collector = new Collector();
+        try {
+            AnalysisStreamParser parser = new AnalysisStreamParser(objectMapper, collector);
+            parser.feed(response);
+            parser.end();
+        } catch (IOException e) {
+            // 保留出错位置之前已解析的项目
+        }
+        if (collector.items.isEmpty()) {
+            return null;
+        }
+        return new Parsed(new AnalysisResult(ContentType.parse(collector.type),
+                collector.title, collector.items), false);
+    }
+
+    private static final class Collector implements AnalysisStreamParser.Listener {
+
+        private final List<AnalysisResult.Item> items = new ArrayList<>();
+        private String type;
+        private String title;
+
+        @Override
+        public void onMeta(String type, String title) {
+            this.type = type;
+            this.title = title;
+        }
+
+        @Override
+        public void onItem(AnalysisResult.Item item) {
+            items.add(item);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.model.AnalysisResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * AI 响应的增量 JSON 解析器
+ * <p>
+ * 基于 Jackson 非阻塞解析器，模型每输出一段文本就喂入一次；items 数组中的元素一旦闭合立即绑定为
+ * {@link AnalysisResult.Item} 并回调，无需等待整个响应结束。根对象之前的内容（如 ```json 代码块标记）会被跳过，根对象闭合后的内容被忽略。
+ * <p>
+ * 非线程安全，每次模型调用使用一个实例。
+ */
+public class AnalysisStreamParser {
+
+    /**
+     * 解析回调
+     */
+    public interface Listener {
+
+        /**
+         * 解析到根对象的 type 和 title（在 items 开始前或根对象结束时回调一次，字段缺失时为 null）
+         */
+        void onMeta(String type, String title);
+
+        /**
+         * items 中的一个元素解析完成
+         */
+        void onItem(AnalysisResult.Item item);
+    }
+
+    /**
+     * 与 AnalysisResponseParser 一致：容忍字符串中未转义的换行和结尾多余的逗号（工厂线程安全，所有实例共用）
+     */
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+            .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .build();
+
+    private final ObjectMapper objectMapper;
+    private final Listener listener;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private boolean started;
+    private boolean finished;
+    private boolean metaEmitted;
+    private int depth;
+    private String fieldName;
+    private String type;
+    private String title;
+    private boolean inItems;
+    private TokenBuffer itemBuffer;
+    private int itemDepth;
+
+    public AnalysisStreamParser(ObjectMapper objectMapper, Listener listener) throws IOException {
+        this.objectMapper = objectMapper;
+        this.listener = listener;
+        this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * 喂入一段模型输出
+     */
+    public void feed(String fragment) throws IOException {
+        if (finished || fragment == null || fragment.isEmpty()) {
+            return;
+        }
+        if (!started) {
+            // 跳过根对象之前的说明文字或代码块标记
+            int start = fragment.indexOf('{');
+            if (start < 0) {
+                return;
+            }
+            fragment = fragment.substring(start);
+            started = true;
+        }
+
+        byte[] bytes = fragment.getBytes(StandardCharsets.UTF_8);
+        feeder.feedInput(bytes, 0, bytes.length);
+        drain();
+    }
+
+    /**
+     * 输入结束
+     */
+    public void end() throws IOException {
+        if (!finished) {
+            feeder.endOfInput();
+            finished = true;
+        }
+        emitMeta();
+    }
+
+    /**
+     * 根对象是否已完整解析
+     */
+    public boolean isComplete() {
+        return finished && depth == 0 && started;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while (!finished && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (itemBuffer != null) {
+                bufferItemToken(token);
+                continue;
+            }
+
+            switch (token) {
+                case START_OBJECT -> {
+                    if (inItems && depth == 2) {
+                        itemBuffer = new TokenBuffer(parser);
+                        itemDepth = 0;
+                        bufferItemToken(token);
+                    } else {
+                        depth++;
+                    }
+                }
+                case START_ARRAY -> {
+                    if (depth == 1 && "items".equals(fieldName)) {
+                        emitMeta();
+                        inItems = true;
+                    }
+                    depth++;
+                }
+                case END_ARRAY -> {
+                    depth--;
+                    if (depth == 1) {
+                        inItems = false;
+                    }
+                }
+                case END_OBJECT -> {
+                    depth--;
+                    if (depth == 0) {
+                        // 根对象结束，之后的内容（如代码块结束标记）不再解析
+                        finished = true;
+                        emitMeta();
+                    }
+                }
+                case FIELD_NAME -> {
+                    if (depth == 1) {
+                        fieldName = parser.currentName();
+                    }
+                }
+                case VALUE_STRING -> {
+                    if (depth == 1 && "type".equals(fieldName)) {
+                        type = parser.getText();
+                    } else if (depth == 1 && "title".equals(fieldName)) {
+                        title = parser.getText();
+                    }
+                }
+                default -> {
+                    // 其他标量值不关心
+                }
+            }
+        }
+    }
+
+    private void bufferItemToken(JsonToken token) throws IOException {
+        itemBuffer.copyCurrentEvent(parser);
+        if (token.isStructStart()) {
+            itemDepth++;
+        } else if (token.isStructEnd()) {
+            itemDepth--;
+        }
+        if (itemDepth == 0) {
+            AnalysisResult.Item item;
+            try (JsonParser bufferParser = itemBuffer.asParser(objectMapper)) {
+                item = objectMapper.readValue(bufferParser, AnalysisResult.Item.class);
+            }
+            itemBuffer = null;
+            listener.onItem(item);
+        }
+    }
+
+    private void emitMeta() {
+        if (!metaEmitted) {
+            metaEmitted = true;
+            listener.onMeta(type, title);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.BatchFileResult;
+import com.example.pkqb.model.JobInfo;
+import com.example.pkqb.model.UploadedFile;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 批量处理服务
+ * <p>
+ * 一次请求处理多个文件（或一个 zip 包）：在请求线程内逐个流式保存后提交为一个流水线任务（{@link JobService}），
+ * 任务中每个文件的"解析 → 分析"再提交到批量线程池并发执行，解析和模型调用并发仍受阶段限制约束。内容相同（SHA-256 相同）的文件只解析和分析一次，结果共享。
+ * 结果可以逐个文件返回，也可以合并为一个题库；合并时对合并结果去重（{@link QuestionDedupService}），跨文件的重复题目也能发现。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchService {
+
+    public static final String MODE_SEPARATE = "separate";
+    public static final String MODE_MERGED = "merged";
+
+    /**
+     * zip 中未标记 UTF-8 的文件名按 GBK 解码（Windows 资源管理器压缩的中文文件名）
+     */
+    private static final Charset ZIP_FALLBACK_CHARSET = Charset.forName("GBK");
+
+    private final UploadService uploadService;
+    private final FileParserService fileParserService;
+    private final ContentAnalysisService contentAnalysisService;
+    private final QuestionDedupService questionDedupService;
+    private final JobService jobService;
+    @Qualifier("batchExecutor")
+    private final Executor batchExecutor;
+
+    @Value("${app.batch.max-files:200}")
+    private int maxFiles;
+
+    /**
+     * 保存上传的多个文件（zip 包会被展开）并提交批量任务
+     * <p>
+     * 单个文件保存失败（格式不符、超过大小限制等）只记为该文件失败；整个请求中止（文件数超限、读取失败、任务队列已满）时
+     * 释放本次已保存文件的引用。
+     *
+     * @param files 上传的文件（pdf/doc/docx/zip）
+     * @param mode  结果模式：separate/merged
+     * @param title 合并后的标题（可选）
+     * @return 任务状态，结果在任务完成后通过任务状态查询
+     */
+    public JobInfo submitUploads(List<MultipartFile> files, String mode, String title) {
+        List<BatchEntry> entries = new ArrayList<>();
+        try {
+            for (MultipartFile file : files) {
+                if (file.isEmpty()) {
+                    continue;
+                }
+                String fileName = file.getOriginalFilename();
+                try (InputStream in = file.getInputStream()) {
+                    if (fileName != null && fileName.toLowerCase().endsWith(".zip")) {
+                        saveZipEntries(in, entries);
+                    } else {
+                        checkFileCount(entries.size() + 1);
+                        entries.add(saveEntry(fileName, in, file.getSize()));
+                    }
+                } catch (IOException e) {
+                    throw new BusinessException("读取上传文件失败: " + fileName + ", " + e.getMessage());
+                }
+            }
+            if (entries.isEmpty()) {
+                throw new BusinessException(400, "没有可处理的 Word 或 PDF 文件");
+            }
+            return jobService.submitBatch(title, () -> process(entries, mode, title));
+        } catch (RuntimeException e) {
+            releaseAll(entries);
+            throw e;
+        }
+    }
+
+    /**
+     * 提交批量任务分析已上传的多个文件
+     *
+     * @param fileIds 文件ID列表
+     * @param mode    结果模式：separate/merged
+     * @param title   合并后的标题（可选）
+     * @return 任务状态，结果在任务完成后通过任务状态查询
+     */
+    public JobInfo submitFileIds(List<String> fileIds, String mode, String title) {
+        checkFileCount(fileIds.size());
+        List<BatchEntry> entries = new ArrayList<>(fileIds.size());
+        for (String fileId : fileIds) {
+            UploadedFile file = uploadService.getFile(fileId);
+            if (file == null) {
+                throw new BusinessException(404, "文件不存在: " + fileId);
+            }
+            entries.add(BatchEntry.saved(file));
+        }
+        return jobService.submitBatch(title, () -> process(entries, mode, title));
+    }
+
+    /**
+     * 并发处理：相同摘要只提交一次任务，按原顺序收集结果
+     */
+    private Map<String, Object> process(List<BatchEntry> entries, String mode, String title) {
+        boolean merged = MODE_MERGED.equalsIgnoreCase(mode);
+        log.info("开始批量处理，文件数: {}, 模式: {}", entries.size(), merged ? MODE_MERGED : MODE_SEPARATE);
+
+        Map<String, CompletableFuture<Map<String, Object>>> tasks = new LinkedHashMap<>();
+        int saved = 0;
+        for (BatchEntry entry : entries) {
+            if (entry.file() != null) {
+                saved++;
+                tasks.computeIfAbsent(entry.file().getSha256(), digest -> CompletableFuture.supplyAsync(
+                        () -> analyzeFile(entry.file()), batchExecutor));
+            }
+        }
+        if (tasks.size() < saved) {
+            log.info("批量中有 {} 个文件内容重复，合并处理", saved - tasks.size());
+        }
+
+        List<BatchFileResult> results = new ArrayList<>(entries.size());
+        Map<String, Map<String, Object>> analyses = new LinkedHashMap<>();
+        int succeeded = 0;
+        for (BatchEntry entry : entries) {
+            UploadedFile file = entry.file();
+            if (file == null) {
+                results.add(BatchFileResult.builder()
+                        .fileName(entry.fileName())
+                        .success(false)
+                        .error(entry.error())
+                        .build());
+                continue;
+            }
+            BatchFileResult.BatchFileResultBuilder result = BatchFileResult.builder()
+                    .fileName(file.getFileName())
+                    .fileId(file.getFileId())
+                    .uploadToken(file.getUploadToken())
+                    .sha256(file.getSha256());
+            try {
+                Map<String, Object> analysis = tasks.get(file.getSha256()).join();
+                @SuppressWarnings("unchecked")
+                List<Object> items = (List<Object>) analysis.get("items");
+                result.success(true)
+                        .type((String) analysis.get("type"))
+                        .title((String) analysis.get("title"))
+                        .source((String) analysis.get("source"))
+                        .itemCount(items.size())
+                        .items(merged ? null : items);
+                // 重复内容在合并结果中只出现一次
+                analyses.putIfAbsent(file.getSha256(), analysis);
+                succeeded++;
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.warn("批量处理文件失败: {}", file.getFileName(), cause);
+                result.success(false).error(cause.getMessage());
+            }
+            results.add(result.build());
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("mode", merged ? MODE_MERGED : MODE_SEPARATE);
+        response.put("files", results);
+        response.put("succeeded", succeeded);
+        response.put("failed", entries.size() - succeeded);
+        if (merged) {
+            response.put("merged", questionDedupService.dedup(mergeAnalyses(analyses.values(), title)));
+        }
+        return response;
+    }
+
+    private Map<String, Object> analyzeFile(UploadedFile file) {
+        String text = fileParserService.parseFile(file.getFileType(), file.getFilePath());
+        if (text.isBlank()) {
+            throw new BusinessException("文件中没有可识别的文本");
+        }
+        return contentAnalysisService.analyzeContent(text);
+    }
+
+    /**
+     * 合并为一个题库：类型取项目数最多的一方，按文件顺序拼接项目，另一类型的项目先转换为该类型
+     */
+    private Map<String, Object> mergeAnalyses(Collection<Map<String, Object>> analyses, String title) {
+        int questionCount = 0;
+        int noteCount = 0;
+        for (Map<String, Object> analysis : analyses) {
+            int size = ((List<?>) analysis.get("items")).size();
+            if ("question".equals(analysis.get("type"))) {
+                questionCount += size;
+            } else {
+                noteCount += size;
+            }
+        }
+        String type = questionCount >= noteCount ? "question" : "note";
+
+        List<Object> items = new ArrayList<>();
+        String firstTitle = null;
+        int converted = 0;
+        for (Map<String, Object> analysis : analyses) {
+            List<?> analysisItems = (List<?>) analysis.get("items");
+            if (!type.equals(analysis.get("type"))) {
+                for (Object item : analysisItems) {
+                    items.add(ContentAnalysisService.convertItem(type, item));
+                }
+                converted += analysisItems.size();
+                continue;
+            }
+            if (firstTitle == null) {
+                firstTitle = (String) analysis.get("title");
+            }
+            items.addAll(analysisItems);
+        }
+        if (converted > 0) {
+            log.info("批量合并时转换了 {} 个类型不一致的项目", converted);
+        }
+
+        Map<String, Object> merged = new HashMap<>();
+        merged.put("type", type);
+        merged.put("title", title != null && !title.isBlank() ? title : firstTitle);
+        merged.put("templateName", "question".equals(type) ? "question-template" : "note-template");
+        merged.put("items", items);
+        return merged;
+    }
+
+    /**
+     * 展开 zip 包，只保存 Word 和 PDF 文件，忽略目录、隐藏文件和 macOS 元数据
+     */
+    private void saveZipEntries(InputStream in, List<BatchEntry> entries) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in, ZIP_FALLBACK_CHARSET);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            String name = entry.getName();
+            String baseName = name.substring(name.lastIndexOf('/') + 1);
+            if (entry.isDirectory() || name.startsWith("__MACOSX/") || baseName.startsWith(".")
+                    || !isSupported(baseName)) {
+                continue;
+            }
+            checkFileCount(entries.size() + 1);
+            // UploadService 读到当前条目末尾即停止，且不关闭输入流；保存失败时下一次 getNextEntry 跳过条目剩余部分
+            entries.add(saveEntry(baseName, zip, entry.getSize()));
+        }
+    }
+
+    /**
+     * 保存一个文件，失败时记录原因，不中止整个批量
+     */
+    private BatchEntry saveEntry(String fileName, InputStream in, long size) {
+        try {
+            return BatchEntry.saved(uploadService.save(fileName, fileTypeOf(fileName), in, size));
+        } catch (BusinessException e) {
+            log.warn("批量中的文件保存失败: {}, {}", fileName, e.getMessage());
+            return new BatchEntry(fileName, null, e.getMessage());
+        }
+    }
+
+    /**
+     * 批量中止时释放本次保存的文件
+     */
+    private void releaseAll(List<BatchEntry> entries) {
+        for (BatchEntry entry : entries) {
+            if (entry.file() != null) {
+                uploadService.release(entry.file().getFileId(), entry.file().getUploadToken());
+            }
+        }
+    }
+
+    private void checkFileCount(int count) {
+        if (count > maxFiles) {
+            throw new BusinessException(413, "单次批量最多 " + maxFiles + " 个文件");
+        }
+    }
+
+    private static boolean isSupported(String fileName) {
+        String lower = fileName.toLowerCase();
+        return lower.endsWith(".pdf") || lower.endsWith(".docx") || lower.endsWith(".doc");
+    }
+
+    /**
+     * 按扩展名判断文件类型，其余情况交给上传时的魔数检查拒绝
+     */
+    private static String fileTypeOf(String fileName) {
+        if (fileName == null) {
+            throw new BusinessException(400, "文件名不能为空");
+        }
+        return fileName.toLowerCase().endsWith(".pdf") ? "pdf" : "word";
+    }
+
+    /**
+     * 批量中的一个文件：保存成功时 file 不为空，否则 error 为失败原因
+     */
+    private record BatchEntry(String fileName, UploadedFile file, String error) {
+
+        static BatchEntry saved(UploadedFile file) {
+            return new BatchEntry(file.getFileName(), file, null);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.pkqb.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 全文检索分词器
+ * <p>
+ * 文本先做 NFKC 规范化（全角字母数字转半角）并转小写，然后：
+ * <ul>
+ *     <li>连续的中日韩文字按相邻两字切成二元组：“光合作用” → 光合、合作、作用；只有一个字时保留单字</li>
+ *     <li>连续的字母数字作为一个词：“TCP/IP” → tcp、ip</li>
+ *     <li>其他字符（标点、空白）作为分隔符</li>
+ * </ul>
+ * 查询词的所有二元组都出现即视为命中，不需要词典。索引时（{@link #tokenizeForIndex}）每个中日韩文字还额外
+ * 作为单字词索引，单字查询（如“酶”）才能命中出现在较长词语中的该字。
+ */
+final class CjkBigramTokenizer {
+
+    /**
+     * 字母数字词的最大长度，超出部分截断（多为 base64、URL 等无检索价值的串）
+     */
+    private static final int MAX_WORD_LENGTH = 32;
+
+    private CjkBigramTokenizer() {
+    }
+
+    /**
+     * 查询分词，返回的词按出现顺序排列，可能重复
+     */
+    static List<String> tokenize(String text) {
+        return tokenize(text, false);
+    }
+
+    /**
+     * 索引分词：在 {@link #tokenize} 的基础上，连续两个字以上的中日韩文字还逐字输出单字
+     */
+    static List<String> tokenizeForIndex(String text) {
+        return tokenize(text, true);
+    }
+
+    private static List<String> tokenize(String text, boolean unigrams) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = normalized.codePointAt(i);
+            if (isCjk(codePoint)) {
+                int start = i;
+                int previous = -1;
+                int count = 0;
+                while (i < length && isCjk(codePoint = normalized.codePointAt(i))) {
+                    if (previous >= 0) {
+                        tokens.add(normalized.substring(previous, i + Character.charCount(codePoint)));
+                    }
+                    if (unigrams) {
+                        tokens.add(normalized.substring(i, i + Character.charCount(codePoint)));
+                    }
+                    previous = i;
+                    i += Character.charCount(codePoint);
+                    count++;
+                }
+                if (count == 1 && !unigrams) {
+                    tokens.add(normalized.substring(start, i));
+                }
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int start = i;
+                while (i < length && !isCjk(codePoint = normalized.codePointAt(i)) && Character.isLetterOrDigit(codePoint)) {
+                    i += Character.charCount(codePoint);
+                }
+                tokens.add(normalized.substring(start, Math.min(i, start + MAX_WORD_LENGTH)));
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
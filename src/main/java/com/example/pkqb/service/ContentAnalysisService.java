@@ -2,19 +2,35 @@ package com.example.pkqb.service;
 
 import com.example.pkqb.exception.BusinessException;
 import com.example.pkqb.model.*;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * AI 内容分析服务
@@ -26,6 +42,58 @@ public class ContentAnalysisService {
 
     private final ObjectMapper objectMapper;
     private final ChatClient chatClient;
+    private final AnalysisCacheService analysisCacheService;
+    private final PipelineMetrics metrics;
+    private final AnalysisResponseParser responseParser;
+    private final RegexExtractionEngine regexEngine = new RegexExtractionEngine();
+    @Qualifier("analysisExecutor")
+    private final Executor analysisExecutor;
+
+    /**
+     * 进行中的分析，键为规范化文本的缓存键；相同内容的并发请求共享同一个 future，只调用一次模型
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 单次调用模型的最大文本长度，超过后分块并发分析
+     */
+    @Value("${app.analysis.chunk-size:6000}")
+    private int chunkSize;
+
+    /**
+     * 流式分析时同时进行的模型调用数
+     */
+    @Value("${app.analysis.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * 模型名称（参与缓存键计算，切换模型后旧缓存自然失效）
+     */
+    @Value("${spring.ai.dashscope.chat.options.model:qwen-plus}")
+    private String model;
+
+    /**
+     * Prompt 版本，修改 QUESTION_ANALYSIS_PROMPT 时需同步递增，使旧缓存失效
+     */
+    private static final String PROMPT_VERSION = "v1";
+
+    /**
+     * 结果来源：ai 为模型分析，regex 为备用方案，partial 为分块时部分块使用了备用方案
+     */
+    private static final String SOURCE_AI = "ai";
+    private static final String SOURCE_REGEX = "regex";
+    private static final String SOURCE_PARTIAL = "partial";
+    private static final String SOURCE_CACHE = "cache";
+
+    /**
+     * 分块 single-flight 键的前缀，与整篇文本的键区分
+     */
+    private static final String CHUNK_KEY_PREFIX = "chunk:";
+
+    /**
+     * 增量分析分块缓存键中代替 Prompt 版本的部分，与整篇文本的缓存条目区分
+     */
+    private static final String CHUNK_PROMPT_VERSION = PROMPT_VERSION + "/chunk";
 
     /**
      * 题目识别 Prompt
@@ -70,8 +138,25 @@ public class ContentAnalysisService {
         try {
             log.info("开始分析内容，文本长度: {}", text.length());
 
-            // 使用 AI 分析内容
-            Map<String, Object> result = analyzeWithAI(text);
+            // 相同内容直接返回缓存结果
+            String cacheKey = analysisCacheService.cacheKey(text, PROMPT_VERSION, model);
+            Map<String, Object> cached = analysisCacheService.get(cacheKey);
+            if (cached != null) {
+                log.info("命中分析缓存，直接返回");
+                metrics.recordAnalysisResult(SOURCE_CACHE);
+                return cached;
+            }
+
+            // 使用 AI 分析内容；相同内容正在分析时等待其结果。先写缓存再结束 single-flight，之后的请求直接命中缓存
+            Map<String, Object> result = singleFlight(cacheKey, () -> {
+                Map<String, Object> analysis = analyzeWithAI(text);
+                // 只缓存模型完整分析的结果，备用方案的结果下次仍应重试 AI
+                if (SOURCE_AI.equals(analysis.get("source"))) {
+                    analysisCacheService.put(cacheKey, analysis);
+                }
+                return analysis;
+            });
+            metrics.recordAnalysisResult((String) result.get("source"));
 
             log.info("内容分析完成，类型: {}, 项目数量: {}",
                     result.get("type"),
@@ -86,238 +171,778 @@ public class ContentAnalysisService {
     }
 
     /**
-     * 使用 AI 分析内容
+     * 流式分析文本内容
+     * <p>
+     * 模型每输出一个完整的题目或笔记就推送一个 item 事件，事件顺序为 meta、若干 item、done。
+     * 长文本分块后最多 parallelism 块同时调用模型，后面块的结果先缓冲，保证仍按原文顺序输出。
+     *
+     * @param text 文本内容
+     * @return 分析事件流
      */
-    private Map<String, Object> analyzeWithAI(String text) {
-        try {
-            String prompt = String.format(QUESTION_ANALYSIS_PROMPT, text);
+    public Flux<AnalysisStreamEvent> analyzeContentStream(String text) {
+        return Flux.defer(() -> {
+            log.info("开始流式分析内容，文本长度: {}", text.length());
+
+            String cacheKey = analysisCacheService.cacheKey(text, PROMPT_VERSION, model);
+            Map<String, Object> cached = analysisCacheService.get(cacheKey);
+            if (cached != null) {
+                log.info("命中分析缓存，直接返回");
+                metrics.recordAnalysisResult(SOURCE_CACHE);
+                return Flux.fromIterable(toStreamEvents(cached));
+            }
 
-            String response = chatClient.prompt()
-                    .user(prompt)
-                    .call()
-                    .content();
+            // 与 analyzeContent 共用 single-flight：相同内容正在分析（流式或非流式）时等待其结果后一次性输出
+            CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+            CompletableFuture<Map<String, Object>> pending = inFlight.putIfAbsent(cacheKey, future);
+            if (pending != null) {
+                log.info("相同内容正在分析，等待其结果后输出");
+                metrics.recordCoalesced();
+                // 等待方断开不取消共享的 future；发起方中途取消时自己重新分析
+                return Mono.fromFuture(pending, true)
+                        .flatMapIterable(this::toStreamEvents)
+                        .onErrorResume(CancellationException.class, e -> analyzeContentStream(text));
+            }
 
-            log.debug("AI 响应: {}", response);
+            List<String> chunks = TextChunker.split(text, chunkSize);
+            boolean allowSamples = chunks.size() <= 1;
+            StreamMerger merger = new StreamMerger(chunks.size());
+
+            return Flux.fromIterable(chunks)
+                    .flatMapSequential(chunk -> streamChunk(chunk, allowSamples), Math.max(1, parallelism))
+                    .concatMapIterable(merger::accept)
+                    .concatWith(Flux.defer(() -> Flux.just(merger.finish(cacheKey, future))))
+                    .doOnError(future::completeExceptionally)
+                    .doOnCancel(() -> {
+                        // 先移除再通知等待方，等待方重试时不会再拿到这个已取消的 future
+                        inFlight.remove(cacheKey, future);
+                        future.completeExceptionally(new CancellationException("流式分析已取消"));
+                    })
+                    .doFinally(signal -> inFlight.remove(cacheKey, future));
+        });
+    }
 
-            // 解析 AI 返回的 JSON
-            JsonNode jsonNode = objectMapper.readTree(response);
+    /**
+     * 流式分析单个文本块，模型失败且尚未输出任何项目时改用备用方案
+     */
+    private Flux<ChunkEvent> streamChunk(String chunk, boolean allowSamples) {
+        // LlmGuard 在订阅时可能阻塞等待许可，因此放到 boundedElastic 线程上订阅
+        return Flux.defer(() -> {
+            ChunkCollector collector = new ChunkCollector();
+            AnalysisStreamParser parser = newStreamParser(collector);
+            Timer.Sample sample = metrics.startTimer();
+
+            return chatClient.prompt()
+                    .user(String.format(QUESTION_ANALYSIS_PROMPT, chunk))
+                    .stream()
+                    .content()
+                    .doFinally(signal -> metrics.recordAiCall(sample, PipelineMetrics.MODE_STREAM,
+                            signal == SignalType.ON_COMPLETE ? PipelineMetrics.OUTCOME_SUCCESS : PipelineMetrics.OUTCOME_FAILURE))
+                    .concatMapIterable(fragment -> {
+                        feedStreamParser(parser, fragment);
+                        return collector.drain();
+                    })
+                    .concatWith(Flux.defer(() -> {
+                        endStreamParser(parser);
+                        if (!parser.isComplete() && collector.itemCount == 0) {
+                            return Flux.error(new IOException("AI 响应不是完整的 JSON"));
+                        }
+                        List<ChunkEvent> rest = collector.finish();
+                        rest.add(ChunkEvent.done(parser.isComplete()));
+                        return Flux.fromIterable(rest);
+                    }))
+                    .onErrorResume(e -> {
+                        if (collector.itemCount > 0) {
+                            log.error("AI 流式响应中断，保留已解析的 {} 个项目", collector.itemCount, e);
+                            return Flux.just(ChunkEvent.done(false));
+                        }
+                        log.error("AI 流式调用失败，使用备用方案", e);
+                        metrics.recordFallback(e instanceof LlmGuard.RejectedException ? PipelineMetrics.FALLBACK_REJECTED
+                                : e instanceof IOException || e instanceof UncheckedIOException
+                                ? PipelineMetrics.FALLBACK_INVALID_JSON : PipelineMetrics.FALLBACK_AI_ERROR);
+                        return Flux.fromIterable(toChunkEvents(analyzeWithRegex(chunk, allowSamples)));
+                    });
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
 
-            Map<String, Object> result = new HashMap<>();
-            result.put("type", jsonNode.get("type").asText());
-            result.put("title", jsonNode.get("title").asText());
-            
-            // 添加模板名称
-            String templateName = jsonNode.get("type").asText().equals("question") ? "question-template" : "note-template";
-            result.put("templateName", templateName);
-
-            List<Object> items = new ArrayList<>();
-            JsonNode itemsNode = jsonNode.get("items");
-            if (itemsNode != null && itemsNode.isArray()) {
-                for (JsonNode itemNode : itemsNode) {
-                    String type = itemNode.get("type").asText();
-                    if ("question".equals(type)) {
-                        items.add(parseQuestionItem(itemNode));
-                    } else {
-                        items.add(parseNoteItem(itemNode));
-                    }
-                }
-            }
-            result.put("items", items);
-            return result;
+    private AnalysisStreamParser newStreamParser(AnalysisStreamParser.Listener listener) {
+        try {
+            return new AnalysisStreamParser(objectMapper, listener);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        } catch (JsonProcessingException e) {
-            log.error("解析 AI 响应失败，使用备用方案", e);
-            return analyzeWithRegex(text);
-        } catch (Exception e) {
-            log.error("AI 调用失败，使用备用方案", e);
-            return analyzeWithRegex(text);
+    private void feedStreamParser(AnalysisStreamParser parser, String fragment) {
+        try {
+            parser.feed(fragment);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void endStreamParser(AnalysisStreamParser parser) {
+        try {
+            parser.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
     /**
-     * 解析题目项
+     * 把完整的分析结果转换为事件序列（缓存命中时使用）
      */
-    private QuestionItem parseQuestionItem(JsonNode node) {
-        QuestionItem.QuestionItemBuilder builder = QuestionItem.builder();
-
-        if (node.has("question")) {
-            builder.question(node.get("question").asText());
+    private List<AnalysisStreamEvent> toStreamEvents(Map<String, Object> result) {
+        List<AnalysisStreamEvent> events = new ArrayList<>();
+        events.add(AnalysisStreamEvent.of(AnalysisStreamEvent.META, streamMeta((String) result.get("type"), (String) result.get("title"))));
+        List<?> items = (List<?>) result.get("items");
+        for (Object item : items) {
+            events.add(AnalysisStreamEvent.of(AnalysisStreamEvent.ITEM, item));
         }
-        if (node.has("questionType")) {
-            builder.questionType(node.get("questionType").asText());
+        Map<String, Object> done = streamMeta((String) result.get("type"), (String) result.get("title"));
+        done.put("count", items.size());
+        done.put("source", result.get("source"));
+        events.add(AnalysisStreamEvent.of(AnalysisStreamEvent.DONE, done));
+        return events;
+    }
+
+    /**
+     * 把备用方案的结果转换为分块事件
+     */
+    private List<ChunkEvent> toChunkEvents(Map<String, Object> result) {
+        String type = (String) result.get("type");
+        List<ChunkEvent> events = new ArrayList<>();
+        events.add(ChunkEvent.meta(type, (String) result.get("title")));
+        for (Object item : (List<?>) result.get("items")) {
+            events.add(ChunkEvent.item(type, item));
         }
-        if (node.has("answer")) {
-            builder.answer(node.get("answer").asText());
+        events.add(ChunkEvent.fallback());
+        return events;
+    }
+
+    private static Map<String, Object> streamMeta(String type, String title) {
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("type", type);
+        meta.put("title", title);
+        meta.put("templateName", templateNameOf(type));
+        return meta;
+    }
+
+    private static String templateNameOf(String type) {
+        return "question".equals(type) ? "question-template" : "note-template";
+    }
+
+    /**
+     * 单个文本块产生的事件
+     */
+    private record ChunkEvent(Kind kind, String type, String title, Object item) {
+
+        enum Kind { META, ITEM, AI_DONE, PARTIAL_DONE, FALLBACK_DONE }
+
+        static ChunkEvent meta(String type, String title) {
+            return new ChunkEvent(Kind.META, type, title, null);
         }
-        if (node.has("explanation")) {
-            builder.explanation(node.get("explanation").asText());
+
+        static ChunkEvent item(String type, Object item) {
+            return new ChunkEvent(Kind.ITEM, type, null, item);
         }
 
-        if (node.has("options") && node.get("options").isArray()) {
-            List<String> options = new ArrayList<>();
-            for (JsonNode option : node.get("options")) {
-                options.add(option.asText());
-            }
-            builder.options(options);
+        static ChunkEvent done(boolean complete) {
+            return new ChunkEvent(complete ? Kind.AI_DONE : Kind.PARTIAL_DONE, null, null, null);
         }
 
-        return builder.build();
+        static ChunkEvent fallback() {
+            return new ChunkEvent(Kind.FALLBACK_DONE, null, null, null);
+        }
     }
 
     /**
-     * 解析笔记项
+     * 收集增量解析器的回调，转换为分块事件
+     * <p>
+     * 模型漏掉 type 字段时，meta 推迟到第一个项目出现后再发出，根据项目内容推断类型。
      */
-    private NoteItem parseNoteItem(JsonNode node) {
-        NoteItem.NoteItemBuilder builder = NoteItem.builder();
+    private class ChunkCollector implements AnalysisStreamParser.Listener {
+
+        private final List<ChunkEvent> pending = new ArrayList<>();
+        private String type;
+        private String title;
+        private boolean metaSeen;
+        private boolean metaSent;
+        private int itemCount;
+
+        @Override
+        public void onMeta(String type, String title) {
+            ContentType contentType = ContentType.parse(type);
+            this.type = contentType != null ? contentType.getValue() : null;
+            this.title = title;
+            this.metaSeen = true;
+        }
 
-        if (node.has("title")) {
-            builder.title(node.get("title").asText());
+        @Override
+        public void onItem(AnalysisResult.Item item) {
+            if (!metaSent) {
+                if (type == null) {
+                    type = (item.isQuestion() ? ContentType.QUESTION : ContentType.NOTE).getValue();
+                }
+                sendMeta();
+            }
+            pending.add(ChunkEvent.item(type, toItem(type, item)));
+            itemCount++;
         }
-        if (node.has("content")) {
-            builder.content(node.get("content").asText());
+
+        List<ChunkEvent> drain() {
+            if (metaSeen && !metaSent && type != null) {
+                sendMeta();
+            }
+            List<ChunkEvent> events = new ArrayList<>(pending);
+            pending.clear();
+            return events;
         }
 
-        return builder.build();
+        /**
+         * 响应结束，模型未给出 type 且没有任何项目时按笔记处理
+         */
+        List<ChunkEvent> finish() {
+            if (!metaSent) {
+                if (type == null) {
+                    type = "note";
+                }
+                sendMeta();
+            }
+            return drain();
+        }
+
+        private void sendMeta() {
+            metaSent = true;
+            pending.add(ChunkEvent.meta(type, title));
+        }
     }
 
     /**
-     * 使用正则表达式简单分析内容（备用方案）
+     * 合并各块的事件：只输出第一个 meta，与之类型不一致的项目（如备用方案把某块识别成了笔记）先转换为该类型再输出，并在结束时汇总
+     * <p>
+     * flatMapSequential 保证事件按块顺序串行到达，因此无需同步。
      */
-    private Map<String, Object> analyzeWithRegex(String text) {
-        Map<String, Object> result = new HashMap<>();
+    private class StreamMerger {
 
-        // 简单判断是题目还是笔记
-        boolean hasQuestion = Pattern.compile("\\d+[.、].*[？?]|[？?]").matcher(text).find();
-        boolean hasOptions = Pattern.compile("[A-D][.、]|选项").matcher(text).find();
-        boolean hasAnswer = Pattern.compile("(答案|Answer)[:：]").matcher(text).find();
+        private final int chunkCount;
+        private final List<Object> items = new ArrayList<>();
+        private String type;
+        private String title;
+        private int aiChunks;
+        private int converted;
 
-        if (hasQuestion || hasOptions || hasAnswer) {
-            // 识别为题目
-            result.put("type", "question");
-            result.put("title", "题库（由 AI 自动识别）");
-            result.put("templateName", "question-template");
-            result.put("items", extractQuestions(text));
-        } else {
-            // 识别为笔记
-            result.put("type", "note");
-            result.put("title", "学习笔记（由 AI 自动识别）");
-            result.put("templateName", "note-template");
-            result.put("items", extractNotes(text));
+        StreamMerger(int chunkCount) {
+            this.chunkCount = chunkCount;
         }
 
-        return result;
+        List<AnalysisStreamEvent> accept(ChunkEvent event) {
+            switch (event.kind()) {
+                case META -> {
+                    if (type == null) {
+                        type = event.type();
+                        title = event.title();
+                        return List.of(AnalysisStreamEvent.of(AnalysisStreamEvent.META, streamMeta(type, title)));
+                    }
+                }
+                case ITEM -> {
+                    Object item = event.item();
+                    if (!event.type().equals(type)) {
+                        item = convertItem(type, item);
+                        converted++;
+                    }
+                    items.add(item);
+                    return List.of(AnalysisStreamEvent.of(AnalysisStreamEvent.ITEM, item));
+                }
+                case AI_DONE -> aiChunks++;
+                default -> {
+                    // 部分成功或备用方案的块不计入 AI 完成数
+                }
+            }
+            return List.of();
+        }
+
+        /**
+         * 汇总结果：模型完整分析的结果写入缓存，再交给等待同一内容的调用方
+         */
+        AnalysisStreamEvent finish(String cacheKey, CompletableFuture<Map<String, Object>> future) {
+            if (converted > 0) {
+                log.warn("流式合并时转换了 {} 个类型不一致的项目", converted);
+            }
+            String source = aiChunks == chunkCount ? SOURCE_AI : aiChunks == 0 ? SOURCE_REGEX : SOURCE_PARTIAL;
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("type", type);
+            result.put("title", title);
+            result.put("templateName", templateNameOf(type));
+            result.put("items", items);
+            result.put("source", source);
+            if (SOURCE_AI.equals(source)) {
+                analysisCacheService.put(cacheKey, result);
+            }
+            future.complete(unmodifiableResult(result));
+            metrics.recordAnalysisResult(source);
+
+            log.info("流式分析完成，类型: {}, 项目数量: {}", type, items.size());
+            Map<String, Object> done = streamMeta(type, title);
+            done.put("count", items.size());
+            done.put("source", source);
+            return AnalysisStreamEvent.of(AnalysisStreamEvent.DONE, done);
+        }
     }
 
     /**
-     * 提取题目（备用实现）
+     * 开始一次增量分析
+     * <p>
+     * 文本边解析边追加，攒够一块就提交到分析线程池，不必等整篇文档解析完。
+     *
+     * @return 增量分析会话，调用方最后必须调用 finish 或 cancel
      */
-    private List<Object> extractQuestions(String text) {
-        List<Object> questions = new ArrayList<>();
-        String[] lines = text.split("\n");
-
-        String currentQuestion = null;
-        List<String> currentOptions = new ArrayList<>();
-        String currentAnswer = null;
-        String currentExplanation = null;
-
-        for (String line : lines) {
-            line = line.trim();
-            if (line.isEmpty()) continue;
-
-            // 检测题目
-            Matcher qm = Pattern.compile("^\\d+[.、]\\s*(.+)").matcher(line);
-            if (qm.find()) {
-                // 保存上一题
-                if (currentQuestion != null) {
-                    questions.add(createQuestionItem(currentQuestion, currentOptions, currentAnswer, currentExplanation));
-                }
-                currentQuestion = qm.group(1);
-                currentOptions = new ArrayList<>();
-                currentAnswer = null;
-                currentExplanation = null;
-                continue;
+    public IncrementalAnalysis beginIncrementalAnalysis() {
+        return new IncrementalAnalysis();
+    }
+
+    /**
+     * 增量分析会话
+     * <p>
+     * 已追加但未提交的文本超过 chunk-size 时按题目/段落边界切块，除最后一块（可能是半道题）外全部提交；
+     * finish 时提交剩余文本并按原顺序合并。整篇文本命中缓存时取消尚未开始的分块。
+     * <p>
+     * 每个分块提交前先查分块缓存，命中的分块不再提交。追加发生在解析线程上，可能仍持有 parse 许可；
+     * 分析线程池排满时 CallerRuns 会让提交方自己执行分块，此时分块只登记下来，等 finish（解析已结束、许可已释放）时再提交，
+     * 解析线程不会在持有许可期间调用模型。
+     */
+    public final class IncrementalAnalysis {
+
+        private final StringBuilder fullText = new StringBuilder();
+        private final StringBuilder pending = new StringBuilder();
+        private final List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>();
+
+        /**
+         * 解析期间被线程池退回给提交方的分块，finish 时再提交
+         */
+        private final List<Runnable> deferred = new ArrayList<>();
+
+        private IncrementalAnalysis() {
+        }
+
+        /**
+         * 追加一段文本
+         */
+        public synchronized void append(String text) {
+            fullText.append(text);
+            pending.append(text);
+            if (pending.length() <= chunkSize) {
+                return;
+            }
+            List<String> chunks = TextChunker.split(pending.toString(), chunkSize);
+            for (int i = 0; i < chunks.size() - 1; i++) {
+                submit(chunks.get(i), true);
             }
+            pending.setLength(0);
+            if (!chunks.isEmpty()) {
+                pending.append(chunks.get(chunks.size() - 1));
+            }
+        }
 
-            // 检测选项
-            Matcher om = Pattern.compile("^[A-D][.、]\\s*(.+)").matcher(line);
-            if (om.find()) {
-                currentOptions.add(om.group(1));
-                continue;
+        /**
+         * 全部文本追加完毕，等待所有分块完成并返回合并结果
+         */
+        public synchronized Map<String, Object> finish() {
+            String text = fullText.toString();
+            if (futures.isEmpty()) {
+                // 文本不足两块，与一次性分析完全相同
+                return analyzeContent(text);
             }
+            try {
+                String cacheKey = analysisCacheService.cacheKey(text, PROMPT_VERSION, model);
+                Map<String, Object> cached = analysisCacheService.get(cacheKey);
+                if (cached != null) {
+                    log.info("命中分析缓存，取消 {} 个增量分块", futures.size());
+                    cancel();
+                    metrics.recordAnalysisResult(SOURCE_CACHE);
+                    return cached;
+                }
 
-            // 检测答案
-            Matcher am = Pattern.compile("答案|Answer[:：]\\s*(.+)").matcher(line);
-            if (am.find()) {
-                currentAnswer = am.group(1).trim();
-                continue;
+                if (!deferred.isEmpty()) {
+                    log.info("提交解析期间延后的 {} 个分块", deferred.size());
+                    deferred.forEach(analysisExecutor::execute);
+                    deferred.clear();
+                }
+                for (String chunk : TextChunker.split(pending.toString(), chunkSize)) {
+                    submit(chunk, false);
+                }
+                log.info("增量分析共 {} 块，等待全部完成", futures.size());
+
+                List<Map<String, Object>> results = new ArrayList<>(futures.size());
+                for (CompletableFuture<Map<String, Object>> future : futures) {
+                    results.add(future.join());
+                }
+                Map<String, Object> result = mergeResults(results, text);
+                metrics.recordAnalysisResult((String) result.get("source"));
+                if (SOURCE_AI.equals(result.get("source"))) {
+                    analysisCacheService.put(cacheKey, result);
+                }
+                return result;
+            } catch (Exception e) {
+                log.error("内容分析失败", e);
+                throw new BusinessException("内容分析失败: " + e.getMessage());
             }
+        }
+
+        /**
+         * 放弃分析（如解析失败），尚未开始的分块不再调用模型
+         */
+        public synchronized void cancel() {
+            futures.forEach(future -> future.cancel(false));
+            deferred.clear();
+        }
 
-            // 检测解析
-            Matcher em = Pattern.compile("解析|Explanation[:：]\\s*(.+)").matcher(line);
-            if (em.find()) {
-                currentExplanation = em.group(1).trim();
+        /**
+         * 提交一个分块
+         *
+         * @param deferIfInline 线程池把分块退回给当前线程执行时是否改为延后提交（解析期间为 true）
+         */
+        private void submit(String chunk, boolean deferIfInline) {
+            String chunkKey = analysisCacheService.cacheKey(chunk, CHUNK_PROMPT_VERSION, model);
+            Map<String, Object> cached = analysisCacheService.get(chunkKey);
+            if (cached != null) {
+                futures.add(CompletableFuture.completedFuture(cached));
+                return;
             }
+
+            CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+            futures.add(future);
+            Runnable task = () -> analyzeInto(chunk, chunkKey, future);
+            Thread submitter = Thread.currentThread();
+            analysisExecutor.execute(() -> {
+                if (deferIfInline && Thread.currentThread() == submitter) {
+                    deferred.add(task);
+                } else {
+                    task.run();
+                }
+            });
         }
 
-        // 保存最后一题
-        if (currentQuestion != null) {
-            questions.add(createQuestionItem(currentQuestion, currentOptions, currentAnswer, currentExplanation));
+        private void analyzeInto(String chunk, String chunkKey, CompletableFuture<Map<String, Object>> future) {
+            if (future.isDone()) {
+                // 已取消
+                return;
+            }
+            try {
+                Map<String, Object> result = analyzeChunk(chunk, false);
+                if (SOURCE_AI.equals(result.get("source"))) {
+                    analysisCacheService.put(chunkKey, result);
+                }
+                future.complete(result);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 使用 AI 分析内容
+     * <p>
+     * 短文本直接调用一次模型；长文本按题目/段落边界切块，在分析线程池中并发调用，再按原顺序合并。
+     */
+    private Map<String, Object> analyzeWithAI(String text) {
+        List<String> chunks = TextChunker.split(text, chunkSize);
+        if (chunks.size() <= 1) {
+            return analyzeChunk(text, true);
         }
 
-        return questions.isEmpty() ? createSampleQuestions() : questions;
+        log.info("文本较长，分为 {} 块并发分析", chunks.size());
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>(chunks.size());
+        for (String chunk : chunks) {
+            futures.add(CompletableFuture.supplyAsync(() -> analyzeChunk(chunk, false), analysisExecutor));
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<Map<String, Object>> future : futures) {
+            results.add(future.join());
+        }
+        return mergeResults(results, text);
     }
 
     /**
-     * 提取笔记（备用实现）
+     * 分析单个文本块
+     *
+     * @param text         文本块
+     * @param allowSamples 备用方案无结果时是否填充示例数据（分块时为 false，避免示例混入合并结果）
      */
-    private List<Object> extractNotes(String text) {
-        List<Object> notes = new ArrayList<>();
-        String[] paragraphs = text.split("\n\n+");
+    private Map<String, Object> analyzeChunk(String text, boolean allowSamples) {
+        // 分块（含增量分析的分块）同样合并：多人同时上传同一份文档时，相同分块只调用一次模型
+        String key = CHUNK_KEY_PREFIX + analysisCacheService.cacheKey(text, PROMPT_VERSION, model) + (allowSamples ? "+samples" : "");
+        return singleFlight(key, () -> doAnalyzeChunk(text, allowSamples));
+    }
 
-        for (String paragraph : paragraphs) {
-            paragraph = paragraph.trim();
-            if (paragraph.length() < 10) continue;
+    /**
+     * 同一键同时只执行一次分析，其余调用方等待并得到同一结果（包括异常）
+     * <p>
+     * 结果被多个调用方共享，返回不可修改的副本。发起方是被客户端取消的流式分析时，等待方不应随之失败，重新发起分析。
+     */
+    private Map<String, Object> singleFlight(String key, Supplier<Map<String, Object>> analysis) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> existing;
+        while ((existing = inFlight.putIfAbsent(key, future)) != null) {
+            log.info("相同内容正在分析，等待进行中的结果");
+            metrics.recordCoalesced();
+            try {
+                return existing.join();
+            } catch (CancellationException e) {
+                log.info("等待的分析已被取消，重新分析");
+                inFlight.remove(key, existing);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            Map<String, Object> result = unmodifiableResult(analysis.get());
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
 
-            String[] lines = paragraph.split("\n");
-            String title = lines.length > 0 ? lines[0].trim() : "知识点";
-            String content = paragraph.substring(title.length()).trim();
+    /**
+     * 复制分析结果，结果和其中的项目列表都不可修改
+     */
+    private static Map<String, Object> unmodifiableResult(Map<String, Object> result) {
+        Map<String, Object> copy = new HashMap<>(result);
+        if (copy.get("items") instanceof List<?> items) {
+            copy.put("items", Collections.unmodifiableList(new ArrayList<>(items)));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
 
-            notes.add(NoteItem.builder()
-                    .title(title)
-                    .content(content)
-                    .build());
+    private Map<String, Object> doAnalyzeChunk(String text, boolean allowSamples) {
+        String response;
+        try {
+            response = callModel(String.format(QUESTION_ANALYSIS_PROMPT, text));
+        } catch (Exception e) {
+            log.error("AI 调用失败，使用备用方案", e);
+            metrics.recordFallback(e instanceof LlmGuard.RejectedException
+                    ? PipelineMetrics.FALLBACK_REJECTED : PipelineMetrics.FALLBACK_AI_ERROR);
+            return analyzeWithRegex(text, allowSamples);
         }
 
-        return notes.isEmpty() ? createSampleNotes() : notes;
+        log.debug("AI 响应: {}", response);
+
+        // 解析 AI 返回的 JSON；截断的响应保留已完整的项目，结果标记为 partial，不进入缓存
+        Timer.Sample sample = metrics.startTimer();
+        AnalysisResponseParser.Parsed parsed;
+        try {
+            parsed = responseParser.parse(response);
+        } catch (IOException e) {
+            log.error("解析 AI 响应失败，使用备用方案", e);
+            metrics.recordJsonParse(sample, PipelineMetrics.OUTCOME_FAILURE);
+            metrics.recordFallback(PipelineMetrics.FALLBACK_INVALID_JSON);
+            return analyzeWithRegex(text, allowSamples);
+        }
+        metrics.recordJsonParse(sample, parsed.complete() ? PipelineMetrics.OUTCOME_SUCCESS : PipelineMetrics.OUTCOME_RECOVERED);
+        if (!parsed.complete()) {
+            log.warn("AI 响应不完整，保留已解析的 {} 个项目", parsed.analysis().items().size());
+        }
+        return toResult(parsed.analysis(), parsed.complete() ? SOURCE_AI : SOURCE_PARTIAL);
     }
 
     /**
-     * 创建题目项
+     * 把模型结果转换为分析结果；模型未给出 type 时按是否有题干推断
      */
-    private QuestionItem createQuestionItem(String question, List<String> options, String answer, String explanation) {
-        // 判断题目类型
-        String questionType = determineQuestionType(options, answer);
+    private Map<String, Object> toResult(AnalysisResult analysis, String source) {
+        List<AnalysisResult.Item> analysisItems = analysis.items() != null ? analysis.items() : List.of();
+        ContentType type = analysis.type();
+        if (type == null) {
+            type = analysisItems.stream().anyMatch(AnalysisResult.Item::isQuestion) ? ContentType.QUESTION : ContentType.NOTE;
+        }
+
+        List<Object> items = new ArrayList<>(analysisItems.size());
+        for (AnalysisResult.Item item : analysisItems) {
+            items.add(toItem(type.getValue(), item));
+        }
 
+        Map<String, Object> result = new HashMap<>();
+        result.put("type", type.getValue());
+        result.put("title", analysis.title());
+        result.put("templateName", templateNameOf(type.getValue()));
+        result.put("items", items);
+        result.put("source", source);
+        return result;
+    }
+
+    /**
+     * 转换为模板使用的题目或笔记项；模型未给出可识别的题型时按选项和答案推断
+     */
+    private Object toItem(String type, AnalysisResult.Item item) {
+        if (!ContentType.QUESTION.getValue().equals(type)) {
+            return NoteItem.builder()
+                    .title(item.title())
+                    .content(item.content())
+                    .build();
+        }
+        List<String> options = item.options() != null ? item.options() : List.of();
         return QuestionItem.builder()
-                .question(question)
-                .questionType(questionType)
+                .question(item.question())
+                .questionType(item.questionType() != null
+                        ? item.questionType().getValue()
+                        : regexEngine.determineQuestionType(options, item.answer()))
                 .options(options)
-                .answer(answer != null ? answer : "A")
-                .explanation(explanation)
+                .answer(item.answer())
+                .explanation(item.explanation())
                 .build();
     }
 
     /**
-     * 判断题目类型
+     * 把其他块（或批量合并时其他文件）的项目转换为指定类型：笔记转为只有题干的题目，题目转为以题干为标题、选项和答案为内容的笔记
+     */
+    static Object convertItem(String type, Object item) {
+        if (ContentType.QUESTION.getValue().equals(type) && item instanceof NoteItem note) {
+            return QuestionItem.builder()
+                    .question(joinLines(note.getTitle(), note.getContent()))
+                    .questionType(QuestionType.SINGLE_CHOICE.getValue())
+                    .options(List.of())
+                    .build();
+        }
+        if (!ContentType.QUESTION.getValue().equals(type) && item instanceof QuestionItem question) {
+            List<String> lines = new ArrayList<>();
+            if (question.getOptions() != null) {
+                lines.addAll(question.getOptions());
+            }
+            if (question.getAnswer() != null && !question.getAnswer().isBlank()) {
+                lines.add("答案：" + question.getAnswer());
+            }
+            if (question.getExplanation() != null && !question.getExplanation().isBlank()) {
+                lines.add("解析：" + question.getExplanation());
+            }
+            return NoteItem.builder()
+                    .title(question.getQuestion())
+                    .content(joinLines(lines.toArray(new String[0])))
+                    .build();
+        }
+        return item;
+    }
+
+    private static String joinLines(String... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            if (part != null && !part.isBlank()) {
+                if (sb.length() > 0) {
+                    sb.append('\n');
+                }
+                sb.append(part);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 调用模型，记录调用耗时和 token 用量
+     * <p>
+     * 并发、限速和重试由 ChatClient 底层的 {@link LlmGuard} 控制，耗时包含在其中等待许可和重试的时间。
      */
-    private String determineQuestionType(List<String> options, String answer) {
-        if (options.size() == 2 && (options.contains("正确") || options.contains("错误"))) {
-            return "true_false";
+    private String callModel(String prompt) {
+        Timer.Sample sample = metrics.startTimer();
+        ChatResponse response;
+        try {
+            response = chatClient.prompt()
+                    .user(prompt)
+                    .call()
+                    .chatResponse();
+        } catch (RuntimeException e) {
+            metrics.recordAiCall(sample, PipelineMetrics.MODE_CALL, PipelineMetrics.OUTCOME_FAILURE);
+            throw e;
+        }
+        metrics.recordAiCall(sample, PipelineMetrics.MODE_CALL, PipelineMetrics.OUTCOME_SUCCESS);
+        metrics.recordTokens(response);
+        return response.getResult().getOutput().getContent();
+    }
+
+    /**
+     * 按原顺序合并分块结果
+     * <p>
+     * 类型取项目数最多的一方，与之不符的块的项目转换为该类型，使全部项目能用同一模板渲染。
+     */
+    private Map<String, Object> mergeResults(List<Map<String, Object>> results, String text) {
+        int questionCount = 0;
+        int noteCount = 0;
+        int aiCount = 0;
+        for (Map<String, Object> chunkResult : results) {
+            if (SOURCE_AI.equals(chunkResult.get("source"))) {
+                aiCount++;
+            }
+            int size = ((List<?>) chunkResult.get("items")).size();
+            if ("question".equals(chunkResult.get("type"))) {
+                questionCount += size;
+            } else {
+                noteCount += size;
+            }
+        }
+        String type = questionCount >= noteCount ? "question" : "note";
+
+        String title = null;
+        List<Object> items = new ArrayList<>();
+        int converted = 0;
+        for (Map<String, Object> chunkResult : results) {
+            List<?> chunkItems = (List<?>) chunkResult.get("items");
+            if (!type.equals(chunkResult.get("type"))) {
+                for (Object item : chunkItems) {
+                    items.add(convertItem(type, item));
+                }
+                converted += chunkItems.size();
+                continue;
+            }
+            if (title == null) {
+                title = (String) chunkResult.get("title");
+            }
+            items.addAll(chunkItems);
+        }
+        if (converted > 0) {
+            log.warn("合并分块结果时转换了 {} 个类型不一致的项目", converted);
+        }
+        if (items.isEmpty()) {
+            // 所有块都没有提取到内容，按整篇文本走备用方案
+            return analyzeWithRegex(text, true);
         }
-        if (answer != null && answer.contains(",") || answer.contains("、")) {
-            return "multiple_choice";
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("type", type);
+        result.put("title", title);
+        result.put("templateName", "question".equals(type) ? "question-template" : "note-template");
+        result.put("items", items);
+        result.put("source", aiCount == results.size() ? SOURCE_AI : aiCount == 0 ? SOURCE_REGEX : SOURCE_PARTIAL);
+        return result;
+    }
+
+    /**
+     * 使用正则表达式简单分析内容（备用方案）
+     */
+    private Map<String, Object> analyzeWithRegex(String text, boolean allowSamples) {
+        Map<String, Object> result = new HashMap<>();
+
+        // 简单判断是题目还是笔记
+        if (regexEngine.looksLikeQuestions(text)) {
+            // 识别为题目
+            List<Object> questions = new ArrayList<>(regexEngine.extractQuestions(text));
+            result.put("type", "question");
+            result.put("title", "题库（由 AI 自动识别）");
+            result.put("templateName", "question-template");
+            result.put("items", questions.isEmpty() && allowSamples ? createSampleQuestions() : questions);
+        } else {
+            // 识别为笔记
+            List<Object> notes = new ArrayList<>(regexEngine.extractNotes(text));
+            result.put("type", "note");
+            result.put("title", "学习笔记（由 AI 自动识别）");
+            result.put("templateName", "note-template");
+            result.put("items", notes.isEmpty() && allowSamples ? createSampleNotes() : notes);
         }
-        return "single_choice";
+        result.put("source", SOURCE_REGEX);
+
+        return result;
     }
 
     /**
@@ -0,0 +1,232 @@
+package com.example.pkqb.service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * .docx 流式文本提取器
+ * <p>
+ * 直接从 OOXML 包中读取主文档部件（通常是 word/document.xml），用 StAX 逐个事件扫描，
+ * 按文档顺序输出段落和表格单元格中的段落，每段一行。不构建 DOM，内存占用与输出文本长度相当。
+ * <p>
+ * 只提取正文：已删除的修订（w:del / w:delText）、域代码（w:instrText）和兼容性备用内容（mc:Fallback）会被跳过。
+ * 修订中移动过的内容在原位置（w:moveFrom）和新位置（w:moveTo）各出现一次，只保留新位置的一份。
+ */
+public final class DocxTextExtractor {
+
+    private static final String MAIN_DOCUMENT = "word/document.xml";
+    private static final String PACKAGE_RELATIONSHIPS = "_rels/.rels";
+    private static final String OFFICE_DOCUMENT_TYPE = "/officeDocument";
+
+    /**
+     * 主文档部件解压后的最大字节数，防止 zip bomb
+     */
+    private static final long MAX_DOCUMENT_BYTES = 512L * 1024 * 1024;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = newInputFactory();
+
+    private DocxTextExtractor() {
+    }
+
+    /**
+     * 提取 .docx 文本
+     *
+     * @param file 文件路径
+     * @return 提取的文本，每个非空段落一行
+     */
+    public static String extract(Path file) throws IOException {
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            ZipEntry entry = findMainDocument(zip);
+            if (entry == null) {
+                throw new IOException("不是有效的 .docx 文件：缺少主文档部件");
+            }
+            try (InputStream in = new BoundedInputStream(zip.getInputStream(entry), MAX_DOCUMENT_BYTES)) {
+                return extract(in);
+            }
+        }
+    }
+
+    /**
+     * 从主文档部件的 XML 流中提取文本
+     */
+    static String extract(InputStream documentXml) throws IOException {
+        StringBuilder text = new StringBuilder();
+        StringBuilder paragraph = new StringBuilder();
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(documentXml);
+            int runDepth = 0;
+            boolean inText = false;
+            int skipDepth = 0;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (skipDepth > 0 || isSkipped(name)) {
+                        skipDepth++;
+                        continue;
+                    }
+                    switch (name) {
+                        case "p" -> {
+                            // 文本框中的段落嵌套在外层段落里，先输出外层已读到的部分
+                            appendParagraph(text, paragraph);
+                            paragraph.setLength(0);
+                        }
+                        case "r" -> runDepth++;
+                        case "t" -> inText = runDepth > 0;
+                        case "tab" -> appendInRun(paragraph, runDepth, '\t');
+                        case "br", "cr" -> appendInRun(paragraph, runDepth, '\n');
+                        case "noBreakHyphen" -> appendInRun(paragraph, runDepth, '-');
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (skipDepth > 0) {
+                        skipDepth--;
+                        continue;
+                    }
+                    switch (reader.getLocalName()) {
+                        case "p" -> {
+                            appendParagraph(text, paragraph);
+                            paragraph.setLength(0);
+                        }
+                        case "r" -> runDepth--;
+                        case "t" -> inText = false;
+                        default -> {
+                        }
+                    }
+                } else if (inText && skipDepth == 0
+                        && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                    paragraph.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("解析 .docx 文档内容失败: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // 输入流由调用方关闭
+                }
+            }
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * 不属于正文的子树
+     */
+    private static boolean isSkipped(String localName) {
+        return "del".equals(localName)
+                || "delText".equals(localName)
+                || "moveFrom".equals(localName)
+                || "instrText".equals(localName)
+                || "Fallback".equals(localName);
+    }
+
+    private static void appendInRun(StringBuilder paragraph, int runDepth, char c) {
+        if (runDepth > 0) {
+            paragraph.append(c);
+        }
+    }
+
+    private static void appendParagraph(StringBuilder text, StringBuilder paragraph) {
+        if (!paragraph.toString().isBlank()) {
+            text.append(paragraph).append('\n');
+        }
+    }
+
+    /**
+     * 定位主文档部件：优先使用约定路径，否则按包关系中的 officeDocument 查找
+     */
+    private static ZipEntry findMainDocument(ZipFile zip) throws IOException {
+        ZipEntry entry = zip.getEntry(MAIN_DOCUMENT);
+        if (entry != null) {
+            return entry;
+        }
+        ZipEntry rels = zip.getEntry(PACKAGE_RELATIONSHIPS);
+        if (rels == null) {
+            return null;
+        }
+        try (InputStream in = zip.getInputStream(rels)) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && "Relationship".equals(reader.getLocalName())) {
+                        String type = reader.getAttributeValue(null, "Type");
+                        String target = reader.getAttributeValue(null, "Target");
+                        if (type != null && type.endsWith(OFFICE_DOCUMENT_TYPE) && target != null) {
+                            return zip.getEntry(target.startsWith("/") ? target.substring(1) : target);
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("解析 .docx 包关系失败: " + e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * 禁用 DTD 和外部实体，防止 XXE
+     */
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    /**
+     * 读取超过上限时抛出异常的输入流
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("文档内容超过 " + (limit / 1024 / 1024) + "MB，拒绝解析");
+            }
+        }
+    }
+}
@@ -1,15 +1,14 @@
 package com.example.pkqb.service;
 
-import com.example.pkqb.config.AppConfig;
 import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.JobStage;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 文件解析服务（统一入口）
@@ -21,7 +20,9 @@ public class FileParserService {
 
     private final WordParserService wordParserService;
     private final PdfParserService pdfParserService;
-    private final AppConfig appConfig;
+    private final StageLimiter stageLimiter;
+    private final ParseCacheService parseCacheService;
+    private final PipelineMetrics metrics;
 
     /**
      * 根据文件类型解析文件
@@ -31,22 +32,52 @@ public class FileParserService {
      * @return 解析后的文本
      */
     public String parseFile(String fileType, String filePath) {
+        return parseFile(fileType, filePath, null);
+    }
+
+    /**
+     * 根据文件类型解析文件，解析过程中按原文顺序回调已提取的文本片段
+     * <p>
+     * PDF 每提取完一个页段回调一次；Word 文档在解析完成后整体回调一次；命中解析缓存时整体回调一次。
+     *
+     * @param fileType     文件类型：word/pdf
+     * @param filePath     文件路径
+     * @param textListener 文本片段回调，可以为 null
+     * @return 解析后的文本
+     */
+    public String parseFile(String fileType, String filePath, Consumer<String> textListener) {
         log.info("开始解析文件，类型: {}, 路径: {}", fileType, filePath);
+        // 先校验类型再查缓存，不支持的类型不会读取文件也不会写入缓存
+        String type = supportedType(fileType);
 
         try {
-            String text;
+            String text = parseCacheService.get(type, filePath);
+            metrics.recordParseCache(text != null);
+            if (text != null) {
+                log.info("命中解析缓存，文本长度: {}", text.length());
+                if (textListener != null) {
+                    textListener.accept(text);
+                }
+                return text;
+            }
 
-            switch (fileType.toLowerCase()) {
+            switch (type) {
                 case "word":
-                    text = wordParserService.parse(filePath);
+                    text = stageLimiter.call(JobStage.PARSE,
+                            () -> timed("word", () -> wordParserService.parse(filePath)));
+                    if (textListener != null) {
+                        textListener.accept(text);
+                    }
                     break;
                 case "pdf":
-                    text = pdfParserService.parse(filePath);
+                    text = stageLimiter.call(JobStage.PARSE,
+                            () -> timed("pdf", () -> pdfParserService.parse(filePath, textListener)));
                     break;
                 default:
                     throw new BusinessException("不支持的文件类型: " + fileType);
             }
 
+            parseCacheService.put(type, filePath, text);
             log.info("文件解析完成，文本长度: {}", text.length());
             return text;
 
@@ -57,47 +88,31 @@ public class FileParserService {
     }
 
     /**
-     * 保存上传的文件
+     * 校验并规范化文件类型
      *
-     * @param fileName 原始文件名
-     * @param fileBytes  文件字节数组
-     * @return 保存后的文件路径
+     * @return 小写的文件类型：word/pdf
      */
-    public String saveUploadedFile(String fileName, byte[] fileBytes) {
-        try {
-            // 确保上传目录存在
-            String uploadPath = appConfig.getUploadPath();
-            Files.createDirectories(Paths.get(uploadPath));
-
-            // 生成唯一文件名
-            String fileExtension = getFileExtension(fileName);
-            String uniqueFileName = UUID.randomUUID() + "." + fileExtension;
-            String filePath = Paths.get(uploadPath, uniqueFileName).toString();
-
-            // 保存文件
-            Files.write(Paths.get(filePath), fileBytes);
-
-            log.info("文件保存成功: {}", filePath);
-
-            return filePath;
-
-        } catch (Exception e) {
-            log.error("保存上传文件失败", e);
-            throw new BusinessException("保存上传文件失败: " + e.getMessage());
+    private static String supportedType(String fileType) {
+        String type = fileType != null ? fileType.toLowerCase() : "";
+        if (!"word".equals(type) && !"pdf".equals(type)) {
+            throw new BusinessException("不支持的文件类型: " + fileType);
         }
+        return type;
     }
 
     /**
-     * 获取文件扩展名
+     * 记录解析耗时和字符数；在取得 parse 许可后调用，排队时间和缓存命中不计入
      */
-    private String getFileExtension(String fileName) {
-        if (fileName == null || fileName.isEmpty()) {
-            return "unknown";
-        }
-        int lastDotIndex = fileName.lastIndexOf('.');
-        if (lastDotIndex == -1) {
-            return "unknown";
+    private String timed(String fileType, Supplier<String> parser) {
+        Timer.Sample sample = metrics.startTimer();
+        String text;
+        try {
+            text = parser.get();
+        } catch (RuntimeException e) {
+            metrics.recordParse(sample, fileType, PipelineMetrics.OUTCOME_FAILURE, -1);
+            throw e;
         }
-        return fileName.substring(lastDotIndex + 1).toLowerCase();
+        metrics.recordParse(sample, fileType, PipelineMetrics.OUTCOME_SUCCESS, text.length());
+        return text;
     }
 }
@@ -3,21 +3,29 @@ package com.example.pkqb.service;
 import com.example.pkqb.config.AppConfig;
 import com.example.pkqb.exception.BusinessException;
 import com.example.pkqb.model.*;
-import com.github.jknack.handlebars.Handlebars;
 import com.github.jknack.handlebars.Template;
-import com.github.jknack.handlebars.io.ClassPathTemplateLoader;
+import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * HTML 生成服务
@@ -26,13 +34,51 @@ import java.util.UUID;
 @Service
 public class HtmlGeneratorService {
 
+    /**
+     * 启动时预编译的模板
+     */
+    private static final List<String> BUILTIN_TEMPLATES = List.of("question-template", "note-template");
+
+    /**
+     * 渲染输出缓冲区大小
+     */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
     private final AppConfig appConfig;
-    private final Handlebars handlebars;
+    private final StageLimiter stageLimiter;
+    private final PipelineMetrics metrics;
+
+    /**
+     * 模板来源，编译结果由注册表统一缓存，模板文件变化后自动换成新版本
+     */
+    private final TemplateRegistry templateRegistry;
+
+    /**
+     * 生成时是否同时写出 .gz 预压缩文件，供下载接口直接返回
+     */
+    private final boolean precompress;
 
-    public HtmlGeneratorService(AppConfig appConfig) {
+    public HtmlGeneratorService(AppConfig appConfig,
+                                StageLimiter stageLimiter,
+                                PipelineMetrics metrics,
+                                TemplateRegistry templateRegistry,
+                                @Value("${app.download.precompress:true}") boolean precompress) {
         this.appConfig = appConfig;
-        ClassPathTemplateLoader loader = new ClassPathTemplateLoader("/templates", ".html");
-        this.handlebars = new Handlebars(loader);
+        this.stageLimiter = stageLimiter;
+        this.metrics = metrics;
+        this.templateRegistry = templateRegistry;
+        this.precompress = precompress;
+    }
+
+    /**
+     * 预编译内置模板
+     */
+    @PostConstruct
+    public void init() {
+        for (String templateName : BUILTIN_TEMPLATES) {
+            templateRegistry.getTemplate(templateName);
+        }
+        log.info("已预编译模板: {}", BUILTIN_TEMPLATES);
     }
 
     public AppConfig getAppConfig() {
@@ -55,20 +101,20 @@ public class HtmlGeneratorService {
 
             // 选择模板
             String templateName = selectTemplate(request.getType());
-            Template template = handlebars.compile(templateName);
+            Template template = templateRegistry.getTemplate(templateName);
 
             // 准备模板数据
             Map<String, Object> data = prepareTemplateData(request);
 
-            // 渲染 HTML
-            String htmlContent = template.apply(data);
-
             // 生成文件名
             String fileName = generateFileName(request.getType());
-            
-            // 保存文件
             String filePath = Paths.get(generatedPath, fileName).toString();
-            saveHtmlFile(filePath, htmlContent);
+
+            // 渲染并保存文件（受 generate 阶段并发限制）
+            stageLimiter.call(JobStage.GENERATE, () -> {
+                renderAndSave(templateName, template, data, filePath);
+                return null;
+            });
             log.info("HTML 生成成功: {}", filePath);
             
             // 返回文件信息（使用文件名作为fileId，去掉.html扩展名）
@@ -123,21 +169,115 @@ public class HtmlGeneratorService {
     }
 
     /**
-     * 生成文件名
+     * 生成文件名：时间戳便于按时间排序，随机后缀保证同一毫秒内的并发生成不会写到同一个文件
      */
     private String generateFileName(String type) {
         String prefix = "question".equalsIgnoreCase(type) ? "questions" : "notes";
-        return String.format("%s-%d.html", prefix, System.currentTimeMillis());
+        String suffix = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        return String.format("%s-%d-%s.html", prefix, System.currentTimeMillis(), suffix);
+    }
+
+    /**
+     * 渲染 HTML 并保存
+     * <p>
+     * 模板直接渲染到带缓冲的文件 Writer，不在堆上拼出整页字符串；先写临时文件（每次生成各自唯一）再原子改名，
+     * 避免状态查询接口把写了一半的文件当成已生成。
+     * <p>
+     * 渲染耗时包含写入临时文件（二者交织进行），原子改名和预压缩单独计入文件写出耗时。
+     */
+    private void renderAndSave(String templateName, Template template, Map<String, Object> data, String filePath) {
+        Path target = Paths.get(filePath);
+        Path tmp = null;
+        Timer.Sample renderSample = metrics.startTimer();
+        Timer.Sample writeSample = null;
+        try {
+            tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (Writer writer = newBufferedWriter(Files.newOutputStream(tmp))) {
+                template.apply(data, writer);
+            }
+            metrics.recordRender(renderSample, templateName, PipelineMetrics.TARGET_FILE, PipelineMetrics.OUTCOME_SUCCESS);
+            metrics.recordRenderBytes(templateName, Files.size(tmp));
+
+            writeSample = metrics.startTimer();
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (precompress) {
+                writeGzipSibling(target);
+            }
+            metrics.recordFileWrite(writeSample, PipelineMetrics.OUTCOME_SUCCESS);
+        } catch (IOException | RuntimeException e) {
+            if (writeSample != null) {
+                metrics.recordFileWrite(writeSample, PipelineMetrics.OUTCOME_FAILURE);
+            } else {
+                metrics.recordRender(renderSample, templateName, PipelineMetrics.TARGET_FILE, PipelineMetrics.OUTCOME_FAILURE);
+            }
+            try {
+                if (tmp != null) {
+                    Files.deleteIfExists(tmp);
+                }
+            } catch (IOException ignored) {
+                // 保留原始异常
+            }
+            throw e instanceof IOException ioException ? new UncheckedIOException(ioException) : (RuntimeException) e;
+        }
+    }
+
+    /**
+     * 写出 .gz 预压缩文件；失败只影响下载时能否直接返回压缩版本，不影响生成结果
+     */
+    private void writeGzipSibling(Path file) {
+        Path gz = file.resolveSibling(file.getFileName() + ".gz");
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(file.getParent(), gz.getFileName().toString(), ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), WRITE_BUFFER_SIZE)) {
+                Files.copy(file, out);
+            }
+            Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写出预压缩文件失败: {}", gz, e);
+            try {
+                if (tmp != null) {
+                    Files.deleteIfExists(tmp);
+                }
+            } catch (IOException ignored) {
+                // 忽略
+            }
+        }
     }
 
     /**
-     * 保存 HTML 文件
+     * 渲染 HTML 直接写入输出流（如 HTTP 响应），不落盘
+     * <p>
+     * 不占用 generate 阶段许可：写出速度取决于客户端网速，慢客户端不应挤占渲染并发。
+     *
+     * @param request 生成请求
+     * @param out     输出流，由调用方负责关闭
      */
-    private void saveHtmlFile(String filePath, String content) throws IOException {
-        try (java.io.OutputStreamWriter writer = new java.io.OutputStreamWriter(
-                new java.io.FileOutputStream(filePath), java.nio.charset.StandardCharsets.UTF_8)) {
-            writer.write(content);
+    public void renderHtml(GenerateRequest request, OutputStream out) throws IOException {
+        log.info("开始渲染 HTML 到输出流，类型: {}", request.getType());
+        String templateName = selectTemplate(request.getType());
+        Template template = templateRegistry.getTemplate(templateName);
+        Writer writer = newBufferedWriter(out);
+        Timer.Sample sample = metrics.startTimer();
+        try {
+            template.apply(prepareTemplateData(request), writer);
+            writer.flush();
+        } catch (IOException e) {
+            metrics.recordRender(sample, templateName, PipelineMetrics.TARGET_RESPONSE, PipelineMetrics.OUTCOME_FAILURE);
+            throw e;
         }
+        metrics.recordRender(sample, templateName, PipelineMetrics.TARGET_RESPONSE, PipelineMetrics.OUTCOME_SUCCESS);
+    }
+
+    /**
+     * 生成下载文件名
+     */
+    public String downloadFileName(String type) {
+        return generateFileName(type);
+    }
+
+    private static Writer newBufferedWriter(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
     }
 
     /**
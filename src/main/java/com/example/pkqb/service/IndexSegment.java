@@ -0,0 +1,186 @@
+package com.example.pkqb.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 只读索引段（内存映射）
+ * <p>
+ * 文件格式（大端序）：
+ * <pre>
+ * 文件头（64 字节）：magic, version, docCount, termCount, totalLength, docsOffset, postingsOffset, termIndexOffset
+ * 文档表：每个文档 16 字节 (long bankId, int seq, int length)，按文档编号直接定位
+ * 倒排表：每个词一段 varint 序列 (文档编号差值, 词频)...
+ * 词典：每个词 (short 字节数, UTF-8 字节, int 文档频率, long 倒排表偏移, int 倒排表字节数)
+ * 词典索引：termCount 个 long，指向按字节序排列的词典条目，用于二分查找
+ * </pre>
+ * 整个文件映射到内存，查找和解码都直接读映射区域，不在堆上加载词典；所有读取都是绝对位置读，可以多线程并发访问。
+ */
+final class IndexSegment {
+
+    static final int MAGIC = 0x504B5158;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 64;
+    private static final int DOC_ENTRY_SIZE = 16;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int docCount;
+    private final int termCount;
+    private final long totalLength;
+    private final int docsOffset;
+    private final int termIndexOffset;
+
+    private IndexSegment(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("不是有效的索引段: " + file);
+        }
+        this.docCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.totalLength = buffer.getLong(16);
+        this.docsOffset = (int) buffer.getLong(24);
+        this.termIndexOffset = (int) buffer.getLong(40);
+    }
+
+    static IndexSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("索引段超过 2GB: " + file);
+            }
+            // 映射在通道关闭后仍然有效
+            return new IndexSegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    long sizeBytes() {
+        return buffer.capacity();
+    }
+
+    int docCount() {
+        return docCount;
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    long totalLength() {
+        return totalLength;
+    }
+
+    long bankId(int doc) {
+        return buffer.getLong(docsOffset + doc * DOC_ENTRY_SIZE);
+    }
+
+    int seq(int doc) {
+        return buffer.getInt(docsOffset + doc * DOC_ENTRY_SIZE + 8);
+    }
+
+    int length(int doc) {
+        return buffer.getInt(docsOffset + doc * DOC_ENTRY_SIZE + 12);
+    }
+
+    /**
+     * 二分查找词典
+     *
+     * @return 词在词典中的序号，不存在时返回 -1
+     */
+    int findTerm(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(entry(mid), term);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    byte[] term(int ord) {
+        int entry = entry(ord);
+        byte[] term = new byte[buffer.getShort(entry) & 0xFFFF];
+        buffer.get(entry + 2, term);
+        return term;
+    }
+
+    /**
+     * 文档频率（包含该词的文档数）
+     */
+    int df(int ord) {
+        int entry = entry(ord);
+        return buffer.getInt(entry + 2 + (buffer.getShort(entry) & 0xFFFF));
+    }
+
+    /**
+     * 解码倒排表
+     *
+     * @return 依次为 (文档编号, 词频) 对
+     */
+    int[] postings(int ord) {
+        int entry = entry(ord);
+        int termEnd = entry + 2 + (buffer.getShort(entry) & 0xFFFF);
+        int df = buffer.getInt(termEnd);
+        int position = (int) buffer.getLong(termEnd + 4);
+
+        int[] postings = new int[df * 2];
+        int doc = 0;
+        for (int i = 0; i < postings.length; i += 2) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += value;
+            postings[i] = doc;
+
+            value = 0;
+            shift = 0;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            postings[i + 1] = value;
+        }
+        return postings;
+    }
+
+    private int entry(int ord) {
+        return (int) buffer.getLong(termIndexOffset + ord * 8);
+    }
+
+    /**
+     * 按无符号字节序比较词典条目和给定的词
+     */
+    private int compare(int entry, byte[] term) {
+        int length = buffer.getShort(entry) & 0xFFFF;
+        int start = entry + 2;
+        int common = Math.min(length, term.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(buffer.get(start + i) & 0xFF, term[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, term.length);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.pkqb.service;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 写出一个只读索引段（格式见 {@link IndexSegment}）
+ * <p>
+ * 必须先按文档编号顺序调用 {@link #addDoc}，再按词的 UTF-8 字节序调用 {@link #addTerm}，最后 {@link #finish}。
+ * 词典条目先写入临时文件，倒排表写完后再接到主文件末尾，写出过程中内存里只保留词典偏移数组。
+ */
+final class IndexSegmentWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final Path termsFile;
+    private final CountingOutput out;
+    private final CountingOutput terms;
+
+    private int docCount;
+    private long totalLength;
+    private long postingsOffset = -1;
+    private long[] termOffsets = new long[1024];
+    private int termCount;
+    private byte[] lastTerm;
+    private boolean finished;
+
+    IndexSegmentWriter(Path file) throws IOException {
+        this.file = file;
+        this.termsFile = file.resolveSibling(file.getFileName() + ".terms");
+        this.out = new CountingOutput(Files.newOutputStream(file));
+        this.terms = new CountingOutput(Files.newOutputStream(termsFile));
+        out.write(new byte[IndexSegment.HEADER_SIZE]);
+    }
+
+    /**
+     * 添加文档，文档编号即调用顺序（从 0 开始）
+     *
+     * @param length 文档的词数，用于 BM25 长度归一化
+     */
+    void addDoc(long bankId, int seq, int length) throws IOException {
+        if (postingsOffset >= 0) {
+            throw new IllegalStateException("文档必须在倒排表之前写入");
+        }
+        out.data.writeLong(bankId);
+        out.data.writeInt(seq);
+        out.data.writeInt(length);
+        docCount++;
+        totalLength += length;
+    }
+
+    /**
+     * 添加一个词的倒排表
+     *
+     * @param postings 依次为 (文档编号, 词频) 对，文档编号递增
+     * @param size     postings 中有效的 int 个数（对数 * 2）
+     */
+    void addTerm(byte[] term, int[] postings, int size) throws IOException {
+        if (size == 0) {
+            return;
+        }
+        if (lastTerm != null && Arrays.compareUnsigned(lastTerm, term) >= 0) {
+            throw new IllegalStateException("词必须按字节序递增写入");
+        }
+        if (postingsOffset < 0) {
+            postingsOffset = out.count;
+        }
+        long start = out.count;
+        int previousDoc = 0;
+        for (int i = 0; i < size; i += 2) {
+            writeVarInt(out, postings[i] - previousDoc);
+            writeVarInt(out, postings[i + 1]);
+            previousDoc = postings[i];
+        }
+
+        if (termCount == termOffsets.length) {
+            termOffsets = Arrays.copyOf(termOffsets, termCount * 2);
+        }
+        termOffsets[termCount++] = terms.count;
+        terms.data.writeShort(term.length);
+        terms.data.write(term);
+        terms.data.writeInt(size / 2);
+        terms.data.writeLong(start);
+        terms.data.writeInt((int) (out.count - start));
+        lastTerm = term;
+    }
+
+    /**
+     * 写出词典、词典索引和文件头并刷盘
+     */
+    void finish() throws IOException {
+        if (postingsOffset < 0) {
+            postingsOffset = out.count;
+        }
+        terms.close();
+        long termDataOffset = out.count;
+        Files.copy(termsFile, out);
+        long termIndexOffset = out.count;
+        for (int i = 0; i < termCount; i++) {
+            out.data.writeLong(termDataOffset + termOffsets[i]);
+        }
+        out.close();
+
+        ByteBuffer header = ByteBuffer.allocate(IndexSegment.HEADER_SIZE);
+        header.putInt(IndexSegment.MAGIC)
+                .putInt(IndexSegment.VERSION)
+                .putInt(docCount)
+                .putInt(termCount)
+                .putLong(totalLength)
+                .putLong(IndexSegment.HEADER_SIZE)
+                .putLong(postingsOffset)
+                .putLong(termIndexOffset)
+                .flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.deleteIfExists(termsFile);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        terms.close();
+        out.close();
+        Files.deleteIfExists(termsFile);
+        if (!finished) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void writeVarInt(CountingOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * 带字节计数的缓冲输出（DataOutputStream 的计数是 int，大文件会溢出）
+     */
+    private static final class CountingOutput extends OutputStream {
+
+        private final OutputStream delegate;
+        private final DataOutputStream data = new DataOutputStream(this);
+        private long count;
+        private boolean closed;
+
+        CountingOutput(OutputStream delegate) {
+            this.delegate = new BufferedOutputStream(delegate, BUFFER_SIZE);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                delegate.close();
+            }
+        }
+    }
+}
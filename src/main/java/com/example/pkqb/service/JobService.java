@@ -0,0 +1,356 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.GenerateRequest;
+import com.example.pkqb.model.JobInfo;
+import com.example.pkqb.model.JobStage;
+import com.example.pkqb.model.JobStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 流水线任务服务
+ * <p>
+ * 把"解析 → 分析 → 去重 → 生成"放到有界的任务线程池中异步执行，请求线程只负责保存上传文件和返回任务ID。
+ * 任务状态保存在内存登记表中，完成或失败的任务超过保留时间后清理。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class JobService {
+
+    private final FileParserService fileParserService;
+    private final ContentAnalysisService contentAnalysisService;
+    private final HtmlGeneratorService htmlGeneratorService;
+    private final QuestionBankService questionBankService;
+    private final QuestionDedupService questionDedupService;
+    @Qualifier("jobExecutor")
+    private final AsyncTaskExecutor jobExecutor;
+
+    @Value("${app.job.retention-minutes:60}")
+    private long retentionMinutes;
+
+    /**
+     * 任务登记表
+     */
+    private final Map<String, PipelineJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 提交文件任务（文件已保存，从解析阶段开始）
+     *
+     * @param fileType 文件类型：word/pdf
+     * @param filePath 已保存的文件路径
+     * @param title    标题（为空时使用 AI 识别的标题）
+     * @return 任务状态
+     */
+    public JobInfo submitFile(String fileType, String filePath, String title) {
+        PipelineJob job = register(title);
+        job.complete(JobStage.UPLOAD);
+        return submit(job, textListener -> fileParserService.parseFile(fileType, filePath, textListener));
+    }
+
+    /**
+     * 提交文本任务（跳过上传和解析阶段）
+     *
+     * @param text  文本内容
+     * @param title 标题（为空时使用 AI 识别的标题）
+     * @return 任务状态
+     */
+    public JobInfo submitText(String text, String title) {
+        PipelineJob job = register(title);
+        job.skip(JobStage.UPLOAD);
+        job.skip(JobStage.PARSE);
+        return submit(job, textListener -> text);
+    }
+
+    /**
+     * 提交批量任务（文件已保存）：各文件的解析和分析由 batch 在批量线程池中并发执行，结果保存在任务状态中，不生成 HTML
+     *
+     * @param title 标题
+     * @param batch 执行批量处理并返回结果，merged 模式下结果中包含已去重的合并结果 merged
+     * @return 任务状态
+     */
+    public JobInfo submitBatch(String title, Supplier<Map<String, Object>> batch) {
+        PipelineJob job = register(title);
+        job.complete(JobStage.UPLOAD);
+        return submit(job, () -> runBatch(job, batch));
+    }
+
+    /**
+     * 查询任务状态
+     *
+     * @return 任务状态，任务不存在时返回 null
+     */
+    public JobInfo getJob(String jobId) {
+        PipelineJob job = jobs.get(jobId);
+        return job != null ? job.snapshot() : null;
+    }
+
+    private PipelineJob register(String title) {
+        purgeExpired();
+        PipelineJob job = new PipelineJob(UUID.randomUUID().toString(), title);
+        jobs.put(job.jobId, job);
+        return job;
+    }
+
+    private JobInfo submit(PipelineJob job, TextSource textSource) {
+        return submit(job, () -> run(job, textSource));
+    }
+
+    private JobInfo submit(PipelineJob job, Runnable task) {
+        try {
+            jobExecutor.execute(task);
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.jobId);
+            log.warn("任务队列已满，拒绝任务: {}", job.jobId);
+            throw new BusinessException(429, "任务繁忙，请稍后再试");
+        }
+        log.info("任务已提交: {}", job.jobId);
+        return job.snapshot();
+    }
+
+    /**
+     * 依次执行各阶段，任一阶段失败则整个任务失败
+     * <p>
+     * 文件任务解析出的文本边解析边交给增量分析，长 PDF 的前几块在最后一页提取完之前就开始调用模型。
+     */
+    @SuppressWarnings("unchecked")
+    private void run(PipelineJob job, TextSource textSource) {
+        try {
+            Map<String, Object> analysis;
+            if (job.isPending(JobStage.PARSE)) {
+                job.start(JobStage.PARSE);
+                ContentAnalysisService.IncrementalAnalysis incremental = contentAnalysisService.beginIncrementalAnalysis();
+                try {
+                    textSource.get(incremental::append);
+                } catch (RuntimeException e) {
+                    incremental.cancel();
+                    throw e;
+                }
+                job.complete(JobStage.PARSE);
+
+                job.start(JobStage.ANALYZE);
+                analysis = incremental.finish();
+            } else {
+                String text = textSource.get(null);
+                job.start(JobStage.ANALYZE);
+                analysis = contentAnalysisService.analyzeContent(text);
+            }
+            job.complete(JobStage.ANALYZE);
+
+            if (questionDedupService.isEnabled()) {
+                job.start(JobStage.DEDUP);
+                analysis = questionDedupService.dedup(analysis);
+                List<?> duplicates = (List<?>) analysis.get("duplicates");
+                job.deduplicated(duplicates != null ? duplicates.size() : 0);
+                job.complete(JobStage.DEDUP);
+            } else {
+                job.skip(JobStage.DEDUP);
+            }
+
+            String type = (String) analysis.get("type");
+            String title = job.title != null && !job.title.isBlank() ? job.title : (String) analysis.get("title");
+            List<Object> items = (List<Object>) analysis.get("items");
+            job.analyzed(type, title, items.size());
+
+            job.start(JobStage.GENERATE);
+            GenerateRequest request = GenerateRequest.builder()
+                    .type(type)
+                    .title(title)
+                    .items(items)
+                    .build();
+            Map<String, String> fileInfo = htmlGeneratorService.generateHtml(request);
+            Long bankId = questionBankService.save(request, fileInfo.get("fileId"));
+            job.generated(fileInfo.get("fileId"), fileInfo.get("fileName"), bankId);
+            job.complete(JobStage.GENERATE);
+
+            log.info("任务完成: {}, 文件: {}", job.jobId, fileInfo.get("fileName"));
+        } catch (Exception e) {
+            log.error("任务执行失败: {}", job.jobId, e);
+            job.fail(e.getMessage());
+        }
+    }
+
+    /**
+     * 执行批量任务：各文件的解析和分析交替进行，两个阶段同时开始、同时结束
+     */
+    private void runBatch(PipelineJob job, Supplier<Map<String, Object>> batch) {
+        try {
+            job.start(JobStage.PARSE);
+            job.start(JobStage.ANALYZE);
+            Map<String, Object> result = batch.get();
+            job.complete(JobStage.PARSE);
+            job.complete(JobStage.ANALYZE);
+            if (result.containsKey("merged") && questionDedupService.isEnabled()) {
+                job.complete(JobStage.DEDUP);
+            } else {
+                job.skip(JobStage.DEDUP);
+            }
+            job.skip(JobStage.GENERATE);
+            job.batchCompleted(result);
+            log.info("批量任务完成: {}, 成功: {}, 失败: {}", job.jobId, result.get("succeeded"), result.get("failed"));
+        } catch (Exception e) {
+            log.error("批量任务执行失败: {}", job.jobId, e);
+            job.fail(e.getMessage());
+        }
+    }
+
+    /**
+     * 清理超过保留时间的已结束任务
+     */
+    private void purgeExpired() {
+        long expireBefore = System.currentTimeMillis() - retentionMinutes * 60_000L;
+        jobs.values().removeIf(job -> job.isFinishedBefore(expireBefore));
+    }
+
+    /**
+     * 任务文本来源（文件任务为解析结果，文本任务为原文）
+     */
+    @FunctionalInterface
+    private interface TextSource {
+        /**
+         * @param textListener 解析过程中按原文顺序接收文本片段，可以为 null
+         */
+        String get(Consumer<String> textListener);
+    }
+
+    /**
+     * 任务的可变状态，由任务线程写、查询线程读，所有访问都加锁
+     */
+    private static final class PipelineJob {
+
+        private final String jobId;
+        private final String title;
+        private final long createdAt = System.currentTimeMillis();
+        private final Map<JobStage, JobStatus> stages = new EnumMap<>(JobStage.class);
+
+        private JobStatus status = JobStatus.PENDING;
+        private JobStage stage = JobStage.UPLOAD;
+        private String error;
+        private String type;
+        private String resultTitle;
+        private Integer itemCount;
+        private Integer duplicateCount;
+        private String fileId;
+        private String fileName;
+        private Long bankId;
+        private Map<String, Object> batch;
+        private long updatedAt = createdAt;
+
+        PipelineJob(String jobId, String title) {
+            this.jobId = jobId;
+            this.title = title;
+            for (JobStage s : JobStage.values()) {
+                stages.put(s, JobStatus.PENDING);
+            }
+        }
+
+        synchronized boolean isPending(JobStage s) {
+            return stages.get(s) == JobStatus.PENDING;
+        }
+
+        synchronized void start(JobStage s) {
+            status = JobStatus.RUNNING;
+            stage = s;
+            stages.put(s, JobStatus.RUNNING);
+            touch();
+        }
+
+        synchronized void complete(JobStage s) {
+            stage = s;
+            stages.put(s, JobStatus.COMPLETED);
+            if (s == JobStage.GENERATE) {
+                status = JobStatus.COMPLETED;
+            }
+            touch();
+        }
+
+        synchronized void skip(JobStage s) {
+            stages.put(s, JobStatus.SKIPPED);
+            touch();
+        }
+
+        synchronized void analyzed(String type, String title, int itemCount) {
+            this.type = type;
+            this.resultTitle = title;
+            this.itemCount = itemCount;
+            touch();
+        }
+
+        synchronized void deduplicated(int duplicateCount) {
+            this.duplicateCount = duplicateCount;
+            touch();
+        }
+
+        synchronized void generated(String fileId, String fileName, Long bankId) {
+            this.fileId = fileId;
+            this.fileName = fileName;
+            this.bankId = bankId;
+            touch();
+        }
+
+        synchronized void batchCompleted(Map<String, Object> batch) {
+            this.batch = batch;
+            status = JobStatus.COMPLETED;
+            touch();
+        }
+
+        synchronized void fail(String message) {
+            status = JobStatus.FAILED;
+            stages.put(stage, JobStatus.FAILED);
+            error = message;
+            touch();
+        }
+
+        synchronized boolean isFinishedBefore(long time) {
+            return (status == JobStatus.COMPLETED || status == JobStatus.FAILED) && updatedAt < time;
+        }
+
+        synchronized JobInfo snapshot() {
+            Map<String, String> stageStates = new LinkedHashMap<>();
+            int done = 0;
+            for (Map.Entry<JobStage, JobStatus> entry : stages.entrySet()) {
+                stageStates.put(entry.getKey().getValue(), entry.getValue().getValue());
+                if (entry.getValue() == JobStatus.COMPLETED || entry.getValue() == JobStatus.SKIPPED) {
+                    done++;
+                }
+            }
+            return JobInfo.builder()
+                    .jobId(jobId)
+                    .status(status.getValue())
+                    .stage(stage.getValue())
+                    .progress(done * 100 / stages.size())
+                    .stages(stageStates)
+                    .error(error)
+                    .type(type)
+                    .title(resultTitle)
+                    .itemCount(itemCount)
+                    .duplicateCount(duplicateCount)
+                    .fileId(fileId)
+                    .fileName(fileName)
+                    .bankId(bankId)
+                    .batch(batch)
+                    .createdAt(createdAt)
+                    .updatedAt(updatedAt)
+                    .build();
+        }
+
+        private void touch() {
+            updatedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.exception.BusinessException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 模型调用保护
+ * <p>
+ * 包在 ChatClient 使用的 ChatModel 外层，每次调用（含重试）依次经过：
+ * <ol>
+ *     <li>熔断器：按最近 window-size 次调用的失败率打开，open-duration 后放行少量试探调用，试探成功则关闭</li>
+ *     <li>令牌桶限速：平均 permits-per-second，允许 burst 的突发</li>
+ *     <li>自适应并发限制（AIMD）：每次成功把上限加 1/上限（约每轮加 1），遇到限流、5xx 或超时时减半</li>
+ *     <li>重试：429、5xx 和网络错误按指数退避加全抖动重试，响应带 Retry-After 时至少等待该时间；
+ *     流式调用只在尚未收到任何内容时重试</li>
+ * </ol>
+ * 熔断打开或等待许可超时抛出 {@link RejectedException}，调用方按模型不可用处理（改用备用方案）。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LlmGuard {
+
+    /**
+     * 熔断器状态，指标中 closed=0、half_open=1、open=2
+     */
+    public enum CircuitState {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    /**
+     * Spring AI 的 RetryUtils 把 HTTP 错误包装为 "状态码 - 响应体" 形式的消息
+     */
+    private static final Pattern STATUS_PREFIX = Pattern.compile("^(\\d{3})\\b");
+
+    /**
+     * 两次并发上限减半之间的最短间隔，同一波限流只减半一次
+     */
+    private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final PipelineMetrics metrics;
+
+    @Value("${app.llm.concurrency.initial:4}")
+    private int initialLimit;
+
+    @Value("${app.llm.concurrency.min:1}")
+    private int minLimit;
+
+    @Value("${app.llm.concurrency.max:16}")
+    private int maxLimit;
+
+    @Value("${app.llm.rate.permits-per-second:0}")
+    private double permitsPerSecond;
+
+    @Value("${app.llm.rate.burst:10}")
+    private int burst;
+
+    @Value("${app.llm.acquire-timeout-ms:60000}")
+    private long acquireTimeoutMs;
+
+    @Value("${app.llm.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.llm.retry.initial-backoff-ms:500}")
+    private long initialBackoffMs;
+
+    @Value("${app.llm.retry.max-backoff-ms:8000}")
+    private long maxBackoffMs;
+
+    @Value("${app.llm.circuit.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${app.llm.circuit.window-size:20}")
+    private int windowSize;
+
+    @Value("${app.llm.circuit.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${app.llm.circuit.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    @Value("${app.llm.circuit.half-open-calls:2}")
+    private int halfOpenCalls;
+
+    // ---- 自适应并发限制 ----
+    private final ReentrantLock limitLock = new ReentrantLock();
+    private final Condition limitAvailable = limitLock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+
+    // ---- 令牌桶 ----
+    private final Object bucketLock = new Object();
+    private double tokens;
+    private long lastRefillNanos;
+
+    // ---- 熔断器（以下字段由 this 保护） ----
+    private CircuitState state = CircuitState.CLOSED;
+    private boolean[] outcomes;
+    private int outcomeIndex;
+    private int outcomeCount;
+    private int failureCount;
+    private long openedAtNanos;
+    private int halfOpenInFlight;
+    private int halfOpenSucceeded;
+
+    @PostConstruct
+    public void init() {
+        minLimit = Math.max(1, minLimit);
+        maxLimit = Math.max(minLimit, maxLimit);
+        limit = Math.min(maxLimit, Math.max(minLimit, initialLimit));
+        tokens = burst;
+        lastRefillNanos = System.nanoTime();
+        outcomes = new boolean[Math.max(1, windowSize)];
+        metrics.bindLlmGuard(this);
+        log.info("模型调用保护: 并发 {}（{}~{}），限速 {}/s（突发 {}），最多尝试 {} 次，熔断阈值 {}%",
+                (int) limit, minLimit, maxLimit, permitsPerSecond > 0 ? permitsPerSecond : "不限", burst,
+                maxAttempts, failureRateThreshold);
+    }
+
+    /**
+     * 在保护下执行同步调用
+     */
+    public <T> T call(Supplier<T> call) {
+        for (int attempt = 1; ; attempt++) {
+            Admission admission = admit();
+            T result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                admission.complete(e);
+                if (!shouldRetry(e, attempt)) {
+                    throw e;
+                }
+                sleep(backoff(attempt, e));
+                continue;
+            }
+            admission.complete(null);
+            return result;
+        }
+    }
+
+    /**
+     * 在保护下执行流式调用，许可在整个流期间持有；订阅时可能阻塞等待许可
+     */
+    public <T> Flux<T> stream(Supplier<Flux<T>> stream) {
+        return streamAttempt(stream, 1);
+    }
+
+    private <T> Flux<T> streamAttempt(Supplier<Flux<T>> stream, int attempt) {
+        return Flux.defer(() -> {
+            Admission admission = admit();
+            AtomicBoolean emitted = new AtomicBoolean();
+            return stream.get()
+                    .doOnNext(value -> emitted.set(true))
+                    .doOnComplete(() -> admission.complete(null))
+                    .doOnError(admission::complete)
+                    .doOnCancel(admission::release)
+                    .onErrorResume(e -> {
+                        if (emitted.get() || !shouldRetry(e, attempt)) {
+                            return Flux.error(e);
+                        }
+                        return Mono.delay(Duration.ofMillis(backoff(attempt, e)), Schedulers.boundedElastic())
+                                .thenMany(streamAttempt(stream, attempt + 1));
+                    });
+        });
+    }
+
+    public CircuitState getCircuitState() {
+        synchronized (this) {
+            return state;
+        }
+    }
+
+    public double getLimit() {
+        limitLock.lock();
+        try {
+            return limit;
+        } finally {
+            limitLock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        limitLock.lock();
+        try {
+            return inFlight;
+        } finally {
+            limitLock.unlock();
+        }
+    }
+
+    /**
+     * 依次通过熔断器、令牌桶和并发限制
+     */
+    private Admission admit() {
+        boolean trial = acquireCircuit();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+            acquireToken(deadline);
+            acquireLimit(deadline);
+        } catch (RuntimeException e) {
+            if (trial) {
+                releaseTrial();
+            }
+            throw e;
+        }
+        return new Admission(trial);
+    }
+
+    // ---------------------------------------------------------------- 熔断器
+
+    /**
+     * @return 是否为半开状态下的试探调用
+     */
+    private synchronized boolean acquireCircuit() {
+        if (state == CircuitState.OPEN) {
+            if (System.nanoTime() - openedAtNanos < TimeUnit.MILLISECONDS.toNanos(openDurationMs)) {
+                metrics.recordLlmRejected("circuit_open");
+                throw new RejectedException("AI 服务暂时不可用（熔断中），请稍后再试");
+            }
+            transitionTo(CircuitState.HALF_OPEN);
+        }
+        if (state == CircuitState.HALF_OPEN) {
+            if (halfOpenInFlight >= halfOpenCalls) {
+                metrics.recordLlmRejected("circuit_open");
+                throw new RejectedException("AI 服务暂时不可用（熔断试探中），请稍后再试");
+            }
+            halfOpenInFlight++;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void releaseTrial() {
+        if (state == CircuitState.HALF_OPEN) {
+            halfOpenInFlight--;
+        }
+    }
+
+    private synchronized void recordCircuit(boolean failure, boolean trial) {
+        if (trial) {
+            if (state != CircuitState.HALF_OPEN) {
+                return;
+            }
+            halfOpenInFlight--;
+            if (failure) {
+                transitionTo(CircuitState.OPEN);
+            } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                transitionTo(CircuitState.CLOSED);
+            }
+            return;
+        }
+        if (state != CircuitState.CLOSED) {
+            return;
+        }
+
+        // 环形窗口记录最近 window-size 次结果
+        if (outcomeCount == outcomes.length) {
+            if (outcomes[outcomeIndex]) {
+                failureCount--;
+            }
+        } else {
+            outcomeCount++;
+        }
+        outcomes[outcomeIndex] = failure;
+        outcomeIndex = (outcomeIndex + 1) % outcomes.length;
+        if (failure) {
+            failureCount++;
+        }
+
+        if (failure && outcomeCount >= minimumCalls && failureCount * 100 >= failureRateThreshold * outcomeCount) {
+            transitionTo(CircuitState.OPEN);
+        }
+    }
+
+    private void transitionTo(CircuitState next) {
+        if (next == CircuitState.OPEN && state == CircuitState.CLOSED) {
+            log.warn("模型调用熔断器打开：最近 {} 次调用失败 {} 次", outcomeCount, failureCount);
+        } else {
+            log.warn("模型调用熔断器状态: {} -> {}", state, next);
+        }
+        state = next;
+        halfOpenInFlight = 0;
+        halfOpenSucceeded = 0;
+        if (next == CircuitState.OPEN) {
+            openedAtNanos = System.nanoTime();
+        }
+        if (next == CircuitState.CLOSED) {
+            outcomeIndex = 0;
+            outcomeCount = 0;
+            failureCount = 0;
+        }
+    }
+
+    // ---------------------------------------------------------------- 令牌桶
+
+    private void acquireToken(long deadline) {
+        if (permitsPerSecond <= 0) {
+            return;
+        }
+
+        long waitNanos;
+        synchronized (bucketLock) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * permitsPerSecond / 1e9);
+            lastRefillNanos = now;
+            // 先预支一个令牌，余额为负时按欠额计算需要等待的时间
+            if (tokens >= 1 || now + (long) ((1 - tokens) / permitsPerSecond * 1e9) <= deadline) {
+                tokens -= 1;
+                waitNanos = tokens >= 0 ? 0 : (long) (-tokens / permitsPerSecond * 1e9);
+            } else {
+                metrics.recordLlmRejected("rate_limit");
+                throw new RejectedException("AI 调用排队过多，请稍后再试");
+            }
+        }
+        if (waitNanos > 0) {
+            sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        }
+    }
+
+    // ---------------------------------------------------------------- 自适应并发限制
+
+    private void acquireLimit(long deadline) {
+        limitLock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    metrics.recordLlmRejected("concurrency");
+                    throw new RejectedException("AI 调用并发已满，请稍后再试");
+                }
+                limitAvailable.awaitNanos(remaining);
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("等待 AI 调用许可时被中断", e);
+        } finally {
+            limitLock.unlock();
+        }
+    }
+
+    /**
+     * @param congestion null 表示只释放（取消），true 表示遇到限流/过载，false 表示成功
+     */
+    private void releaseLimit(Boolean congestion) {
+        limitLock.lock();
+        try {
+            inFlight--;
+            if (Boolean.FALSE.equals(congestion)) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            } else if (Boolean.TRUE.equals(congestion)) {
+                long now = System.nanoTime();
+                if (now - lastDecreaseNanos >= DECREASE_INTERVAL_NANOS) {
+                    lastDecreaseNanos = now;
+                    double previous = limit;
+                    limit = Math.max(minLimit, limit / 2);
+                    log.warn("模型服务过载，并发上限 {} -> {}", (int) previous, (int) limit);
+                }
+            }
+            limitAvailable.signalAll();
+        } finally {
+            limitLock.unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- 重试
+
+    private boolean shouldRetry(Throwable e, int attempt) {
+        if (attempt >= maxAttempts || e instanceof RejectedException || !isTransient(e)) {
+            return false;
+        }
+        Integer status = statusOf(e);
+        metrics.recordLlmRetry(status != null ? String.valueOf(status) : "io");
+        log.warn("AI 调用失败（第 {} 次），稍后重试: {}", attempt, e.getMessage());
+        return true;
+    }
+
+    /**
+     * 全抖动指数退避：[0, min(max, initial * 2^(attempt-1))]，响应带 Retry-After 时至少等待该时间
+     */
+    private long backoff(int attempt, Throwable e) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        Long retryAfter = retryAfterMs(e);
+        return retryAfter != null ? Math.max(delay, Math.min(retryAfter, maxBackoffMs)) : delay;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("等待 AI 调用重试时被中断", e);
+        }
+    }
+
+    /**
+     * 429、5xx、超时和网络错误视为暂时性错误：可重试，且计入熔断和并发减半
+     */
+    static boolean isTransient(Throwable e) {
+        Integer status = statusOf(e);
+        if (status != null) {
+            return status == 429 || status >= 500;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TransientAiException || t instanceof ResourceAccessException
+                    || t instanceof IOException || t instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从异常链中取 HTTP 状态码
+     */
+    static Integer statusOf(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RestClientResponseException response) {
+                return response.getStatusCode().value();
+            }
+            if ((t instanceof TransientAiException || t instanceof NonTransientAiException) && t.getMessage() != null) {
+                Matcher matcher = STATUS_PREFIX.matcher(t.getMessage());
+                if (matcher.find()) {
+                    return Integer.parseInt(matcher.group(1));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Long retryAfterMs(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RestClientResponseException response && response.getResponseHeaders() != null) {
+                String retryAfter = response.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+                if (retryAfter != null) {
+                    try {
+                        return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+                    } catch (NumberFormatException ignored) {
+                        // HTTP 日期格式，按普通退避处理
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 一次调用持有的许可，结束时只结算一次
+     */
+    private final class Admission {
+
+        private final boolean trial;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Admission(boolean trial) {
+            this.trial = trial;
+        }
+
+        /**
+         * 调用结束
+         *
+         * @param error 失败原因，成功为 null
+         */
+        void complete(Throwable error) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            if (error == null) {
+                releaseLimit(false);
+                recordCircuit(false, trial);
+            } else if (isTransient(error)) {
+                releaseLimit(true);
+                recordCircuit(true, trial);
+            } else {
+                // 非暂时性错误（如 400、鉴权失败）说明服务在正常响应：不计入熔断失败，也不调整并发上限
+                releaseLimit(null);
+                recordCircuit(false, trial);
+            }
+        }
+
+        /**
+         * 调用被取消，只归还许可
+         */
+        void release() {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            releaseLimit(null);
+            if (trial) {
+                releaseTrial();
+            }
+        }
+    }
+
+    /**
+     * 调用被保护拒绝（熔断、限速或并发等待超时），不会重试
+     */
+    public static class RejectedException extends BusinessException {
+
+        private static final long serialVersionUID = 1L;
+
+        public RejectedException(String message) {
+            super(503, message);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.pkqb.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 文件解析结果缓存
+ * <p>
+ * 以"原文件内容的 SHA-256 + 文件类型"为键，内容相同的文件不论路径都命中同一条目，文件被替换后自然失效。
+ * 内存层按访问顺序 LRU 淘汰，上限是所有条目的总字符数而不是条数；
+ * 可选的磁盘层把文本以 gzip 压缩写在专用目录 app.parse.cache.dir 下（&lt;sha256&gt;-&lt;类型&gt;.txt.gz），
+ * 重启后仍可命中，且不会在原文件所在目录写入任何东西。
+ */
+@Slf4j
+@Service
+public class ParseCacheService {
+
+    /**
+     * 磁盘缓存文件后缀
+     */
+    public static final String DISK_SUFFIX = ".txt.gz";
+
+    /**
+     * 路径到内容摘要的记忆条数上限
+     */
+    private static final int MAX_DIGESTS = 1024;
+
+    @Value("${app.parse.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.parse.cache.max-chars:20000000}")
+    private long maxChars;
+
+    @Value("${app.parse.cache.disk-enabled:true}")
+    private boolean diskEnabled;
+
+    @Value("${app.parse.cache.dir:${app.generated.path:./generated}/parse-cache}")
+    private String cacheDir;
+
+    /**
+     * 访问顺序的 LinkedHashMap，总字符数超出上限时从最久未使用的一端淘汰
+     */
+    private final LinkedHashMap<String, String> memoryCache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * "绝对路径 + 大小 + 修改时间" → 内容摘要，查询和写入同一个文件时不必重复读取整个文件
+     */
+    private final Map<String, String> digests = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_DIGESTS;
+        }
+    };
+
+    private long totalChars;
+
+    /**
+     * 查询缓存，先查内存再查磁盘
+     *
+     * @param fileType 文件类型：word/pdf（调用方已校验）
+     * @param filePath 原文件路径
+     * @return 解析后的文本，未命中返回 null
+     */
+    public String get(String fileType, String filePath) {
+        if (!enabled) {
+            return null;
+        }
+
+        String key = cacheKey(fileType, Paths.get(filePath));
+        if (key == null) {
+            return null;
+        }
+
+        synchronized (memoryCache) {
+            String text = memoryCache.get(key);
+            if (text != null) {
+                return text;
+            }
+        }
+
+        String text = readFromDisk(key);
+        if (text != null) {
+            putInMemory(key, text);
+        }
+        return text;
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param fileType 文件类型：word/pdf（调用方已校验）
+     * @param filePath 原文件路径
+     * @param text     解析后的文本
+     */
+    public void put(String fileType, String filePath, String text) {
+        if (!enabled) {
+            return;
+        }
+
+        String key = cacheKey(fileType, Paths.get(filePath));
+        if (key == null) {
+            return;
+        }
+        putInMemory(key, text);
+        writeToDisk(key, text);
+    }
+
+    /**
+     * 删除某个内容摘要对应的全部缓存（上传文件被删除时调用）
+     *
+     * @param sha256 原文件内容的十六进制 SHA-256
+     */
+    public void evict(String sha256) {
+        String prefix = sha256 + "-";
+        synchronized (memoryCache) {
+            Iterator<Map.Entry<String, String>> it = memoryCache.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, String> entry = it.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    totalChars -= entry.getValue().length();
+                    it.remove();
+                }
+            }
+        }
+
+        Path dir = Paths.get(cacheDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*" + DISK_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("删除解析缓存失败: {}", sha256, e);
+        }
+    }
+
+    private void putInMemory(String key, String text) {
+        if (text.length() > maxChars) {
+            return;
+        }
+        synchronized (memoryCache) {
+            String previous = memoryCache.put(key, text);
+            totalChars += text.length() - (previous != null ? previous.length() : 0);
+
+            Iterator<Map.Entry<String, String>> eldest = memoryCache.entrySet().iterator();
+            while (totalChars > maxChars && eldest.hasNext()) {
+                totalChars -= eldest.next().getValue().length();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * 缓存键 &lt;sha256&gt;-&lt;类型&gt;，原文件不存在或无法读取时返回 null
+     */
+    private String cacheKey(String fileType, Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            String fileKey = file.toAbsolutePath().normalize() + "|" + attributes.size() + "|"
+                    + attributes.lastModifiedTime().toMillis();
+            String digest;
+            synchronized (digests) {
+                digest = digests.get(fileKey);
+            }
+            if (digest == null) {
+                digest = sha256(file);
+                synchronized (digests) {
+                    digests.put(fileKey, digest);
+                }
+            }
+            return digest + "-" + fileType;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String readFromDisk(String key) {
+        if (!diskEnabled) {
+            return null;
+        }
+
+        Path cacheFile = diskFile(key);
+        if (!Files.exists(cacheFile)) {
+            return null;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(cacheFile))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("读取解析缓存失败: {}", cacheFile, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, String text) {
+        if (!diskEnabled) {
+            return;
+        }
+
+        Path cacheFile = diskFile(key);
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            // 先写临时文件再原子替换，避免并发读到半个文件
+            Path tmp = Files.createTempFile(cacheFile.getParent(), key, ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                out.write(text.getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入解析缓存失败: {}", cacheFile, e);
+        }
+    }
+
+    private Path diskFile(String key) {
+        return Paths.get(cacheDir, key + DISK_SUFFIX);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
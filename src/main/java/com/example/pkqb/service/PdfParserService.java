@@ -2,20 +2,53 @@ package com.example.pkqb.service;
 
 import com.example.pkqb.exception.BusinessException;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * PDF 文档解析服务
+ * <p>
+ * 文档以临时文件作为溢出区加载，每个文档在堆上最多占用 max-main-memory-mb。
+ * 页数达到 parallel-threshold-pages 时按 pages-per-range 切成页段，由 PDF 线程池中的多个 worker 并行提取，
+ * 每个 worker 独立加载文档、使用自己的 PDFTextStripper（两者都不是线程安全的），结果按页序拼接。
  */
 @Slf4j
 @Service
 public class PdfParserService {
 
+    private final Executor pdfExecutor;
+    private final int parallelism;
+    private final int parallelThresholdPages;
+    private final int pagesPerRange;
+    private final long maxMainMemoryBytes;
+
+    public PdfParserService(@Qualifier("pdfExecutor") Executor pdfExecutor,
+                            @Value("${app.pdf.parallelism:0}") int parallelism,
+                            @Value("${app.pdf.parallel-threshold-pages:32}") int parallelThresholdPages,
+                            @Value("${app.pdf.pages-per-range:16}") int pagesPerRange,
+                            @Value("${app.pdf.max-main-memory-mb:16}") long maxMainMemoryMb) {
+        this.pdfExecutor = pdfExecutor;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.parallelThresholdPages = parallelThresholdPages;
+        this.pagesPerRange = Math.max(1, pagesPerRange);
+        this.maxMainMemoryBytes = maxMainMemoryMb * 1024 * 1024;
+    }
+
     /**
      * 解析 PDF 文档为文本
      *
@@ -23,14 +56,132 @@ public class PdfParserService {
      * @return 解析后的文本
      */
     public String parse(String filePath) {
-        try (PDDocument document = PDDocument.load(new File(filePath))) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            stripper.setSortByPosition(true);
-            String text = stripper.getText(document);
-            return text.trim();
+        return parse(filePath, null);
+    }
+
+    /**
+     * 解析 PDF 文档为文本，并按页序逐段回调
+     * <p>
+     * 每个页段提取完成且之前的页段都已回调后立即回调，下游可以在最后一页提取完之前开始处理。
+     *
+     * @param filePath     文件路径
+     * @param pageListener 页段文本回调（在调用线程上按页序执行），可以为 null
+     * @return 解析后的文本
+     */
+    public String parse(String filePath, Consumer<String> pageListener) {
+        File file = new File(filePath);
+        try {
+            int pageCount;
+            try (PDDocument document = load(file)) {
+                pageCount = document.getNumberOfPages();
+                if (parallelism <= 1 || pageCount < parallelThresholdPages) {
+                    return extractSequential(document, pageCount, pageListener).trim();
+                }
+            }
+            return extractParallel(file, pageCount, pageListener).trim();
         } catch (IOException e) {
             log.error("解析 PDF 文档失败", e);
             throw new BusinessException("解析 PDF 文档失败: " + e.getMessage());
         }
     }
+
+    /**
+     * 单线程按页段顺序提取
+     */
+    private String extractSequential(PDDocument document, int pageCount, Consumer<String> pageListener)
+            throws IOException {
+        PDFTextStripper stripper = newStripper();
+        StringBuilder text = new StringBuilder();
+        for (int start = 1; start <= pageCount; start += pagesPerRange) {
+            String part = extractRange(document, stripper, start, pageCount);
+            text.append(part);
+            if (pageListener != null) {
+                pageListener.accept(part);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * 多个 worker 并行提取，调用线程按页序等待并拼接
+     * <p>
+     * 页段按轮转方式分给 worker（worker i 处理第 i、i+n、i+2n… 段），每个 worker 只加载一次文档，
+     * 且靠前的页段总是先被提取，便于尽早回调。
+     */
+    private String extractParallel(File file, int pageCount, Consumer<String> pageListener) throws IOException {
+        int rangeCount = (pageCount + pagesPerRange - 1) / pagesPerRange;
+        int workers = Math.min(parallelism, rangeCount);
+        log.info("PDF 共 {} 页，分为 {} 段由 {} 个 worker 并行提取", pageCount, rangeCount, workers);
+
+        List<CompletableFuture<String>> ranges = new ArrayList<>(rangeCount);
+        for (int i = 0; i < rangeCount; i++) {
+            ranges.add(new CompletableFuture<>());
+        }
+        AtomicBoolean cancelled = new AtomicBoolean();
+        for (int worker = 0; worker < workers; worker++) {
+            int first = worker;
+            pdfExecutor.execute(() -> extractRanges(file, pageCount, ranges, first, workers, cancelled));
+        }
+
+        StringBuilder text = new StringBuilder();
+        try {
+            for (CompletableFuture<String> range : ranges) {
+                String part = range.join();
+                text.append(part);
+                if (pageListener != null) {
+                    pageListener.accept(part);
+                }
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException io ? io.getCause() : e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        } finally {
+            // 正常结束时所有页段已完成；出错时让其余 worker 尽快停下
+            cancelled.set(true);
+        }
+        return text.toString();
+    }
+
+    /**
+     * worker：加载自己的文档，依次提取分配到的页段
+     */
+    private void extractRanges(File file, int pageCount, List<CompletableFuture<String>> ranges,
+                               int first, int step, AtomicBoolean cancelled) {
+        try (PDDocument document = load(file)) {
+            PDFTextStripper stripper = newStripper();
+            for (int i = first; i < ranges.size() && !cancelled.get(); i += step) {
+                ranges.get(i).complete(extractRange(document, stripper, i * pagesPerRange + 1, pageCount));
+            }
+        } catch (IOException e) {
+            failRanges(ranges, first, step, new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            failRanges(ranges, first, step, e);
+        }
+    }
+
+    private static void failRanges(List<CompletableFuture<String>> ranges, int first, int step, RuntimeException e) {
+        for (int i = first; i < ranges.size(); i += step) {
+            ranges.get(i).completeExceptionally(e);
+        }
+    }
+
+    private String extractRange(PDDocument document, PDFTextStripper stripper, int startPage, int pageCount)
+            throws IOException {
+        stripper.setStartPage(startPage);
+        stripper.setEndPage(Math.min(pageCount, startPage + pagesPerRange - 1));
+        return stripper.getText(document);
+    }
+
+    private PDDocument load(File file) throws IOException {
+        return PDDocument.load(file, MemoryUsageSetting.setupMixed(maxMainMemoryBytes));
+    }
+
+    private static PDFTextStripper newStripper() throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setSortByPosition(true);
+        return stripper;
+    }
 }
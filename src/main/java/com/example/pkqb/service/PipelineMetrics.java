@@ -0,0 +1,268 @@
+package com.example.pkqb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流水线指标
+ * <p>
+ * 集中定义各阶段的指标名称和标签，业务代码只调用 record 方法。指标通过 /actuator/prometheus 暴露：
+ * <ul>
+ *     <li>pkqb.parse：文件解析耗时（type=pdf/word，outcome），pkqb.parse.chars：解析出的字符数，
+ *     pkqb.parse.cache：解析缓存命中（result=hit/miss）</li>
+ *     <li>pkqb.ai.call：模型调用耗时（mode=call/stream，outcome），pkqb.ai.tokens：每次调用的 token 数（direction=input/output）</li>
+ *     <li>pkqb.ai.json：模型响应 JSON 解析耗时（outcome），pkqb.analysis.fallback：改用正则备用方案的次数（reason），
+ *     pkqb.analysis.result：分析结果来源（source=ai/regex/partial/cache），pkqb.analysis.coalesced：合并到进行中分析的请求数</li>
+ *     <li>pkqb.render：模板渲染耗时（template，target=file/response），pkqb.render.bytes：渲染输出大小，
+ *     pkqb.file.write：生成文件落盘耗时（原子替换和预压缩）</li>
+ *     <li>pkqb.llm.limit / pkqb.llm.inflight：模型调用自适应并发上限和当前并发，pkqb.llm.circuit.state：熔断器状态
+ *     （0 关闭、1 半开、2 打开），pkqb.llm.retries：重试次数（reason=状态码/io），pkqb.llm.rejected：被拒绝的调用（reason）</li>
+ *     <li>pkqb.dedup.duplicates：去重发现的近似重复题目（scope=upload/stored，action=flagged/removed）</li>
+ * </ul>
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_FAILURE = "failure";
+    public static final String OUTCOME_RECOVERED = "recovered";
+
+    public static final String MODE_CALL = "call";
+    public static final String MODE_STREAM = "stream";
+
+    public static final String FALLBACK_INVALID_JSON = "invalid_json";
+    public static final String FALLBACK_AI_ERROR = "ai_error";
+    public static final String FALLBACK_REJECTED = "rejected";
+
+    public static final String TARGET_FILE = "file";
+    public static final String TARGET_RESPONSE = "response";
+
+    public static final String DEDUP_SCOPE_UPLOAD = "upload";
+    public static final String DEDUP_SCOPE_STORED = "stored";
+
+    private final MeterRegistry registry;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Timer.Sample startTimer() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * 文件解析
+     */
+    public void recordParse(Timer.Sample sample, String fileType, String outcome, int chars) {
+        sample.stop(Timer.builder("pkqb.parse")
+                .description("文件解析耗时")
+                .tag("type", fileType)
+                .tag("outcome", outcome)
+                .register(registry));
+        if (chars >= 0) {
+            DistributionSummary.builder("pkqb.parse.chars")
+                    .description("解析出的字符数")
+                    .baseUnit("chars")
+                    .tag("type", fileType)
+                    .register(registry)
+                    .record(chars);
+        }
+    }
+
+    /**
+     * 解析缓存查询
+     */
+    public void recordParseCache(boolean hit) {
+        Counter.builder("pkqb.parse.cache")
+                .description("解析缓存查询次数")
+                .tag("result", hit ? "hit" : "miss")
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 模型调用
+     */
+    public void recordAiCall(Timer.Sample sample, String mode, String outcome) {
+        sample.stop(Timer.builder("pkqb.ai.call")
+                .description("模型调用耗时")
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    /**
+     * 模型调用的 token 用量（响应不带用量信息时忽略）
+     */
+    public void recordTokens(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        if (usage == null) {
+            return;
+        }
+        recordTokens("input", usage.getPromptTokens());
+        recordTokens("output", usage.getGenerationTokens());
+    }
+
+    private void recordTokens(String direction, Long tokens) {
+        if (tokens == null || tokens <= 0) {
+            return;
+        }
+        DistributionSummary.builder("pkqb.ai.tokens")
+                .description("每次模型调用的 token 数")
+                .baseUnit("tokens")
+                .tag("direction", direction)
+                .register(registry)
+                .record(tokens);
+    }
+
+    /**
+     * 模型响应 JSON 解析
+     *
+     * @param outcome success/failure，截断响应中取回了部分项目时为 recovered
+     */
+    public void recordJsonParse(Timer.Sample sample, String outcome) {
+        sample.stop(Timer.builder("pkqb.ai.json")
+                .description("模型响应 JSON 解析耗时")
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    /**
+     * 改用正则备用方案
+     *
+     * @param reason invalid_json（响应无法解析）/ai_error（调用失败）/rejected（被调用保护拒绝）
+     */
+    public void recordFallback(String reason) {
+        Counter.builder("pkqb.analysis.fallback")
+                .description("改用正则备用方案的次数")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 分析结果来源
+     *
+     * @param source ai/regex/partial，命中分析缓存时为 cache
+     */
+    public void recordAnalysisResult(String source) {
+        Counter.builder("pkqb.analysis.result")
+                .description("分析结果来源")
+                .tag("source", source)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 相同内容的并发分析被合并（等待进行中的分析而不是再调用一次模型）
+     */
+    public void recordCoalesced() {
+        Counter.builder("pkqb.analysis.coalesced")
+                .description("合并到进行中分析的请求数")
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 模板渲染
+     */
+    public void recordRender(Timer.Sample sample, String template, String target, String outcome) {
+        sample.stop(Timer.builder("pkqb.render")
+                .description("模板渲染耗时")
+                .tag("template", template)
+                .tag("target", target)
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    /**
+     * 渲染输出大小
+     */
+    public void recordRenderBytes(String template, long bytes) {
+        DistributionSummary.builder("pkqb.render.bytes")
+                .description("渲染输出大小")
+                .baseUnit("bytes")
+                .tag("template", template)
+                .register(registry)
+                .record(bytes);
+    }
+
+    /**
+     * 生成文件落盘
+     */
+    public void recordFileWrite(Timer.Sample sample, String outcome) {
+        sample.stop(Timer.builder("pkqb.file.write")
+                .description("生成文件落盘耗时")
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    /**
+     * 注册模型调用保护的状态指标
+     */
+    public void bindLlmGuard(LlmGuard guard) {
+        Gauge.builder("pkqb.llm.limit", guard, LlmGuard::getLimit)
+                .description("模型调用自适应并发上限")
+                .register(registry);
+        Gauge.builder("pkqb.llm.inflight", guard, LlmGuard::getInFlight)
+                .description("进行中的模型调用数")
+                .register(registry);
+        Gauge.builder("pkqb.llm.circuit.state", guard, g -> g.getCircuitState().ordinal())
+                .description("熔断器状态：0 关闭，1 半开，2 打开")
+                .register(registry);
+    }
+
+    /**
+     * 模型调用重试
+     *
+     * @param reason HTTP 状态码，网络错误为 io
+     */
+    public void recordLlmRetry(String reason) {
+        Counter.builder("pkqb.llm.retries")
+                .description("模型调用重试次数")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 模型调用被保护拒绝
+     *
+     * @param reason circuit_open/rate_limit/concurrency
+     */
+    public void recordLlmRejected(String reason) {
+        Counter.builder("pkqb.llm.rejected")
+                .description("被熔断、限速或并发限制拒绝的模型调用")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 去重发现的近似重复题目
+     *
+     * @param scope   upload（本次上传内重复）/stored（与已保存题库重复）
+     * @param removed 是否已从结果中删除
+     * @param count   题目数
+     */
+    public void recordDuplicates(String scope, boolean removed, int count) {
+        if (count == 0) {
+            return;
+        }
+        Counter.builder("pkqb.dedup.duplicates")
+                .description("去重发现的近似重复题目数")
+                .tag("scope", scope)
+                .tag("action", removed ? "removed" : "flagged")
+                .register(registry)
+                .increment(count);
+    }
+}
@@ -0,0 +1,441 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.ContentType;
+import com.example.pkqb.model.GenerateRequest;
+import com.example.pkqb.model.NoteItem;
+import com.example.pkqb.model.PageResult;
+import com.example.pkqb.model.QuestionBank;
+import com.example.pkqb.model.QuestionItem;
+import com.example.pkqb.model.SearchHit;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 题库存储服务
+ * <p>
+ * 每次生成 HTML 时把结构化的题目/笔记一并写入嵌入式 H2 数据库（表结构见 schema.sql），
+ * 之后可以分页读回、重新渲染或导出，不必再调用模型分析一遍。
+ * <p>
+ * 题库列表按 (type, created_at) 索引倒序分页；题目按主键 (bank_id, seq) 做范围查询，
+ * 翻到大题库的后几页也不需要跳过前面的行。
+ * <p>
+ * 保存和删除同步更新全文索引（{@link SearchIndexService}），启动时为数据库中尚未建索引的题库补建索引。
+ * 保存题目时在同一事务中写入去重指纹（{@link QuestionDedupService}），启动时同样为缺少指纹的题库补写。
+ */
+@Slf4j
+@Service
+public class QuestionBankService {
+
+    /**
+     * 批量插入题目时每批的条数
+     */
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private static final TypeReference<List<String>> STRING_LIST = new TypeReference<>() {
+    };
+
+    private static final String BANK_COLUMNS = "id, type, title, item_count, file_id, created_at";
+
+    private static final String INSERT_ITEM_SQL = "INSERT INTO bank_item "
+            + "(bank_id, seq, question_type, question, options, answer, explanation, title, content) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int TITLE_MAX_LENGTH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final SearchIndexService searchIndexService;
+    private final QuestionDedupService questionDedupService;
+
+    /**
+     * 分页查询每页最多返回的条数
+     */
+    private final int maxPageSize;
+
+    private final RowMapper<QuestionBank> bankRowMapper = (rs, rowNum) -> QuestionBank.builder()
+            .id(rs.getLong("id"))
+            .type(rs.getString("type"))
+            .title(rs.getString("title"))
+            .itemCount(rs.getInt("item_count"))
+            .fileId(rs.getString("file_id"))
+            .createdAt(rs.getLong("created_at"))
+            .build();
+
+    public QuestionBankService(JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               ObjectMapper objectMapper,
+                               SearchIndexService searchIndexService,
+                               QuestionDedupService questionDedupService,
+                               @Value("${app.bank.max-page-size:200}") int maxPageSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        // 前端提交的题目可能带有界面使用的额外字段，入库时忽略
+        this.objectMapper = objectMapper.copy().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.searchIndexService = searchIndexService;
+        this.questionDedupService = questionDedupService;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * 保存生成的题库（题库和全部题目在同一事务中写入）
+     * <p>
+     * HTML 文件已经生成，入库失败只记录日志，不影响生成结果。
+     *
+     * @param request 生成请求
+     * @param fileId  生成的文件ID
+     * @return 题库ID，保存失败时返回 null
+     */
+    public Long save(GenerateRequest request, String fileId) {
+        String type = normalizeType(request.getType());
+        try {
+            List<Object> items = convertItems(type, request.getItems() != null ? request.getItems() : List.of());
+            Long bankId = transactionTemplate.execute(status -> {
+                long id = insertBank(type, request.getTitle(), items.size(), fileId);
+                insertItems(id, items);
+                questionDedupService.storeFingerprints(id, items);
+                return id;
+            });
+            log.info("题库已保存: {}, 类型: {}, 条数: {}", bankId, type, items.size());
+            if (bankId != null) {
+                searchIndexService.index(bankId, items);
+            }
+            return bankId;
+        } catch (DataAccessException | IllegalArgumentException e) {
+            log.error("保存题库失败，文件ID: {}", fileId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 分页查询题库，按创建时间倒序
+     *
+     * @param type 类型：question/note，为空时不限
+     * @param from 创建时间下限（毫秒时间戳，包含），为空时不限
+     * @param to   创建时间上限（毫秒时间戳，不包含），为空时不限
+     * @param page 页码（从 0 开始）
+     * @param size 每页条数
+     */
+    public PageResult<QuestionBank> listBanks(String type, Long from, Long to, int page, int size) {
+        int pageSize = checkPage(page, size);
+
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (type != null && !type.isBlank()) {
+            ContentType contentType = ContentType.parse(type);
+            if (contentType == null) {
+                throw new BusinessException(400, "不支持的类型: " + type);
+            }
+            where.append(" AND type = ?");
+            args.add(contentType.getValue());
+        }
+        if (from != null) {
+            where.append(" AND created_at >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            where.append(" AND created_at < ?");
+            args.add(to);
+        }
+
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM question_bank" + where, Long.class, args.toArray());
+        List<Object> pageArgs = new ArrayList<>(args);
+        pageArgs.add(pageSize);
+        pageArgs.add((long) page * pageSize);
+        List<QuestionBank> banks = jdbcTemplate.query(
+                "SELECT " + BANK_COLUMNS + " FROM question_bank" + where
+                        + " ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?",
+                bankRowMapper, pageArgs.toArray());
+        return page(banks, page, pageSize, total != null ? total : 0);
+    }
+
+    /**
+     * 查询题库
+     *
+     * @throws BusinessException 题库不存在（404）
+     */
+    public QuestionBank getBank(long bankId) {
+        QuestionBank bank = findBank(bankId);
+        if (bank == null) {
+            throw new BusinessException(404, "题库不存在: " + bankId);
+        }
+        return bank;
+    }
+
+    private QuestionBank findBank(long bankId) {
+        List<QuestionBank> banks = jdbcTemplate.query(
+                "SELECT " + BANK_COLUMNS + " FROM question_bank WHERE id = ?", bankRowMapper, bankId);
+        return banks.isEmpty() ? null : banks.get(0);
+    }
+
+    /**
+     * 分页读取题库中的题目或笔记（按原顺序）
+     *
+     * @return 题目为 {@link QuestionItem}，笔记为 {@link NoteItem}
+     */
+    public PageResult<Object> getItems(long bankId, int page, int size) {
+        int pageSize = checkPage(page, size);
+        QuestionBank bank = getBank(bankId);
+        long start = (long) page * pageSize;
+        List<Object> items = start >= bank.getItemCount()
+                ? List.of()
+                : queryItems(bank, start, Math.min(start + pageSize, bank.getItemCount()));
+        return page(items, page, pageSize, bank.getItemCount());
+    }
+
+    /**
+     * 读取题库全部内容，可直接用于重新渲染
+     */
+    public GenerateRequest getGenerateRequest(long bankId) {
+        QuestionBank bank = getBank(bankId);
+        return GenerateRequest.builder()
+                .type(bank.getType())
+                .title(bank.getTitle())
+                .items(queryItems(bank, 0, bank.getItemCount()))
+                .build();
+    }
+
+    /**
+     * 删除题库及其题目
+     *
+     * @return 题库是否存在
+     */
+    public boolean delete(long bankId) {
+        boolean deleted = jdbcTemplate.update("DELETE FROM question_bank WHERE id = ?", bankId) > 0;
+        if (deleted) {
+            searchIndexService.deleteBank(bankId);
+        }
+        return deleted;
+    }
+
+    /**
+     * 全文检索题目和笔记，结果按相关度排序
+     *
+     * @param query 查询文本
+     * @param page  页码（从 0 开始）
+     * @param size  每页条数
+     */
+    public PageResult<SearchHit> search(String query, int page, int size) {
+        if (query == null || query.isBlank()) {
+            throw new BusinessException(400, "查询内容不能为空");
+        }
+        int pageSize = checkPage(page, size);
+        SearchIndexService.Hits hits = searchIndexService.search(query, (long) page * pageSize, pageSize);
+
+        Map<Long, QuestionBank> banks = new HashMap<>();
+        List<SearchHit> results = new ArrayList<>(hits.hits().size());
+        for (SearchIndexService.Hit hit : hits.hits()) {
+            QuestionBank bank = banks.computeIfAbsent(hit.bankId(), this::findBank);
+            if (bank == null) {
+                continue;
+            }
+            List<Object> item = queryItems(bank, hit.seq(), hit.seq() + 1);
+            if (item.isEmpty()) {
+                continue;
+            }
+            results.add(SearchHit.builder()
+                    .bankId(bank.getId())
+                    .bankTitle(bank.getTitle())
+                    .type(bank.getType())
+                    .seq(hit.seq())
+                    .score(hit.score())
+                    .item(item.get(0))
+                    .build());
+        }
+        return page(results, page, pageSize, hits.total());
+    }
+
+    /**
+     * 为数据库中尚未建索引的题库补建索引（首次启用检索，或异常退出时内存缓冲中的文档丢失）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexMissingBanks() {
+        Set<Long> indexed = searchIndexService.indexedBankIds();
+        List<Long> bankIds = jdbcTemplate.queryForList("SELECT id FROM question_bank ORDER BY id", Long.class);
+        int count = 0;
+        for (Long bankId : bankIds) {
+            if (indexed.contains(bankId)) {
+                continue;
+            }
+            QuestionBank bank = findBank(bankId);
+            if (bank != null) {
+                searchIndexService.index(bankId, queryItems(bank, 0, bank.getItemCount()));
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.info("已为 {} 个题库补建全文索引", count);
+        }
+    }
+
+    /**
+     * 为缺少去重指纹的题目题库补写指纹（启用去重之前保存的题库）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void fingerprintMissingBanks() {
+        List<Long> bankIds = jdbcTemplate.queryForList(
+                "SELECT id FROM question_bank b WHERE type = ? AND item_count > 0 "
+                        + "AND NOT EXISTS (SELECT 1 FROM question_fingerprint f WHERE f.bank_id = b.id) ORDER BY id",
+                Long.class, ContentType.QUESTION.getValue());
+        for (Long bankId : bankIds) {
+            QuestionBank bank = findBank(bankId);
+            if (bank != null) {
+                List<Object> items = queryItems(bank, 0, bank.getItemCount());
+                transactionTemplate.executeWithoutResult(status -> questionDedupService.storeFingerprints(bankId, items));
+            }
+        }
+        if (!bankIds.isEmpty()) {
+            log.info("已为 {} 个题库补写去重指纹", bankIds.size());
+        }
+    }
+
+    private long insertBank(String type, String title, int itemCount, String fileId) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO question_bank (type, title, item_count, file_id, created_at) VALUES (?, ?, ?, ?, ?)",
+                    new String[]{"id"});
+            ps.setString(1, type);
+            ps.setString(2, title != null && title.length() > TITLE_MAX_LENGTH ? title.substring(0, TITLE_MAX_LENGTH) : title);
+            ps.setInt(3, itemCount);
+            ps.setString(4, fileId);
+            ps.setLong(5, System.currentTimeMillis());
+            return ps;
+        }, keyHolder);
+        Number key = keyHolder.getKey();
+        if (key == null) {
+            throw new IllegalStateException("未返回题库ID");
+        }
+        return key.longValue();
+    }
+
+    /**
+     * 请求中的题目可能是模型对象，也可能是前端提交的 JSON 对象，统一转换为 {@link QuestionItem} 或 {@link NoteItem}
+     */
+    private List<Object> convertItems(String type, List<?> items) {
+        Class<?> itemClass = ContentType.QUESTION.getValue().equals(type) ? QuestionItem.class : NoteItem.class;
+        List<Object> converted = new ArrayList<>(items.size());
+        for (Object item : items) {
+            converted.add(objectMapper.convertValue(item, itemClass));
+        }
+        return converted;
+    }
+
+    private void insertItems(long bankId, List<Object> items) {
+        List<Object[]> rows = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) instanceof QuestionItem q) {
+                rows.add(new Object[]{bankId, i, q.getQuestionType(), q.getQuestion(), writeOptions(q.getOptions()),
+                        q.getAnswer(), q.getExplanation(), null, null});
+            } else if (items.get(i) instanceof NoteItem n) {
+                rows.add(new Object[]{bankId, i, null, null, null, null, null, n.getTitle(), n.getContent()});
+            }
+        }
+        for (int from = 0; from < rows.size(); from += INSERT_BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, rows.subList(from, Math.min(from + INSERT_BATCH_SIZE, rows.size())));
+        }
+    }
+
+    /**
+     * 按序号范围 [from, to) 读取，走主键索引
+     */
+    private List<Object> queryItems(QuestionBank bank, long from, long to) {
+        boolean question = ContentType.QUESTION.getValue().equals(bank.getType());
+        return jdbcTemplate.query(
+                "SELECT question_type, question, options, answer, explanation, title, content FROM bank_item "
+                        + "WHERE bank_id = ? AND seq >= ? AND seq < ? ORDER BY seq",
+                (rs, rowNum) -> question ? mapQuestion(rs) : mapNote(rs),
+                bank.getId(), from, to);
+    }
+
+    private QuestionItem mapQuestion(ResultSet rs) throws SQLException {
+        return QuestionItem.builder()
+                .questionType(rs.getString("question_type"))
+                .question(rs.getString("question"))
+                .options(readOptions(rs.getString("options")))
+                .answer(rs.getString("answer"))
+                .explanation(rs.getString("explanation"))
+                .build();
+    }
+
+    private NoteItem mapNote(ResultSet rs) throws SQLException {
+        return NoteItem.builder()
+                .title(rs.getString("title"))
+                .content(rs.getString("content"))
+                .build();
+    }
+
+    private String writeOptions(List<String> options) {
+        if (options == null || options.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(options);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("序列化选项失败", e);
+        }
+    }
+
+    private List<String> readOptions(String json) {
+        if (json == null) {
+            return List.of();
+        }
+        try {
+            return objectMapper.readValue(json, STRING_LIST);
+        } catch (JsonProcessingException e) {
+            log.warn("题目选项格式错误，按无选项处理: {}", json);
+            return List.of();
+        }
+    }
+
+    private static String normalizeType(String type) {
+        ContentType contentType = ContentType.parse(type);
+        return contentType != null ? contentType.getValue() : type;
+    }
+
+    /**
+     * 校验分页参数，返回实际使用的每页条数（超过上限时取上限）
+     */
+    private int checkPage(int page, int size) {
+        if (page < 0) {
+            throw new BusinessException(400, "页码不能小于 0");
+        }
+        if (size < 1) {
+            throw new BusinessException(400, "每页条数必须大于 0");
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    private static <T> PageResult<T> page(List<T> items, int page, int size, long total) {
+        return PageResult.<T>builder()
+                .items(items)
+                .page(page)
+                .size(size)
+                .total(total)
+                .hasNext(((long) page + 1) * size < total)
+                .build();
+    }
+}
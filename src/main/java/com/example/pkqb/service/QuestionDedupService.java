@@ -0,0 +1,473 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.model.ContentType;
+import com.example.pkqb.model.DuplicateItem;
+import com.example.pkqb.model.QuestionItem;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 题目去重服务
+ * <p>
+ * 分析完成后、生成之前，为每道题计算 MinHash 签名（题干和选项去掉题号、选项标号后按 {@link CjkBigramTokenizer} 分词，
+ * 64 个哈希函数各取最小值），两道题签名中相同位置取值相同的比例即其词集合 Jaccard 系数的估计，
+ * 不低于 threshold 的视为近似重复：
+ * <ul>
+ *     <li>本次上传内的重复：与前面出现过的题目比较</li>
+ *     <li>与已保存题库的重复：与 question_fingerprint 表中的签名比较</li>
+ * </ul>
+ * 签名按 4 个一组切成 16 段（LSH 分段），每段哈希为一个 band_key，只比较至少一段相同的候选：
+ * 相似度 0.8 的两道题成为候选的概率约 99.9%，0.3 的约 12%，按段查内存表或数据库索引，不需要和全部题目逐一比较。
+ * <p>
+ * “下列叙述正确的是”和“下列叙述错误的是”只差一两个词，相似度很高但答案相反，因此题干中否定词（不、错误、没有等）
+ * 的个数也计入签名（polarity），个数不同的题目不视为重复。
+ * <p>
+ * flag 模式只在结果中附加 duplicates 列表；merge 模式删除本次上传内的重复题目，保留的题目原样不变
+ * （不从被删除的题目复制答案或解析，近似重复的题目答案不一定相同）。
+ */
+@Slf4j
+@Service
+public class QuestionDedupService {
+
+    public static final String MODE_OFF = "off";
+    public static final String MODE_FLAG = "flag";
+    public static final String MODE_MERGE = "merge";
+
+    private static final int HASHES = 64;
+    private static final int BANDS = 16;
+    private static final int ROWS_PER_BAND = HASHES / BANDS;
+
+    /**
+     * 相似度阈值下限：更低时 LSH 分段找到候选的概率明显下降（0.5 时约 64%）
+     */
+    private static final double MIN_THRESHOLD = 0.5;
+
+    /**
+     * 特征数少于该值的短题目（如“对吗？对/错”）改一个字相似度就变化很大，只按用词完全相同判重
+     */
+    private static final int MIN_FEATURES = 6;
+
+    /**
+     * IN 查询和批量插入每批的条数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 各哈希函数 h(x) = a * x + b 的系数（固定值，保存的签名才能和新计算的签名比较；a 为奇数）
+     */
+    private static final long[] MULTIPLIERS = new long[HASHES];
+    private static final long[] ADDENDS = new long[HASHES];
+
+    static {
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < HASHES; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            MULTIPLIERS[i] = mix(seed) | 1;
+            seed += 0x9E3779B97F4A7C15L;
+            ADDENDS[i] = mix(seed);
+        }
+    }
+
+    /**
+     * 题号：“1.”、“(1)”、“1、”、“第1题”
+     */
+    private static final Pattern QUESTION_NUMBER = Pattern.compile("^\\s*(第\\s*\\d+\\s*题|[(（]?\\d+[)）.．、]?)\\s*");
+
+    /**
+     * 选项标号：“A.”、“(A)”、“A、”、“A:”
+     */
+    private static final Pattern OPTION_LABEL = Pattern.compile("^\\s*[(（]?[A-Za-z][)）.．、:：]\\s*");
+
+    /**
+     * 改变题干问法的否定词：“正确/错误”、“属于/不属于”、“有/没有”、“包括/除外”
+     */
+    private static final Pattern NEGATION = Pattern.compile("错误?|不|没有?|未|非|无|否|除外");
+
+    private static final String INSERT_FINGERPRINT_SQL =
+            "INSERT INTO question_fingerprint (bank_id, seq, features, polarity, signature) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String INSERT_BAND_SQL =
+            "INSERT INTO question_fingerprint_band (bank_id, seq, band, band_key) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PipelineMetrics pipelineMetrics;
+    private final String mode;
+    private final double threshold;
+    private final boolean dropStored;
+
+    public QuestionDedupService(JdbcTemplate jdbcTemplate,
+                                ObjectMapper objectMapper,
+                                PipelineMetrics pipelineMetrics,
+                                @Value("${app.dedup.mode:flag}") String mode,
+                                @Value("${app.dedup.threshold:0.8}") double threshold,
+                                @Value("${app.dedup.drop-stored:false}") boolean dropStored) {
+        this.jdbcTemplate = jdbcTemplate;
+        // 分析结果中的题目可能是带额外字段的 Map，转换时忽略
+        this.objectMapper = objectMapper.copy().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.pipelineMetrics = pipelineMetrics;
+        this.mode = mode != null ? mode.trim().toLowerCase(Locale.ROOT) : MODE_FLAG;
+        if (!MODE_OFF.equals(this.mode) && !MODE_FLAG.equals(this.mode) && !MODE_MERGE.equals(this.mode)) {
+            throw new IllegalArgumentException("app.dedup.mode 只能是 off/flag/merge: " + mode);
+        }
+        if (threshold < MIN_THRESHOLD || threshold > 1) {
+            throw new IllegalArgumentException("app.dedup.threshold 必须在 " + MIN_THRESHOLD + "-1.0 之间: " + threshold);
+        }
+        this.threshold = threshold;
+        this.dropStored = dropStored;
+    }
+
+    public boolean isEnabled() {
+        return !MODE_OFF.equals(mode);
+    }
+
+    /**
+     * 对分析结果去重
+     * <p>
+     * 分析结果可能来自缓存，这里不修改传入的 Map 和题目，返回新的结果（附加 duplicates 列表）；
+     * 笔记或未启用去重时原样返回。
+     *
+     * @param analysis 分析结果（type/title/templateName/items/source）
+     * @return 去重后的结果
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> dedup(Map<String, Object> analysis) {
+        if (!isEnabled() || !ContentType.QUESTION.getValue().equals(analysis.get("type"))) {
+            return analysis;
+        }
+        List<Object> items = (List<Object>) analysis.get("items");
+        if (items == null || items.isEmpty()) {
+            return analysis;
+        }
+
+        Fingerprint[] fingerprints = new Fingerprint[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            fingerprints[i] = fingerprint(toQuestion(items.get(i)));
+        }
+
+        boolean merge = MODE_MERGE.equals(mode);
+        DuplicateItem[] duplicates = new DuplicateItem[items.size()];
+
+        // 本次上传内：只和前面未被判为重复的题目比较，重复题目都指向最早出现的那道
+        Map<Long, List<Integer>> bandTable = new HashMap<>();
+        List<Integer> representatives = new ArrayList<>();
+        for (int i = 0; i < fingerprints.length; i++) {
+            Fingerprint fingerprint = fingerprints[i];
+            if (fingerprint == null) {
+                continue;
+            }
+            long[] bandKeys = fingerprint.bandKeys();
+            int bestIndex = -1;
+            double bestSimilarity = -1;
+            for (long bandKey : bandKeys) {
+                for (int candidate : bandTable.getOrDefault(bandKey, List.of())) {
+                    double similarity = similarity(fingerprint, fingerprints[candidate]);
+                    if (similarity > bestSimilarity || (similarity == bestSimilarity && candidate < bestIndex)) {
+                        bestIndex = candidate;
+                        bestSimilarity = similarity;
+                    }
+                }
+            }
+            if (bestIndex >= 0 && bestSimilarity >= threshold) {
+                duplicates[i] = DuplicateItem.builder()
+                        .index(i)
+                        .duplicateOfIndex(bestIndex)
+                        .similarity(bestSimilarity)
+                        .removed(merge)
+                        .build();
+                continue;
+            }
+            for (long bandKey : bandKeys) {
+                bandTable.computeIfAbsent(bandKey, k -> new ArrayList<>(1)).add(i);
+            }
+            representatives.add(i);
+        }
+        int uploadCount = items.size() - representatives.size() - countNull(fingerprints);
+
+        // 与已保存题库：本次上传内不重复的题目才去数据库查
+        int storedCount = findStoredDuplicates(representatives, fingerprints, duplicates, merge && dropStored);
+
+        List<DuplicateItem> duplicateList = new ArrayList<>(uploadCount + storedCount);
+        for (DuplicateItem duplicate : duplicates) {
+            if (duplicate != null) {
+                duplicateList.add(duplicate);
+            }
+        }
+        Map<String, Object> result = new HashMap<>(analysis);
+        result.put("duplicates", duplicateList);
+        if (duplicateList.isEmpty()) {
+            return result;
+        }
+
+        pipelineMetrics.recordDuplicates(PipelineMetrics.DEDUP_SCOPE_UPLOAD, merge, uploadCount);
+        pipelineMetrics.recordDuplicates(PipelineMetrics.DEDUP_SCOPE_STORED, merge && dropStored, storedCount);
+        log.info("去重完成，题目数: {}, 本次上传内重复: {}, 与已保存题库重复: {}, 模式: {}",
+                items.size(), uploadCount, storedCount, mode);
+        if (merge) {
+            result.put("items", mergeItems(items, duplicates));
+        }
+        return result;
+    }
+
+    /**
+     * 保存题目签名和分段（在保存题库的事务中调用）
+     */
+    public void storeFingerprints(long bankId, List<?> items) {
+        List<Object[]> fingerprintRows = new ArrayList<>(items.size());
+        List<Object[]> bandRows = new ArrayList<>(items.size() * BANDS);
+        for (int i = 0; i < items.size(); i++) {
+            if (!(items.get(i) instanceof QuestionItem question)) {
+                continue;
+            }
+            Fingerprint fingerprint = fingerprint(question);
+            if (fingerprint == null) {
+                continue;
+            }
+            fingerprintRows.add(new Object[]{bankId, i, fingerprint.features(), fingerprint.polarity(), fingerprint.toBytes()});
+            long[] bandKeys = fingerprint.bandKeys();
+            for (int band = 0; band < bandKeys.length; band++) {
+                bandRows.add(new Object[]{bankId, i, band, bandKeys[band]});
+            }
+        }
+        batchInsert(INSERT_FINGERPRINT_SQL, fingerprintRows);
+        batchInsert(INSERT_BAND_SQL, bandRows);
+    }
+
+    /**
+     * 在已保存的签名中查找近似重复：按 band_key 批量查询候选，再逐个估计相似度
+     *
+     * @return 找到的重复题目数
+     */
+    private int findStoredDuplicates(List<Integer> indexes, Fingerprint[] fingerprints,
+                                     DuplicateItem[] duplicates, boolean removed) {
+        if (indexes.isEmpty()) {
+            return 0;
+        }
+        Map<Long, List<Integer>> byBandKey = new HashMap<>();
+        for (int index : indexes) {
+            for (long bandKey : fingerprints[index].bandKeys()) {
+                byBandKey.computeIfAbsent(bandKey, k -> new ArrayList<>(1)).add(index);
+            }
+        }
+
+        StoredFingerprint[] best = new StoredFingerprint[fingerprints.length];
+        double[] bestSimilarity = new double[fingerprints.length];
+        Arrays.fill(bestSimilarity, -1);
+        List<Long> bandKeys = new ArrayList<>(byBandKey.keySet());
+        for (int from = 0; from < bandKeys.size(); from += BATCH_SIZE) {
+            List<Long> batch = bandKeys.subList(from, Math.min(from + BATCH_SIZE, bandKeys.size()));
+            List<StoredFingerprint> candidates = jdbcTemplate.query(
+                    "SELECT b.band_key, f.bank_id, f.seq, f.features, f.polarity, f.signature FROM question_fingerprint_band b "
+                            + "JOIN question_fingerprint f ON f.bank_id = b.bank_id AND f.seq = b.seq "
+                            + "WHERE b.band_key IN (" + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")",
+                    (rs, rowNum) -> new StoredFingerprint(rs.getLong("band_key"), rs.getLong("bank_id"), rs.getInt("seq"),
+                            Fingerprint.fromBytes(rs.getBytes("signature"), rs.getInt("features"), rs.getInt("polarity"))),
+                    batch.toArray());
+            for (StoredFingerprint candidate : candidates) {
+                // 同一对题目有多段相同时会重复比较，结果相同，不影响取最相似的一个
+                for (int index : byBandKey.get(candidate.bandKey())) {
+                    double similarity = similarity(fingerprints[index], candidate.fingerprint());
+                    if (similarity > bestSimilarity[index]
+                            || (similarity == bestSimilarity[index] && candidate.before(best[index]))) {
+                        best[index] = candidate;
+                        bestSimilarity[index] = similarity;
+                    }
+                }
+            }
+        }
+
+        int count = 0;
+        for (int index : indexes) {
+            if (best[index] != null && bestSimilarity[index] >= threshold) {
+                duplicates[index] = DuplicateItem.builder()
+                        .index(index)
+                        .bankId(best[index].bankId())
+                        .seq(best[index].seq())
+                        .similarity(bestSimilarity[index])
+                        .removed(removed)
+                        .build();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 删除标记为 removed 的题目，其余题目原样保留
+     */
+    private static List<Object> mergeItems(List<Object> items, DuplicateItem[] duplicates) {
+        List<Object> merged = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            if (duplicates[i] == null || !duplicates[i].isRemoved()) {
+                merged.add(items.get(i));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 计算题目签名：题干和各选项去掉编号后分词，对不同的词分别用 64 个哈希函数取最小值；另记录题干中的否定词个数
+     *
+     * @return 签名，没有可用文字时返回 null
+     */
+    static Fingerprint fingerprint(QuestionItem question) {
+        String stem = QUESTION_NUMBER.matcher(nullToEmpty(question.getQuestion())).replaceFirst("");
+        Set<String> tokens = new HashSet<>(CjkBigramTokenizer.tokenize(stem));
+        if (question.getOptions() != null) {
+            for (String option : question.getOptions()) {
+                tokens.addAll(CjkBigramTokenizer.tokenize(OPTION_LABEL.matcher(nullToEmpty(option)).replaceFirst("")));
+            }
+        }
+        if (tokens.isEmpty()) {
+            return null;
+        }
+
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (String token : tokens) {
+            long hash = hash(token);
+            for (int i = 0; i < HASHES; i++) {
+                // 取高 31 位，保证为非负数，按有符号比较即可
+                int value = (int) ((hash * MULTIPLIERS[i] + ADDENDS[i]) >>> 33);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return new Fingerprint(signature, tokens.size(), (int) NEGATION.matcher(stem).results().count());
+    }
+
+    /**
+     * 估计的 Jaccard 系数；否定词个数不同时为 0，任一方特征过少时只接受完全相同
+     */
+    static double similarity(Fingerprint a, Fingerprint b) {
+        if (a.polarity() != b.polarity()) {
+            return 0;
+        }
+        int same = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a.signature()[i] == b.signature()[i]) {
+                same++;
+            }
+        }
+        if (same < HASHES && (a.features() < MIN_FEATURES || b.features() < MIN_FEATURES)) {
+            return 0;
+        }
+        return (double) same / HASHES;
+    }
+
+    /**
+     * FNV-1a 64 位哈希，再打散（FNV 对相近的短串区分度不够）
+     */
+    private static long hash(String token) {
+        long hash = FNV_OFFSET;
+        for (byte b : token.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * murmur3 的 fmix64
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private void batchInsert(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+
+    /**
+     * 分析结果中的题目可能是模型对象，也可能是 Map，统一转换为 {@link QuestionItem}
+     */
+    private QuestionItem toQuestion(Object item) {
+        return item instanceof QuestionItem question ? question : objectMapper.convertValue(item, QuestionItem.class);
+    }
+
+    private static int countNull(Object[] values) {
+        int count = 0;
+        for (Object value : values) {
+            if (value == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * 题目的 MinHash 签名
+     *
+     * @param signature 各哈希函数的最小值
+     * @param features  不同特征词的个数
+     * @param polarity  题干中否定词的个数
+     */
+    record Fingerprint(int[] signature, int features, int polarity) {
+
+        /**
+         * 各段的 band_key：段号、否定词个数和该段的 4 个值一起哈希，否定词个数不同的题目不会成为候选
+         */
+        long[] bandKeys() {
+            long[] keys = new long[BANDS];
+            for (int band = 0; band < BANDS; band++) {
+                long hash = (long) polarity * BANDS + band;
+                for (int row = 0; row < ROWS_PER_BAND; row++) {
+                    hash = mix(hash * 31 + signature[band * ROWS_PER_BAND + row]);
+                }
+                keys[band] = hash;
+            }
+            return keys;
+        }
+
+        byte[] toBytes() {
+            ByteBuffer buffer = ByteBuffer.allocate(HASHES * Integer.BYTES);
+            buffer.asIntBuffer().put(signature);
+            return buffer.array();
+        }
+
+        static Fingerprint fromBytes(byte[] bytes, int features, int polarity) {
+            int[] signature = new int[HASHES];
+            ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+            return new Fingerprint(signature, features, polarity);
+        }
+    }
+
+    private record StoredFingerprint(long bandKey, long bankId, int seq, Fingerprint fingerprint) {
+
+        boolean before(StoredFingerprint other) {
+            return other == null || bankId < other.bankId || (bankId == other.bankId && seq < other.seq);
+        }
+    }
+}
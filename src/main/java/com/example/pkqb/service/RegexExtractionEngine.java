@@ -0,0 +1,355 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.model.NoteItem;
+import com.example.pkqb.model.QuestionItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 基于正则的题目/笔记提取引擎（AI 不可用时的备用方案）
+ * <p>
+ * 所有正则预编译为静态常量；提取时对 {@link CharSequence} 做单遍扫描，
+ * 每行通过 {@link Matcher#region} 在原文上匹配，不拆分行数组，也不为每行创建子串。
+ * <p>
+ * 支持的题号格式：1. / 1、 / （1） / (1) / 一、 / Q1 / 第1题；选项格式：A. / A、 / A) / （A），
+ * 同一行的多个选项（"A.甲 B.乙"、"A.甲B.乙"）以及写在题干行末尾的选项也能拆开。
+ * 大题标题（"一、单选题"、"第二部分 判断题"、"## 多选题"）不作为题目；笔记中的章节标题（"第一章 …"、"一、…"、"1.2 …"、"# …"）
+ * 即使前面没有空行也开始新的一条笔记。
+ * 无状态，线程安全。
+ */
+public class RegexExtractionEngine {
+
+    /**
+     * 判断文本是否为题目：含问号、选项标记或答案标记
+     */
+    private static final Pattern QUESTION_HINT = Pattern.compile("[？?]|[A-D][.、]|选项|(?:答案|Answer)[:：]");
+
+    /**
+     * 大题标题行，如 "一、单选题"、"二、判断题（每题2分）"、"第一部分 选择题"、"## 多选题"、"单项选择题："，不作为题目
+     */
+    private static final Pattern SECTION_HEADING = Pattern.compile(
+            "(?:[一二三四五六七八九十]+\\s*[、.．]\\s*\\S{0,8}题"
+                    + "|第\\s*[一二三四五六七八九十\\d]+\\s*(?:部分|大题|章|节|卷)\\s*\\S{0,12}"
+                    + "|#{1,6}\\s*\\S.*"
+                    + "|(?:单项|多项|不定项)?(?:选择|单选|多选|判断|填空|简答)题)"
+                    + "\\s*(?:[（(].*[)）])?\\s*[:：]?\\s*$");
+
+    /**
+     * 笔记中的章节标题行：# 标题、第一章 …、一、…（不含句读的短标题）、1.2 …
+     */
+    private static final Pattern NOTE_HEADING = Pattern.compile(
+            "(?:#{1,6}\\s*\\S.*"
+                    + "|第\\s*[一二三四五六七八九十百\\d]+\\s*[章节部分篇讲课].{0,30}"
+                    + "|[一二三四五六七八九十]+\\s*[、.．]\\s*[^。！？!?；;，,]{1,20}"
+                    + "|\\d+(?:\\.\\d+)+\\s*[^。！？!?；;，,]{1,20})$");
+
+    /**
+     * 题目行，group(1) 为题干
+     */
+    private static final Pattern QUESTION_LINE = Pattern.compile(
+            "(?:\\d+\\s*(?:[.．](?!\\d)|、)|[（(]\\d+[)）]|[一二三四五六七八九十百]+\\s*[、.．]"
+                    + "|[Qq]\\d+\\s*[.．:：、)）]?|第\\s*\\d+\\s*题\\s*[.．:：、]?)\\s*(.+)");
+
+    /**
+     * 选项行，group(1) 为选项字母，group(2) 为选项内容
+     */
+    private static final Pattern OPTION_LINE = Pattern.compile(
+            "(?:([A-H])\\s*[.．、:：)）]|[（(]([A-H])[)）])\\s*(.*)");
+
+    /**
+     * 行内选项标记，group(1) 或 group(2) 为选项字母；是否真的是选项由 {@link #isOptionStart} 按字母顺序和前一个字符判断
+     */
+    private static final Pattern INLINE_OPTION = Pattern.compile(
+            "(?:[（(]([A-H])[)）]|([A-H])\\s*[.．、:：)）])\\s*");
+
+    /**
+     * 答案行，group(1) 为答案
+     */
+    private static final Pattern ANSWER_LINE = Pattern.compile(
+            "(?:[【\\[](?:正确答案|参考答案|答案)[】\\]]|(?:正确答案|参考答案|答案|Answer|answer)\\s*[:：])\\s*(.+)");
+
+    /**
+     * 解析行，group(1) 为解析
+     */
+    private static final Pattern EXPLANATION_LINE = Pattern.compile(
+            "(?:[【\\[](?:答案解析|解析)[】\\]]|(?:答案解析|解析|Explanation|explanation)\\s*[:：])\\s*(.+)");
+
+    /**
+     * 多选答案：多个字母，可用逗号、顿号或空格分隔
+     */
+    private static final Pattern MULTI_ANSWER = Pattern.compile("[A-H](?:\\s*[,，、\\s]?\\s*[A-H])+");
+
+    /**
+     * 判断文本是否像题目
+     */
+    public boolean looksLikeQuestions(CharSequence text) {
+        return QUESTION_HINT.matcher(text).find();
+    }
+
+    /**
+     * 单遍扫描提取题目
+     */
+    public List<QuestionItem> extractQuestions(CharSequence text) {
+        List<QuestionItem> questions = new ArrayList<>();
+        Matcher heading = SECTION_HEADING.matcher(text);
+        Matcher question = QUESTION_LINE.matcher(text);
+        Matcher option = OPTION_LINE.matcher(text);
+        Matcher inlineOption = INLINE_OPTION.matcher(text);
+        Matcher answer = ANSWER_LINE.matcher(text);
+        Matcher explanation = EXPLANATION_LINE.matcher(text);
+
+        String currentQuestion = null;
+        List<String> currentOptions = new ArrayList<>();
+        String currentAnswer = null;
+        String currentExplanation = null;
+
+        int length = text.length();
+        int pos = 0;
+        while (pos < length) {
+            int lineEnd = lineEnd(text, pos);
+            int start = skipWhitespace(text, pos, lineEnd);
+            int end = trimWhitespace(text, start, lineEnd);
+            pos = lineEnd + 1;
+            if (start >= end) {
+                continue;
+            }
+
+            // 选项和答案优先于题号判断，避免 "A. 1、2、3" 之类的内容被误认为新题
+            if (lookingAt(option, start, end)) {
+                if (currentQuestion != null) {
+                    char letter = option.start(1) >= 0 ? text.charAt(option.start(1)) : text.charAt(option.start(2));
+                    // 紧接上一行的选项继续编号，如 "A.甲 B.乙" 换行 "C.丙 D.丁"
+                    addOptions(text, inlineOption, option.start(3), end, letter, currentOptions);
+                }
+                continue;
+            }
+
+            if (lookingAt(answer, start, end)) {
+                currentAnswer = group(text, answer, 1);
+                continue;
+            }
+
+            if (lookingAt(explanation, start, end)) {
+                currentExplanation = group(text, explanation, 1);
+                continue;
+            }
+
+            boolean isHeading = lookingAt(heading, start, end);
+            if (isHeading || lookingAt(question, start, end)) {
+                // 保存上一题
+                if (currentQuestion != null) {
+                    questions.add(createQuestionItem(currentQuestion, currentOptions, currentAnswer, currentExplanation));
+                }
+                currentOptions = new ArrayList<>();
+                currentQuestion = isHeading ? null : stem(text, question, inlineOption, currentOptions);
+                currentAnswer = null;
+                currentExplanation = null;
+            }
+        }
+
+        // 保存最后一题
+        if (currentQuestion != null) {
+            questions.add(createQuestionItem(currentQuestion, currentOptions, currentAnswer, currentExplanation));
+        }
+        return questions;
+    }
+
+    /**
+     * 单遍扫描提取笔记：以空行或章节标题分段，段落首行为标题，其余为内容
+     * <p>
+     * 章节标题后的空行不结束段落，标题与其下的正文属于同一条笔记；Markdown 标题去掉开头的 #。
+     */
+    public List<NoteItem> extractNotes(CharSequence text) {
+        List<NoteItem> notes = new ArrayList<>();
+        Matcher heading = NOTE_HEADING.matcher(text);
+
+        int length = text.length();
+        int pos = 0;
+        int titleStart = -1;
+        int titleEnd = -1;
+        int paragraphEnd = -1;
+        boolean headingOnly = false;
+        while (pos <= length) {
+            int lineEnd = pos < length ? lineEnd(text, pos) : length;
+            int start = skipWhitespace(text, pos, lineEnd);
+            int end = trimWhitespace(text, start, lineEnd);
+            boolean blank = start >= end;
+
+            if (!blank) {
+                boolean isHeading = lookingAt(heading, start, end);
+                if (isHeading && titleStart >= 0) {
+                    addNote(text, titleStart, titleEnd, paragraphEnd, notes);
+                    titleStart = -1;
+                }
+                if (titleStart < 0) {
+                    titleStart = isHeading ? skipHashes(text, start, end) : start;
+                    titleEnd = end;
+                    headingOnly = isHeading;
+                } else {
+                    headingOnly = false;
+                }
+                paragraphEnd = end;
+            }
+            if ((blank && !headingOnly || lineEnd >= length) && titleStart >= 0) {
+                addNote(text, titleStart, titleEnd, paragraphEnd, notes);
+                titleStart = -1;
+            }
+            pos = lineEnd + 1;
+        }
+        return notes;
+    }
+
+    private void addNote(CharSequence text, int start, int titleEnd, int end, List<NoteItem> notes) {
+        if (end - start < 10) {
+            return;
+        }
+        int contentStart = skipWhitespace(text, titleEnd, end);
+        notes.add(NoteItem.builder()
+                .title(text.subSequence(start, titleEnd).toString())
+                .content(text.subSequence(contentStart, end).toString())
+                .build());
+    }
+
+    /**
+     * 题干：行末写有 A、B… 两个以上选项时（如 "1. 下列正确的是 A.甲 B.乙"），选项拆到 options 中，题干只保留前面的部分
+     */
+    private String stem(CharSequence text, Matcher question, Matcher inlineOption, List<String> options) {
+        int stemStart = question.start(1);
+        int end = trimWhitespace(text, stemStart, question.end(1));
+        inlineOption.region(stemStart, end);
+        while (inlineOption.find()) {
+            if (isOptionStart(text, inlineOption, stemStart, 'A')) {
+                int optionsStart = inlineOption.end();
+                int stemEnd = trimWhitespace(text, stemStart, inlineOption.start());
+                List<String> inline = new ArrayList<>();
+                addOptions(text, inlineOption, optionsStart, end, 'A', inline);
+                if (inline.size() >= 2) {
+                    options.addAll(inline);
+                    return text.subSequence(stemStart, stemEnd).toString();
+                }
+                break;
+            }
+        }
+        return text.subSequence(stemStart, end).toString();
+    }
+
+    /**
+     * 添加选项，同一行中按字母顺序出现的后续选项（如 "A. 甲  B. 乙  C. 丙"、"A.甲B.乙"）拆成多项
+     *
+     * @param contentStart 第一个选项内容的起始位置
+     * @param letter       第一个选项的字母
+     */
+    private void addOptions(CharSequence text, Matcher inlineOption, int contentStart, int end, char letter,
+                            List<String> options) {
+        char expected = (char) (letter + 1);
+        inlineOption.region(contentStart, end);
+        while (inlineOption.find()) {
+            if (isOptionStart(text, inlineOption, contentStart, expected)) {
+                options.add(text.subSequence(contentStart, trimWhitespace(text, contentStart, inlineOption.start())).toString());
+                contentStart = inlineOption.end();
+                expected++;
+            }
+        }
+        options.add(text.subSequence(contentStart, trimWhitespace(text, contentStart, end)).toString());
+    }
+
+    /**
+     * 行内选项标记是否是期望的下一个选项：字母相符，且紧跟在空白或非字母数字（如汉字、标点）之后，
+     * 避免把 "维生素B." 或 "3.5B." 中的字母当作选项
+     */
+    private static boolean isOptionStart(CharSequence text, Matcher inlineOption, int from, char expected) {
+        int letterAt = inlineOption.start(1) >= 0 ? inlineOption.start(1) : inlineOption.start(2);
+        if (text.charAt(letterAt) != expected || inlineOption.start() <= from) {
+            return false;
+        }
+        char previous = text.charAt(inlineOption.start() - 1);
+        return isWhitespace(previous) || !(previous < 128 && Character.isLetterOrDigit(previous));
+    }
+
+    /**
+     * 创建题目项
+     */
+    private QuestionItem createQuestionItem(String question, List<String> options, String answer, String explanation) {
+        return QuestionItem.builder()
+                .question(question)
+                .questionType(determineQuestionType(options, answer))
+                .options(options)
+                .answer(answer != null ? answer : "A")
+                .explanation(explanation)
+                .build();
+    }
+
+    /**
+     * 判断题目类型（模型结果缺少可识别的题型时也用它推断）
+     */
+    String determineQuestionType(List<String> options, String answer) {
+        if (options.isEmpty() && answer != null && isTrueFalseAnswer(answer)) {
+            return "true_false";
+        }
+        if (options.size() == 2 && (options.contains("正确") || options.contains("错误"))) {
+            return "true_false";
+        }
+        if (answer != null && (answer.contains(",") || answer.contains("，") || answer.contains("、")
+                || MULTI_ANSWER.matcher(answer).matches())) {
+            return "multiple_choice";
+        }
+        return "single_choice";
+    }
+
+    private boolean isTrueFalseAnswer(String answer) {
+        return switch (answer) {
+            case "正确", "错误", "对", "错", "√", "×", "T", "F", "true", "false" -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean lookingAt(Matcher matcher, int start, int end) {
+        matcher.region(start, end);
+        return matcher.lookingAt();
+    }
+
+    private static String group(CharSequence text, Matcher matcher, int group) {
+        int start = matcher.start(group);
+        int end = matcher.end(group);
+        return start < 0 ? null : text.subSequence(start, trimWhitespace(text, start, end)).toString();
+    }
+
+    private static int skipHashes(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end && text.charAt(i) == '#') {
+            i++;
+        }
+        return i > start ? skipWhitespace(text, i, end) : start;
+    }
+
+    private static int lineEnd(CharSequence text, int from) {
+        int length = text.length();
+        for (int i = from; i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static int skipWhitespace(CharSequence text, int start, int end) {
+        while (start < end && isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimWhitespace(CharSequence text, int start, int end) {
+        while (end > start && isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return Character.isWhitespace(c) || c == '　' || c == ' ';
+    }
+}
@@ -0,0 +1,866 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.NoteItem;
+import com.example.pkqb.model.QuestionItem;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 题库全文检索索引
+ * <p>
+ * 索引题目的题干、选项、解析以及笔记的标题、内容，使用 {@link CjkBigramTokenizer} 分词。
+ * 新生成的题库先写入内存缓冲，缓冲达到 app.search.flush-items 条时封存，由后台线程写出为一个只读索引段（{@link IndexSegment}，
+ * 倒排表按文档编号差值 varint 压缩，查询时内存映射读取），写出前查询仍读取封存的缓冲；段数超过 app.search.max-segments 时
+ * 后台线程把最小的几个段合并，合并时丢弃已删除题库的文档，文档都已被物理删除的题库不再记录在删除列表中。
+ * 保存题库的线程只追加内存缓冲，不等待写出和合并。
+ * <p>
+ * 查询要求所有词都出现（AND），按 BM25 打分。每个段先解码文档频率最低的词的倒排表，再依次与其他词求交集，
+ * 代价取决于最稀有的词而不是文档总数。
+ * <p>
+ * 题库数据以数据库为准：关闭时写出缓冲中的文档，异常退出丢失的部分在启动时由 {@link QuestionBankService}
+ * 按数据库补建索引。
+ */
+@Slf4j
+@Service
+public class SearchIndexService {
+
+    private static final String MANIFEST_FILE = "segments";
+    private static final String DELETED_FILE = "deleted-banks";
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".idx";
+
+    /**
+     * 合并后的段不超过该大小（内存映射单个区域上限为 2GB）
+     */
+    private static final long MAX_MERGED_SEGMENT_BYTES = 1L << 30;
+
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    /**
+     * 结果排序：分数降序，同分时新题库在前，同一题库按题目顺序
+     */
+    private static final Comparator<Hit> RESULT_ORDER = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparing(Comparator.comparingLong(Hit::bankId).reversed())
+            .thenComparingInt(Hit::seq);
+
+    /**
+     * 命中的题目
+     *
+     * @param bankId 题库ID
+     * @param seq    题目在题库中的序号（从 0 开始）
+     * @param score  BM25 分数
+     */
+    public record Hit(long bankId, int seq, double score) {
+    }
+
+    /**
+     * 检索结果
+     *
+     * @param total 命中总数
+     * @param hits  当前页的命中
+     */
+    public record Hits(long total, List<Hit> hits) {
+    }
+
+    /**
+     * 查询看到的索引状态，整体替换以保证段列表、缓冲和删除集合一致
+     *
+     * @param flushing 已封存、等待后台写出的缓冲
+     * @param buffer   正在写入的缓冲
+     */
+    private record Snapshot(List<IndexSegment> segments, List<MemoryBuffer> flushing, MemoryBuffer buffer,
+                            Set<Long> deletedBanks) {
+
+        List<MemoryBuffer> buffers() {
+            List<MemoryBuffer> buffers = new ArrayList<>(flushing.size() + 1);
+            buffers.addAll(flushing);
+            buffers.add(buffer);
+            return buffers;
+        }
+    }
+
+    private final Path indexDir;
+    private final int flushItems;
+    private final int maxSegments;
+    private final int maxResults;
+
+    /**
+     * 追加缓冲、删除和替换 snapshot 串行执行，只在内存中短暂持有；查询不加这把锁
+     */
+    private final Object writeMutex = new Object();
+
+    /**
+     * 写出段和合并串行执行，期间不持有 writeMutex（只在替换 snapshot 时短暂获取）
+     */
+    private final Object flushMutex = new Object();
+
+    /**
+     * 写出封存的缓冲并合并段的后台线程
+     */
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-index-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Snapshot snapshot;
+
+    private long nextSegmentId;
+
+    public SearchIndexService(@Value("${app.search.dir}") String indexDir,
+                              @Value("${app.search.flush-items:20000}") int flushItems,
+                              @Value("${app.search.max-segments:10}") int maxSegments,
+                              @Value("${app.search.max-results:1000}") int maxResults) {
+        this.indexDir = Paths.get(indexDir);
+        this.flushItems = flushItems;
+        this.maxSegments = maxSegments;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * 打开清单中记录的索引段，清理未完成写出或已被合并的残留文件
+     * <p>
+     * 段格式版本变化或段文件损坏时丢弃整个索引，启动后由 {@link QuestionBankService} 按数据库重建。
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(indexDir);
+        List<String> names = readLines(indexDir.resolve(MANIFEST_FILE));
+        List<IndexSegment> segments = new ArrayList<>();
+        Set<Long> deleted = new HashSet<>();
+        try {
+            for (String name : names) {
+                segments.add(IndexSegment.open(indexDir.resolve(name)));
+                nextSegmentId = Math.max(nextSegmentId, segmentId(name) + 1);
+            }
+            for (String line : readLines(indexDir.resolve(DELETED_FILE))) {
+                deleted.add(Long.parseLong(line));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("全文索引无法打开，丢弃后按数据库重建: {}", e.getMessage());
+            segments.clear();
+            deleted.clear();
+            names = List.of();
+            writeManifest(segments);
+            deleteQuietly(indexDir.resolve(DELETED_FILE));
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(indexDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && !names.contains(name)) {
+                    deleteQuietly(file);
+                }
+            }
+        }
+
+        snapshot = new Snapshot(List.copyOf(segments), List.of(), new MemoryBuffer(), Set.copyOf(deleted));
+        long docs = segments.stream().mapToLong(IndexSegment::docCount).sum();
+        log.info("已打开全文索引: {}，段数: {}，文档数: {}", indexDir, segments.size(), docs);
+    }
+
+    /**
+     * 关闭时停止后台线程，写出全部内存缓冲
+     */
+    @PreDestroy
+    public void close() {
+        flushExecutor.shutdown();
+        flush();
+    }
+
+    /**
+     * 索引一个题库的全部题目或笔记
+     *
+     * @param items {@link QuestionItem} 或 {@link NoteItem}，序号即列表下标
+     */
+    public void index(long bankId, List<?> items) {
+        synchronized (writeMutex) {
+            MemoryBuffer buffer = snapshot.buffer;
+            buffer.lock.writeLock().lock();
+            try {
+                for (int seq = 0; seq < items.size(); seq++) {
+                    buffer.add(bankId, seq, CjkBigramTokenizer.tokenizeForIndex(textOf(items.get(seq))));
+                }
+            } finally {
+                buffer.lock.writeLock().unlock();
+            }
+            if (buffer.docCount >= flushItems) {
+                seal();
+                try {
+                    flushExecutor.execute(this::flushSealed);
+                } catch (RejectedExecutionException e) {
+                    // 正在关闭，close 会写出全部缓冲
+                    log.debug("全文索引后台线程已停止，缓冲在关闭时写出");
+                }
+            }
+        }
+    }
+
+    /**
+     * 删除题库：立即从查询结果中排除，合并段时物理删除
+     */
+    public void deleteBank(long bankId) {
+        synchronized (writeMutex) {
+            Snapshot current = snapshot;
+            if (current.deletedBanks.contains(bankId)) {
+                return;
+            }
+            Set<Long> deleted = new HashSet<>(current.deletedBanks);
+            deleted.add(bankId);
+            try {
+                writeLines(indexDir.resolve(DELETED_FILE), deleted.stream().map(String::valueOf).toList());
+            } catch (IOException e) {
+                log.error("保存已删除题库列表失败: {}", bankId, e);
+            }
+            snapshot = new Snapshot(current.segments, current.flushing, current.buffer, Set.copyOf(deleted));
+        }
+    }
+
+    /**
+     * 已建索引的题库ID（含内存缓冲），用于启动时补建索引
+     */
+    public Set<Long> indexedBankIds() {
+        Snapshot current = snapshot;
+        Set<Long> bankIds = new HashSet<>();
+        for (IndexSegment segment : current.segments) {
+            for (int doc = 0; doc < segment.docCount(); doc++) {
+                bankIds.add(segment.bankId(doc));
+            }
+        }
+        for (MemoryBuffer buffer : current.buffers()) {
+            buffer.lock.readLock().lock();
+            try {
+                for (int doc = 0; doc < buffer.docCount; doc++) {
+                    bankIds.add(buffer.bankIds[doc]);
+                }
+            } finally {
+                buffer.lock.readLock().unlock();
+            }
+        }
+        return bankIds;
+    }
+
+    /**
+     * 检索
+     * <p>
+     * 只在复制内存缓冲的状态时持读锁，打分时不持锁，不阻塞同时进行的写入。
+     *
+     * @param query  查询文本，分词后所有词都出现才算命中
+     * @param offset 跳过的命中数
+     * @param limit  返回的命中数
+     * @throws BusinessException offset + limit 超过 app.search.max-results（400）
+     */
+    public Hits search(String query, long offset, int limit) {
+        if (offset < 0 || limit < 0 || offset + limit > maxResults) {
+            throw new BusinessException(400, "最多只能查看前 " + maxResults + " 条结果");
+        }
+        Set<String> distinct = new LinkedHashSet<>(CjkBigramTokenizer.tokenize(query));
+        if (distinct.isEmpty() || limit == 0) {
+            return new Hits(0, List.of());
+        }
+        List<String> terms = new ArrayList<>(distinct);
+        List<byte[]> termBytes = terms.stream().map(term -> term.getBytes(StandardCharsets.UTF_8)).toList();
+
+        Snapshot current = snapshot;
+        List<BufferView> buffers = new ArrayList<>();
+        for (MemoryBuffer buffer : current.buffers()) {
+            buffers.add(buffer.view(terms));
+        }
+
+        // 每个段内各词的位置，全局文档频率和文档总数用于计算 idf
+        int segmentCount = current.segments.size();
+        int[][] ords = new int[segmentCount][terms.size()];
+        long[] df = new long[terms.size()];
+        long docCount = 0;
+        long totalLength = 0;
+        for (BufferView buffer : buffers) {
+            docCount += buffer.docCount();
+            totalLength += buffer.totalLength();
+        }
+        for (int s = 0; s < segmentCount; s++) {
+            IndexSegment segment = current.segments.get(s);
+            docCount += segment.docCount();
+            totalLength += segment.totalLength();
+            for (int t = 0; t < terms.size(); t++) {
+                int ord = segment.findTerm(termBytes.get(t));
+                ords[s][t] = ord;
+                if (ord >= 0) {
+                    df[t] += segment.df(ord);
+                }
+            }
+        }
+        for (int t = 0; t < terms.size(); t++) {
+            for (BufferView buffer : buffers) {
+                int[] postings = buffer.postings()[t];
+                if (postings != null) {
+                    df[t] += postings.length / 2;
+                }
+            }
+            if (df[t] == 0) {
+                return new Hits(0, List.of());
+            }
+        }
+
+        double[] idf = new double[terms.size()];
+        for (int t = 0; t < terms.size(); t++) {
+            idf[t] = Math.log(1 + (docCount - df[t] + 0.5) / (df[t] + 0.5));
+        }
+        double averageLength = Math.max(1, (double) totalLength / docCount);
+
+        int capacity = (int) offset + limit;
+        PriorityQueue<Hit> top = new PriorityQueue<>(capacity + 1, RESULT_ORDER.reversed());
+        long total = 0;
+        for (int s = 0; s < segmentCount; s++) {
+            IndexSegment segment = current.segments.get(s);
+            int[][] postings = new int[terms.size()][];
+            boolean all = true;
+            for (int t = 0; t < terms.size() && all; t++) {
+                all = ords[s][t] >= 0;
+            }
+            if (!all) {
+                continue;
+            }
+            for (int t = 0; t < terms.size(); t++) {
+                postings[t] = segment.postings(ords[s][t]);
+            }
+            total += collect(postings, idf, averageLength, segment::length, segment::bankId, segment::seq,
+                    current.deletedBanks, top, capacity);
+        }
+        for (BufferView buffer : buffers) {
+            if (Arrays.stream(buffer.postings()).allMatch(postings -> postings != null)) {
+                total += collect(buffer.postings(), idf, averageLength, doc -> buffer.lengths()[doc],
+                        doc -> buffer.bankIds()[doc], doc -> buffer.seqs()[doc], current.deletedBanks, top, capacity);
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(RESULT_ORDER);
+        return new Hits(total, offset >= hits.size() ? List.of() : hits.subList((int) offset, hits.size()));
+    }
+
+    /**
+     * 在一个段（或内存缓冲）内求各词倒排表的交集并打分
+     *
+     * @return 命中数（不含已删除题库）
+     */
+    private static long collect(int[][] postings, double[] idf, double averageLength,
+                                DocInt length, DocLong bankId, DocInt seq,
+                                Set<Long> deletedBanks, PriorityQueue<Hit> top, int capacity) {
+        // 从最短的倒排表开始求交集
+        Integer[] order = new Integer[postings.length];
+        for (int t = 0; t < order.length; t++) {
+            order[t] = t;
+        }
+        Arrays.sort(order, Comparator.comparingInt(t -> postings[t].length));
+
+        int first = order[0];
+        int[] docs = new int[postings[first].length / 2];
+        double[] scores = new double[docs.length];
+        int count = docs.length;
+        for (int i = 0; i < count; i++) {
+            docs[i] = postings[first][i * 2];
+            scores[i] = bm25(idf[first], postings[first][i * 2 + 1], length.get(docs[i]), averageLength);
+        }
+
+        for (int k = 1; k < order.length && count > 0; k++) {
+            int t = order[k];
+            int[] other = postings[t];
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < count && j < other.length; ) {
+                int doc = docs[i];
+                int otherDoc = other[j];
+                if (doc < otherDoc) {
+                    i++;
+                } else if (doc > otherDoc) {
+                    j += 2;
+                } else {
+                    docs[kept] = doc;
+                    scores[kept] = scores[i] + bm25(idf[t], other[j + 1], length.get(doc), averageLength);
+                    kept++;
+                    i++;
+                    j += 2;
+                }
+            }
+            count = kept;
+        }
+
+        // 常见词可能命中几十万条，只为可能进入前 capacity 名的文档创建对象
+        boolean checkDeleted = !deletedBanks.isEmpty();
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            if (checkDeleted && deletedBanks.contains(bankId.get(docs[i]))) {
+                continue;
+            }
+            total++;
+            if (top.size() >= capacity && scores[i] < top.peek().score()) {
+                continue;
+            }
+            Hit hit = new Hit(bankId.get(docs[i]), seq.get(docs[i]), scores[i]);
+            if (top.size() < capacity) {
+                top.add(hit);
+            } else if (RESULT_ORDER.compare(hit, top.peek()) < 0) {
+                top.poll();
+                top.add(hit);
+            }
+        }
+        return total;
+    }
+
+    private static double bm25(double idf, int tf, int length, double averageLength) {
+        return idf * tf * (BM25_K1 + 1) / (tf + BM25_K1 * (1 - BM25_B + BM25_B * length / averageLength));
+    }
+
+    /**
+     * 立即把全部内存缓冲写出为索引段并按需合并，在调用线程上执行；失败时保留缓冲，下次再写
+     */
+    public void flush() {
+        synchronized (flushMutex) {
+            synchronized (writeMutex) {
+                seal();
+            }
+            flushSealed();
+        }
+    }
+
+    /**
+     * 封存正在写入的缓冲，之后的写入进入新缓冲（调用方持有 writeMutex）
+     */
+    private void seal() {
+        Snapshot current = snapshot;
+        if (current.buffer.docCount == 0) {
+            return;
+        }
+        List<MemoryBuffer> flushing = new ArrayList<>(current.flushing);
+        flushing.add(current.buffer);
+        snapshot = new Snapshot(current.segments, List.copyOf(flushing), new MemoryBuffer(), current.deletedBanks);
+    }
+
+    /**
+     * 依次写出封存的缓冲，再按需合并
+     */
+    private void flushSealed() {
+        synchronized (flushMutex) {
+            for (MemoryBuffer buffer : snapshot.flushing) {
+                if (!writeOut(buffer)) {
+                    return;
+                }
+            }
+            try {
+                mergeIfNeeded();
+            } catch (IOException e) {
+                log.error("合并全文索引段失败", e);
+            }
+        }
+    }
+
+    /**
+     * 把一个封存的缓冲写出为索引段（调用方持有 flushMutex，段列表只在 flushMutex 下改变）
+     *
+     * @return 是否成功，失败时缓冲留在封存列表中
+     */
+    private boolean writeOut(MemoryBuffer buffer) {
+        IndexSegment segment;
+        List<IndexSegment> segments = new ArrayList<>(snapshot.segments);
+        try {
+            segment = writeSegment(buffer, snapshot.deletedBanks);
+            if (segment != null) {
+                segments.add(segment);
+            }
+            writeManifest(segments);
+        } catch (IOException e) {
+            log.error("写出全文索引段失败，保留在内存中", e);
+            return false;
+        }
+        synchronized (writeMutex) {
+            Snapshot current = snapshot;
+            List<MemoryBuffer> flushing = new ArrayList<>(current.flushing);
+            flushing.remove(buffer);
+            snapshot = new Snapshot(List.copyOf(segments), List.copyOf(flushing), current.buffer, current.deletedBanks);
+        }
+        log.info("全文索引写出段: {}，文档数: {}", segment != null ? segment.file().getFileName() : "-",
+                segment != null ? segment.docCount() : 0);
+        return true;
+    }
+
+    /**
+     * 段数超过上限时合并最小的一半段（合并结果不超过 {@link #MAX_MERGED_SEGMENT_BYTES}）
+     * <p>
+     * 只合并小段，大段不会在每次合并时被重写，每个文档被重写的次数与段大小的对数成正比。
+     * 合并期间不持有 writeMutex，期间新删除的题库仍保留在删除列表中。
+     */
+    private void mergeIfNeeded() throws IOException {
+        Snapshot current = snapshot;
+        if (current.segments.size() <= maxSegments) {
+            return;
+        }
+        int mergeCount = Math.max(Math.max(2, maxSegments / 2), current.segments.size() - maxSegments + 1);
+        List<IndexSegment> bySize = new ArrayList<>(current.segments);
+        bySize.sort(Comparator.comparingLong(IndexSegment::sizeBytes));
+        List<IndexSegment> toMerge = new ArrayList<>();
+        long bytes = 0;
+        for (IndexSegment segment : bySize) {
+            if (toMerge.size() >= mergeCount
+                    || toMerge.size() >= 2 && bytes + segment.sizeBytes() > MAX_MERGED_SEGMENT_BYTES) {
+                break;
+            }
+            toMerge.add(segment);
+            bytes += segment.sizeBytes();
+        }
+        if (toMerge.size() < 2) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        IndexSegment merged = mergeSegments(toMerge, current.deletedBanks);
+        List<IndexSegment> segments = new ArrayList<>(current.segments);
+        segments.removeAll(toMerge);
+        if (merged != null) {
+            segments.add(merged);
+        }
+        writeManifest(segments);
+        synchronized (writeMutex) {
+            Snapshot latest = snapshot;
+            Set<Long> deleted = remainingDeleted(segments, latest.buffers(), latest.deletedBanks);
+            if (deleted.size() < latest.deletedBanks.size()) {
+                writeLines(indexDir.resolve(DELETED_FILE), deleted.stream().map(String::valueOf).toList());
+            }
+            snapshot = new Snapshot(List.copyOf(segments), latest.flushing, latest.buffer, Set.copyOf(deleted));
+        }
+        // 正在进行的查询可能还在读旧段的映射；删除失败（如 Windows 上文件仍被映射）时留到下次启动清理
+        for (IndexSegment segment : toMerge) {
+            deleteQuietly(segment.file());
+        }
+        log.info("全文索引合并 {} 个段，耗时 {} ms，当前段数: {}", toMerge.size(),
+                System.currentTimeMillis() - start, segments.size());
+    }
+
+    /**
+     * 合并后仍有文档留在索引中的已删除题库；其余题库的文档已被物理删除，不必再在查询时排除
+     */
+    private static Set<Long> remainingDeleted(List<IndexSegment> segments, List<MemoryBuffer> buffers,
+                                              Set<Long> deletedBanks) {
+        Set<Long> remaining = new HashSet<>();
+        if (deletedBanks.isEmpty()) {
+            return remaining;
+        }
+        for (IndexSegment segment : segments) {
+            for (int doc = 0; doc < segment.docCount() && remaining.size() < deletedBanks.size(); doc++) {
+                long bankId = segment.bankId(doc);
+                if (deletedBanks.contains(bankId)) {
+                    remaining.add(bankId);
+                }
+            }
+        }
+        for (MemoryBuffer buffer : buffers) {
+            for (int doc = 0; doc < buffer.docCount; doc++) {
+                if (deletedBanks.contains(buffer.bankIds[doc])) {
+                    remaining.add(buffer.bankIds[doc]);
+                }
+            }
+        }
+        return remaining;
+    }
+
+    private IndexSegment writeSegment(MemoryBuffer buffer, Set<Long> deletedBanks) throws IOException {
+        int[] docMap = new int[buffer.docCount];
+        Path file = nextSegmentFile();
+        int kept = 0;
+        try (IndexSegmentWriter writer = new IndexSegmentWriter(file)) {
+            for (int doc = 0; doc < buffer.docCount; doc++) {
+                if (deletedBanks.contains(buffer.bankIds[doc])) {
+                    docMap[doc] = -1;
+                    continue;
+                }
+                docMap[doc] = kept++;
+                writer.addDoc(buffer.bankIds[doc], buffer.seqs[doc], buffer.lengths[doc]);
+            }
+            if (kept == 0) {
+                return null;
+            }
+
+            List<Map.Entry<byte[], IntArray>> terms = new ArrayList<>(buffer.postings.size());
+            for (Map.Entry<String, IntArray> entry : buffer.postings.entrySet()) {
+                terms.add(Map.entry(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue()));
+            }
+            terms.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+            IntArray remapped = new IntArray();
+            for (Map.Entry<byte[], IntArray> term : terms) {
+                remapped.size = 0;
+                remap(term.getValue().values, term.getValue().size, docMap, remapped);
+                writer.addTerm(term.getKey(), remapped.values, remapped.size);
+            }
+            writer.finish();
+        }
+        return IndexSegment.open(file);
+    }
+
+    /**
+     * 按顺序拼接多个段：文档编号依次后移，同一个词的倒排表首尾相接
+     */
+    private IndexSegment mergeSegments(List<IndexSegment> segments, Set<Long> deletedBanks) throws IOException {
+        int[][] docMaps = new int[segments.size()][];
+        Path file = nextSegmentFile();
+        try (IndexSegmentWriter writer = new IndexSegmentWriter(file)) {
+            int kept = 0;
+            for (int s = 0; s < segments.size(); s++) {
+                IndexSegment segment = segments.get(s);
+                docMaps[s] = new int[segment.docCount()];
+                for (int doc = 0; doc < segment.docCount(); doc++) {
+                    long bankId = segment.bankId(doc);
+                    if (deletedBanks.contains(bankId)) {
+                        docMaps[s][doc] = -1;
+                        continue;
+                    }
+                    docMaps[s][doc] = kept++;
+                    writer.addDoc(bankId, segment.seq(doc), segment.length(doc));
+                }
+            }
+            if (kept == 0) {
+                return null;
+            }
+
+            // 各段词典都按字节序排列，多路归并；词相同时按段顺序出队，保证文档编号递增
+            PriorityQueue<TermCursor> cursors = new PriorityQueue<>((a, b) -> {
+                int cmp = Arrays.compareUnsigned(a.term, b.term);
+                return cmp != 0 ? cmp : Integer.compare(a.segmentIndex, b.segmentIndex);
+            });
+            for (int s = 0; s < segments.size(); s++) {
+                TermCursor cursor = new TermCursor(segments.get(s), s);
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+            IntArray merged = new IntArray();
+            while (!cursors.isEmpty()) {
+                byte[] term = cursors.peek().term;
+                merged.size = 0;
+                while (!cursors.isEmpty() && Arrays.equals(cursors.peek().term, term)) {
+                    TermCursor cursor = cursors.poll();
+                    int[] postings = cursor.segment.postings(cursor.ord);
+                    remap(postings, postings.length, docMaps[cursor.segmentIndex], merged);
+                    if (cursor.advance()) {
+                        cursors.add(cursor);
+                    }
+                }
+                writer.addTerm(term, merged.values, merged.size);
+            }
+            writer.finish();
+        }
+        return IndexSegment.open(file);
+    }
+
+    private static void remap(int[] postings, int size, int[] docMap, IntArray target) {
+        for (int i = 0; i < size; i += 2) {
+            int doc = docMap[postings[i]];
+            if (doc >= 0) {
+                target.add(doc, postings[i + 1]);
+            }
+        }
+    }
+
+    private Path nextSegmentFile() {
+        return indexDir.resolve(SEGMENT_PREFIX + (nextSegmentId++) + SEGMENT_SUFFIX);
+    }
+
+    private void writeManifest(List<IndexSegment> segments) throws IOException {
+        writeLines(indexDir.resolve(MANIFEST_FILE),
+                segments.stream().map(segment -> segment.file().getFileName().toString()).toList());
+    }
+
+    /**
+     * 先写临时文件再原子改名，异常退出时不会留下写了一半的清单
+     */
+    private static void writeLines(Path file, List<String> lines) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static List<String> readLines(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        return Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .toList();
+    }
+
+    private static long segmentId(String name) {
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除索引文件失败，下次启动时再清理: {}", file);
+        }
+    }
+
+    /**
+     * 参与索引的文本：题目为题干、选项和解析，笔记为标题和内容
+     */
+    static String textOf(Object item) {
+        StringBuilder text = new StringBuilder();
+        if (item instanceof QuestionItem question) {
+            append(text, question.getQuestion());
+            if (question.getOptions() != null) {
+                question.getOptions().forEach(option -> append(text, option));
+            }
+            append(text, question.getExplanation());
+        } else if (item instanceof NoteItem note) {
+            append(text, note.getTitle());
+            append(text, note.getContent());
+        }
+        return text.toString();
+    }
+
+    private static void append(StringBuilder text, String value) {
+        if (value != null && !value.isEmpty()) {
+            text.append(value).append('\n');
+        }
+    }
+
+    @FunctionalInterface
+    private interface DocInt {
+        int get(int doc);
+    }
+
+    @FunctionalInterface
+    private interface DocLong {
+        long get(int doc);
+    }
+
+    /**
+     * 合并时遍历一个段的词典
+     */
+    private static final class TermCursor {
+
+        private final IndexSegment segment;
+        private final int segmentIndex;
+        private int ord = -1;
+        private byte[] term;
+
+        TermCursor(IndexSegment segment, int segmentIndex) {
+            this.segment = segment;
+            this.segmentIndex = segmentIndex;
+        }
+
+        boolean advance() {
+            if (++ord >= segment.termCount()) {
+                return false;
+            }
+            term = segment.term(ord);
+            return true;
+        }
+    }
+
+    /**
+     * 可增长的 int 数组
+     */
+    private static final class IntArray {
+
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int a, int b) {
+            if (size + 2 > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = a;
+            values[size++] = b;
+        }
+    }
+
+    /**
+     * 查询时复制的内存缓冲状态
+     * <p>
+     * 文档数组只追加、扩容时整体替换，已写入的前 docCount 个位置不会再改变，可以在锁外读取。
+     *
+     * @param postings 按查询词顺序排列的倒排表副本，缓冲中没有该词时为 null
+     */
+    private record BufferView(int docCount, long totalLength, long[] bankIds, int[] seqs, int[] lengths,
+                              int[][] postings) {
+    }
+
+    /**
+     * 尚未写出的文档：写入在 writeMutex 下进行并持写锁，查询只在 {@link #view} 时持读锁；封存后不再写入
+     */
+    private static final class MemoryBuffer {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, IntArray> postings = new HashMap<>();
+        private long[] bankIds = new long[64];
+        private int[] seqs = new int[64];
+        private int[] lengths = new int[64];
+        private int docCount;
+        private long totalLength;
+
+        BufferView view(List<String> terms) {
+            lock.readLock().lock();
+            try {
+                int[][] copies = new int[terms.size()][];
+                for (int t = 0; t < terms.size(); t++) {
+                    IntArray termPostings = postings.get(terms.get(t));
+                    if (termPostings != null) {
+                        copies[t] = Arrays.copyOf(termPostings.values, termPostings.size);
+                    }
+                }
+                return new BufferView(docCount, totalLength, bankIds, seqs, lengths, copies);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void add(long bankId, int seq, List<String> tokens) {
+            if (docCount == bankIds.length) {
+                bankIds = Arrays.copyOf(bankIds, docCount * 2);
+                seqs = Arrays.copyOf(seqs, docCount * 2);
+                lengths = Arrays.copyOf(lengths, docCount * 2);
+            }
+            int doc = docCount++;
+            bankIds[doc] = bankId;
+            seqs[doc] = seq;
+            lengths[doc] = tokens.size();
+            totalLength += tokens.size();
+
+            Map<String, Integer> frequencies = new LinkedHashMap<>();
+            for (String token : tokens) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), key -> new IntArray()).add(doc, entry.getValue());
+            }
+        }
+    }
+}
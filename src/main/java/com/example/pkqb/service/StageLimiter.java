@@ -0,0 +1,103 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.JobStage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 分阶段并发限制
+ * <p>
+ * 虚拟线程模式下线程数不再构成上限，解析、渲染的并发由这里的信号量限定，
+ * 避免成千上万的请求同时在 PDFBox 中占用大量内存。平台线程模式下同样生效。模型调用的并发由 {@link LlmGuard} 限定。
+ */
+@Slf4j
+public class StageLimiter {
+
+    private final Map<JobStage, Semaphore> semaphores = new EnumMap<>(JobStage.class);
+    private final long acquireTimeoutMs;
+
+    /**
+     * @param limits           各阶段最大并发数，未配置或小于等于 0 的阶段不限制
+     * @param acquireTimeoutMs 等待许可的最长时间
+     */
+    public StageLimiter(Map<JobStage, Integer> limits, long acquireTimeoutMs) {
+        limits.forEach((stage, limit) -> {
+            if (limit != null && limit > 0) {
+                semaphores.put(stage, new Semaphore(limit, true));
+            }
+        });
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    /**
+     * 在阶段许可内执行任务
+     */
+    public <T> T call(JobStage stage, Supplier<T> task) {
+        Permit permit = acquire(stage);
+        try {
+            return task.get();
+        } finally {
+            permit.close();
+        }
+    }
+
+    /**
+     * 获取阶段许可，用完后必须关闭（流式调用等无法用 {@link #call} 包裹的场景使用）
+     *
+     * @throws BusinessException 等待超时（503）或线程被中断
+     */
+    public Permit acquire(JobStage stage) {
+        Semaphore semaphore = semaphores.get(stage);
+        if (semaphore == null) {
+            return Permit.NONE;
+        }
+
+        try {
+            if (!semaphore.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                log.warn("{}阶段并发已满，等待 {} ms 仍未获得许可", stage.getDescription(), acquireTimeoutMs);
+                throw new BusinessException(503, stage.getDescription() + "繁忙，请稍后再试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("等待" + stage.getDescription() + "许可时被中断", e);
+        }
+        return new Permit(semaphore);
+    }
+
+    /**
+     * 当前可用许可数，不限制的阶段返回 -1
+     */
+    public int available(JobStage stage) {
+        Semaphore semaphore = semaphores.get(stage);
+        return semaphore != null ? semaphore.availablePermits() : -1;
+    }
+
+    /**
+     * 阶段许可，重复关闭只释放一次
+     */
+    public static final class Permit implements AutoCloseable {
+
+        private static final Permit NONE = new Permit(null);
+
+        private final Semaphore semaphore;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void close() {
+            if (semaphore != null && released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+}
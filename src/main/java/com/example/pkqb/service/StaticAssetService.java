@@ -0,0 +1,194 @@
+package com.example.pkqb.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 静态资源缓存
+ * <p>
+ * 启动时把 classpath:static/js 和 static/css 下的文件一次性读入内存，计算内容哈希并预先生成 gzip 版本
+ * （classpath 中存在外部工具生成的 .br 文件时一并加载）。每个文件有两个地址：
+ * <ul>
+ *     <li>原路径（如 js/main.js）：协商缓存，内容变化后 ETag 随之变化</li>
+ *     <li>带指纹的路径（如 js/main.3f2a9c1d0e.js）：内容不变地址就不变，可以永久强缓存</li>
+ * </ul>
+ * 请求时只做一次 Map 查找，不再读取 jar 或解码字符串。
+ */
+@Slf4j
+@Service
+public class StaticAssetService {
+
+    /**
+     * 缓存的目录（相对 classpath:static/）
+     */
+    private static final String[] DIRECTORIES = {"js", "css"};
+
+    /**
+     * 指纹长度（十六进制字符数）
+     */
+    private static final int FINGERPRINT_LENGTH = 10;
+
+    /**
+     * 小于该大小的文件不压缩，压缩后的头部开销抵消收益
+     */
+    private static final int MIN_COMPRESS_SIZE = 256;
+
+    /**
+     * 缓存的静态资源
+     *
+     * @param path            原路径（如 js/main.js）
+     * @param fingerprinted   带指纹的路径（如 js/main.3f2a9c1d0e.js）
+     * @param contentType     内容类型
+     * @param etag            强 ETag（内容哈希），压缩版本在此基础上加编码后缀
+     * @param identity        原始内容
+     * @param gzip            gzip 压缩内容，不比原始内容小时为 null
+     * @param brotli          brotli 压缩内容（来自 classpath 中的 .br 文件），没有时为 null
+     */
+    public record Asset(String path, String fingerprinted, MediaType contentType, String etag,
+                        byte[] identity, byte[] gzip, byte[] brotli) {
+    }
+
+    /**
+     * 原路径和带指纹路径都映射到同一个 Asset
+     */
+    private final Map<String, Asset> assets = new HashMap<>();
+
+    @PostConstruct
+    public void load() {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        long identityBytes = 0;
+        long gzipBytes = 0;
+        for (String directory : DIRECTORIES) {
+            Resource[] resources;
+            try {
+                resources = resolver.getResources("classpath:static/" + directory + "/*");
+            } catch (IOException e) {
+                throw new UncheckedIOException("扫描静态资源失败: " + directory, e);
+            }
+            for (Resource resource : resources) {
+                String fileName = resource.getFilename();
+                if (fileName == null || fileName.endsWith(".br") || fileName.endsWith(".gz") || !resource.isReadable()) {
+                    continue;
+                }
+                Asset asset = load(resource, directory + "/" + fileName);
+                assets.put(asset.path(), asset);
+                assets.put(asset.fingerprinted(), asset);
+                identityBytes += asset.identity().length;
+                gzipBytes += asset.gzip() != null ? asset.gzip().length : asset.identity().length;
+            }
+        }
+        log.info("已缓存静态资源 {} 个，原始 {} 字节，gzip 后 {} 字节", assets.size() / 2, identityBytes, gzipBytes);
+    }
+
+    /**
+     * 按原路径或带指纹的路径查找
+     *
+     * @param path 相对 static/ 的路径，如 js/main.js
+     * @return 资源，不存在时返回 null
+     */
+    public Asset get(String path) {
+        return assets.get(path);
+    }
+
+    /**
+     * 页面中引用静态资源使用的地址：已缓存时返回带指纹的 /assets 地址，否则返回原地址
+     *
+     * @param path 相对 static/ 的路径，如 css/style.css
+     */
+    public String url(String path) {
+        Asset asset = assets.get(path);
+        return asset != null ? "/assets/" + asset.fingerprinted() : "/" + path;
+    }
+
+    /**
+     * 请求的是否为带指纹的地址（可以永久缓存）
+     */
+    public boolean isFingerprinted(String path, Asset asset) {
+        return path.equals(asset.fingerprinted());
+    }
+
+    private Asset load(Resource resource, String path) {
+        try {
+            byte[] identity;
+            try (InputStream in = resource.getInputStream()) {
+                identity = in.readAllBytes();
+            }
+            String hash = sha256(identity);
+            byte[] gzip = identity.length >= MIN_COMPRESS_SIZE ? gzip(identity) : null;
+            if (gzip != null && gzip.length >= identity.length) {
+                gzip = null;
+            }
+            Resource brotliResource = resource.createRelative(resource.getFilename() + ".br");
+            byte[] brotli = null;
+            if (brotliResource.exists()) {
+                try (InputStream in = brotliResource.getInputStream()) {
+                    brotli = in.readAllBytes();
+                }
+            }
+            return new Asset(path, fingerprint(path, hash), contentTypeOf(path), hash.substring(0, 32),
+                    identity, gzip, brotli);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取静态资源失败: " + path, e);
+        }
+    }
+
+    /**
+     * 在扩展名前插入内容哈希：js/main.js → js/main.3f2a9c1d0e.js
+     */
+    private static String fingerprint(String path, String hash) {
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        String fingerprint = hash.substring(0, FINGERPRINT_LENGTH);
+        return dot > slash
+                ? path.substring(0, dot) + "." + fingerprint + path.substring(dot)
+                : path + "." + fingerprint;
+    }
+
+    private static MediaType contentTypeOf(String path) {
+        if (path.endsWith(".js") || path.endsWith(".vue")) {
+            return new MediaType("application", "javascript", StandardCharsets.UTF_8);
+        }
+        if (path.endsWith(".css")) {
+            return new MediaType("text", "css", StandardCharsets.UTF_8);
+        }
+        return MediaTypeFactory.getMediaType(path).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.exception.BusinessException;
+import com.github.jknack.handlebars.Handlebars;
+import com.github.jknack.handlebars.Template;
+import com.github.jknack.handlebars.io.ClassPathTemplateLoader;
+import com.github.jknack.handlebars.io.FileTemplateLoader;
+import com.github.jknack.handlebars.io.StringTemplateSource;
+import com.github.jknack.handlebars.io.TemplateLoader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 模板注册表
+ * <p>
+ * 模板默认从 classpath:/templates 加载（打包后的 jar 中同样可用）；配置 app.template.dir 后从该目录加载，
+ * 并用 WatchService 监听目录，文件变化后重新读取，无需重启。每个模板按内容哈希生成版本号，
+ * 内容不变时版本号不变。模板源码和编译后的 Handlebars 模板只保存一份，
+ * {@code /api/templates/{name}} 和 HTML 生成共用。
+ */
+@Slf4j
+@Service
+public class TemplateRegistry {
+
+    private static final String TEMPLATE_SUFFIX = ".html";
+
+    private static final String CLASSPATH_PREFIX = "templates/";
+
+    /**
+     * 模板名只允许字母、数字、下划线和短横线，防止路径穿越
+     */
+    private static final Pattern TEMPLATE_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    /**
+     * 版本号长度（十六进制字符数）
+     */
+    private static final int VERSION_LENGTH = 16;
+
+    /**
+     * 模板目录，为 null 时从 classpath 加载
+     */
+    private final Path templateDir;
+
+    private final boolean watch;
+
+    private final Handlebars handlebars;
+
+    private final Map<String, TemplateEntry> entries = new ConcurrentHashMap<>();
+
+    private volatile WatchService watchService;
+
+    public TemplateRegistry(@Value("${app.template.dir:}") String dir,
+                            @Value("${app.template.watch:true}") boolean watch) {
+        this.templateDir = dir != null && !dir.isBlank() ? Paths.get(dir).toAbsolutePath().normalize() : null;
+        this.watch = watch;
+
+        // 与模板来源一致，模板中引用的 partial 从同一位置加载
+        TemplateLoader loader = templateDir != null
+                ? new FileTemplateLoader(templateDir.toFile(), TEMPLATE_SUFFIX)
+                : new ClassPathTemplateLoader("/templates", TEMPLATE_SUFFIX);
+        this.handlebars = new Handlebars(loader);
+    }
+
+    /**
+     * 模板目录存在且开启监听时启动目录监听
+     */
+    @PostConstruct
+    public void init() {
+        if (templateDir == null) {
+            log.info("从 classpath:/{} 加载模板", CLASSPATH_PREFIX);
+            return;
+        }
+        if (!Files.isDirectory(templateDir)) {
+            throw new IllegalStateException("模板目录不存在: " + templateDir);
+        }
+        log.info("从目录加载模板: {}", templateDir);
+        if (watch) {
+            startWatcher();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        WatchService watcher = watchService;
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * 获取模板（源码、版本号和编译结果），首次访问时加载
+     *
+     * @param name 模板名（不含 .html 后缀）
+     * @throws BusinessException 模板名不合法（400）或模板不存在（404）
+     */
+    public TemplateEntry get(String name) {
+        if (name == null || !TEMPLATE_NAME.matcher(name).matches()) {
+            throw new BusinessException(400, "模板名不合法: " + name);
+        }
+        TemplateEntry entry = entries.get(name);
+        if (entry != null) {
+            return entry;
+        }
+        return entries.computeIfAbsent(name, this::load);
+    }
+
+    /**
+     * 获取编译后的 Handlebars 模板
+     */
+    public Template getTemplate(String name) {
+        return get(name).compiled();
+    }
+
+    private TemplateEntry load(String name) {
+        String source;
+        try {
+            source = readSource(name);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            throw new BusinessException(404, "模板不存在: " + name);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取模板失败: " + name, e);
+        }
+        TemplateEntry entry = new TemplateEntry(name, source, version(source));
+        log.info("加载模板: {}, 版本: {}, 大小: {} 字符", name, entry.getVersion(), source.length());
+        return entry;
+    }
+
+    private String readSource(String name) throws IOException {
+        String fileName = name + TEMPLATE_SUFFIX;
+        if (templateDir != null) {
+            return Files.readString(templateDir.resolve(fileName), StandardCharsets.UTF_8);
+        }
+        ClassPathResource resource = new ClassPathResource(CLASSPATH_PREFIX + fileName);
+        try (InputStream in = resource.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 重新读取模板；内容未变时保留原条目（版本号和编译结果不变），文件已删除时移除
+     */
+    private void reload(String name) {
+        TemplateEntry current = entries.get(name);
+        if (current == null) {
+            // 尚未使用过的模板，等首次访问时再加载
+            return;
+        }
+        try {
+            String source = readSource(name);
+            String version = version(source);
+            if (!version.equals(current.getVersion())) {
+                entries.put(name, new TemplateEntry(name, source, version));
+                log.info("模板已变化，重新加载: {}, 版本: {} -> {}", name, current.getVersion(), version);
+            }
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            entries.remove(name);
+            log.info("模板已删除: {}", name);
+        } catch (IOException e) {
+            // 编辑器保存过程中可能短暂读不到完整文件，保留旧版本，下一次变化事件时再读
+            log.warn("重新加载模板失败，继续使用旧版本: {}", name, e);
+        }
+    }
+
+    private void startWatcher() {
+        try {
+            WatchService watcher = FileSystems.getDefault().newWatchService();
+            templateDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchService = watcher;
+
+            Thread thread = new Thread(() -> watchTemplates(watcher), "template-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            log.info("监听模板目录变化: {}", templateDir);
+        } catch (IOException e) {
+            log.warn("启动模板目录监听失败，模板修改后需重启生效", e);
+        }
+    }
+
+    private void watchTemplates(WatchService watcher) {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // 事件丢失，无法确定哪些文件变化，全部重新读取
+                        entries.keySet().forEach(this::reload);
+                        continue;
+                    }
+                    String fileName = String.valueOf(event.context());
+                    if (fileName.endsWith(TEMPLATE_SUFFIX)) {
+                        reload(fileName.substring(0, fileName.length() - TEMPLATE_SUFFIX.length()));
+                    }
+                }
+                if (!key.reset()) {
+                    log.warn("模板目录不可再监听: {}", templateDir);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // 应用关闭
+        }
+    }
+
+    private static String version(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest).substring(0, VERSION_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 某一版本的模板：源码、版本号和（首次使用时编译的）Handlebars 模板
+     */
+    public final class TemplateEntry {
+
+        private final String name;
+        private final String source;
+        private final String version;
+        private volatile Template compiled;
+
+        private TemplateEntry(String name, String source, String version) {
+            this.name = name;
+            this.source = source;
+            this.version = version;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * 内容哈希，可直接用作 ETag
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * 编译后的模板；并发首次调用时可能重复编译，结果相同，只保留一份
+         */
+        public Template compiled() {
+            Template template = compiled;
+            if (template == null) {
+                try {
+                    template = handlebars.compile(new StringTemplateSource(name + TEMPLATE_SUFFIX, source));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("编译模板失败: " + name, e);
+                }
+                compiled = template;
+            }
+            return template;
+        }
+    }
+}
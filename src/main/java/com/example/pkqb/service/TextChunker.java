@@ -0,0 +1,117 @@
+package com.example.pkqb.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 长文本分块工具
+ * <p>
+ * 按题目编号和段落边界切分文本，保证每块不超过指定长度，且尽量不把一道题拆到两块中。
+ */
+public final class TextChunker {
+
+    /**
+     * 题目起始行：1. / 1、 / （1） / (1) / 一、 / Q1 / 第1题
+     */
+    private static final Pattern QUESTION_START = Pattern.compile(
+            "^\\s*(\\d+\\s*[.、．]|[（(]\\d+[)）]|[一二三四五六七八九十百]+、|[Qq]\\d+|第\\d+题)");
+
+    private TextChunker() {
+    }
+
+    /**
+     * 切分文本
+     *
+     * @param text     原始文本
+     * @param maxChars 每块最大字符数
+     * @return 按原顺序排列的文本块
+     */
+    public static List<String> split(String text, int maxChars) {
+        List<String> chunks = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return chunks;
+        }
+        if (maxChars <= 0 || text.length() <= maxChars) {
+            chunks.add(text);
+            return chunks;
+        }
+
+        StringBuilder current = new StringBuilder();
+        for (String block : splitBlocks(text)) {
+            if (current.length() > 0 && current.length() + block.length() > maxChars) {
+                addChunk(chunks, current);
+                current.setLength(0);
+            }
+            if (block.length() > maxChars) {
+                // 单个块本身超长，退化为按行切分
+                splitOversizedBlock(chunks, block, maxChars);
+                continue;
+            }
+            current.append(block);
+        }
+        addChunk(chunks, current);
+        return chunks;
+    }
+
+    /**
+     * 按边界拆分为不可再分的块（每块以题目起始行或空行后的段落开头）
+     */
+    private static List<String> splitBlocks(String text) {
+        List<String> blocks = new ArrayList<>();
+        StringBuilder block = new StringBuilder();
+        boolean previousBlank = false;
+
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            int next = lineEnd == -1 ? text.length() : lineEnd + 1;
+            String line = text.substring(lineStart, next);
+            boolean blank = line.isBlank();
+
+            boolean boundary = !blank && (previousBlank || QUESTION_START.matcher(line).find());
+            if (boundary && block.length() > 0) {
+                blocks.add(block.toString());
+                block.setLength(0);
+            }
+            block.append(line);
+            previousBlank = blank;
+            lineStart = next;
+        }
+        if (block.length() > 0) {
+            blocks.add(block.toString());
+        }
+        return blocks;
+    }
+
+    /**
+     * 按行切分超长块，单行仍超长时按长度硬切
+     */
+    private static void splitOversizedBlock(List<String> chunks, String block, int maxChars) {
+        StringBuilder current = new StringBuilder();
+        int lineStart = 0;
+        while (lineStart < block.length()) {
+            int lineEnd = block.indexOf('\n', lineStart);
+            int next = lineEnd == -1 ? block.length() : lineEnd + 1;
+            if (current.length() > 0 && current.length() + (next - lineStart) > maxChars) {
+                addChunk(chunks, current);
+                current.setLength(0);
+            }
+            if (next - lineStart > maxChars) {
+                for (int start = lineStart; start < next; start += maxChars) {
+                    chunks.add(block.substring(start, Math.min(next, start + maxChars)));
+                }
+            } else {
+                current.append(block, lineStart, next);
+            }
+            lineStart = next;
+        }
+        addChunk(chunks, current);
+    }
+
+    private static void addChunk(List<String> chunks, StringBuilder current) {
+        if (!current.toString().isBlank()) {
+            chunks.add(current.toString());
+        }
+    }
+}
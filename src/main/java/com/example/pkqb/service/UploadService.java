@@ -0,0 +1,437 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.config.AppConfig;
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.UploadedFile;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 上传文件保存服务
+ * <p>
+ * 上传内容以固定大小的缓冲区经 NIO 通道写入磁盘，同时计算 SHA-256，整个文件不会进入堆。
+ * 先读取文件头按魔数判断真实格式，与声明的类型不符时在读取正文之前拒绝；
+ * 声明的长度超过上限时直接拒绝，未声明长度时写入过程中超过上限也会中止并删除临时文件。
+ * <p>
+ * 存储按内容寻址：每个 SHA-256 只保留一份文件（uploadDir/&lt;sha256&gt;.&lt;ext&gt;），
+ * 索引 uploadDir/upload-index.json 记录 fileId → 摘要及各个引用。相同内容再次上传时返回已有的 fileId，
+ * 最后一个引用释放时删除文件。
+ * <p>
+ * 每次上传登记一个引用并发给上传方一个随机的上传凭证（uploadToken）。释放时必须出示该凭证，只能释放自己的引用；
+ * 按摘要秒传也必须出示该内容此前发出的凭证，单凭客户端声称的摘要不会增加引用，其余情况都要传输文件内容后由服务端计算摘要。
+ */
+@Slf4j
+@Service
+public class UploadService {
+
+    /**
+     * 读取文件头的字节数（PDF 规范允许 %PDF- 出现在前 1024 字节内）
+     */
+    private static final int HEADER_BYTES = 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] PDF_MAGIC = {'%', 'P', 'D', 'F', '-'};
+    private static final byte[] ZIP_MAGIC = {'P', 'K', 0x03, 0x04};
+    private static final byte[] OLE_MAGIC = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0,
+            (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+
+    private static final String INDEX_FILE = "upload-index.json";
+
+    private final AppConfig appConfig;
+    private final ObjectMapper objectMapper;
+    private final ParseCacheService parseCacheService;
+    private final long maxFileSize;
+
+    /**
+     * 摘要 → 存储条目，所有访问都在 this 上加锁
+     */
+    private final Map<String, StoredBlob> blobsByDigest = new HashMap<>();
+
+    /**
+     * fileId → 摘要
+     */
+    private final Map<String, String> digestsByFileId = new HashMap<>();
+
+    public UploadService(AppConfig appConfig,
+                         ObjectMapper objectMapper,
+                         ParseCacheService parseCacheService,
+                         @Value("${spring.servlet.multipart.max-file-size:50MB}") DataSize maxFileSize) {
+        this.appConfig = appConfig;
+        this.objectMapper = objectMapper;
+        this.parseCacheService = parseCacheService;
+        this.maxFileSize = maxFileSize.toBytes();
+    }
+
+    /**
+     * 加载索引，丢弃文件已不存在的条目
+     */
+    @PostConstruct
+    public synchronized void loadIndex() {
+        Path indexFile = uploadDir().resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        try {
+            List<StoredBlob> blobs = objectMapper.readValue(indexFile.toFile(), new TypeReference<>() {
+            });
+            for (StoredBlob blob : blobs) {
+                if (blob.getRefs() != null && !blob.getRefs().isEmpty()
+                        && Files.exists(blobPath(blob.getDigest(), blob.getExtension()))) {
+                    blobsByDigest.put(blob.getDigest(), blob);
+                    digestsByFileId.put(blob.getFileId(), blob.getDigest());
+                }
+            }
+            log.info("已加载上传索引，文件数: {}", blobsByDigest.size());
+        } catch (IOException e) {
+            log.warn("读取上传索引失败，已有上传文件不再参与去重: {}", indexFile, e);
+        }
+    }
+
+    /**
+     * 保存上传文件
+     *
+     * @param fileName     原始文件名
+     * @param fileType     声明的文件类型：word/pdf
+     * @param in           文件内容，由调用方关闭
+     * @param declaredSize 声明的大小（字节），未知时为 -1
+     * @return 保存结果
+     */
+    public UploadedFile save(String fileName, String fileType, InputStream in, long declaredSize) {
+        if (declaredSize > maxFileSize) {
+            throw tooLarge();
+        }
+
+        Path tmp = null;
+        try {
+            Path uploadDir = uploadDir();
+            Files.createDirectories(uploadDir);
+            tmp = uploadDir.resolve(".upload-" + UUID.randomUUID() + ".part");
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            String extension;
+            long size = 0;
+
+            ReadableByteChannel source = Channels.newChannel(in);
+            try (FileChannel target = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                // 先读文件头，格式不符时还没有写入任何内容
+                boolean eof = fill(source, buffer, HEADER_BYTES);
+                if (buffer.position() == 0) {
+                    throw new BusinessException(400, "文件不能为空");
+                }
+                extension = detectExtension(buffer.array(), buffer.position(), fileType);
+
+                while (buffer.position() > 0) {
+                    buffer.flip();
+                    size += buffer.remaining();
+                    if (size > maxFileSize) {
+                        throw tooLarge();
+                    }
+                    digest.update(buffer.array(), 0, buffer.limit());
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                    if (eof) {
+                        break;
+                    }
+                    eof = fill(source, buffer, buffer.capacity());
+                }
+            }
+
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            UploadedFile uploaded = register(tmp, sha256, extension, size, fileName, fileType);
+            tmp = null;
+            return uploaded;
+
+        } catch (IOException e) {
+            log.error("保存上传文件失败", e);
+            throw new BusinessException("保存上传文件失败: " + e.getMessage());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    log.warn("删除临时上传文件失败: {}", tmp, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按摘要查找已上传的文件，找到时登记一个新引用并直接返回，无需再传输文件内容
+     * <p>
+     * 必须同时出示该内容此前上传时发出的凭证，证明调用方确实持有这份内容。
+     *
+     * @param sha256      客户端计算的 SHA-256（十六进制）
+     * @param uploadToken 此前上传同一内容时得到的凭证
+     * @param fileName    原始文件名
+     * @param fileType    声明的文件类型：word/pdf
+     * @return 已有文件（带新凭证），不存在、凭证不符或类型不符时返回 null，调用方应改为上传文件内容
+     */
+    public synchronized UploadedFile findByDigest(String sha256, String uploadToken, String fileName, String fileType) {
+        StoredBlob blob = blobsByDigest.get(sha256.toLowerCase());
+        if (blob == null || uploadToken == null || !blob.getRefs().contains(uploadToken)
+                || !matchesType(blob.getExtension(), fileType)) {
+            return null;
+        }
+        String token = addRef(blob);
+        saveIndex();
+        log.info("按摘要命中已上传文件: {}, 引用数: {}", blob.getFileId(), blob.getRefs().size());
+        return toUploadedFile(blob, fileName, fileType, true, token);
+    }
+
+    /**
+     * 获取 fileId 对应的文件
+     *
+     * @return 文件信息（原始文件名为 fileId），fileId 不存在时返回 null
+     */
+    public synchronized UploadedFile getFile(String fileId) {
+        String digest = digestsByFileId.get(fileId);
+        if (digest == null) {
+            return null;
+        }
+        StoredBlob blob = blobsByDigest.get(digest);
+        return toUploadedFile(blob, fileId, "pdf".equals(blob.getExtension()) ? "pdf" : "word", false, null);
+    }
+
+    /**
+     * 获取 fileId 对应的文件路径
+     *
+     * @return 文件路径，fileId 不存在时返回 null
+     */
+    public String getFilePath(String fileId) {
+        UploadedFile file = getFile(fileId);
+        return file != null ? file.getFilePath() : null;
+    }
+
+    /**
+     * 释放上传凭证对应的引用，最后一个引用释放时删除文件
+     *
+     * @param fileId      文件ID
+     * @param uploadToken 上传时得到的凭证
+     * @return fileId 是否存在
+     * @throws BusinessException 凭证不属于该文件（或已释放）时返回 403
+     */
+    public synchronized boolean release(String fileId, String uploadToken) {
+        String digest = digestsByFileId.get(fileId);
+        if (digest == null) {
+            return false;
+        }
+        StoredBlob blob = blobsByDigest.get(digest);
+        if (uploadToken == null || !blob.getRefs().remove(uploadToken)) {
+            throw new BusinessException(403, "上传凭证无效，不能释放该文件");
+        }
+        if (blob.getRefs().isEmpty()) {
+            blobsByDigest.remove(digest);
+            digestsByFileId.remove(fileId);
+            Path file = blobPath(digest, blob.getExtension());
+            try {
+                Files.deleteIfExists(file);
+                parseCacheService.evict(digest);
+            } catch (IOException e) {
+                log.warn("删除上传文件失败: {}", digest, e);
+            }
+            log.info("上传文件引用归零，已删除: {}", fileId);
+        }
+        saveIndex();
+        return true;
+    }
+
+    /**
+     * 登记写好的临时文件：内容已存在时删除临时文件并增加引用，否则移动到内容寻址路径；两种情况都发出新凭证
+     */
+    private synchronized UploadedFile register(Path tmp, String sha256, String extension, long size,
+                                               String fileName, String fileType) throws IOException {
+        StoredBlob blob = blobsByDigest.get(sha256);
+        boolean duplicate = blob != null;
+        if (duplicate) {
+            Files.deleteIfExists(tmp);
+        } else {
+            Path filePath = blobPath(sha256, extension);
+            Files.move(tmp, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            blob = new StoredBlob(UUID.randomUUID().toString(), sha256, extension, size, new HashSet<>(),
+                    System.currentTimeMillis());
+            blobsByDigest.put(sha256, blob);
+            digestsByFileId.put(blob.getFileId(), sha256);
+            log.info("文件保存成功: {}, 大小: {}, SHA-256: {}", filePath, size, sha256);
+        }
+        String token = addRef(blob);
+        if (duplicate) {
+            log.info("上传内容已存在，复用文件: {}, 引用数: {}", blob.getFileId(), blob.getRefs().size());
+        }
+        saveIndex();
+        return toUploadedFile(blob, fileName, fileType, duplicate, token);
+    }
+
+    /**
+     * 登记一个引用并返回其凭证（UUID 由 SecureRandom 生成，不可猜测）
+     */
+    private static String addRef(StoredBlob blob) {
+        String token = UUID.randomUUID().toString();
+        blob.getRefs().add(token);
+        return token;
+    }
+
+    private UploadedFile toUploadedFile(StoredBlob blob, String fileName, String fileType, boolean duplicate,
+                                        String uploadToken) {
+        return UploadedFile.builder()
+                .fileId(blob.getFileId())
+                .filePath(blobPath(blob.getDigest(), blob.getExtension()).toString())
+                .fileName(fileName)
+                .fileType(fileType.toLowerCase())
+                .size(blob.getSize())
+                .sha256(blob.getDigest())
+                .duplicate(duplicate)
+                .uploadToken(uploadToken)
+                .build();
+    }
+
+    /**
+     * 写出索引（先写临时文件再原子替换）
+     */
+    private void saveIndex() {
+        Path indexFile = uploadDir().resolve(INDEX_FILE);
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path tmp = Files.createTempFile(indexFile.getParent(), INDEX_FILE, ".tmp");
+            objectMapper.writeValue(tmp.toFile(), new ArrayList<>(blobsByDigest.values()));
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入上传索引失败: {}", indexFile, e);
+        }
+    }
+
+    private Path uploadDir() {
+        return Paths.get(appConfig.getUploadPath());
+    }
+
+    private Path blobPath(String digest, String extension) {
+        return uploadDir().resolve(digest + "." + extension);
+    }
+
+    private static boolean matchesType(String extension, String fileType) {
+        return "pdf".equalsIgnoreCase(fileType)
+                ? "pdf".equals(extension)
+                : "word".equalsIgnoreCase(fileType) && ("docx".equals(extension) || "doc".equals(extension));
+    }
+
+    /**
+     * 读取直到缓冲区至少有 minBytes 字节或到达末尾
+     *
+     * @return 是否已到达末尾
+     */
+    private static boolean fill(ReadableByteChannel source, ByteBuffer buffer, int minBytes) throws IOException {
+        while (buffer.position() < minBytes) {
+            if (source.read(buffer) == -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按魔数判断真实格式并返回保存用的扩展名（不信任原始文件名的扩展名）
+     */
+    private static String detectExtension(byte[] header, int length, String fileType) {
+        if ("pdf".equalsIgnoreCase(fileType)) {
+            if (indexOf(header, length, PDF_MAGIC) >= 0) {
+                return "pdf";
+            }
+        } else if ("word".equalsIgnoreCase(fileType)) {
+            if (startsWith(header, length, ZIP_MAGIC)) {
+                return "docx";
+            }
+            if (startsWith(header, length, OLE_MAGIC)) {
+                return "doc";
+            }
+        } else {
+            throw new BusinessException(400, "不支持的文件类型，仅支持 Word 和 PDF 文件");
+        }
+        throw new BusinessException(415, "文件内容与类型不符，仅支持 Word 和 PDF 文件");
+    }
+
+    private static boolean startsWith(byte[] data, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, int length, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= Math.min(length, HEADER_BYTES) - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private BusinessException tooLarge() {
+        return new BusinessException(413, "文件大小超过限制，最大允许 " + DataSize.ofBytes(maxFileSize).toMegabytes() + "MB");
+    }
+
+    /**
+     * 索引条目：一份内容寻址的文件
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static final class StoredBlob {
+        private String fileId;
+        private String digest;
+        private String extension;
+        private long size;
+
+        /**
+         * 各引用的上传凭证
+         */
+        private Set<String> refs;
+
+        private long createdAt;
+    }
+}
@@ -4,13 +4,12 @@ import com.example.pkqb.exception.BusinessException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.hwpf.HWPFDocument;
 import org.apache.poi.hwpf.extractor.WordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.usermodel.XWPFParagraph;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * Word 文档解析服务
@@ -45,22 +44,11 @@ public class WordParserService {
 
     /**
      * 解析 .docx 格式
+     * <p>
+     * 流式读取 word/document.xml，段落和表格单元格按文档顺序输出，不构建 XWPFDocument。
      */
     private String parseDocx(String filePath) throws IOException {
-        try (FileInputStream fis = new FileInputStream(filePath);
-             XWPFDocument document = new XWPFDocument(fis)) {
-
-            StringBuilder text = new StringBuilder();
-
-            for (XWPFParagraph paragraph : document.getParagraphs()) {
-                String paragraphText = paragraph.getText();
-                if (paragraphText != null && !paragraphText.trim().isEmpty()) {
-                    text.append(paragraphText).append("\n");
-                }
-            }
-
-            return text.toString().trim();
-        }
+        return DocxTextExtractor.extract(Paths.get(filePath));
     }
 
     /**
@@ -0,0 +1,56 @@
+-- 题库：每次生成（/api/generate 或流水线任务）保存一条
+CREATE TABLE IF NOT EXISTS question_bank (
+    id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+    type        VARCHAR(16)   NOT NULL,
+    title       VARCHAR(500),
+    item_count  INT           NOT NULL,
+    file_id     VARCHAR(64),
+    created_at  BIGINT        NOT NULL
+);
+
+-- 按类型筛选并按创建时间倒序分页
+CREATE INDEX IF NOT EXISTS idx_bank_type_created ON question_bank (type, created_at DESC, id DESC);
+-- 不限类型时按创建时间倒序分页
+CREATE INDEX IF NOT EXISTS idx_bank_created ON question_bank (created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_bank_file ON question_bank (file_id);
+
+-- 题目或笔记项：题目使用 question/question_type/options/answer/explanation，笔记使用 title/content
+-- 主键 (bank_id, seq) 即按题库分页读取的索引
+CREATE TABLE IF NOT EXISTS bank_item (
+    bank_id        BIGINT        NOT NULL,
+    seq            INT           NOT NULL,
+    question_type  VARCHAR(32),
+    question       CLOB,
+    options        CLOB,
+    answer         CLOB,
+    explanation    CLOB,
+    title          VARCHAR(1000),
+    content        CLOB,
+    PRIMARY KEY (bank_id, seq),
+    FOREIGN KEY (bank_id) REFERENCES question_bank (id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_item_question_type ON bank_item (question_type, bank_id);
+
+-- 题目 MinHash 签名（去重用）：signature 为 64 个最小哈希值（各 4 字节，共 256 字节），features 为题目的不同特征词数，polarity 为题干中的否定词个数
+CREATE TABLE IF NOT EXISTS question_fingerprint (
+    bank_id    BIGINT          NOT NULL,
+    seq        INT             NOT NULL,
+    features   INT             NOT NULL,
+    polarity   INT             NOT NULL,
+    signature  VARBINARY(256)  NOT NULL,
+    PRIMARY KEY (bank_id, seq),
+    FOREIGN KEY (bank_id) REFERENCES question_bank (id) ON DELETE CASCADE
+);
+
+-- LSH 分段：签名按 4 个一组切成 16 段，每段哈希为一个 band_key，至少一段相同的题目才作为候选
+CREATE TABLE IF NOT EXISTS question_fingerprint_band (
+    bank_id   BIGINT  NOT NULL,
+    seq       INT     NOT NULL,
+    band      INT     NOT NULL,
+    band_key  BIGINT  NOT NULL,
+    PRIMARY KEY (bank_id, seq, band),
+    FOREIGN KEY (bank_id) REFERENCES question_bank (id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_fingerprint_band_key ON question_fingerprint_band (band_key);
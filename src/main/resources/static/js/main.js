@@ -214,7 +214,7 @@ async function parseFile() {
     hideLoading();
 }
 
-// 分析内容
+// 分析内容（流式：每解析出一个题目或笔记就立即显示）
 async function analyzeContent() {
     const text = textInput.value.trim();
 
@@ -229,27 +229,53 @@ async function analyzeContent() {
     }
 
     showLoading('AI 分析中，请稍候...');
+    analysisResult = null;
+
+    const result = { type: null, title: null, templateName: null, items: [] };
 
     try {
-        const response = await fetch('/api/analyze', {
+        const response = await fetch('/api/analyze/stream', {
             method: 'POST',
             headers: {
-                'Content-Type': 'application/json'
+                'Content-Type': 'application/json',
+                'Accept': 'text/event-stream'
             },
             body: JSON.stringify({
                 text: text
             })
         });
 
-        const result = await response.json();
-
-        if (result.success) {
-            analysisResult = result.data;
-            displayAnalysisResult(result.data);
-        } else {
-            alert(result.message);
+        if (!response.ok || !response.body) {
+            throw new Error('HTTP ' + response.status);
         }
 
+        await readEventStream(response.body, (event, data) => {
+            switch (event) {
+                case 'meta':
+                    result.type = data.type;
+                    result.title = data.title;
+                    result.templateName = data.templateName;
+                    beginAnalysisResult(result);
+                    // 第一个结果到达后即可隐藏遮罩，后续项目边到边显示
+                    hideLoading();
+                    break;
+                case 'item':
+                    result.items.push(data);
+                    appendPreviewItem(result, data, result.items.length - 1);
+                    break;
+                case 'done':
+                    result.source = data.source;
+                    if (data.duplicates && data.duplicates.length > 0) {
+                        applyDuplicates(result, data.duplicates);
+                    }
+                    break;
+                case 'error':
+                    throw new Error(data.message);
+            }
+        });
+
+        analysisResult = result;
+
     } catch (error) {
         alert('分析失败：' + error.message);
     }
@@ -257,43 +283,111 @@ async function analyzeContent() {
     hideLoading();
 }
 
+// 读取 SSE 事件流，每收到一个完整事件回调一次
+async function readEventStream(body, onEvent) {
+    const reader = body.getReader();
+    const decoder = new TextDecoder('utf-8');
+    let buffer = '';
+
+    while (true) {
+        const { done, value } = await reader.read();
+        if (done) {
+            break;
+        }
+        buffer += decoder.decode(value, { stream: true });
+
+        let boundary;
+        while ((boundary = buffer.indexOf('\n\n')) !== -1) {
+            const rawEvent = buffer.substring(0, boundary);
+            buffer = buffer.substring(boundary + 2);
+
+            let event = 'message';
+            const dataLines = [];
+            rawEvent.split('\n').forEach(line => {
+                if (line.startsWith('event:')) {
+                    event = line.substring(6).trim();
+                } else if (line.startsWith('data:')) {
+                    dataLines.push(line.substring(5));
+                }
+            });
+
+            if (dataLines.length > 0) {
+                onEvent(event, JSON.parse(dataLines.join('\n')));
+            }
+        }
+    }
+}
+
 // 显示分析结果
 function displayAnalysisResult(result) {
+    beginAnalysisResult(result);
+
+    if (result.items) {
+        result.items.forEach((item, index) => appendPreviewItem(result, item, index));
+    }
+}
+
+// 显示结果区域的标题信息并清空预览
+function beginAnalysisResult(result) {
     document.getElementById('resultType').textContent =
         result.type === 'question' ? '题目' : '笔记';
     document.getElementById('resultTitle').textContent = result.title || '未命名';
+    document.getElementById('resultCount').textContent = 0;
+    document.getElementById('previewList').innerHTML = '';
 
-    const count = result.items ? result.items.length : 0;
-    document.getElementById('resultCount').textContent = count;
+    resultSection.style.display = 'block';
+}
 
-    // 显示内容预览
-    const previewList = document.getElementById('previewList');
-    previewList.innerHTML = '';
+// 追加一个内容预览
+function appendPreviewItem(result, item, index) {
+    const div = document.createElement('div');
+    div.className = 'preview-item';
+
+    if (result.type === 'question') {
+        div.innerHTML = `
+            <h4>${index + 1}. ${item.question}</h4>
+            <p><strong>类型：</strong>${getQuestionTypeText(item.questionType)}</p>
+            ${item.options ? `<p><strong>选项：</strong>${item.options.join('、')}</p>` : ''}
+            <p><strong>答案：</strong>${item.answer}</p>
+        `;
+    } else {
+        div.innerHTML = `
+            <h4>${item.title}</h4>
+            <p>${item.content}</p>
+        `;
+    }
 
-    if (result.items) {
-        result.items.forEach((item, index) => {
-            const div = document.createElement('div');
-            div.className = 'preview-item';
-
-            if (result.type === 'question') {
-                div.innerHTML = `
-                    <h4>${index + 1}. ${item.question}</h4>
-                    <p><strong>类型：</strong>${getQuestionTypeText(item.questionType)}</p>
-                    ${item.options ? `<p><strong>选项：</strong>${item.options.join('、')}</p>` : ''}
-                    <p><strong>答案：</strong>${item.answer}</p>
-                `;
-            } else {
-                div.innerHTML = `
-                    <h4>${item.title}</h4>
-                    <p>${item.content}</p>
-                `;
-            }
+    document.getElementById('previewList').appendChild(div);
+    document.getElementById('resultCount').textContent = index + 1;
+}
 
-            previewList.appendChild(div);
-        });
-    }
+// 标记近似重复的题目；merge 模式下已合并的题目从结果中移除，不再参与生成
+function applyDuplicates(result, duplicates) {
+    const previews = document.getElementById('previewList').children;
+    const removed = new Set();
 
-    resultSection.style.display = 'block';
+    duplicates.forEach(duplicate => {
+        const div = previews[duplicate.index];
+        if (!div) {
+            return;
+        }
+        const target = duplicate.duplicateOfIndex != null
+            ? `与第 ${duplicate.duplicateOfIndex + 1} 题重复`
+            : `与已保存题库 #${duplicate.bankId} 第 ${duplicate.seq + 1} 题重复`;
+        const note = document.createElement('p');
+        note.className = 'duplicate-note';
+        note.textContent = `${target}（相似度 ${Math.round(duplicate.similarity * 100)}%）${duplicate.removed ? '，已合并' : ''}`;
+        div.classList.add(duplicate.removed ? 'removed' : 'duplicate');
+        div.appendChild(note);
+        if (duplicate.removed) {
+            removed.add(duplicate.index);
+        }
+    });
+
+    if (removed.size > 0) {
+        result.items = result.items.filter((item, index) => !removed.has(index));
+        document.getElementById('resultCount').textContent = result.items.length;
+    }
 }
 
 // 获取题目类型文本
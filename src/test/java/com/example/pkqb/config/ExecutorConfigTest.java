@@ -0,0 +1,114 @@
+package com.example.pkqb.config;
+
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.JobStage;
+import com.example.pkqb.service.StageLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按 application.properties 中的实际配置创建线程池和分阶段并发限制
+ */
+class ExecutorConfigTest {
+
+    private final Properties properties = loadProperties();
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withUserConfiguration(ExecutorConfig.class)
+            .withPropertyValues(properties.stringPropertyNames().stream()
+                    .filter(name -> name.startsWith("app.execution.") || name.startsWith("app.analysis.")
+                            || name.startsWith("app.job.") || name.startsWith("app.batch."))
+                    .map(name -> name + "=" + properties.getProperty(name))
+                    .toArray(String[]::new));
+
+    @Test
+    void limitsStagesAsConfigured() {
+        runner.run(context -> {
+            StageLimiter limiter = context.getBean(StageLimiter.class);
+            assertEquals(limit("parse"), limiter.available(JobStage.PARSE));
+            assertEquals(limit("generate"), limiter.available(JobStage.GENERATE));
+            // 模型调用由 LlmGuard 限制
+            assertEquals(-1, limiter.available(JobStage.ANALYZE));
+        });
+    }
+
+    @Test
+    void rejectsWhenStagePermitsAreExhausted() {
+        runner.withPropertyValues("app.execution.limits.acquire-timeout-ms=20").run(context -> {
+            StageLimiter limiter = context.getBean(StageLimiter.class);
+            List<StageLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < limit("parse"); i++) {
+                permits.add(limiter.acquire(JobStage.PARSE));
+            }
+            BusinessException e = assertThrows(BusinessException.class, () -> limiter.acquire(JobStage.PARSE));
+            assertEquals(503, e.getCode());
+
+            permits.get(0).close();
+            // 重复关闭只释放一次
+            permits.get(0).close();
+            assertEquals(1, limiter.available(JobStage.PARSE));
+            assertEquals("ok", limiter.call(JobStage.PARSE, () -> "ok"));
+            assertEquals(1, limiter.available(JobStage.PARSE));
+        });
+    }
+
+    @Test
+    void releasesPermitWhenTaskFails() {
+        runner.run(context -> {
+            StageLimiter limiter = context.getBean(StageLimiter.class);
+            assertThrows(IllegalStateException.class, () -> limiter.call(JobStage.GENERATE, () -> {
+                throw new IllegalStateException("渲染失败");
+            }));
+            assertEquals(limit("generate"), limiter.available(JobStage.GENERATE));
+        });
+    }
+
+    @Test
+    void usesPlatformThreadsByDefault() {
+        runner.withPropertyValues("app.execution.mode=platform")
+                .run(context -> assertFalse(runsOnVirtualThread(context.getBean("analysisExecutor", AsyncTaskExecutor.class))));
+    }
+
+    @Test
+    void usesVirtualThreadsInVirtualMode() {
+        runner.withPropertyValues("app.execution.mode=virtual").run(context -> {
+            assertTrue(runsOnVirtualThread(context.getBean("analysisExecutor", AsyncTaskExecutor.class)));
+            assertTrue(runsOnVirtualThread(context.getBean("jobExecutor", AsyncTaskExecutor.class)));
+            assertTrue(runsOnVirtualThread(context.getBean("batchExecutor", AsyncTaskExecutor.class)));
+            // PDF 提取是 CPU 密集型，始终使用平台线程
+            assertFalse(runsOnVirtualThread(context.getBean("pdfExecutor", AsyncTaskExecutor.class)));
+            assertEquals(limit("parse"), context.getBean(StageLimiter.class).available(JobStage.PARSE));
+        });
+    }
+
+    private int limit(String stage) {
+        return Integer.parseInt(properties.getProperty("app.execution.limits." + stage));
+    }
+
+    private static boolean runsOnVirtualThread(AsyncTaskExecutor executor) throws Exception {
+        return CompletableFuture.supplyAsync(() -> Thread.currentThread().isVirtual(), executor).get(5, TimeUnit.SECONDS);
+    }
+
+    private static Properties loadProperties() {
+        try {
+            return PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
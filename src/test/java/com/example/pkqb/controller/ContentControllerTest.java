@@ -0,0 +1,102 @@
+package com.example.pkqb.controller;
+
+import com.example.pkqb.model.AnalysisStreamEvent;
+import com.example.pkqb.model.DuplicateItem;
+import com.example.pkqb.model.QuestionItem;
+import com.example.pkqb.service.ContentAnalysisService;
+import com.example.pkqb.service.HtmlGeneratorService;
+import com.example.pkqb.service.JobService;
+import com.example.pkqb.service.QuestionBankService;
+import com.example.pkqb.service.QuestionDedupService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ContentControllerTest {
+
+    private final ContentAnalysisService contentAnalysisService = mock(ContentAnalysisService.class);
+    private final QuestionDedupService questionDedupService = mock(QuestionDedupService.class);
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ContentController controller = new ContentController(contentAnalysisService, mock(HtmlGeneratorService.class),
+                mock(JobService.class), mock(QuestionBankService.class), questionDedupService);
+        ReflectionTestUtils.setField(controller, "streamTimeoutMs", 5000L);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        Map<String, Object> meta = Map.of("type", "question", "title", "题库");
+        Map<String, Object> done = new HashMap<>(meta);
+        done.put("count", 2);
+        when(contentAnalysisService.analyzeContentStream(anyString())).thenReturn(Flux.just(
+                AnalysisStreamEvent.of(AnalysisStreamEvent.META, meta),
+                AnalysisStreamEvent.of(AnalysisStreamEvent.ITEM, QuestionItem.builder().question("第一题").build()),
+                AnalysisStreamEvent.of(AnalysisStreamEvent.ITEM, QuestionItem.builder().question("第一题。").build()),
+                AnalysisStreamEvent.of(AnalysisStreamEvent.DONE, done)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamDoneEventCarriesDuplicates() throws Exception {
+        when(questionDedupService.isEnabled()).thenReturn(true);
+        when(questionDedupService.dedup(any())).thenAnswer(invocation -> {
+            Map<String, Object> result = new HashMap<>(invocation.getArgument(0));
+            result.put("duplicates", List.of(DuplicateItem.builder().index(1).duplicateOfIndex(0).similarity(0.9).build()));
+            return result;
+        });
+
+        String body = stream();
+
+        ArgumentCaptor<Map<String, Object>> analysis = ArgumentCaptor.forClass(Map.class);
+        verify(questionDedupService).dedup(analysis.capture());
+        assertEquals("question", analysis.getValue().get("type"));
+        assertEquals(2, ((List<?>) analysis.getValue().get("items")).size());
+
+        String done = body.substring(body.indexOf("event:done"));
+        assertTrue(done.contains("\"duplicates\":[{\"index\":1,\"duplicateOfIndex\":0"), done);
+        assertTrue(done.contains("\"count\":2"), done);
+    }
+
+    @Test
+    void streamSkipsDedupWhenDisabled() throws Exception {
+        String body = stream();
+
+        verify(questionDedupService, never()).dedup(any());
+        assertFalse(body.contains("duplicates"), body);
+    }
+
+    private String stream() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/analyze/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\": \"1. 第一题\\n1. 第一题。\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        return result.getResponse().getContentAsString();
+    }
+}
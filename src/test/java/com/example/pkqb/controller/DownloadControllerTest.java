@@ -0,0 +1,125 @@
+package com.example.pkqb.controller;
+
+import com.example.pkqb.config.AppConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class DownloadControllerTest {
+
+    private static final String HTML = "<html><body>题库</body></html>";
+
+    @TempDir
+    Path tempDir;
+
+    private Path outputDir;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        outputDir = Files.createDirectory(tempDir.resolve("generated"));
+        Files.writeString(outputDir.resolve("bank.html"), HTML);
+        Files.writeString(tempDir.resolve("secret.html"), "outside");
+
+        AppConfig appConfig = new AppConfig();
+        ReflectionTestUtils.setField(appConfig, "generatedPath", outputDir.toString());
+        mockMvc = MockMvcBuilders.standaloneSetup(new DownloadController(appConfig)).build();
+    }
+
+    @Test
+    void downloadsFileFromOutputDirectory() throws Exception {
+        mockMvc.perform(get("/api/download/bank.html"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(content().bytes(HTML.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void downloadsFromSubdirectoryOfOutputDirectory() throws Exception {
+        Files.writeString(Files.createDirectory(outputDir.resolve("sub")).resolve("note.html"), HTML);
+
+        mockMvc.perform(get("/api/download/note.html").param("downloadPath", "sub"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void returnsNotModifiedForMatchingEtag() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/download/bank.html")).andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/download/bank.html").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void servesRangeRequests() throws Exception {
+        mockMvc.perform(get("/api/download/bank.html").header(HttpHeaders.RANGE, "bytes=0-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("<html>"));
+    }
+
+    @Test
+    void servesPrecompressedVariant() throws Exception {
+        Path gz = Files.write(outputDir.resolve("bank.html.gz"), new byte[]{1, 2, 3});
+        Files.setLastModifiedTime(gz, FileTime.fromMillis(
+                Files.getLastModifiedTime(outputDir.resolve("bank.html")).toMillis() + 1000));
+
+        mockMvc.perform(get("/api/download/bank.html").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(content().bytes(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    void rejectsRelativePathOutsideOutputDirectory() throws Exception {
+        mockMvc.perform(get("/api/download/secret.html").param("downloadPath", ".."))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/download/secret.html").param("downloadPath", "sub/../.."))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void rejectsAbsolutePathOutsideOutputDirectory() throws Exception {
+        mockMvc.perform(get("/api/download/secret.html").param("downloadPath", tempDir.toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void rejectsNonHtmlFiles() throws Exception {
+        Files.writeString(outputDir.resolve("data.mv.db"), "db");
+
+        mockMvc.perform(get("/api/download/data.mv.db"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void rejectsSymlinkLeavingOutputDirectory() throws Exception {
+        Files.createSymbolicLink(outputDir.resolve("link.html"), tempDir.resolve("secret.html"));
+
+        mockMvc.perform(get("/api/download/link.html"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void returnsNotFoundForMissingFile() throws Exception {
+        mockMvc.perform(get("/api/download/missing.html"))
+                .andExpect(status().isNotFound());
+    }
+}
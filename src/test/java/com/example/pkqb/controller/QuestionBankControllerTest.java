@@ -0,0 +1,155 @@
+package com.example.pkqb.controller;
+
+import com.example.pkqb.exception.GlobalExceptionHandler;
+import com.example.pkqb.model.GenerateRequest;
+import com.example.pkqb.model.NoteItem;
+import com.example.pkqb.service.HtmlGeneratorService;
+import com.example.pkqb.service.PipelineMetrics;
+import com.example.pkqb.service.QuestionBankService;
+import com.example.pkqb.service.QuestionDedupService;
+import com.example.pkqb.service.SearchIndexService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class QuestionBankControllerTest {
+
+    private static final String HTML = "<html><body>细胞结构</body></html>";
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private QuestionBankService questionBankService;
+    private HtmlGeneratorService htmlGeneratorService;
+    private MockMvc mockMvc;
+    private long bankId;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bank-controller-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        SearchIndexService searchIndexService = new SearchIndexService(tempDir.toString(), 1000, 4, 1000);
+        searchIndexService.open();
+        QuestionDedupService questionDedupService = new QuestionDedupService(jdbcTemplate, new ObjectMapper(),
+                new PipelineMetrics(new SimpleMeterRegistry()), "flag", 0.8, false);
+        questionBankService = new QuestionBankService(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                new ObjectMapper(), searchIndexService, questionDedupService, 100);
+        bankId = questionBankService.save(GenerateRequest.builder()
+                .type("note")
+                .title("细胞结构")
+                .items(List.of(note("细胞膜"), note("细胞核")))
+                .build(), null);
+
+        htmlGeneratorService = mock(HtmlGeneratorService.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(new QuestionBankController(questionBankService, htmlGeneratorService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void pagesItems() throws Exception {
+        mockMvc.perform(get("/api/banks/{id}/items", bankId).param("page", "1").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.items[0].title").value("细胞核"))
+                .andExpect(jsonPath("$.data.total").value(2))
+                .andExpect(jsonPath("$.data.hasNext").value(false));
+    }
+
+    @Test
+    void returnsNotFoundForMissingBank() throws Exception {
+        mockMvc.perform(get("/api/banks/{id}", bankId + 1))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/banks/{id}/items", bankId + 1))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/banks/{id}/download", bankId + 1))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/api/banks/{id}", bankId + 1))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void rejectsInvalidPaging() throws Exception {
+        mockMvc.perform(get("/api/banks").param("page", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/banks").param("size", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/banks/{id}/items", bankId).param("page", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/banks/{id}/items", bankId).param("size", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/banks").param("type", "exam"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void downloadRerendersSavedContent() throws Exception {
+        when(htmlGeneratorService.downloadFileName("note")).thenReturn("笔记.html");
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write(HTML.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(htmlGeneratorService).renderHtml(any(GenerateRequest.class), any(OutputStream.class));
+
+        mockMvc.perform(get("/api/banks/{id}/download", bankId))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"笔记.html\""))
+                .andExpect(content().bytes(HTML.getBytes(StandardCharsets.UTF_8)));
+
+        ArgumentCaptor<GenerateRequest> request = ArgumentCaptor.forClass(GenerateRequest.class);
+        verify(htmlGeneratorService).renderHtml(request.capture(), any(OutputStream.class));
+        assertEquals("细胞结构", request.getValue().getTitle());
+        assertEquals(List.of(note("细胞膜"), note("细胞核")), request.getValue().getItems());
+    }
+
+    @Test
+    void deletesBank() throws Exception {
+        mockMvc.perform(delete("/api/banks/{id}", bankId))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/banks/{id}", bankId))
+                .andExpect(status().isNotFound());
+    }
+
+    private static NoteItem note(String title) {
+        return NoteItem.builder().title(title).content(title + "的内容").build();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.pkqb.controller;
+
+import com.example.pkqb.service.StaticAssetService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class StaticResourceControllerTest {
+
+    private StaticAssetService staticAssetService;
+    private StaticAssetService.Asset mainJs;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        staticAssetService = new StaticAssetService();
+        staticAssetService.load();
+        mainJs = staticAssetService.get("js/main.js");
+        mockMvc = MockMvcBuilders.standaloneSetup(new StaticResourceController(staticAssetService)).build();
+    }
+
+    @Test
+    void fingerprintedUrlIsImmutable() throws Exception {
+        String url = staticAssetService.url("js/main.js");
+        assertTrue(url.startsWith("/assets/js/main."));
+
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                .andExpect(content().bytes(mainJs.identity()));
+    }
+
+    @Test
+    void plainUrlRevalidates() throws Exception {
+        mockMvc.perform(get("/assets/js/main.js"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + mainJs.etag() + "\""));
+        mockMvc.perform(get("/api/css/style"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+    }
+
+    @Test
+    void returnsNotModifiedForMatchingEtag() throws Exception {
+        MvcResult first = mockMvc.perform(get("/assets/js/main.js")).andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/assets/js/main.js").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void choosesEncodingByAcceptEncoding() throws Exception {
+        MvcResult identity = mockMvc.perform(get("/assets/js/main.js"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn();
+        MvcResult gzip = mockMvc.perform(get("/assets/js/main.js").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + mainJs.etag() + "-gzip\""))
+                .andReturn();
+        assertArrayEquals(mainJs.identity(), gunzip(gzip.getResponse().getContentAsByteArray()));
+
+        // 不同编码的 ETag 不同，gzip 版本的 ETag 不能让只接受原始内容的客户端得到 304
+        String gzipEtag = gzip.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(identity.getResponse().getHeader(HttpHeaders.ETAG), gzipEtag);
+        mockMvc.perform(get("/assets/js/main.js").header(HttpHeaders.IF_NONE_MATCH, gzipEtag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/assets/js/main.js")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, gzipEtag))
+                .andExpect(status().isNotModified());
+
+        // q=0 表示不接受
+        mockMvc.perform(get("/assets/js/main.js").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void returnsNotFoundForUnknownAsset() throws Exception {
+        mockMvc.perform(get("/assets/js/missing.js"))
+                .andExpect(status().isNotFound());
+    }
+
+    private static byte[] gunzip(byte[] content) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            return in.readAllBytes();
+        }
+    }
+}
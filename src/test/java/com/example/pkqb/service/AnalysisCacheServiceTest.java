@@ -0,0 +1,97 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.config.AppConfig;
+import com.example.pkqb.model.NoteItem;
+import com.example.pkqb.model.QuestionItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class AnalysisCacheServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void diskTierRestoresQuestionItems() {
+        newService().put("k1", result("question", QuestionItem.builder()
+                .question("1+1=?")
+                .questionType("single")
+                .options(List.of("A. 1", "B. 2"))
+                .answer("B")
+                .build()));
+
+        // 新实例只有磁盘层
+        Map<String, Object> cached = newService().get("k1");
+        List<?> items = (List<?>) cached.get("items");
+        QuestionItem item = assertInstanceOf(QuestionItem.class, items.get(0));
+        assertEquals("1+1=?", item.getQuestion());
+        assertEquals(List.of("A. 1", "B. 2"), item.getOptions());
+        assertEquals("question", cached.get("type"));
+        assertEquals("ai", cached.get("source"));
+    }
+
+    @Test
+    void diskTierRestoresNoteItems() {
+        newService().put("k2", result("note", NoteItem.builder().title("标题").content("内容").build()));
+
+        List<?> items = (List<?>) newService().get("k2").get("items");
+        assertEquals("标题", assertInstanceOf(NoteItem.class, items.get(0)).getTitle());
+    }
+
+    @Test
+    void callersCannotModifyCachedResult() {
+        AnalysisCacheService service = newService();
+        Map<String, Object> original = result("question", QuestionItem.builder().question("原题").answer("A").build());
+        service.put("k3", original);
+
+        // 修改写入时的对象
+        ((QuestionItem) ((List<?>) original.get("items")).get(0)).setAnswer("B");
+        original.put("title", "改过");
+
+        Map<String, Object> first = service.get("k3");
+        @SuppressWarnings("unchecked")
+        List<Object> items = (List<Object>) first.get("items");
+        ((QuestionItem) items.get(0)).setQuestion("改过");
+        items.clear();
+
+        Map<String, Object> second = service.get("k3");
+        assertNotSame(first, second);
+        QuestionItem item = (QuestionItem) ((List<?>) second.get("items")).get(0);
+        assertEquals("原题", item.getQuestion());
+        assertEquals("A", item.getAnswer());
+        assertEquals("标题", second.get("title"));
+    }
+
+    private AnalysisCacheService newService() {
+        AppConfig appConfig = new AppConfig();
+        ReflectionTestUtils.setField(appConfig, "generatedPath", tempDir.toString());
+        AnalysisCacheService service = new AnalysisCacheService(appConfig, new ObjectMapper());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxEntries", 10);
+        ReflectionTestUtils.setField(service, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(service, "diskEnabled", true);
+        return service;
+    }
+
+    private static Map<String, Object> result(String type, Object item) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("type", type);
+        result.put("title", "标题");
+        result.put("templateName", type + "-template");
+        result.put("items", new ArrayList<>(List.of(item)));
+        result.put("source", "ai");
+        return result;
+    }
+}
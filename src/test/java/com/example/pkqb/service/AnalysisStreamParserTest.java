@@ -0,0 +1,139 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.model.AnalysisResult;
+import com.example.pkqb.model.QuestionType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalysisStreamParserTest {
+
+    private static final String RESPONSE = """
+            ```json
+            {"type": "question", "title": "测试题库", "items": [
+              {"question": "第一题", "questionType": "single_choice", "options": ["A. 甲", "B. 乙"], "answer": "A"},
+              {"question": "第二题\n换行", "questionType": "true_false", "answer": true,},
+              {"question": "第三题", "questionType": "multiple_choice", "options": ["A. 1", "B. 2", "C. 3"], "answer": ["A", "C"]}
+            ]}
+            ```""";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void emitsItemsFromCompleteResponse() throws IOException {
+        Recorder recorder = new Recorder();
+        AnalysisStreamParser parser = new AnalysisStreamParser(objectMapper, recorder);
+        parser.feed(RESPONSE);
+        parser.end();
+
+        assertTrue(parser.isComplete());
+        assertEquals(List.of("question|测试题库"), recorder.meta);
+        assertEquals(3, recorder.items.size());
+        // 字符串中未转义的换行和多余的逗号都被容忍
+        assertEquals("第二题\n换行", recorder.items.get(1).question());
+        assertEquals(QuestionType.TRUE_FALSE, recorder.items.get(1).questionType());
+        assertEquals("A,C", recorder.items.get(2).answer());
+    }
+
+    @Test
+    void sameResultWhenFedOneCharacterAtATime() throws IOException {
+        Recorder recorder = new Recorder();
+        AnalysisStreamParser parser = new AnalysisStreamParser(objectMapper, recorder);
+        for (int i = 0; i < RESPONSE.length(); i++) {
+            parser.feed(RESPONSE.substring(i, i + 1));
+        }
+        parser.end();
+
+        assertTrue(parser.isComplete());
+        assertEquals(List.of("question|测试题库"), recorder.meta);
+        assertEquals(List.of("第一题", "第二题\n换行", "第三题"),
+                recorder.items.stream().map(AnalysisResult.Item::question).toList());
+    }
+
+    @Test
+    void emitsItemsAsSoonAsTheyClose() throws IOException {
+        Recorder recorder = new Recorder();
+        AnalysisStreamParser parser = new AnalysisStreamParser(objectMapper, recorder);
+        parser.feed("{\"type\": \"question\", \"title\": \"题库\", \"items\": [{\"question\": \"第一题\"");
+        assertEquals(List.of("question|题库"), recorder.meta);
+        assertTrue(recorder.items.isEmpty());
+
+        parser.feed(", \"answer\": \"B\"}, {\"question\": ");
+        assertEquals(1, recorder.items.size());
+        assertEquals("B", recorder.items.get(0).answer());
+        assertFalse(parser.isComplete());
+    }
+
+    @Test
+    void truncatedResponseKeepsClosedItemsOnly() throws IOException {
+        String truncated = RESPONSE.substring(0, RESPONSE.indexOf("第三题") + 3);
+        Recorder recorder = new Recorder();
+        AnalysisStreamParser parser = new AnalysisStreamParser(objectMapper, recorder);
+        parser.feed(truncated);
+        parser.end();
+
+        assertFalse(parser.isComplete());
+        assertEquals(List.of("第一题", "第二题\n换行"),
+                recorder.items.stream().map(AnalysisResult.Item::question).toList());
+        assertEquals(List.of("question|测试题库"), recorder.meta);
+    }
+
+    @Test
+    void truncatedBeforeItemsStillEmitsMetaOnce() throws IOException {
+        Recorder recorder = new Recorder();
+        AnalysisStreamParser parser = new AnalysisStreamParser(objectMapper, recorder);
+        parser.feed("{\"type\": \"note\", \"title\": \"笔记");
+        parser.end();
+        parser.end();
+
+        assertFalse(parser.isComplete());
+        assertTrue(recorder.items.isEmpty());
+        assertEquals(List.of("note|null"), recorder.meta);
+    }
+
+    @Test
+    void responseWithoutJsonIsIgnored() throws IOException {
+        Recorder recorder = new Recorder();
+        AnalysisStreamParser parser = new AnalysisStreamParser(objectMapper, recorder);
+        parser.feed("抱歉，无法识别该内容。");
+        parser.end();
+
+        assertFalse(parser.isComplete());
+        assertTrue(recorder.items.isEmpty());
+    }
+
+    @Test
+    void ignoresContentAfterRootObject() throws IOException {
+        Recorder recorder = new Recorder();
+        AnalysisStreamParser parser = new AnalysisStreamParser(objectMapper, recorder);
+        parser.feed("{\"type\": \"note\", \"items\": [{\"title\": \"标题\", \"content\": \"内容\"}]}\n```\n{\"items\": [{}]}");
+        parser.end();
+
+        assertTrue(parser.isComplete());
+        assertEquals(1, recorder.items.size());
+        assertEquals("内容", recorder.items.get(0).content());
+    }
+
+    private static final class Recorder implements AnalysisStreamParser.Listener {
+
+        private final List<String> meta = new ArrayList<>();
+        private final List<AnalysisResult.Item> items = new ArrayList<>();
+
+        @Override
+        public void onMeta(String type, String title) {
+            meta.add(type + "|" + title);
+        }
+
+        @Override
+        public void onItem(AnalysisResult.Item item) {
+            items.add(item);
+        }
+    }
+}
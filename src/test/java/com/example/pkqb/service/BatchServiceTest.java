@@ -0,0 +1,176 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.BatchFileResult;
+import com.example.pkqb.model.JobInfo;
+import com.example.pkqb.model.NoteItem;
+import com.example.pkqb.model.QuestionItem;
+import com.example.pkqb.model.UploadedFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchServiceTest {
+
+    private final UploadService uploadService = mock(UploadService.class);
+    private final FileParserService fileParserService = mock(FileParserService.class);
+    private final ContentAnalysisService contentAnalysisService = mock(ContentAnalysisService.class);
+    private final QuestionDedupService questionDedupService = mock(QuestionDedupService.class);
+    private final JobService jobService = mock(JobService.class);
+
+    private BatchService batchService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        batchService = new BatchService(uploadService, fileParserService, contentAnalysisService,
+                questionDedupService, jobService, Runnable::run);
+        ReflectionTestUtils.setField(batchService, "maxFiles", 3);
+
+        when(uploadService.save(anyString(), anyString(), any(InputStream.class), anyLong())).thenAnswer(invocation -> {
+            String fileName = invocation.getArgument(0);
+            byte[] content = invocation.getArgument(2, InputStream.class).readAllBytes();
+            if (fileName.startsWith("bad")) {
+                throw new BusinessException(400, "文件内容与声明的类型不符");
+            }
+            return UploadedFile.builder()
+                    .fileId("id-" + fileName)
+                    .uploadToken("token-" + fileName)
+                    .fileName(fileName)
+                    .fileType("pdf")
+                    .filePath("/uploads/" + fileName)
+                    .sha256(new String(content, StandardCharsets.UTF_8))
+                    .build();
+        });
+        when(fileParserService.parseFile(eq("pdf"), anyString())).thenReturn("1. 题目");
+        when(contentAnalysisService.analyzeContent(anyString())).thenReturn(Map.of(
+                "type", "question", "title", "标题", "source", "ai", "items", List.of("题目")));
+        when(jobService.submitBatch(any(), any())).thenReturn(JobInfo.builder().jobId("job").build());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordsFailedEntryWithoutAbortingBatch() throws IOException {
+        JobInfo job = batchService.submitUploads(List.of(
+                pdf("a.pdf", "a"),
+                zip("files.zip", "bad.pdf", "x", "b.pdf", "b")), BatchService.MODE_SEPARATE, null);
+        assertEquals("job", job.getJobId());
+
+        Map<String, Object> result = runSubmittedBatch();
+        List<BatchFileResult> files = (List<BatchFileResult>) result.get("files");
+        assertEquals(List.of("a.pdf", "bad.pdf", "b.pdf"), files.stream().map(BatchFileResult::getFileName).toList());
+        assertTrue(files.get(0).isSuccess());
+        assertFalse(files.get(1).isSuccess());
+        assertEquals("文件内容与声明的类型不符", files.get(1).getError());
+        assertTrue(files.get(2).isSuccess());
+        assertEquals(2, result.get("succeeded"));
+        assertEquals(1, result.get("failed"));
+        verify(uploadService, never()).release(anyString(), anyString());
+    }
+
+    @Test
+    void releasesSavedFilesWhenBatchIsAborted() throws IOException {
+        BusinessException e = assertThrows(BusinessException.class, () -> batchService.submitUploads(List.of(
+                pdf("a.pdf", "a"),
+                zip("files.zip", "b.pdf", "b", "c.pdf", "c", "d.pdf", "d")), BatchService.MODE_SEPARATE, null));
+        assertEquals(413, e.getCode());
+        verify(uploadService).release("id-a.pdf", "token-a.pdf");
+        verify(uploadService).release("id-b.pdf", "token-b.pdf");
+        verify(uploadService).release("id-c.pdf", "token-c.pdf");
+        verify(jobService, never()).submitBatch(any(), any());
+    }
+
+    @Test
+    void releasesSavedFilesWhenJobIsRejected() {
+        BusinessException busy = new BusinessException(429, "任务繁忙，请稍后再试");
+        when(jobService.submitBatch(any(), any())).thenThrow(busy);
+        assertSame(busy, assertThrows(BusinessException.class, () -> batchService.submitUploads(
+                List.of(pdf("a.pdf", "a")), BatchService.MODE_SEPARATE, null)));
+        verify(uploadService).release("id-a.pdf", "token-a.pdf");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void analyzesIdenticalContentOnce() {
+        batchService.submitUploads(List.of(pdf("a.pdf", "same"), pdf("b.pdf", "same")), BatchService.MODE_MERGED, "合并");
+        when(questionDedupService.dedup(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Map<String, Object> result = runSubmittedBatch();
+        verify(contentAnalysisService).analyzeContent("1. 题目");
+        Map<String, Object> merged = (Map<String, Object>) result.get("merged");
+        assertEquals("合并", merged.get("title"));
+        assertEquals(List.of("题目"), merged.get("items"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void convertsMinorityTypeWhenMerging() {
+        when(fileParserService.parseFile("pdf", "/uploads/b.pdf")).thenReturn("光合作用");
+        when(contentAnalysisService.analyzeContent("1. 题目")).thenReturn(Map.of(
+                "type", "question", "title", "标题", "source", "ai", "items", List.of(
+                        QuestionItem.builder().question("题目一").build(),
+                        QuestionItem.builder().question("题目二").build())));
+        when(contentAnalysisService.analyzeContent("光合作用")).thenReturn(Map.of(
+                "type", "note", "title", "笔记", "source", "ai", "items", List.of(
+                        NoteItem.builder().title("光合作用").content("把光能转化为化学能").build())));
+        when(questionDedupService.dedup(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        batchService.submitUploads(List.of(pdf("a.pdf", "a"), pdf("b.pdf", "b")), BatchService.MODE_MERGED, null);
+
+        Map<String, Object> result = runSubmittedBatch();
+        Map<String, Object> merged = (Map<String, Object>) result.get("merged");
+        assertEquals("question", merged.get("type"));
+        List<QuestionItem> items = (List<QuestionItem>) merged.get("items");
+        // 笔记文件的内容转换为题目保留在合并结果中
+        assertEquals(List.of("题目一", "题目二", "光合作用\n把光能转化为化学能"),
+                items.stream().map(QuestionItem::getQuestion).toList());
+        assertEquals(2, result.get("succeeded"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> runSubmittedBatch() {
+        ArgumentCaptor<Supplier<Map<String, Object>>> batch = ArgumentCaptor.forClass(Supplier.class);
+        verify(jobService).submitBatch(any(), batch.capture());
+        return batch.getValue().get();
+    }
+
+    private static MockMultipartFile pdf(String name, String content) {
+        return new MockMultipartFile("files", name, "application/pdf", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MockMultipartFile zip(String name, String... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return new MockMultipartFile("files", name, "application/zip", bytes.toByteArray());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.pkqb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CjkBigramTokenizerTest {
+
+    @Test
+    void splitsCjkRunsIntoBigrams() {
+        assertEquals(List.of("光合", "合作", "作用"), CjkBigramTokenizer.tokenize("光合作用"));
+    }
+
+    @Test
+    void keepsSingleCharacterRunAsUnigram() {
+        assertEquals(List.of("酶"), CjkBigramTokenizer.tokenize("酶"));
+        assertEquals(List.of("酶", "活性"), CjkBigramTokenizer.tokenize("酶，活性"));
+    }
+
+    @Test
+    void indexTokensIncludeEveryCharacter() {
+        assertEquals(List.of("唾", "唾液", "液", "液淀", "淀", "淀粉", "粉", "粉酶", "酶"),
+                CjkBigramTokenizer.tokenizeForIndex("唾液淀粉酶"));
+        // 单字查询必须能在索引词中找到
+        assertTrue(CjkBigramTokenizer.tokenizeForIndex("唾液淀粉酶").containsAll(CjkBigramTokenizer.tokenize("酶")));
+    }
+
+    @Test
+    void normalizesWidthAndCaseForWords() {
+        assertEquals(List.of("tcp", "ip", "协议"), CjkBigramTokenizer.tokenize("ＴＣＰ/IP 协议"));
+    }
+
+    @Test
+    void truncatesLongWords() {
+        String word = "a".repeat(100);
+        assertEquals(List.of("a".repeat(32)), CjkBigramTokenizer.tokenize(word));
+    }
+
+    @Test
+    void returnsEmptyForBlankOrPunctuation() {
+        assertTrue(CjkBigramTokenizer.tokenize(null).isEmpty());
+        assertTrue(CjkBigramTokenizer.tokenize("，。！ ").isEmpty());
+    }
+}
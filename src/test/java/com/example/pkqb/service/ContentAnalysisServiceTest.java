@@ -0,0 +1,246 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.config.AppConfig;
+import com.example.pkqb.model.AnalysisStreamEvent;
+import com.example.pkqb.model.QuestionItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ContentAnalysisServiceTest {
+
+    private static final String TEXT = """
+            1. 第一题？
+            A. 甲
+            B. 乙
+
+            2. 第二题？
+            A. 甲
+            B. 乙
+
+            3. 第三题？
+            A. 甲
+            B. 乙
+            """;
+
+    private static final Pattern QUESTION_LINE = Pattern.compile("(?m)^\\d+\\. (.+)$");
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    /**
+     * 同步调用在返回前等待的闸门，默认放行
+     */
+    private CountDownLatch gate = new CountDownLatch(0);
+
+    /**
+     * 流式调用返回的内容，默认把完整响应按几个字符一段输出
+     */
+    private Function<String, Flux<String>> streamContent = response -> Flux.fromIterable(fragments(response));
+
+    private ContentAnalysisService service;
+
+    @BeforeEach
+    void setUp() {
+        ChatClient chatClient = mock(ChatClient.class);
+        ChatClient.ChatClientRequestSpec requestSpec = mock(ChatClient.ChatClientRequestSpec.class);
+        when(chatClient.prompt()).thenReturn(requestSpec);
+        when(requestSpec.user(anyString())).thenAnswer(invocation -> promptSpec(invocation.getArgument(0)));
+
+        service = new ContentAnalysisService(objectMapper, chatClient, newCacheService(),
+                new PipelineMetrics(registry), new AnalysisResponseParser(objectMapper), executor);
+        ReflectionTestUtils.setField(service, "chunkSize", 6000);
+        ReflectionTestUtils.setField(service, "parallelism", 2);
+        ReflectionTestUtils.setField(service, "model", "test-model");
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void longTextIsChunkedAndMergedInOrder() {
+        ReflectionTestUtils.setField(service, "chunkSize", 30);
+
+        Map<String, Object> result = service.analyzeContent(TEXT);
+
+        assertEquals(TextChunker.split(TEXT, 30).size(), calls.get());
+        assertTrue(calls.get() > 1);
+        assertEquals(List.of("第一题？", "第二题？", "第三题？"), questions(result));
+        assertEquals("ai", result.get("source"));
+    }
+
+    @Test
+    void streamEmitsMetaItemsAndDoneThenCaches() {
+        ReflectionTestUtils.setField(service, "chunkSize", 30);
+
+        List<AnalysisStreamEvent> events = service.analyzeContentStream(TEXT).collectList().block();
+
+        assertEquals(List.of("meta", "item", "item", "item", "done"),
+                events.stream().map(AnalysisStreamEvent::getEvent).toList());
+        assertEquals("第二题？", ((QuestionItem) events.get(2).getData()).getQuestion());
+        assertEquals(3, ((Map<?, ?>) events.get(4).getData()).get("count"));
+
+        // 完整的流式结果写入缓存，之后的非流式请求不再调用模型
+        int streamed = calls.get();
+        assertEquals(List.of("第一题？", "第二题？", "第三题？"), questions(service.analyzeContent(TEXT)));
+        assertEquals(streamed, calls.get());
+    }
+
+    @Test
+    void concurrentRequestsShareOneModelCall() throws Exception {
+        gate = new CountDownLatch(1);
+
+        CompletableFuture<Map<String, Object>> first = CompletableFuture.supplyAsync(() -> service.analyzeContent(TEXT));
+        awaitCalls(1);
+        CompletableFuture<Map<String, Object>> second = CompletableFuture.supplyAsync(() -> service.analyzeContent(TEXT));
+        awaitCoalesced(1);
+        gate.countDown();
+
+        assertEquals(questions(first.get(5, TimeUnit.SECONDS)), questions(second.get(5, TimeUnit.SECONDS)));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void cancelledStreamDoesNotFailWaitingRequest() throws Exception {
+        // 流式调用一直不返回，模拟客户端断开前模型还在输出
+        streamContent = response -> Flux.never();
+        Disposable subscription = service.analyzeContentStream(TEXT).subscribe();
+
+        CompletableFuture<Map<String, Object>> waiting = CompletableFuture.supplyAsync(() -> service.analyzeContent(TEXT));
+        awaitCoalesced(1);
+        subscription.dispose();
+
+        // 等待方重新分析而不是随之失败
+        Map<String, Object> result = waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("第一题？", "第二题？", "第三题？"), questions(result));
+        assertEquals("ai", result.get("source"));
+    }
+
+    @Test
+    void cancelledStreamLetsWaitingStreamRetry() {
+        // 只有第一次流式调用不返回
+        streamContent = response -> calls.get() == 1 ? Flux.never() : Flux.fromIterable(fragments(response));
+        Disposable subscription = service.analyzeContentStream(TEXT).subscribe();
+
+        CompletableFuture<List<AnalysisStreamEvent>> waiting = service.analyzeContentStream(TEXT).collectList().toFuture();
+        awaitCoalesced(1);
+        subscription.dispose();
+
+        List<AnalysisStreamEvent> events = waiting.join();
+        assertEquals("done", events.get(events.size() - 1).getEvent());
+        assertFalse(events.stream().anyMatch(event -> "error".equals(event.getEvent())));
+        assertEquals(2, calls.get());
+    }
+
+    private ChatClient.ChatClientRequestSpec promptSpec(String prompt) {
+        String response = respond(prompt);
+        ChatClient.ChatClientRequestSpec spec = mock(ChatClient.ChatClientRequestSpec.class, RETURNS_DEEP_STUBS);
+        when(spec.call().chatResponse()).thenAnswer(invocation -> {
+            calls.incrementAndGet();
+            assertTrue(gate.await(5, TimeUnit.SECONDS));
+            return new ChatResponse(List.of(new Generation(response)));
+        });
+        when(spec.stream().content()).thenAnswer(invocation -> {
+            calls.incrementAndGet();
+            return streamContent.apply(response);
+        });
+        return spec;
+    }
+
+    /**
+     * 按 Prompt 中的文本生成模型响应：每个编号行是一道单选题
+     */
+    private static String respond(String prompt) {
+        String text = prompt.substring(prompt.indexOf("文本内容："));
+        StringBuilder items = new StringBuilder();
+        Matcher matcher = QUESTION_LINE.matcher(text);
+        while (matcher.find()) {
+            if (!items.isEmpty()) {
+                items.append(',');
+            }
+            items.append("{\"question\": \"").append(matcher.group(1))
+                    .append("\", \"questionType\": \"single_choice\", \"options\": [\"A. 甲\", \"B. 乙\"], \"answer\": \"A\"}");
+        }
+        return "{\"type\": \"question\", \"title\": \"测试题库\", \"items\": [" + items + "]}";
+    }
+
+    private static List<String> fragments(String response) {
+        List<String> fragments = new ArrayList<>();
+        for (int i = 0; i < response.length(); i += 7) {
+            fragments.add(response.substring(i, Math.min(response.length(), i + 7)));
+        }
+        return fragments;
+    }
+
+    private static List<String> questions(Map<String, Object> result) {
+        return ((List<?>) result.get("items")).stream()
+                .map(item -> ((QuestionItem) item).getQuestion())
+                .toList();
+    }
+
+    private void awaitCalls(int expected) {
+        awaitUntil(() -> calls.get() >= expected);
+    }
+
+    private void awaitCoalesced(int expected) {
+        awaitUntil(() -> registry.counter("pkqb.analysis.coalesced").count() >= expected);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            Thread.onSpinWait();
+        }
+    }
+
+    private AnalysisCacheService newCacheService() {
+        AppConfig appConfig = new AppConfig();
+        ReflectionTestUtils.setField(appConfig, "generatedPath", tempDir.toString());
+        AnalysisCacheService cacheService = new AnalysisCacheService(appConfig, objectMapper);
+        ReflectionTestUtils.setField(cacheService, "enabled", true);
+        ReflectionTestUtils.setField(cacheService, "maxEntries", 10);
+        ReflectionTestUtils.setField(cacheService, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(cacheService, "diskEnabled", false);
+        return cacheService;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.pkqb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DocxTextExtractorTest {
+
+    private static final String HEADER = "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\""
+            + " xmlns:mc=\"http://schemas.openxmlformats.org/markup-compatibility/2006\"><w:body>";
+    private static final String FOOTER = "</w:body></w:document>";
+
+    @Test
+    void extractsParagraphsAndTableCellsInOrder() throws IOException {
+        String text = extract("<w:p><w:r><w:t>1. 第一题</w:t></w:r></w:p>"
+                + "<w:tbl><w:tr><w:tc><w:p><w:r><w:t>A. 甲</w:t></w:r></w:p></w:tc>"
+                + "<w:tc><w:p><w:r><w:t>B. 乙</w:t></w:r></w:p></w:tc></w:tr></w:tbl>");
+
+        assertEquals("1. 第一题\nA. 甲\nB. 乙", text);
+    }
+
+    @Test
+    void keepsMovedTextOnlyAtNewLocation() throws IOException {
+        String text = extract("<w:p><w:moveFromRangeStart w:id=\"1\" w:name=\"move1\"/>"
+                + "<w:moveFrom w:id=\"2\"><w:r><w:t>被移动的段落</w:t></w:r></w:moveFrom>"
+                + "<w:moveFromRangeEnd w:id=\"1\"/></w:p>"
+                + "<w:p><w:r><w:t>中间段落</w:t></w:r></w:p>"
+                + "<w:p><w:moveToRangeStart w:id=\"3\" w:name=\"move1\"/>"
+                + "<w:moveTo w:id=\"4\"><w:r><w:t>被移动的段落</w:t></w:r></w:moveTo>"
+                + "<w:moveToRangeEnd w:id=\"3\"/></w:p>");
+
+        assertEquals("中间段落\n被移动的段落", text);
+    }
+
+    @Test
+    void skipsDeletedRevisionsFieldCodesAndFallback() throws IOException {
+        String text = extract("<w:p><w:r><w:t>保留</w:t></w:r>"
+                + "<w:del w:id=\"1\"><w:r><w:delText>删除</w:delText></w:r></w:del>"
+                + "<w:ins w:id=\"2\"><w:r><w:t>插入</w:t></w:r></w:ins>"
+                + "<w:r><w:instrText>PAGE</w:instrText></w:r>"
+                + "<mc:AlternateContent><mc:Choice><w:r><w:t>新版</w:t></w:r></mc:Choice>"
+                + "<mc:Fallback><w:r><w:t>旧版</w:t></w:r></mc:Fallback></mc:AlternateContent></w:p>");
+
+        assertEquals("保留插入新版", text);
+    }
+
+    private static String extract(String body) throws IOException {
+        byte[] xml = (HEADER + body + FOOTER).getBytes(StandardCharsets.UTF_8);
+        return DocxTextExtractor.extract(new ByteArrayInputStream(xml));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.pkqb.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsDocsAndPostings() throws IOException {
+        Path file = dir.resolve("seg-0.idx");
+        // 文档编号差值和词频跨越 1、2、3 字节 varint 的边界
+        int docs = 70_000;
+        int[] sparse = {0, 1, 127, 128, 128, 16_384, 16_511, 3, 69_999, 300};
+        int[] dense = new int[docs * 2];
+        for (int doc = 0; doc < docs; doc++) {
+            dense[doc * 2] = doc;
+            dense[doc * 2 + 1] = 1;
+        }
+        try (IndexSegmentWriter writer = new IndexSegmentWriter(file)) {
+            for (int doc = 0; doc < docs; doc++) {
+                writer.addDoc(1_000_000_000_000L + doc % 7, doc, doc % 50 + 1);
+            }
+            writer.addTerm(bytes("光合"), sparse, sparse.length);
+            writer.addTerm(bytes("酶"), dense, dense.length);
+            writer.finish();
+        }
+
+        IndexSegment segment = IndexSegment.open(file);
+        assertEquals(docs, segment.docCount());
+        assertEquals(2, segment.termCount());
+        assertEquals(1_000_000_000_006L, segment.bankId(6));
+        assertEquals(69_999, segment.seq(69_999));
+        assertEquals(50, segment.length(49));
+
+        int ord = segment.findTerm(bytes("光合"));
+        assertTrue(ord >= 0);
+        assertEquals(5, segment.df(ord));
+        assertArrayEquals(sparse, segment.postings(ord));
+        assertArrayEquals(bytes("光合"), segment.term(ord));
+        assertArrayEquals(dense, segment.postings(segment.findTerm(bytes("酶"))));
+        assertTrue(segment.findTerm(bytes("作用")) < 0);
+    }
+
+    @Test
+    void rejectsTermsOutOfOrder() throws IOException {
+        try (IndexSegmentWriter writer = new IndexSegmentWriter(dir.resolve("seg-1.idx"))) {
+            writer.addDoc(1, 0, 1);
+            writer.addTerm(bytes("b"), new int[]{0, 1}, 2);
+            assertThrows(IllegalStateException.class, () -> writer.addTerm(bytes("a"), new int[]{0, 1}, 2));
+        }
+    }
+
+    @Test
+    void rejectsFileWithWrongHeader() throws IOException {
+        Path file = dir.resolve("seg-2.idx");
+        Files.write(file, new byte[IndexSegment.HEADER_SIZE]);
+        assertThrows(IOException.class, () -> IndexSegment.open(file));
+    }
+
+    private static byte[] bytes(String term) {
+        return term.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.pkqb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmGuardTest {
+
+    private LlmGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        guard = new LlmGuard(new PipelineMetrics(new SimpleMeterRegistry()));
+        set("initialLimit", 4);
+        set("minLimit", 1);
+        set("maxLimit", 16);
+        set("permitsPerSecond", 0.0);
+        set("burst", 10);
+        set("acquireTimeoutMs", 1000L);
+        set("maxAttempts", 3);
+        set("initialBackoffMs", 1L);
+        set("maxBackoffMs", 5L);
+        set("failureRateThreshold", 50);
+        set("windowSize", 4);
+        set("minimumCalls", 4);
+        set("openDurationMs", 100L);
+        set("halfOpenCalls", 1);
+    }
+
+    @Test
+    void retriesTransientErrors() {
+        guard.init();
+        AtomicInteger attempts = new AtomicInteger();
+        String result = guard.call(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new TransientAiException("503 - Service Unavailable");
+            }
+            return "ok";
+        });
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        guard.init();
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(TransientAiException.class, () -> guard.call(() -> {
+            attempts.incrementAndGet();
+            throw new TransientAiException("429 - Too Many Requests");
+        }));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        guard.init();
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(NonTransientAiException.class, () -> guard.call(() -> {
+            attempts.incrementAndGet();
+            throw new NonTransientAiException("400 - Bad Request");
+        }));
+        assertEquals(1, attempts.get());
+        // 服务正常响应的错误不调整并发上限
+        assertEquals(4.0, guard.getLimit());
+    }
+
+    @Test
+    void retriesStreamOnlyBeforeFirstElement() {
+        guard.init();
+        AtomicInteger attempts = new AtomicInteger();
+        List<String> values = guard.stream(() -> attempts.incrementAndGet() == 1
+                ? Flux.<String>error(new TransientAiException("503 - busy"))
+                : Flux.just("a", "b")).collectList().block();
+        assertEquals(List.of("a", "b"), values);
+        assertEquals(2, attempts.get());
+
+        attempts.set(0);
+        assertThrows(TransientAiException.class, () -> guard.stream(() -> {
+            attempts.incrementAndGet();
+            return Flux.concat(Flux.just("a"), Flux.error(new TransientAiException("503 - busy")));
+        }).blockLast());
+        assertEquals(1, attempts.get());
+        assertEquals(0, guard.getInFlight());
+    }
+
+    @Test
+    void increasesLimitAdditivelyAndHalvesOnCongestion() {
+        set("maxAttempts", 1);
+        guard.init();
+        guard.call(() -> "ok");
+        assertEquals(4.25, guard.getLimit(), 1e-9);
+
+        assertThrows(TransientAiException.class, () -> guard.call(() -> {
+            throw new TransientAiException("429 - Too Many Requests");
+        }));
+        assertEquals(2.125, guard.getLimit(), 1e-9);
+
+        // 同一波限流只减半一次
+        assertThrows(TransientAiException.class, () -> guard.call(() -> {
+            throw new TransientAiException("429 - Too Many Requests");
+        }));
+        assertEquals(2.125, guard.getLimit(), 1e-9);
+        assertEquals(0, guard.getInFlight());
+    }
+
+    @Test
+    void rejectsWhenConcurrencyLimitStaysFull() throws Exception {
+        set("initialLimit", 1);
+        set("acquireTimeoutMs", 50L);
+        guard.init();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> holder = CompletableFuture.supplyAsync(() -> guard.call(() -> {
+            started.countDown();
+            await(release);
+            return "held";
+        }));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        assertThrows(LlmGuard.RejectedException.class, () -> guard.call(() -> "rejected"));
+        release.countDown();
+        assertEquals("held", holder.get(1, TimeUnit.SECONDS));
+        assertEquals("ok", guard.call(() -> "ok"));
+    }
+
+    @Test
+    void rateLimitsWithTokenBucket() {
+        set("permitsPerSecond", 1.0);
+        set("burst", 2);
+        set("acquireTimeoutMs", 0L);
+        guard.init();
+        assertEquals("1", guard.call(() -> "1"));
+        assertEquals("2", guard.call(() -> "2"));
+        assertThrows(LlmGuard.RejectedException.class, () -> guard.call(() -> "3"));
+    }
+
+    @Test
+    void waitsForTokenWithinTimeout() {
+        set("permitsPerSecond", 20.0);
+        set("burst", 1);
+        guard.init();
+        long start = System.nanoTime();
+        guard.call(() -> "1");
+        guard.call(() -> "2");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs >= 40, "第二次调用应等待约 50ms 补充令牌: " + elapsedMs);
+    }
+
+    @Test
+    void opensCircuitOnFailureRateAndClosesAfterTrial() throws InterruptedException {
+        set("maxAttempts", 1);
+        guard.init();
+        for (int i = 0; i < 4; i++) {
+            assertThrows(TransientAiException.class, () -> guard.call(() -> {
+                throw new TransientAiException("500 - Internal Server Error");
+            }));
+        }
+        assertEquals(LlmGuard.CircuitState.OPEN, guard.getCircuitState());
+
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(LlmGuard.RejectedException.class, () -> guard.call(calls::incrementAndGet));
+        assertEquals(0, calls.get());
+
+        Thread.sleep(150);
+        assertEquals(1, guard.call(calls::incrementAndGet));
+        assertEquals(LlmGuard.CircuitState.CLOSED, guard.getCircuitState());
+    }
+
+    @Test
+    void reopensCircuitWhenTrialFails() throws InterruptedException {
+        set("maxAttempts", 1);
+        guard.init();
+        for (int i = 0; i < 4; i++) {
+            assertThrows(TransientAiException.class, () -> guard.call(() -> {
+                throw new TransientAiException("502 - Bad Gateway");
+            }));
+        }
+        Thread.sleep(150);
+        assertThrows(TransientAiException.class, () -> guard.call(() -> {
+            throw new TransientAiException("502 - Bad Gateway");
+        }));
+        assertEquals(LlmGuard.CircuitState.OPEN, guard.getCircuitState());
+    }
+
+    @Test
+    void classifiesErrors() {
+        assertTrue(LlmGuard.isTransient(new TransientAiException("503 - busy")));
+        assertTrue(LlmGuard.isTransient(new RuntimeException(new SocketTimeoutException())));
+        assertFalse(LlmGuard.isTransient(new NonTransientAiException("401 - Unauthorized")));
+        assertEquals(429, LlmGuard.statusOf(new RuntimeException(new TransientAiException("429 - slow down"))));
+    }
+
+    private void set(String field, Object value) {
+        ReflectionTestUtils.setField(guard, field, value);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.pkqb.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParseCacheServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path sourceDir;
+    private Path cacheDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sourceDir = Files.createDirectory(tempDir.resolve("source"));
+        cacheDir = tempDir.resolve("cache");
+    }
+
+    @Test
+    void writesDiskEntriesOnlyToCacheDirectory() throws IOException {
+        Path file = Files.writeString(sourceDir.resolve("a.pdf"), "内容");
+        newService().put("pdf", file.toString(), "解析结果");
+
+        // 原文件目录保持不变
+        try (Stream<Path> files = Files.list(sourceDir)) {
+            assertEquals(1, files.count());
+        }
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertTrue(files.allMatch(f -> f.getFileName().toString().matches("[0-9a-f]{64}-pdf\\.txt\\.gz")));
+        }
+    }
+
+    @Test
+    void hitsByContentAcrossPathsAndRestarts() throws IOException {
+        Path first = Files.writeString(sourceDir.resolve("a.pdf"), "相同内容");
+        Path second = Files.writeString(sourceDir.resolve("b.pdf"), "相同内容");
+        newService().put("pdf", first.toString(), "解析结果");
+
+        // 新实例只有磁盘层
+        ParseCacheService restarted = newService();
+        assertEquals("解析结果", restarted.get("pdf", second.toString()));
+        assertNull(restarted.get("word", second.toString()));
+    }
+
+    @Test
+    void missesAfterContentChanges() throws IOException {
+        Path file = Files.writeString(sourceDir.resolve("a.pdf"), "旧内容");
+        ParseCacheService service = newService();
+        service.put("pdf", file.toString(), "旧结果");
+
+        Files.writeString(file, "新的内容");
+        Files.setLastModifiedTime(file, FileTime.from(Files.getLastModifiedTime(file).toInstant().plusSeconds(5)));
+        assertNull(service.get("pdf", file.toString()));
+    }
+
+    @Test
+    void evictRemovesEveryTypeOfDigest() throws IOException {
+        Path file = Files.writeString(sourceDir.resolve("a.pdf"), "内容");
+        ParseCacheService service = newService();
+        service.put("pdf", file.toString(), "PDF 结果");
+        service.put("word", file.toString(), "Word 结果");
+
+        String name;
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            name = files.findFirst().orElseThrow().getFileName().toString();
+        }
+        service.evict(name.substring(0, name.indexOf('-')));
+
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(0, files.count());
+        }
+        assertNull(service.get("pdf", file.toString()));
+    }
+
+    private ParseCacheService newService() {
+        ParseCacheService service = new ParseCacheService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxChars", 1000L);
+        ReflectionTestUtils.setField(service, "diskEnabled", true);
+        ReflectionTestUtils.setField(service, "cacheDir", cacheDir.toString());
+        return service;
+    }
+}
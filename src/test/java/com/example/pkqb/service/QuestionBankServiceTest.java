@@ -0,0 +1,261 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.GenerateRequest;
+import com.example.pkqb.model.NoteItem;
+import com.example.pkqb.model.PageResult;
+import com.example.pkqb.model.QuestionBank;
+import com.example.pkqb.model.QuestionItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+class QuestionBankServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private SearchIndexService searchIndexService;
+    private QuestionDedupService questionDedupService;
+    private QuestionBankService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bank-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        searchIndexService = openIndex("index");
+        questionDedupService = new QuestionDedupService(jdbcTemplate, new ObjectMapper(),
+                new PipelineMetrics(new SimpleMeterRegistry()), "flag", 0.8, false);
+        service = newService(questionDedupService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void savesBankItemsAndFingerprintsTogether() {
+        // 前端提交的 JSON 对象带有界面字段
+        Map<String, Object> submitted = new LinkedHashMap<>();
+        submitted.put("question", "线粒体是有氧呼吸的主要场所吗");
+        submitted.put("questionType", "true_false");
+        submitted.put("answer", "正确");
+        submitted.put("selected", true);
+        Long bankId = service.save(GenerateRequest.builder()
+                .type("question")
+                .title("细胞")
+                .items(List.of(submitted, question("下列关于叶绿体的叙述，正确的是", "A. 含有 DNA", "B. 不含色素")))
+                .build(), "file-1");
+
+        assertNotNull(bankId);
+        QuestionBank bank = service.getBank(bankId);
+        assertEquals("question", bank.getType());
+        assertEquals("细胞", bank.getTitle());
+        assertEquals(2, bank.getItemCount());
+        assertEquals("file-1", bank.getFileId());
+
+        List<Object> items = service.getItems(bankId, 0, 10).getItems();
+        QuestionItem first = assertInstanceOf(QuestionItem.class, items.get(0));
+        assertEquals("正确", first.getAnswer());
+        assertEquals(List.of("A. 含有 DNA", "B. 不含色素"), ((QuestionItem) items.get(1)).getOptions());
+        assertEquals(2, count("question_fingerprint"));
+        assertEquals(1, service.search("叶绿体", 0, 10).getTotal());
+    }
+
+    @Test
+    void rollsBackBankWhenFingerprintsFail() {
+        QuestionDedupService failing = mock(QuestionDedupService.class);
+        doThrow(new DataIntegrityViolationException("写入指纹失败")).when(failing).storeFingerprints(anyLong(), anyList());
+        QuestionBankService failingService = newService(failing);
+
+        assertNull(failingService.save(request("question", question("第一题")), "file-1"));
+        assertEquals(0, count("question_bank"));
+        assertEquals(0, count("bank_item"));
+        assertEquals(0, searchIndexService.search("第一题", 0, 10).total());
+    }
+
+    @Test
+    void listsBanksByTypeAndTimeNewestFirst() {
+        long q1 = service.save(request("question", question("第一题")), null);
+        long n1 = service.save(request("note", note("笔记一")), null);
+        long q2 = service.save(request("question", question("第二题")), null);
+        long q3 = service.save(request("question", question("第三题")), null);
+        setCreatedAt(q1, 1000);
+        setCreatedAt(n1, 2000);
+        setCreatedAt(q2, 3000);
+        setCreatedAt(q3, 3000);
+
+        PageResult<QuestionBank> all = service.listBanks(null, null, null, 0, 10);
+        assertEquals(List.of(q3, q2, n1, q1), ids(all));
+        assertEquals(4, all.getTotal());
+
+        PageResult<QuestionBank> questions = service.listBanks("question", null, null, 0, 2);
+        assertEquals(List.of(q3, q2), ids(questions));
+        assertEquals(3, questions.getTotal());
+        assertTrue(questions.isHasNext());
+        PageResult<QuestionBank> next = service.listBanks("QUESTION", null, null, 1, 2);
+        assertEquals(List.of(q1), ids(next));
+        assertFalse(next.isHasNext());
+
+        // from 包含，to 不包含
+        assertEquals(List.of(n1, q1), ids(service.listBanks(null, 1000L, 3000L, 0, 10)));
+        assertEquals(List.of(q3, q2), ids(service.listBanks("question", 2000L, null, 0, 10)));
+        assertEquals(0, service.listBanks(null, 4000L, null, 0, 10).getTotal());
+    }
+
+    @Test
+    void rejectsInvalidListParameters() {
+        assertEquals(400, assertThrows(BusinessException.class,
+                () -> service.listBanks("exam", null, null, 0, 10)).getCode());
+        assertEquals(400, assertThrows(BusinessException.class,
+                () -> service.listBanks(null, null, null, -1, 10)).getCode());
+        assertEquals(400, assertThrows(BusinessException.class,
+                () -> service.listBanks(null, null, null, 0, 0)).getCode());
+    }
+
+    @Test
+    void pagesItemsByKeyRange() {
+        long bankId = service.save(request("note",
+                note("第一节"), note("第二节"), note("第三节"), note("第四节"), note("第五节")), null);
+
+        PageResult<Object> first = service.getItems(bankId, 0, 2);
+        assertEquals(List.of("第一节", "第二节"), titles(first));
+        assertTrue(first.isHasNext());
+        PageResult<Object> last = service.getItems(bankId, 2, 2);
+        assertEquals(List.of("第五节"), titles(last));
+        assertFalse(last.isHasNext());
+        assertEquals(5, last.getTotal());
+
+        // 超出末尾返回空页而不是报错
+        PageResult<Object> beyond = service.getItems(bankId, 3, 2);
+        assertTrue(beyond.getItems().isEmpty());
+        assertEquals(5, beyond.getTotal());
+
+        // 每页条数超过上限时取上限（测试中为 4）
+        PageResult<Object> capped = service.getItems(bankId, 1, 100);
+        assertEquals(4, capped.getSize());
+        assertEquals(List.of("第五节"), titles(capped));
+
+        assertEquals(404, assertThrows(BusinessException.class, () -> service.getItems(bankId + 1, 0, 2)).getCode());
+    }
+
+    @Test
+    void deleteCascadesAndRemovesFromIndex() {
+        long kept = service.save(request("question", question("叶绿体是光合作用的场所")), null);
+        long bankId = service.save(request("question", question("线粒体是有氧呼吸的场所"), question("线粒体含有 DNA")), null);
+        assertEquals(2, service.search("线粒体", 0, 10).getTotal());
+
+        assertTrue(service.delete(bankId));
+        assertEquals(1, count("bank_item"));
+        assertEquals(1, count("question_fingerprint"));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM question_fingerprint_band WHERE bank_id = ?", Long.class, bankId));
+        assertEquals(0, service.search("线粒体", 0, 10).getTotal());
+        assertEquals(1, service.search("叶绿体", 0, 10).getTotal());
+        assertEquals(404, assertThrows(BusinessException.class, () -> service.getBank(bankId)).getCode());
+        assertFalse(service.delete(bankId));
+        assertEquals(kept, service.getBank(kept).getId());
+    }
+
+    @Test
+    void rebuildsRequestForRerendering() {
+        long bankId = service.save(GenerateRequest.builder()
+                .type("note")
+                .title("细胞结构")
+                .items(List.of(note("细胞膜"), note("细胞核")))
+                .build(), "file-1");
+
+        GenerateRequest request = service.getGenerateRequest(bankId);
+        assertEquals("note", request.getType());
+        assertEquals("细胞结构", request.getTitle());
+        assertEquals(List.of(note("细胞膜"), note("细胞核")), request.getItems());
+    }
+
+    @Test
+    void indexesBanksMissingFromIndexOnStartup() throws IOException {
+        long bankId = service.save(request("question", question("线粒体是有氧呼吸的场所")), null);
+
+        // 索引目录丢失后重新打开
+        searchIndexService = openIndex("rebuilt");
+        service = newService(questionDedupService);
+        service.indexMissingBanks();
+        assertEquals(bankId, service.search("线粒体", 0, 10).getItems().get(0).getBankId());
+    }
+
+    private QuestionBankService newService(QuestionDedupService dedupService) {
+        return new QuestionBankService(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                new ObjectMapper(), searchIndexService, dedupService, 4);
+    }
+
+    private SearchIndexService openIndex(String name) throws IOException {
+        SearchIndexService index = new SearchIndexService(tempDir.resolve(name).toString(), 1000, 4, 1000);
+        index.open();
+        return index;
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private void setCreatedAt(long bankId, long createdAt) {
+        jdbcTemplate.update("UPDATE question_bank SET created_at = ? WHERE id = ?", createdAt, bankId);
+    }
+
+    private static List<Long> ids(PageResult<QuestionBank> page) {
+        return page.getItems().stream().map(QuestionBank::getId).toList();
+    }
+
+    private static List<String> titles(PageResult<Object> page) {
+        return page.getItems().stream().map(item -> ((NoteItem) item).getTitle()).toList();
+    }
+
+    private static GenerateRequest request(String type, Object... items) {
+        return GenerateRequest.builder().type(type).title("标题").items(List.of(items)).build();
+    }
+
+    private static QuestionItem question(String text, String... options) {
+        return QuestionItem.builder()
+                .question(text)
+                .questionType("single_choice")
+                .options(List.of(options))
+                .answer("A")
+                .build();
+    }
+
+    private static NoteItem note(String title) {
+        return NoteItem.builder().title(title).content(title + "的内容").build();
+    }
+}
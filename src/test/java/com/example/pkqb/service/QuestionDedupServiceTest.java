@@ -0,0 +1,152 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.model.DuplicateItem;
+import com.example.pkqb.model.QuestionItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuestionDedupServiceTest {
+
+    private static final List<String> OPTIONS = List.of(
+            "A. 酶都是蛋白质", "B. 酶能降低化学反应的活化能", "C. 酶只能在细胞内发挥作用", "D. 高温和低温都会使酶永久失活");
+
+    private JdbcTemplate jdbcTemplate;
+    private QuestionDedupService service;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:dedup-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        service = new QuestionDedupService(jdbcTemplate, new ObjectMapper(),
+                new PipelineMetrics(new SimpleMeterRegistry()), "merge", 0.8, false);
+    }
+
+    @Test
+    void ignoresNumberingAndOptionLabels() {
+        QuestionDedupService.Fingerprint a = QuestionDedupService.fingerprint(question("1. 下列关于酶的叙述，正确的是", "B", OPTIONS));
+        QuestionDedupService.Fingerprint b = QuestionDedupService.fingerprint(question("（12）下列关于酶的叙述，正确的是", "B",
+                OPTIONS.stream().map(option -> "(" + option.charAt(0) + ")" + option.substring(2)).toList()));
+        assertEquals(1.0, QuestionDedupService.similarity(a, b));
+        assertArrayEquals(a.bandKeys(), b.bandKeys());
+    }
+
+    @Test
+    void scoresNearDuplicatesAboveThreshold() {
+        QuestionDedupService.Fingerprint a = QuestionDedupService.fingerprint(question("下列关于酶的叙述，正确的是", "B", OPTIONS));
+        QuestionDedupService.Fingerprint b = QuestionDedupService.fingerprint(question("下列有关酶的叙述，正确的是", "B", OPTIONS));
+        double similarity = QuestionDedupService.similarity(a, b);
+        assertTrue(similarity >= 0.8 && similarity < 1.0, "similarity=" + similarity);
+        assertTrue(sharesBand(a, b));
+    }
+
+    @Test
+    void separatesOppositePolarity() {
+        QuestionDedupService.Fingerprint positive = QuestionDedupService.fingerprint(question("下列关于酶的叙述，正确的是", "B", OPTIONS));
+        QuestionDedupService.Fingerprint negative = QuestionDedupService.fingerprint(question("下列关于酶的叙述，错误的是", "ACD", OPTIONS));
+        assertNotEquals(positive.polarity(), negative.polarity());
+        assertEquals(0.0, QuestionDedupService.similarity(positive, negative));
+        assertFalse(sharesBand(positive, negative));
+
+        QuestionDedupService.Fingerprint belongs = QuestionDedupService.fingerprint(question("下列物质属于蛋白质的是", null, OPTIONS));
+        QuestionDedupService.Fingerprint notBelongs = QuestionDedupService.fingerprint(question("下列物质不属于蛋白质的是", null, OPTIONS));
+        assertEquals(0.0, QuestionDedupService.similarity(belongs, notBelongs));
+    }
+
+    @Test
+    void acceptsOnlyIdenticalShortQuestions() {
+        QuestionDedupService.Fingerprint a = QuestionDedupService.fingerprint(question("酶是蛋白质", null, null));
+        QuestionDedupService.Fingerprint b = QuestionDedupService.fingerprint(question("酶是糖类", null, null));
+        assertEquals(0.0, QuestionDedupService.similarity(a, b));
+        assertEquals(1.0, QuestionDedupService.similarity(a, QuestionDedupService.fingerprint(question("2. 酶是蛋白质", null, null))));
+        assertNull(QuestionDedupService.fingerprint(question("  ", null, null)));
+    }
+
+    @Test
+    void roundTripsSignatureBytes() {
+        QuestionDedupService.Fingerprint a = QuestionDedupService.fingerprint(question("下列关于酶的叙述，错误的是", null, OPTIONS));
+        QuestionDedupService.Fingerprint b = QuestionDedupService.Fingerprint.fromBytes(a.toBytes(), a.features(), a.polarity());
+        assertArrayEquals(a.signature(), b.signature());
+        assertArrayEquals(a.bandKeys(), b.bandKeys());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void mergeRemovesDuplicatesWithoutCopyingAnswers() {
+        QuestionItem first = question("下列关于酶的叙述，正确的是", null, OPTIONS);
+        QuestionItem second = question("下列有关酶的叙述，正确的是", "B", OPTIONS);
+        QuestionItem opposite = question("下列关于酶的叙述，错误的是", "ACD", OPTIONS);
+
+        Map<String, Object> result = service.dedup(analysis(first, second, opposite));
+
+        assertEquals(List.of(first, opposite), result.get("items"));
+        assertNull(first.getAnswer());
+        List<DuplicateItem> duplicates = (List<DuplicateItem>) result.get("duplicates");
+        assertEquals(1, duplicates.size());
+        assertEquals(1, duplicates.get(0).getIndex());
+        assertEquals(0, duplicates.get(0).getDuplicateOfIndex());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findsDuplicatesInStoredBanks() {
+        jdbcTemplate.update("INSERT INTO question_bank (id, type, title, item_count, created_at) VALUES (7, 'question', 't', 2, 0)");
+        service.storeFingerprints(7, List.of(
+                question("下列关于酶的叙述，正确的是", "B", OPTIONS),
+                question("下列关于酶的叙述，错误的是", "ACD", OPTIONS)));
+        assertEquals(32, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM question_fingerprint_band", Integer.class));
+
+        Map<String, Object> result = service.dedup(analysis(question("下列关于酶的叙述，错误的是", "ACD", OPTIONS)));
+        List<DuplicateItem> duplicates = (List<DuplicateItem>) result.get("duplicates");
+        assertEquals(1, duplicates.size());
+        assertEquals(7L, duplicates.get(0).getBankId());
+        assertEquals(1, duplicates.get(0).getSeq());
+    }
+
+    @Test
+    void leavesNotesUntouched() {
+        Map<String, Object> analysis = Map.of("type", "note", "items", List.of());
+        assertSame(analysis, service.dedup(analysis));
+    }
+
+    private static boolean sharesBand(QuestionDedupService.Fingerprint a, QuestionDedupService.Fingerprint b) {
+        long[] aKeys = a.bandKeys();
+        long[] bKeys = b.bandKeys();
+        for (int band = 0; band < aKeys.length; band++) {
+            if (aKeys[band] == bKeys[band]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, Object> analysis(QuestionItem... items) {
+        Map<String, Object> analysis = new HashMap<>();
+        analysis.put("type", "question");
+        analysis.put("items", List.of((Object[]) items));
+        return analysis;
+    }
+
+    private static QuestionItem question(String text, String answer, List<String> options) {
+        return QuestionItem.builder().question(text).answer(answer).options(options).questionType("single").build();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.model.NoteItem;
+import com.example.pkqb.model.QuestionItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegexExtractionEngineTest {
+
+    private final RegexExtractionEngine engine = new RegexExtractionEngine();
+
+    @Test
+    void skipsSectionHeadings() {
+        List<QuestionItem> questions = engine.extractQuestions("""
+                一、单选题（每题2分）
+                1. 第一题？
+                A. 甲
+                B. 乙
+                答案：A
+                第二部分 判断题
+                2. 地球是圆的。
+                答案：正确
+                ## 多选题
+                3. 第三题？
+                A. 1
+                B. 2
+                C. 3
+                答案：A,C
+                简答题：
+                4. 第四题？
+                """);
+
+        assertEquals(List.of("第一题？", "地球是圆的。", "第三题？", "第四题？"),
+                questions.stream().map(QuestionItem::getQuestion).toList());
+        assertEquals(List.of("甲", "乙"), questions.get(0).getOptions());
+        assertEquals("true_false", questions.get(1).getQuestionType());
+        assertEquals("multiple_choice", questions.get(2).getQuestionType());
+    }
+
+    @Test
+    void chineseNumberedQuestionIsNotHeading() {
+        List<QuestionItem> questions = engine.extractQuestions("""
+                一、下列说法正确的是？
+                A. 甲
+                B. 乙
+                """);
+
+        assertEquals(1, questions.size());
+        assertEquals("下列说法正确的是？", questions.get(0).getQuestion());
+    }
+
+    @Test
+    void splitsInlineOptions() {
+        List<QuestionItem> questions = engine.extractQuestions("""
+                1. 第一题？
+                A.甲 B.乙 C.丙 D.丁
+                2. 第二题？
+                A.甲B.乙
+                C.丙D.丁
+                3. 第三题？
+                (A) 一 (B) 二
+                """);
+
+        assertEquals(List.of("甲", "乙", "丙", "丁"), questions.get(0).getOptions());
+        assertEquals(List.of("甲", "乙", "丙", "丁"), questions.get(1).getOptions());
+        assertEquals(List.of("一", "二"), questions.get(2).getOptions());
+    }
+
+    @Test
+    void splitsOptionsWrittenOnQuestionLine() {
+        List<QuestionItem> questions = engine.extractQuestions("""
+                1. 下列属于水果的是 A.苹果 B.白菜 C.土豆
+                答案：A
+                """);
+
+        assertEquals(1, questions.size());
+        assertEquals("下列属于水果的是", questions.get(0).getQuestion());
+        assertEquals(List.of("苹果", "白菜", "土豆"), questions.get(0).getOptions());
+        assertEquals("A", questions.get(0).getAnswer());
+    }
+
+    @Test
+    void keepsLettersThatAreNotOptions() {
+        List<QuestionItem> questions = engine.extractQuestions("""
+                1. 缺乏维生素A.会怎样？
+                A. 夜盲症 B. 维生素B.族缺乏 C. 3.5B.2
+                """);
+
+        // 题干中只有一个 "A." 不拆；选项中的 "B." 前是汉字但字母顺序不符，"5B." 前是数字
+        assertEquals("缺乏维生素A.会怎样？", questions.get(0).getQuestion());
+        assertEquals(List.of("夜盲症", "维生素B.族缺乏", "3.5B.2"), questions.get(0).getOptions());
+    }
+
+    @Test
+    void splitsNotesAtHeadingsWithoutBlankLines() {
+        List<NoteItem> notes = engine.extractNotes("""
+                第一章 细胞的结构
+                细胞由细胞膜、细胞质和细胞核组成。
+                一、细胞膜的功能
+                控制物质进出细胞，进行细胞间的信息交流。
+                1.2 细胞核
+                细胞核是遗传信息库，是细胞代谢和遗传的控制中心。
+                """);
+
+        assertEquals(List.of("第一章 细胞的结构", "一、细胞膜的功能", "1.2 细胞核"),
+                notes.stream().map(NoteItem::getTitle).toList());
+        assertEquals("控制物质进出细胞，进行细胞间的信息交流。", notes.get(1).getContent());
+    }
+
+    @Test
+    void markdownHeadingKeepsFollowingParagraph() {
+        List<NoteItem> notes = engine.extractNotes("""
+                # 光合作用
+
+                绿色植物利用光能，把二氧化碳和水转化成储存能量的有机物。
+
+                呼吸作用是细胞内有机物氧化分解并释放能量的过程。
+                """);
+
+        assertEquals(2, notes.size());
+        assertEquals("光合作用", notes.get(0).getTitle());
+        assertTrue(notes.get(0).getContent().startsWith("绿色植物"));
+        assertEquals("呼吸作用是细胞内有机物氧化分解并释放能量的过程。", notes.get(1).getTitle());
+    }
+
+    @Test
+    void numberedListItemsAreNotNoteHeadings() {
+        List<NoteItem> notes = engine.extractNotes("""
+                学习方法总结如下
+                1. 课前预习，带着问题听课
+                2. 课后复习，及时整理笔记
+                """);
+
+        assertEquals(1, notes.size());
+        assertEquals("学习方法总结如下", notes.get(0).getTitle());
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.QuestionItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private SearchIndexService index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index = open();
+    }
+
+    @Test
+    void ranksByBm25() {
+        index.index(1, List.of(
+                question("细胞呼吸的场所是线粒体，线粒体是有氧呼吸的主要场所"),
+                question("叶绿体是光合作用的场所"),
+                question("线粒体和叶绿体都含有少量 DNA，下列关于两种细胞器的叙述中正确的是哪一项")));
+
+        List<SearchIndexService.Hit> hits = index.search("线粒体", 0, 10).hits();
+        assertEquals(List.of(0, 2), hits.stream().map(SearchIndexService.Hit::seq).toList());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+
+        // 稀有词的 idf 更高
+        hits = index.search("叶绿体", 0, 10).hits();
+        assertEquals(List.of(1, 2), hits.stream().map(SearchIndexService.Hit::seq).toList());
+        assertTrue(index.search("光合作用", 0, 10).hits().get(0).score() > hits.get(0).score());
+    }
+
+    @Test
+    void requiresAllTerms() {
+        index.index(1, List.of(question("线粒体的功能"), question("有丝分裂的过程"), question("线粒体在有丝分裂中的分配")));
+        SearchIndexService.Hits hits = index.search("线粒体 有丝分裂", 0, 10);
+        assertEquals(1, hits.total());
+        assertEquals(2, hits.hits().get(0).seq());
+    }
+
+    @Test
+    void matchesSingleCharacterQueryInsideWords() {
+        index.index(1, List.of(question("唾液淀粉酶的最适温度"), question("淀粉遇碘变蓝")));
+        assertEquals(1, index.search("酶", 0, 10).total());
+        index.flush();
+        assertEquals(1, index.search("酶", 0, 10).total());
+    }
+
+    @Test
+    void returnsSameResultsFromBufferAndSegments() {
+        index.index(1, List.of(question("线粒体是有氧呼吸的主要场所"), question("线粒体含有 DNA")));
+        index.index(2, List.of(question("线粒体")));
+        SearchIndexService.Hits buffered = index.search("线粒体", 0, 10);
+        index.flush();
+        assertEquals(buffered, index.search("线粒体", 0, 10));
+    }
+
+    @Test
+    void pagesWithOffset() {
+        index.index(1, List.of(question("酶"), question("酶 酶"), question("酶 酶 酶")));
+        SearchIndexService.Hits page = index.search("酶", 1, 1);
+        assertEquals(3, page.total());
+        assertEquals(1, page.hits().size());
+        assertEquals(index.search("酶", 0, 3).hits().get(1), page.hits().get(0));
+        assertTrue(index.search("酶", 5, 1).hits().isEmpty());
+        assertThrows(BusinessException.class, () -> index.search("酶", (long) Integer.MAX_VALUE * 20, 20));
+    }
+
+    @Test
+    void excludesDeletedBanksAndForgetsThemAfterMerge() throws IOException {
+        index.index(1, List.of(question("线粒体")));
+        index.flush();
+        index.index(2, List.of(question("线粒体")));
+        index.deleteBank(1);
+        assertEquals(List.of(2L), index.search("线粒体", 0, 10).hits().stream().map(SearchIndexService.Hit::bankId).toList());
+
+        // 第三个段触发合并（max-segments=2），题库 1 的文档被物理删除
+        index.flush();
+        index.index(3, List.of(question("线粒体")));
+        index.flush();
+        assertEquals(List.of(3L, 2L), index.search("线粒体", 0, 10).hits().stream().map(SearchIndexService.Hit::bankId).toList());
+        assertEquals(List.of(), Files.readAllLines(dir.resolve("deleted-banks")));
+        assertEquals(Set.of(2L, 3L), index.indexedBankIds());
+
+        index = open();
+        assertEquals(2, index.search("线粒体", 0, 10).total());
+    }
+
+    @Test
+    void keepsDeletedBanksStillInUnmergedSegments() throws IOException {
+        index.index(1, List.of(question("线粒体")));
+        index.flush();
+        index.deleteBank(1);
+        index = open();
+        assertEquals(0, index.search("线粒体", 0, 10).total());
+        assertEquals(List.of("1"), Files.readAllLines(dir.resolve("deleted-banks")));
+    }
+
+    @Test
+    void discardsUnreadableIndexOnOpen() throws IOException {
+        index.index(1, List.of(question("线粒体")));
+        index.flush();
+        Path segment = dir.resolve(Files.readAllLines(dir.resolve("segments")).get(0));
+        Files.write(segment, new byte[64]);
+
+        index = open();
+        assertEquals(0, index.search("线粒体", 0, 10).total());
+        assertTrue(index.indexedBankIds().isEmpty());
+        assertTrue(Files.notExists(segment));
+    }
+
+    @Test
+    void indexDoesNotWaitForFlushOrMerge() throws Exception {
+        SearchIndexService service = new SearchIndexService(dir.resolve("small").toString(), 2, 2, 1000);
+        service.open();
+        Object flushMutex = ReflectionTestUtils.getField(service, "flushMutex");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 模拟正在进行的长时间合并
+        Thread merger = new Thread(() -> {
+            synchronized (flushMutex) {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        merger.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        // 每次都超过 flush-items，但保存线程不等待写出
+        CompletableFuture.runAsync(() -> {
+            for (long bankId = 1; bankId <= 5; bankId++) {
+                service.index(bankId, List.of(question("线粒体"), question("叶绿体")));
+            }
+        }).get(5, TimeUnit.SECONDS);
+        assertEquals(5, service.search("线粒体", 0, 10).total());
+        assertTrue(Files.notExists(dir.resolve("small").resolve("segments")));
+
+        release.countDown();
+        merger.join();
+        service.flush();
+        assertEquals(5, service.search("线粒体", 0, 10).total());
+        assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), service.indexedBankIds());
+        List<String> segments = Files.readAllLines(dir.resolve("small").resolve("segments"));
+        assertTrue(!segments.isEmpty() && segments.size() <= 2, segments.toString());
+    }
+
+    @Test
+    void searchesSealedBuffersBeforeTheyAreWritten() throws Exception {
+        SearchIndexService service = new SearchIndexService(dir.resolve("sealed").toString(), 1, 2, 1000);
+        service.open();
+        Object flushMutex = ReflectionTestUtils.getField(service, "flushMutex");
+        synchronized (flushMutex) {
+            service.index(1, List.of(question("线粒体")));
+            service.index(2, List.of(question("线粒体 线粒体")));
+            service.index(3, List.of(question("叶绿体")));
+            service.deleteBank(3);
+            SearchIndexService.Hits hits = service.search("线粒体", 0, 10);
+            assertEquals(List.of(2L, 1L), hits.hits().stream().map(SearchIndexService.Hit::bankId).toList());
+            assertEquals(0, service.search("叶绿体", 0, 10).total());
+        }
+        service.close();
+        assertEquals(Set.of(1L, 2L), service.indexedBankIds());
+    }
+
+    private SearchIndexService open() throws IOException {
+        SearchIndexService service = new SearchIndexService(dir.toString(), 1000, 2, 1000);
+        service.open();
+        return service;
+    }
+
+    private static QuestionItem question(String text) {
+        return QuestionItem.builder().question(text).build();
+    }
+}
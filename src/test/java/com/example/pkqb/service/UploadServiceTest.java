@@ -0,0 +1,121 @@
+package com.example.pkqb.service;
+
+import com.example.pkqb.config.AppConfig;
+import com.example.pkqb.exception.BusinessException;
+import com.example.pkqb.model.UploadedFile;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class UploadServiceTest {
+
+    private static final byte[] PDF = "%PDF-1.4\n题库内容".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path tempDir;
+
+    private UploadService uploadService;
+
+    @BeforeEach
+    void setUp() {
+        uploadService = newService();
+    }
+
+    @Test
+    void sameContentSharesFileWithSeparateTokens() {
+        UploadedFile first = save();
+        UploadedFile second = save();
+
+        assertEquals(first.getFileId(), second.getFileId());
+        assertTrue(second.isDuplicate());
+        assertNotNull(first.getUploadToken());
+        assertNotEquals(first.getUploadToken(), second.getUploadToken());
+    }
+
+    @Test
+    void digestAloneDoesNotDeduplicate() {
+        UploadedFile uploaded = save();
+
+        assertNull(uploadService.findByDigest(uploaded.getSha256(), null, "a.pdf", "pdf"));
+        assertNull(uploadService.findByDigest(uploaded.getSha256(), "猜测的凭证", "a.pdf", "pdf"));
+        // 只有一个引用：释放后文件被删除
+        assertTrue(uploadService.release(uploaded.getFileId(), uploaded.getUploadToken()));
+        assertFalse(Files.exists(Paths.get(uploaded.getFilePath())));
+    }
+
+    @Test
+    void digestWithIssuedTokenAddsReference() {
+        UploadedFile uploaded = save();
+
+        UploadedFile existing = uploadService.findByDigest(uploaded.getSha256().toUpperCase(),
+                uploaded.getUploadToken(), "b.pdf", "pdf");
+        assertNotNull(existing);
+        assertEquals(uploaded.getFileId(), existing.getFileId());
+        assertNotEquals(uploaded.getUploadToken(), existing.getUploadToken());
+        // 类型不符时不命中
+        assertNull(uploadService.findByDigest(uploaded.getSha256(), uploaded.getUploadToken(), "b.docx", "word"));
+
+        uploadService.release(uploaded.getFileId(), uploaded.getUploadToken());
+        assertTrue(Files.exists(Paths.get(uploaded.getFilePath())));
+        uploadService.release(existing.getFileId(), existing.getUploadToken());
+        assertFalse(Files.exists(Paths.get(uploaded.getFilePath())));
+    }
+
+    @Test
+    void releaseRequiresOwnToken() {
+        UploadedFile mine = save();
+        UploadedFile other = save();
+
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> uploadService.release(mine.getFileId(), null));
+        assertEquals(403, e.getCode());
+        assertThrows(BusinessException.class, () -> uploadService.release(mine.getFileId(), "不存在的凭证"));
+
+        uploadService.release(mine.getFileId(), mine.getUploadToken());
+        // 同一凭证不能释放两次，也就不能把别人的引用释放掉
+        assertThrows(BusinessException.class, () -> uploadService.release(mine.getFileId(), mine.getUploadToken()));
+        assertTrue(Files.exists(Paths.get(other.getFilePath())));
+        assertFalse(uploadService.release("不存在的文件", other.getUploadToken()));
+    }
+
+    @Test
+    void referencesSurviveRestart() {
+        UploadedFile uploaded = save();
+
+        UploadService restarted = newService();
+        restarted.loadIndex();
+        UploadedFile again = restarted.findByDigest(uploaded.getSha256(), uploaded.getUploadToken(), "a.pdf", "pdf");
+        assertNotNull(again);
+        assertTrue(restarted.release(uploaded.getFileId(), uploaded.getUploadToken()));
+        assertTrue(restarted.release(again.getFileId(), again.getUploadToken()));
+        assertFalse(Files.exists(Paths.get(uploaded.getFilePath())));
+    }
+
+    private UploadedFile save() {
+        return uploadService.save("a.pdf", "pdf", new ByteArrayInputStream(PDF), PDF.length);
+    }
+
+    private UploadService newService() {
+        AppConfig appConfig = new AppConfig();
+        ReflectionTestUtils.setField(appConfig, "uploadPath", tempDir.toString());
+        return new UploadService(appConfig, new ObjectMapper(), mock(ParseCacheService.class), DataSize.ofMegabytes(1));
+    }
+}